@@ -0,0 +1,76 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds controllers over the synthetic backend for the benchmarks. This is in the engine
+ * package so it can build Windows controllers, which the factories only make with the
+ * Windows backends.
+ * @author Michael Watkins
+ *
+ */
+public class BenchmarkControllers
+{
+    /**
+     * The XBox controller type, made by the backend factory
+     */
+    public static final String XBOX="xbox";
+
+    /**
+     * The Windows controller type
+     */
+    public static final String WINDOWS="windows";
+
+    /**
+     * Protect the helper from instantiation.
+     */
+    protected BenchmarkControllers()
+    {
+    }
+
+    /**
+     * Make a synthetic backend running the sweep script, so every poll changes the state
+     * @param count The number of controllers
+     * @return The backend
+     */
+    public static SyntheticControllerBackend createBackend(int count)
+    {
+        return new SyntheticControllerBackend(count, new SyntheticControllerBackend.SweepScript());
+    }
+
+    /**
+     * Make controllers over a backend
+     * @param backend The backend to read from
+     * @param type XBOX or WINDOWS
+     * @return The controllers, one for each id of the backend
+     */
+    public static List<GameController> createControllers(ControllerBackend backend, String type)
+    {
+        if(XBOX.equals(type))
+        {
+            return GameControllerManager.getAllBackendControllers(backend);
+        }
+        else if(!WINDOWS.equals(type))
+        {
+            throw new IllegalArgumentException("Cannot make controllers of type " + type + "\n");
+        }
+
+        List<GameController> list=new ArrayList<GameController>();
+
+        for(int i=0 ; i < backend.getNumControllers() ; ++i)
+        {
+            WindowsGameController controller=new WindowsGameController();
+
+            // set up the instance the same way as the factory does
+            controller.id=i;
+            controller.backend=backend;
+            controller.caps=backend.getCaps(i);
+            controller.state=new GameControllerState();
+            list.add(controller);
+        }
+
+        return list;
+    }
+
+}
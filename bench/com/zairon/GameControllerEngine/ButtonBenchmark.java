@@ -0,0 +1,154 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the button lookups: converting codes to GameControllerButtons, remapping button
+ * maps, and testing every button of a controller with isPressed.
+ * @author Michael Watkins
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class ButtonBenchmark
+{
+    /**
+     * The controller tested, polled once so some buttons are pressed
+     */
+    private GameController controller;
+
+    /**
+     * The number of button codes
+     */
+    private int numButtons;
+
+    /**
+     * A mapping swapping the face buttons, done with masks and rotates
+     */
+    private final ButtonMapping faceSwap=ButtonMapping.parse("BUTTON1=BUTTON2, BUTTON2=BUTTON1, BUTTON3=BUTTON4, BUTTON4=BUTTON3");
+
+    /**
+     * A mapping scattering the buttons, done with lookup tables
+     */
+    private final ButtonMapping scatter=ButtonMapping.parse("BUTTON1=BUTTON9, BUTTON2=BUTTON5, BUTTON3=BUTTON20, BUTTON4=BUTTON1, BUTTON5=BUTTON31, BUTTON6=BUTTON12");
+
+    /**
+     * The button maps remapped, cycled through so the JIT cannot fold them
+     */
+    private final int buttonMaps[]=new int[256];
+
+    /**
+     * The index of the next button map
+     */
+    private int next;
+
+    /**
+     * Build the controller
+     */
+    @Setup
+    public void setup()
+    {
+        controller=BenchmarkControllers.createControllers(BenchmarkControllers.createBackend(1), BenchmarkControllers.XBOX).get(0);
+        numButtons=GameControllerButtons.MAX_BUTTONS.ordinal();
+
+        for(int i=0 ; i < 100 ; ++i)
+        {
+            controller.poll();
+        }
+
+        for(int i=0 ; i < buttonMaps.length ; ++i)
+        {
+            buttonMaps[i]=i * 0x9E3779B9;
+        }
+    }
+
+    /**
+     * Convert every button code to its enumeration value
+     * @param blackhole Consumes the values
+     */
+    @Benchmark
+    public void getButton(Blackhole blackhole)
+    {
+        for(int code=0 ; code < numButtons ; ++code)
+        {
+            blackhole.consume(GameControllerButtons.get(code));
+        }
+    }
+
+    /**
+     * Remap a button map by masks and rotates
+     * @return The remapped button map
+     */
+    @Benchmark
+    public int applyMapping()
+    {
+        return faceSwap.apply(buttonMaps[next++ & 0xFF]);
+    }
+
+    /**
+     * Remap a button map by lookup tables
+     * @return The remapped button map
+     */
+    @Benchmark
+    public int applyTableMapping()
+    {
+        return scatter.apply(buttonMaps[next++ & 0xFF]);
+    }
+
+    /**
+     * Test every button by number
+     * @return The number of buttons pressed
+     */
+    @Benchmark
+    public int isPressed()
+    {
+        int pressed=0;
+
+        for(int button=0 ; button < numButtons ; ++button)
+        {
+            if(controller.isPressed(button))
+            {
+                pressed++;
+            }
+        }
+
+        return pressed;
+    }
+
+    /**
+     * Test every button by enumeration value, as a caller holding a code would
+     * @return The number of buttons pressed
+     */
+    @Benchmark
+    public int isPressedByButton()
+    {
+        int pressed=0;
+
+        for(int code=0 ; code < numButtons ; ++code)
+        {
+            if(controller.isPressed(GameControllerButtons.get(code)))
+            {
+                pressed++;
+            }
+        }
+
+        return pressed;
+    }
+
+}
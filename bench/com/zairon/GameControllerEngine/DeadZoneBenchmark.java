@@ -0,0 +1,161 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the dead zone tests of the points and axes for each dead zone shape, and the angle
+ * conversions of the points.
+ * The inputs cycle through a table of positions so the JIT cannot fold them, either all inside
+ * the dead zone, all outside it, or mixed.
+ * @author Michael Watkins
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class DeadZoneBenchmark
+{
+    /**
+     * The number of positions in the input table, a power of two
+     */
+    private static final int NUM_INPUTS=1024;
+
+    /**
+     * Where the positions fall: inside the dead zone, outside it, or mixed
+     */
+    @Param({"inside", "outside", "mixed"})
+    public String positions;
+
+    /**
+     * The shape of the dead zones
+     */
+    @Param({"HYBRID", "AXIAL", "RADIAL", "SCALED_RADIAL", "BOWTIE"})
+    public DeadZoneShape shape;
+
+    /**
+     * The x/y positions
+     */
+    private final float xs[]=new float[NUM_INPUTS];
+
+    /**
+     * The y positions
+     */
+    private final float ys[]=new float[NUM_INPUTS];
+
+    /**
+     * The angles in degrees
+     */
+    private final float angles[]=new float[NUM_INPUTS];
+
+    /**
+     * The point tested
+     */
+    private final GameControllerPoint point=new GameControllerPoint(GameController.DEFAULT_DEAD_ZONE);
+
+    /**
+     * The axis tested
+     */
+    private final GameControllerAxis axis=new GameControllerAxis(GameController.DEFAULT_DEAD_ZONE);
+
+    /**
+     * The index of the next input
+     */
+    private int next;
+
+    /**
+     * Fill in the input table
+     */
+    @Setup
+    public void setup()
+    {
+        Random random=new Random(42);
+        float deadZone=GameController.DEFAULT_DEAD_ZONE;
+
+        point.setDeadZoneShape(shape);
+        axis.setDeadZoneShape(shape);
+
+        for(int i=0 ; i < NUM_INPUTS ; ++i)
+        {
+            boolean inside="inside".equals(positions) || ("mixed".equals(positions) && random.nextBoolean());
+            float radius=inside ? random.nextFloat() * deadZone * 0.9f : deadZone + (random.nextFloat() * (1.0f - deadZone));
+            double angle=random.nextDouble() * 2.0 * Math.PI;
+
+            xs[i]=radius * (float)Math.cos(angle);
+            ys[i]=radius * (float)Math.sin(angle);
+            angles[i]=(float)Math.toDegrees(angle);
+        }
+    }
+
+    /**
+     * Set the point position, through the dead zone test
+     * @return The point
+     */
+    @Benchmark
+    public GameControllerPoint setPos()
+    {
+        int i=next++ & (NUM_INPUTS - 1);
+
+        point.setPos(xs[i], ys[i]);
+
+        return point;
+    }
+
+    /**
+     * Set the point from an angle, through the dead zone test
+     * @return The point
+     */
+    @Benchmark
+    public GameControllerPoint setAngle()
+    {
+        int i=next++ & (NUM_INPUTS - 1);
+
+        point.setAngle(angles[i], GameController.DEFAULT_POV_RADIUS);
+
+        return point;
+    }
+
+    /**
+     * Set the point position and get its angle
+     * @return The angle
+     */
+    @Benchmark
+    public float getAngle()
+    {
+        int i=next++ & (NUM_INPUTS - 1);
+
+        point.setPos(xs[i], ys[i]);
+
+        return point.getAngle();
+    }
+
+    /**
+     * Set the axis position, through the dead zone test
+     * @return The axis
+     */
+    @Benchmark
+    public GameControllerAxis setP()
+    {
+        int i=next++ & (NUM_INPUTS - 1);
+
+        axis.setP(xs[i]);
+
+        return axis;
+    }
+
+}
@@ -0,0 +1,240 @@
+package com.zairon.GameControllerEngine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Pipe;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the fan-in latency of an InputReactor: simulated devices write input_event frames
+ * into pipes, and the time is from the write until the frame can be read by a poll. oneDevice
+ * writes to one device at a time, going round them all; allDevices writes a frame to every
+ * device and waits for the last one, as when every controller changes at once.
+ * @author Michael Watkins
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class FanInBenchmark
+{
+    /**
+     * The key code written, BTN_SOUTH
+     */
+    private static final int BUTTON_CODE=0x130;
+
+    /**
+     * The number of simulated devices
+     */
+    @Param({"1", "8", "64"})
+    public int devices;
+
+    /**
+     * The reactor reading the devices
+     */
+    private InputReactor reactor;
+
+    /**
+     * The write ends of the pipes, one for each device
+     */
+    private Pipe.SinkChannel sinks[];
+
+    /**
+     * The frames read from each device so far
+     */
+    private long frames[];
+
+    /**
+     * A frame pressing the button
+     */
+    private ByteBuffer press;
+
+    /**
+     * A frame releasing the button
+     */
+    private ByteBuffer release;
+
+    /**
+     * The next device for oneDevice
+     */
+    private int next;
+
+    /**
+     * The number of frames written, to alternate press and release
+     */
+    private long written;
+
+    /**
+     * Build the pipes and start the reactor
+     * @throws IOException if a pipe cannot be opened
+     */
+    @Setup
+    public void setup() throws IOException
+    {
+        reactor=GameControllerManager.createInputReactor();
+        sinks=new Pipe.SinkChannel[devices];
+        frames=new long[devices];
+
+        for(int i=0 ; i < devices ; ++i)
+        {
+            Pipe pipe=Pipe.open();
+
+            sinks[i]=pipe.sink();
+            reactor.addSource(pipe.source(), "PipeDevice");
+        }
+
+        press=frame(1);
+        release=frame(0);
+        reactor.start();
+    }
+
+    /**
+     * Stop the reactor and close the pipes
+     * @throws Exception if the reactor cannot be stopped or a pipe closed
+     */
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        reactor.stop();
+
+        for(Pipe.SinkChannel sink : sinks)
+        {
+            sink.close();
+        }
+    }
+
+    /**
+     * Write a frame to one device and wait until the reactor has decoded it
+     * @return The frames read from the device
+     * @throws IOException if the write fails
+     */
+    @Benchmark
+    public long oneDevice() throws IOException
+    {
+        int device=next;
+
+        next=(device + 1) % devices;
+        write(device, nextFrame());
+
+        return await(device);
+    }
+
+    /**
+     * Write a frame to every device and wait until the reactor has decoded all of them
+     * @return The frames read from the last device
+     * @throws IOException if a write fails
+     */
+    @Benchmark
+    public long allDevices() throws IOException
+    {
+        ByteBuffer frame=nextFrame();
+
+        for(int i=0 ; i < devices ; ++i)
+        {
+            write(i, frame);
+        }
+
+        long count=0;
+
+        for(int i=0 ; i < devices ; ++i)
+        {
+            count=await(i);
+        }
+
+        return count;
+    }
+
+    /**
+     * Get the frame to write next, alternating press and release
+     * @return The frame
+     */
+    private ByteBuffer nextFrame()
+    {
+        return ((written++ & 1)==0) ? press : release;
+    }
+
+    /**
+     * Write a frame to a device
+     * @param device The device
+     * @param frame The frame
+     * @throws IOException if the write fails
+     */
+    private void write(int device, ByteBuffer frame) throws IOException
+    {
+        frame.rewind();
+
+        while(frame.hasRemaining())
+        {
+            sinks[device].write(frame);
+        }
+
+        frames[device]++;
+    }
+
+    /**
+     * Wait for the reactor to decode every frame written to a device
+     * @param device The device
+     * @return The frames read from the device
+     */
+    private long await(int device)
+    {
+        long count;
+
+        while((count=reactor.getFrameCount(device)) < frames[device])
+        {
+            Thread.onSpinWait();
+        }
+
+        return count;
+    }
+
+    /**
+     * Build a frame of a button event and a SYN_REPORT
+     * @param value The button value
+     * @return The frame, in a direct buffer
+     */
+    private static ByteBuffer frame(int value)
+    {
+        ByteBuffer buffer=ByteBuffer.allocateDirect(EvdevDecoder.EVENT_SIZE_64 * 2).order(ByteOrder.nativeOrder());
+
+        event(buffer, EvdevDecoder.EV_KEY, BUTTON_CODE, value);
+        event(buffer, EvdevDecoder.EV_SYN, EvdevDecoder.SYN_REPORT, 0);
+        buffer.flip();
+
+        return buffer;
+    }
+
+    /**
+     * Put a 64-bit input_event into a buffer, with a zero time
+     * @param buffer The buffer
+     * @param type The event type
+     * @param code The event code
+     * @param value The event value
+     */
+    private static void event(ByteBuffer buffer, int type, int code, int value)
+    {
+        buffer.putLong(0L);
+        buffer.putLong(0L);
+        buffer.putShort((short)type);
+        buffer.putShort((short)code);
+        buffer.putInt(value);
+    }
+
+}
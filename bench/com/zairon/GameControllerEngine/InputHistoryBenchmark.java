@@ -0,0 +1,94 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the rollback input history: putting a frame, getting one back into a state, and
+ * comparing a confirmed input against the predicted one, cycling over a full history of frames.
+ * @author Michael Watkins
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class InputHistoryBenchmark
+{
+    /**
+     * The history tested, filled with polled input
+     */
+    private final InputHistory history=new InputHistory();
+
+    /**
+     * The state put, got and compared
+     */
+    private GameControllerState state;
+
+    /**
+     * The next frame
+     */
+    private int frame;
+
+    /**
+     * Fill the history from a polled controller
+     */
+    @Setup
+    public void setup()
+    {
+        GameController controller=BenchmarkControllers.createControllers(BenchmarkControllers.createBackend(1), BenchmarkControllers.XBOX).get(0);
+
+        for(int i=0 ; i < InputHistory.DEFAULT_CAPACITY ; ++i)
+        {
+            controller.poll();
+            history.put(i, controller);
+        }
+
+        state=controller.getState();
+    }
+
+    /**
+     * Put a frame, quantizing the state
+     * @return The newest frame
+     */
+    @Benchmark
+    public int put()
+    {
+        history.put(frame++ & (InputHistory.DEFAULT_CAPACITY - 1), state);
+
+        return history.getLatestFrame();
+    }
+
+    /**
+     * Get a frame back into a state
+     * @return true if the frame was held
+     */
+    @Benchmark
+    public boolean get()
+    {
+        return history.get(frame++ & (InputHistory.DEFAULT_CAPACITY - 1), state);
+    }
+
+    /**
+     * Compare a state with a frame, as when a confirmed input arrives
+     * @return true if the input was the same
+     */
+    @Benchmark
+    public boolean compare()
+    {
+        return history.compare(frame++ & (InputHistory.DEFAULT_CAPACITY - 1), state);
+    }
+
+}
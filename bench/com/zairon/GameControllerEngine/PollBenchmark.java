@@ -0,0 +1,97 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks polling every controller once, from one controller up to 10,000, for XBox and
+ * Windows controllers over the synthetic backend. Each operation polls the whole set, so divide
+ * by the number of controllers for the cost of one poll.
+ * @author Michael Watkins
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class PollBenchmark
+{
+    /**
+     * The number of controllers polled
+     */
+    @Param({"1", "10", "100", "1000", "10000"})
+    public int controllers;
+
+    /**
+     * The type of controller polled
+     */
+    @Param({BenchmarkControllers.XBOX, BenchmarkControllers.WINDOWS})
+    public String type;
+
+    /**
+     * The controllers
+     */
+    private GameController list[];
+
+    /**
+     * The same controllers as a batch
+     */
+    private GameControllerBatch batch;
+
+    /**
+     * Build the controllers
+     */
+    @Setup
+    public void setup()
+    {
+        List<GameController> created=BenchmarkControllers.createControllers(BenchmarkControllers.createBackend(controllers), type);
+
+        list=created.toArray(new GameController[created.size()]);
+        batch=GameControllerManager.createBatch(created);
+    }
+
+    /**
+     * Poll each controller with poll()
+     * @return The number of controllers connected
+     */
+    @Benchmark
+    public int poll()
+    {
+        int connected=0;
+
+        for(GameController controller : list)
+        {
+            if(controller.poll())
+            {
+                connected++;
+            }
+        }
+
+        return connected;
+    }
+
+    /**
+     * Poll the controllers with one batched read
+     * @return The number of controllers connected
+     */
+    @Benchmark
+    public int pollAll()
+    {
+        return batch.pollAll();
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the response curve tables against working a power curve out with Math.pow,
+ * and the cost a curve adds to setting an axis.
+ * @author Michael Watkins
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class ResponseCurveBenchmark
+{
+    /**
+     * The number of positions in the input table, a power of two
+     */
+    private static final int NUM_INPUTS=1024;
+
+    /**
+     * The curve looked up
+     */
+    @Param({"power", "sCurve", "spline"})
+    public String curveType;
+
+    /**
+     * The positions, from -1.0 to 1.0
+     */
+    private final float inputs[]=new float[NUM_INPUTS];
+
+    /**
+     * The curve
+     */
+    private ResponseCurve curve;
+
+    /**
+     * The axis with the curve set
+     */
+    private final GameControllerAxis axis=new GameControllerAxis(GameController.DEFAULT_DEAD_ZONE);
+
+    /**
+     * The index of the next input
+     */
+    private int next;
+
+    /**
+     * Build the curve and fill in the input table
+     */
+    @Setup
+    public void setup()
+    {
+        Random random=new Random(42);
+
+        for(int i=0 ; i < NUM_INPUTS ; ++i)
+        {
+            inputs[i]=(random.nextFloat() * 2.0f) - 1.0f;
+        }
+
+        if("power".equals(curveType))
+        {
+            curve=ResponseCurve.power(2.2);
+        }
+        else if("sCurve".equals(curveType))
+        {
+            curve=ResponseCurve.sCurve(2.0);
+        }
+        else
+        {
+            curve=ResponseCurve.spline(new float[] {0.0f, 0.3f, 0.7f, 1.0f}, new float[] {0.0f, 0.1f, 0.6f, 1.0f});
+        }
+
+        axis.setResponseCurve(curve);
+    }
+
+    /**
+     * Apply the curve table
+     * @return The value after the curve
+     */
+    @Benchmark
+    public float apply()
+    {
+        return curve.apply(inputs[next++ & (NUM_INPUTS - 1)]);
+    }
+
+    /**
+     * Work out a power curve directly, as titles did before the tables
+     * @return The value after the curve
+     */
+    @Benchmark
+    public float mathPow()
+    {
+        float value=inputs[next++ & (NUM_INPUTS - 1)];
+
+        return Math.copySign((float)Math.pow(Math.abs(value), 2.2), value);
+    }
+
+    /**
+     * Set the axis through its dead zone and curve
+     * @return The axis
+     */
+    @Benchmark
+    public GameControllerAxis setP()
+    {
+        axis.setP(inputs[next++ & (NUM_INPUTS - 1)]);
+
+        return axis;
+    }
+
+}
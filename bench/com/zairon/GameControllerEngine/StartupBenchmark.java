@@ -0,0 +1,66 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the time from a cold start to the first poll of a controller: picking and opening
+ * the backend, loading any native library, building the capabilities and polling. Each fork is a
+ * fresh JVM measured once, so the score is the average over the forks. With the automatic backend
+ * on a platform without natives this measures falling back to a null controller.
+ * @author Michael Watkins
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=0)
+@Measurement(iterations=1)
+@Fork(20)
+public class StartupBenchmark
+{
+    /**
+     * The backend picked automatically
+     */
+    public static final String AUTO="auto";
+
+    /**
+     * The backend to start, or AUTO to let the manager pick
+     */
+    @Param({AUTO, SyntheticControllerBackend.NAME})
+    public String backend;
+
+    /**
+     * Select the backend. This must not touch the manager, so nothing starts before the measurement.
+     */
+    @Setup
+    public void setup()
+    {
+        if(!AUTO.equals(backend))
+        {
+            System.setProperty(GameControllerManager.BACKEND_PROPERTY, backend);
+        }
+    }
+
+    /**
+     * Create the first controller and poll it
+     * @return Whether the controller is connected
+     */
+    @Benchmark
+    public boolean firstPoll()
+    {
+        return GameControllerManager.createController(0).poll();
+    }
+
+}
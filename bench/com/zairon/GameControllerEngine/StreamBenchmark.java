@@ -0,0 +1,151 @@
+package com.zairon.GameControllerEngine;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the stream wire format for a batch of eight controllers: encoding every slot as a
+ * keyframe, encoding deltas against the previous sample, and decoding the deltas. A stream server
+ * does one encode per subscriber per send, so at 1 kHz this is the per-subscriber cost of a second.
+ * @author Michael Watkins
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class StreamBenchmark
+{
+    /**
+     * The number of controllers in a batch
+     */
+    private static final int SLOTS=8;
+
+    /**
+     * The previous sample for each slot
+     */
+    private final GameControllerState bases[]=new GameControllerState[SLOTS];
+
+    /**
+     * The current sample for each slot
+     */
+    private final GameControllerState states[]=new GameControllerState[SLOTS];
+
+    /**
+     * The states decoded into
+     */
+    private final GameControllerState decoded[]=new GameControllerState[SLOTS];
+
+    /**
+     * The buffer packets are encoded into
+     */
+    private final ByteBuffer buffer=ByteBuffer.allocateDirect(ControllerStreamProtocol.MAX_PACKET_SIZE);
+
+    /**
+     * The buffer holding an encoded batch of deltas
+     */
+    private final ByteBuffer deltas=ByteBuffer.allocateDirect(ControllerStreamProtocol.MAX_PACKET_SIZE);
+
+    /**
+     * Build two consecutive samples for each slot and encode the deltas between them
+     */
+    @Setup
+    public void setup()
+    {
+        List<GameController> controllers=BenchmarkControllers.createControllers(BenchmarkControllers.createBackend(SLOTS), BenchmarkControllers.XBOX);
+
+        for(int slot=0 ; slot < SLOTS ; ++slot)
+        {
+            GameController controller=controllers.get(slot);
+
+            controller.poll();
+            bases[slot]=new GameControllerState();
+            bases[slot].copy(controller.getState());
+            controller.poll();
+            states[slot]=new GameControllerState();
+            states[slot].copy(controller.getState());
+            decoded[slot]=new GameControllerState();
+        }
+
+        encode(deltas, true);
+        deltas.flip();
+    }
+
+    /**
+     * Encode every slot as a keyframe
+     * @return The size of the batch in bytes
+     */
+    @Benchmark
+    public int encodeKeyframes()
+    {
+        return encode(buffer, false);
+    }
+
+    /**
+     * Encode every slot as a delta against the previous sample
+     * @return The size of the batch in bytes
+     */
+    @Benchmark
+    public int encodeDeltas()
+    {
+        return encode(buffer, true);
+    }
+
+    /**
+     * Decode the batch of deltas on top of the previous samples
+     * @return The number of fields decoded
+     */
+    @Benchmark
+    public int decodeDeltas()
+    {
+        int fields=0;
+
+        deltas.rewind();
+
+        for(int slot=0 ; slot < SLOTS ; ++slot)
+        {
+            deltas.position(deltas.position() + 1 + 4 + 4);
+
+            int mask=deltas.getShort() & 0xFFFF;
+
+            decoded[slot].copy(bases[slot]);
+            ControllerStreamProtocol.getFields(deltas, mask, decoded[slot]);
+            fields+=Integer.bitCount(mask);
+        }
+
+        return fields;
+    }
+
+    /**
+     * Encode a batch of records
+     * @param target The buffer to encode into
+     * @param delta true to encode against the previous samples, false for keyframes
+     * @return The size of the batch in bytes
+     */
+    private int encode(ByteBuffer target, boolean delta)
+    {
+        target.clear();
+
+        for(int slot=0 ; slot < SLOTS ; ++slot)
+        {
+            ControllerStreamProtocol.putRecord(target, slot, 2, delta ? 1 : ControllerStreamProtocol.NO_SEQUENCE, states[slot], delta ? bases[slot] : null);
+        }
+
+        return target.position();
+    }
+
+}
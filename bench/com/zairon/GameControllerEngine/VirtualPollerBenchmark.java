@@ -0,0 +1,172 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the samples per second delivered by the single loop of ControllerPoller against
+ * a VirtualThreadPoller with a virtual thread for each controller, at 10, 1,000 and 10,000
+ * synthetic controllers polled at 1,000 Hz. Each operation waits out one period while the
+ * pollers run; the samples counter is the rate delivered across all the controllers, to be compared
+ * with the controllers times the rate. The synthetic backend cannot wait for input, so each
+ * virtual thread sleeps out its period; this is the worst case for the virtual threads, and a
+ * backend that pushes its input, like the evdev backends, wakes them only when there is something to read.
+ * This needs Java 21 or later.
+ * @author Michael Watkins
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class VirtualPollerBenchmark
+{
+    /**
+     * The polling rate in Hz
+     */
+    private static final int RATE=1000;
+
+    /**
+     * The poll mode for the single loop poller
+     */
+    public static final String LOOP="loop";
+
+    /**
+     * The poll mode for the virtual thread poller
+     */
+    public static final String VIRTUAL="virtual";
+
+    /**
+     * The number of controllers polled
+     */
+    @Param({"10", "1000", "10000"})
+    public int controllers;
+
+    /**
+     * How the controllers are polled
+     */
+    @Param({LOOP, VIRTUAL})
+    public String mode;
+
+    /**
+     * The single loop poller, or null when polling with virtual threads
+     */
+    private ControllerPoller loop;
+
+    /**
+     * The virtual thread poller, or null when polling with the single loop
+     */
+    private VirtualThreadPoller virtual;
+
+    /**
+     * The samples delivered before the current operation
+     */
+    private long last;
+
+    /**
+     * The samples delivered across all the controllers, reported per second
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Samples
+    {
+        /**
+         * The number of samples delivered
+         */
+        public long samples;
+    }
+
+    /**
+     * Build the controllers and start the poller
+     */
+    @Setup
+    public void setup()
+    {
+        List<GameController> list=BenchmarkControllers.createControllers(BenchmarkControllers.createBackend(controllers), BenchmarkControllers.XBOX);
+
+        if(LOOP.equals(mode))
+        {
+            loop=GameControllerManager.createPoller(list, RATE, WaitStrategies.PARK);
+            loop.start();
+        }
+        else if(VIRTUAL.equals(mode))
+        {
+            virtual=GameControllerManager.createVirtualPoller(list, RATE);
+            virtual.start();
+        }
+        else
+        {
+            throw new IllegalArgumentException("Cannot poll in mode " + mode + "\n");
+        }
+    }
+
+    /**
+     * Stop the poller
+     * @throws InterruptedException if interrupted while stopping
+     */
+    @TearDown
+    public void tearDown() throws InterruptedException
+    {
+        if(loop!=null)
+        {
+            loop.stop();
+        }
+
+        if(virtual!=null)
+        {
+            virtual.stop();
+        }
+    }
+
+    /**
+     * Start counting from the samples already delivered
+     */
+    @Setup(Level.Iteration)
+    public void startIteration()
+    {
+        last=delivered();
+    }
+
+    /**
+     * Wait out one polling period and count the samples delivered during it
+     * @param counters The counters reporting the samples
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Benchmark
+    public void deliver(Samples counters) throws InterruptedException
+    {
+        TimeUnit.NANOSECONDS.sleep(TimeUnit.SECONDS.toNanos(1) / RATE);
+
+        long now=delivered();
+
+        counters.samples+=now - last;
+        last=now;
+    }
+
+    /**
+     * Get the samples delivered so far across all the controllers
+     * @return The number of samples
+     */
+    private long delivered()
+    {
+        return (loop!=null) ? loop.getPollCount() * controllers : virtual.getPollCount();
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.zairon.GameControllerEngine;
+
+/**
+ * Counts the failed expectations of a check program. Each check runs in its own JVM from the ant
+ * check target, and finish throws if anything failed, so the JVM exits with an error and the
+ * build fails.
+ * @author Michael Watkins
+ *
+ */
+final class Checks
+{
+    /**
+     * The number of expectations that failed
+     */
+    private static int failures;
+
+    /**
+     * Prevent instantiation
+     */
+    private Checks()
+    {
+    }
+
+    /**
+     * Expect something to be true, printing what failed if it is not
+     * @param condition The condition expected to be true
+     * @param what What was expected, printed if it fails
+     */
+    static void expect(boolean condition, String what)
+    {
+        if(!condition)
+        {
+            ++failures;
+            System.out.println("FAILED: " + what);
+        }
+    }
+
+    /**
+     * Expect two values to be equal, printing both if they are not
+     * @param expected The value expected
+     * @param actual The value found
+     * @param what What was compared, printed if it fails
+     */
+    static void expectEquals(long expected, long actual, String what)
+    {
+        expect(expected==actual, what + " was " + actual + ", expected " + expected);
+    }
+
+    /**
+     * End the check
+     * @param name The name of the check
+     * @throws IllegalStateException if any expectation failed
+     */
+    static void finish(String name)
+    {
+        if(failures > 0)
+        {
+            throw new IllegalStateException(name + " failed " + failures + " expectations\n");
+        }
+
+        System.out.println(name + " passed");
+    }
+
+}
@@ -0,0 +1,255 @@
+package com.zairon.GameControllerEngine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Checks the evdev decoding against evdev-gamepad.bin, a recording of 35 input_events in the
+ * 24-byte layout of a little-endian 64-bit kernel. The recording has seven frames:
+ * <ol>
+ * <li>the left stick pushed up and right, ABS_Y being down positive</li>
+ * <li>both sticks pushed past the end of their ranges, which clamps</li>
+ * <li>BTN_SOUTH and BTN_START pressed, ABS_Z fully in and ABS_RZ a fifth in</li>
+ * <li>the hat up and right on ABS_HAT0X and ABS_HAT0Y</li>
+ * <li>after a SYN_DROPPED whose frame releases BTN_SOUTH and centers ABS_HAT0X, which must be
+ * skipped, the sticks moved so the left stick is full left</li>
+ * <li>the hat axes centered and the hat held down and left with BTN_DPAD_DOWN and
+ * BTN_DPAD_LEFT</li>
+ * <li>the d-pad released, ABS_GAS fully in and ABS_BRAKE 0.4 in, which switches the triggers to
+ * the pedals</li>
+ * </ol>
+ * The recording is decoded a frame at a time in its own layout and again converted to the
+ * 16-byte layout of a 32-bit kernel, then read through an EvdevControllerBackend pointed at the
+ * file.
+ * <p>
+ * Run with the path of the recording, which defaults to the one in the check tree.
+ * @author Michael Watkins
+ *
+ */
+public class EvdevDecoderCheck
+{
+    /**
+     * The recording in the check tree, relative to the project
+     */
+    private static final String RECORDING="check/com/zairon/GameControllerEngine/evdev-gamepad.bin";
+
+    /**
+     * The number of events in the recording
+     */
+    private static final int NUM_EVENTS=35;
+
+    /**
+     * The number of frames committed from the recording
+     */
+    private static final int NUM_FRAMES=7;
+
+    /**
+     * The state expected after each frame: x, y, u, r, left trigger, right trigger, POV and button map
+     */
+    private static final float EXPECTED[][]=
+    {
+        {1.0f, 1.0f, 0.0f, 0.0f, 0.0f, 0.0f, EvdevDecoder.POV_NEUTRAL, 0},
+        {1.0f, -1.0f, -1.0f, 1.0f, 0.0f, 0.0f, EvdevDecoder.POV_NEUTRAL, 0},
+        {1.0f, -1.0f, -1.0f, 1.0f, 1.0f, 0.2f, EvdevDecoder.POV_NEUTRAL, 0x81},
+        {1.0f, -1.0f, -1.0f, 1.0f, 1.0f, 0.2f, 45.0f, 0x81},
+        {-1.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.2f, 45.0f, 0x81},
+        {-1.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.2f, 225.0f, 0x81},
+        {-1.0f, 0.0f, 0.0f, 0.0f, 0.4f, 1.0f, EvdevDecoder.POV_NEUTRAL, 0x81},
+    };
+
+    /**
+     * The time of the first frame in microseconds, from its SYN_REPORT
+     */
+    private static final long FIRST_FRAME_TIME=1000000750L;
+
+    /**
+     * How close a decoded axis must be to the one expected
+     */
+    private static final float TOLERANCE=0.0001f;
+
+    /**
+     * How long to wait for the backend to read the whole recording, in milliseconds
+     */
+    private static final long READ_WAIT_MILLIS=5000L;
+
+    /**
+     * Run the check
+     * @param args The path of the recording, optional
+     * @throws IOException if the recording cannot be read
+     * @throws InterruptedException if interrupted while waiting for the backend
+     */
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        Path recording=Path.of((args.length > 0) ? args[0] : RECORDING);
+        byte events64[]=Files.readAllBytes(recording);
+
+        Checks.expectEquals(NUM_EVENTS * EvdevDecoder.EVENT_SIZE_64, events64.length, "recording size");
+
+        long times64[]=checkDecoder(EvdevDecoder.EVENT_SIZE_64, events64);
+        long times32[]=checkDecoder(EvdevDecoder.EVENT_SIZE_32, toEvents32(events64));
+
+        Checks.expectEquals(FIRST_FRAME_TIME, times64[0], "time of the first frame");
+
+        for(int i=0 ; i < NUM_FRAMES ; ++i)
+        {
+            Checks.expectEquals(times64[i], times32[i], "16-byte time of frame " + i);
+        }
+
+        if(EvdevDecoder.getNativeEventSize()==EvdevDecoder.EVENT_SIZE_64)
+        {
+            checkBackend(recording);
+        }
+
+        Checks.finish("EvdevDecoderCheck");
+    }
+
+    /**
+     * Decode the recording a frame at a time, checking each frame against the one expected
+     * @param eventSize The size of an event in the recording
+     * @param events The recording
+     * @return The time of each frame
+     */
+    private static long[] checkDecoder(int eventSize, byte events[])
+    {
+        EvdevDecoder decoder=new EvdevDecoder(eventSize, GameControllerCaps.createGamepadCaps("recording"));
+        ByteBuffer buffer=ByteBuffer.wrap(events).order(ByteOrder.LITTLE_ENDIAN);
+        GameControllerStateBuffer states=new GameControllerStateBuffer(1);
+        GameControllerStateView view=new GameControllerStateView();
+        GameControllerState state=new GameControllerState();
+        long times[]=new long[NUM_FRAMES];
+        int frame=0;
+
+        // hand the decoder one event at a time, so each frame can be checked as it is committed
+        while(buffer.position() < events.length)
+        {
+            buffer.limit(buffer.position() + eventSize);
+
+            if((decoder.decode(buffer)==1) && (frame < NUM_FRAMES))
+            {
+                String what=eventSize + "-byte frame " + frame;
+
+                decoder.copyTo(state);
+                checkState(state, EXPECTED[frame], what);
+
+                decoder.copyTo(states, 0);
+                view.wrap(states, 0);
+                Checks.expect(view.isConnected(), what + " view connected");
+                Checks.expect(matches(state, view), what + " view matches the state");
+
+                times[frame]=decoder.getFrameTime();
+                Checks.expect((frame==0) || (times[frame] > times[frame - 1]), what + " time goes forward");
+            }
+
+            frame=(int)decoder.getFrameCount();
+        }
+
+        Checks.expectEquals(NUM_FRAMES, decoder.getFrameCount(), eventSize + "-byte frame count");
+        Checks.expectEquals(1, decoder.getDroppedCount(), eventSize + "-byte dropped count");
+
+        return times;
+    }
+
+    /**
+     * Read the recording through the backend, which must keep the last frame at the end of the file
+     * @param recording The path of the recording
+     * @throws InterruptedException if interrupted while waiting for the backend
+     */
+    private static void checkBackend(Path recording) throws InterruptedException
+    {
+        EvdevControllerBackend backend=new EvdevControllerBackend(List.of(recording));
+        GameControllerState state=new GameControllerState();
+
+        Checks.expect(backend.open(), "backend opens");
+        Checks.expectEquals(1, backend.getNumControllers(), "backend controllers");
+        Checks.expect(backend.isConnected(0), "recording connected");
+
+        long end=System.currentTimeMillis() + READ_WAIT_MILLIS;
+
+        while((backend.getFrameCount(0) < NUM_FRAMES) && (System.currentTimeMillis() < end))
+        {
+            Thread.sleep(10L);
+        }
+
+        Checks.expectEquals(NUM_FRAMES, backend.getFrameCount(0), "backend frame count");
+        Checks.expect(backend.readState(0, state), "backend reads the last frame");
+        checkState(state, EXPECTED[NUM_FRAMES - 1], "backend last frame");
+
+        backend.close();
+    }
+
+    /**
+     * Check a decoded state against the one expected
+     * @param state The decoded state
+     * @param expected The state expected
+     * @param what The frame, printed if it fails
+     */
+    private static void checkState(GameControllerState state, float expected[], String what)
+    {
+        checkAxis(expected[0], state.getX(), what + " x");
+        checkAxis(expected[1], state.getY(), what + " y");
+        checkAxis(expected[2], state.getU(), what + " u");
+        checkAxis(expected[3], state.getR(), what + " r");
+        checkAxis(expected[4], state.getLeftTrigger(), what + " left trigger");
+        checkAxis(expected[5], state.getRightTrigger(), what + " right trigger");
+        checkAxis(expected[4] - expected[5], state.getZ(), what + " z");
+        // the recording has no throttle, which reads as a missing v axis
+        checkAxis(-1.0f, state.getV(), what + " v");
+        checkAxis(expected[6], state.getPOV(), what + " POV");
+        Checks.expectEquals((int)expected[7], state.getButtonMap(), what + " button map");
+    }
+
+    /**
+     * Check a decoded axis
+     * @param expected The value expected
+     * @param actual The value decoded
+     * @param what The axis, printed if it fails
+     */
+    private static void checkAxis(float expected, float actual, String what)
+    {
+        Checks.expect(Math.abs(expected - actual) <= TOLERANCE, what + " was " + actual + ", expected " + expected);
+    }
+
+    /**
+     * Find whether a view of a buffer record holds the same sample as a state
+     * @param state The state
+     * @param view The view
+     * @return true if every field matches
+     */
+    private static boolean matches(GameControllerState state, GameControllerStateView view)
+    {
+        return (state.getButtonMap()==view.getButtonMap()) && (state.getX()==view.getX()) && (state.getY()==view.getY())
+                && (state.getZ()==view.getZ()) && (state.getLeftTrigger()==view.getLeftTrigger())
+                && (state.getRightTrigger()==view.getRightTrigger()) && (state.getR()==view.getR())
+                && (state.getU()==view.getU()) && (state.getV()==view.getV()) && (state.getPOV()==view.getPOV());
+    }
+
+    /**
+     * Convert 24-byte events to the 16-byte layout, with 32-bit seconds and microseconds
+     * @param events64 The 24-byte events
+     * @return The 16-byte events
+     */
+    private static byte[] toEvents32(byte events64[])
+    {
+        ByteBuffer in=ByteBuffer.wrap(events64).order(ByteOrder.LITTLE_ENDIAN);
+        int count=events64.length / EvdevDecoder.EVENT_SIZE_64;
+        ByteBuffer out=ByteBuffer.allocate(count * EvdevDecoder.EVENT_SIZE_32).order(ByteOrder.LITTLE_ENDIAN);
+
+        for(int i=0 ; i < count ; ++i)
+        {
+            int position=i * EvdevDecoder.EVENT_SIZE_64;
+
+            out.putInt((int)in.getLong(position));
+            out.putInt((int)in.getLong(position + 8));
+            out.putShort(in.getShort(position + 16));
+            out.putShort(in.getShort(position + 18));
+            out.putInt(in.getInt(position + 20));
+        }
+
+        return out.array();
+    }
+
+}
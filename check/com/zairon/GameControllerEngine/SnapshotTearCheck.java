@@ -0,0 +1,185 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Checks that readers never see a torn snapshot, in the style of a jcstress test. One thread polls
+ * a synthetic controller as fast as it can, publishing samples whose fields are all tied to the
+ * button map: sample k has x == y == u == v == the triggers == k / PERIOD, r == -k / PERIOD and the
+ * POV at a multiple of 45 degrees picked by k. The dead zones change the axes, so the snapshot
+ * expected for each k is first taken from a second controller polled on one thread. The reader
+ * threads then take snapshots in a loop and count any that do not match the snapshot expected for
+ * their button map, whose previous button map is not the sample before, or whose sequence goes
+ * backwards. Any count above zero fails the check.
+ * <p>
+ * Run with the number of seconds and the number of reader threads, which default to 3 and the
+ * number of processors less one.
+ * @author Michael Watkins
+ *
+ */
+public class SnapshotTearCheck
+{
+    /**
+     * The number of different samples the writer cycles through
+     */
+    private static final int PERIOD=1000;
+
+    /**
+     * The script every sample comes from, tying the fields to the button map
+     */
+    private static final SyntheticControllerBackend.Script SCRIPT=(id, tick, sample) ->
+    {
+        int k=(int)(tick % PERIOD) + 1;
+        float p=k / (float)PERIOD;
+
+        sample.setXY(p, p);
+        sample.setRU(p, -p);
+        sample.setTriggers(p, p);
+        sample.setV(p);
+        sample.setPOV((k & 7) * 45.0f);
+        sample.setButtonMap(k);
+    };
+
+    /**
+     * The snapshot expected for each button map, from 1 to PERIOD
+     */
+    private static final GameControllerSnapshot expected[]=new GameControllerSnapshot[PERIOD + 1];
+
+    /**
+     * Run the check
+     * @param args The number of seconds and the number of reader threads, both optional
+     * @throws InterruptedException if interrupted while waiting for the readers
+     */
+    public static void main(String[] args) throws InterruptedException
+    {
+        long seconds=(args.length > 0) ? Long.parseLong(args[0]) : 3L;
+        int readers=(args.length > 1) ? Integer.parseInt(args[1]) : Math.max(Runtime.getRuntime().availableProcessors() - 1, 2);
+
+        fillExpected();
+
+        GameController controller=GameControllerManager.createBackendController(new SyntheticControllerBackend(1, SCRIPT), 0);
+        AtomicBoolean running=new AtomicBoolean(true);
+        long torn[]=new long[readers];
+        long reads[]=new long[readers];
+        Thread threads[]=new Thread[readers];
+
+        controller.enablePublishing();
+        controller.poll();
+
+        for(int i=0 ; i < readers ; ++i)
+        {
+            int reader=i;
+
+            threads[i]=new Thread(() -> read(controller, running, torn, reads, reader), "SnapshotTearCheck-" + i);
+            threads[i].start();
+        }
+
+        long end=System.nanoTime() + seconds * 1000000000L;
+        long polls=0;
+
+        while(System.nanoTime() < end)
+        {
+            controller.poll();
+            ++polls;
+        }
+
+        running.set(false);
+
+        long totalTorn=0;
+        long totalReads=0;
+
+        for(int i=0 ; i < readers ; ++i)
+        {
+            threads[i].join();
+            totalTorn+=torn[i];
+            totalReads+=reads[i];
+        }
+
+        System.out.println(polls + " samples published, " + totalReads + " snapshots taken by " + readers + " readers, " + totalTorn + " torn");
+        Checks.expect(polls > PERIOD, "the writer published more than " + PERIOD + " samples");
+        Checks.expect(totalReads > 0, "the readers took snapshots");
+        Checks.expectEquals(0L, totalTorn, "torn snapshots");
+        Checks.finish("SnapshotTearCheck");
+    }
+
+    /**
+     * Take the snapshot expected for each button map by polling a controller on this thread
+     */
+    private static void fillExpected()
+    {
+        GameController controller=GameControllerManager.createBackendController(new SyntheticControllerBackend(1, SCRIPT), 0);
+
+        controller.enablePublishing();
+
+        for(int i=0 ; i < PERIOD ; ++i)
+        {
+            controller.poll();
+
+            GameControllerSnapshot snapshot=controller.snapshot(new GameControllerSnapshot());
+
+            expected[snapshot.getButtonMap()]=snapshot;
+        }
+    }
+
+    /**
+     * Take snapshots until told to stop, counting the torn ones
+     * @param controller The controller being published
+     * @param running Cleared to stop the reader
+     * @param torn The count of torn snapshots for each reader
+     * @param reads The count of snapshots for each reader
+     * @param reader The index of this reader
+     */
+    private static void read(GameController controller, AtomicBoolean running, long torn[], long reads[], int reader)
+    {
+        GameControllerSnapshot snapshot=new GameControllerSnapshot();
+        long lastSequence=0;
+        long tornCount=0;
+        long readCount=0;
+
+        while(running.get())
+        {
+            controller.snapshot(snapshot);
+            ++readCount;
+
+            if(!isWhole(snapshot) || (snapshot.getSequence() < lastSequence))
+            {
+                ++tornCount;
+            }
+
+            lastSequence=snapshot.getSequence();
+        }
+
+        torn[reader]=tornCount;
+        reads[reader]=readCount;
+    }
+
+    /**
+     * Return whether a snapshot is one whole sample
+     * @param snapshot The snapshot
+     * @return true if every field belongs to the same sample, false if it is torn
+     */
+    private static boolean isWhole(GameControllerSnapshot snapshot)
+    {
+        int k=snapshot.getButtonMap();
+
+        if((k < 1) || (k > PERIOD))
+        {
+            return false;
+        }
+
+        GameControllerSnapshot other=expected[k];
+        int previous=(k==1) ? PERIOD : k - 1;
+
+        // the first sample has nothing before it
+        return ((snapshot.getPreviousButtonMap()==previous) || (snapshot.getSequence()==1))
+               && snapshot.isConnected()
+               && (snapshot.getX()==other.getX()) && (snapshot.getY()==other.getY())
+               && (snapshot.getZ()==other.getZ()) && (snapshot.getR()==other.getR())
+               && (snapshot.getU()==other.getU()) && (snapshot.getV()==other.getV())
+               && (snapshot.getLeftTrigger()==other.getLeftTrigger()) && (snapshot.getRightTrigger()==other.getRightTrigger())
+               && (snapshot.getPOV()==other.getPOV()) && (snapshot.getPOVX()==other.getPOVX()) && (snapshot.getPOVY()==other.getPOVY())
+               && (snapshot.isLeftTriggerPressed()==other.isLeftTriggerPressed())
+               && (snapshot.isRightTriggerPressed()==other.isRightTriggerPressed());
+    }
+
+}
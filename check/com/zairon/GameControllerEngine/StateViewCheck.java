@@ -0,0 +1,351 @@
+package com.zairon.GameControllerEngine;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Checks GameControllerStateView against the records a backend writes into a GameControllerStateBuffer.
+ * Two synthetic backends run the same script, so the same controller read the same number of times
+ * gives the same sample. Each round one backend reads a batch of records, with the ids out of order,
+ * some records skipped and some controllers disconnected, and the other reads the same controllers
+ * one at a time. Every record seen through a view must match the state read on its own, skipped
+ * records must be left alone and disconnected ones must read as disconnected. This is done for the
+ * synthetic backend's own readStates, for the per-controller fallback in ControllerBackend, which must
+ * not allocate once warmed up, and for the buffer of a GameControllerBatch after pollAll.
+ * <p>
+ * Run with the number of rounds, which defaults to 20000.
+ * @author Michael Watkins
+ *
+ */
+public class StateViewCheck
+{
+    /**
+     * The number of controllers simulated
+     */
+    private static final int NUM_CONTROLLERS=8;
+
+    /**
+     * The order the controllers are put in the buffer
+     */
+    private static final int IDS[]={5, 0, 7, 2, 3, 6, 1, 4};
+
+    /**
+     * The number of rounds the fallback is measured over for allocation, after the others warm it up
+     */
+    private static final int MEASURED_ROUNDS=10000;
+
+    /**
+     * A backend that only reads one controller at a time, so batches go through the default
+     * readStates in ControllerBackend
+     */
+    private static class PerControllerBackend implements ControllerBackend
+    {
+        /**
+         * The backend doing the reads
+         */
+        private final SyntheticControllerBackend backend;
+
+        /**
+         * Construct the backend
+         * @param backend The backend doing the reads
+         */
+        PerControllerBackend(SyntheticControllerBackend backend)
+        {
+            this.backend=backend;
+        }
+
+        @Override
+        public String getName()
+        {
+            return "per-controller";
+        }
+
+        @Override
+        public int getPriority()
+        {
+            return backend.getPriority();
+        }
+
+        @Override
+        public boolean isAvailable()
+        {
+            return true;
+        }
+
+        @Override
+        public int getNumControllers()
+        {
+            return backend.getNumControllers();
+        }
+
+        @Override
+        public boolean isController(int id)
+        {
+            return backend.isController(id);
+        }
+
+        @Override
+        public boolean isConnected(int id)
+        {
+            return backend.isConnected(id);
+        }
+
+        @Override
+        public GameControllerCaps getCaps(int id)
+        {
+            return backend.getCaps(id);
+        }
+
+        @Override
+        public boolean readState(int id, GameControllerState state)
+        {
+            return backend.readState(id, state);
+        }
+    }
+
+    /**
+     * Run the check
+     * @param args The number of rounds, optional
+     */
+    public static void main(String[] args)
+    {
+        int rounds=(args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+
+        checkBackend("synthetic", null, rounds);
+        checkBackend("fallback", PerControllerBackend::new, rounds);
+        checkBatch(rounds / 10);
+        Checks.finish("StateViewCheck");
+    }
+
+    /**
+     * Make the backend to check from the synthetic backend it reads through
+     */
+    private interface Wrapper
+    {
+        /**
+         * Wrap a synthetic backend
+         * @param backend The synthetic backend
+         * @return The backend to check
+         */
+        ControllerBackend wrap(SyntheticControllerBackend backend);
+    }
+
+    /**
+     * Check the records written by a backend's readStates against reads of one controller at a time
+     * @param name The name of the backend, printed if it fails
+     * @param wrapper Wraps the synthetic backend, or null to check it directly
+     * @param rounds The number of rounds
+     */
+    private static void checkBackend(String name, Wrapper wrapper, int rounds)
+    {
+        SyntheticControllerBackend batched=new SyntheticControllerBackend(NUM_CONTROLLERS, new SyntheticControllerBackend.SweepScript());
+        SyntheticControllerBackend single=new SyntheticControllerBackend(NUM_CONTROLLERS, new SyntheticControllerBackend.SweepScript());
+        ControllerBackend backend=(wrapper!=null) ? wrapper.wrap(batched) : batched;
+        GameControllerStateBuffer buffer=new GameControllerStateBuffer(NUM_CONTROLLERS);
+        GameControllerStateView view=new GameControllerStateView();
+        GameControllerState state=new GameControllerState();
+        int mismatches=0;
+
+        for(int i=0 ; i < NUM_CONTROLLERS ; ++i)
+        {
+            buffer.setId(i, IDS[i]);
+        }
+
+        for(int round=0 ; round < rounds ; ++round)
+        {
+            setRound(buffer, round, batched, single);
+
+            int connected=backend.readStates(buffer, 0, NUM_CONTROLLERS);
+            int expected=0;
+
+            for(int i=0 ; i < NUM_CONTROLLERS ; ++i)
+            {
+                view.wrap(buffer, i);
+
+                if(isSkipped(round, i))
+                {
+                    mismatches+=buffer.isSkipped(i) && (view.getButtonMap()==-1) && (view.getX()==2.0f) ? 0 : 1;
+                }
+                else if(single.readState(IDS[i], state))
+                {
+                    ++expected;
+                    mismatches+=matches(state, view, IDS[i]) ? 0 : 1;
+                }
+                else
+                {
+                    mismatches+=(!view.isConnected() && (view.getId()==IDS[i])) ? 0 : 1;
+                }
+            }
+
+            Checks.expectEquals(expected, connected, name + " connected count in round " + round);
+        }
+
+        Checks.expectEquals(0, mismatches, name + " records not matching their state");
+
+        if(wrapper!=null)
+        {
+            checkAllocation(name, backend, buffer, batched, single);
+        }
+    }
+
+    /**
+     * Check that reading a batch does not allocate once it has been warmed up. Needs the thread
+     * allocation counter of HotSpot, and is left out without it.
+     * @param name The name of the backend, printed if it fails
+     * @param backend The backend to read the batch with
+     * @param buffer The buffer for the batch
+     * @param batched The synthetic backend being read
+     * @param single The other synthetic backend, whose controllers follow the batched ones
+     */
+    private static void checkAllocation(String name, ControllerBackend backend, GameControllerStateBuffer buffer,
+            SyntheticControllerBackend batched, SyntheticControllerBackend single)
+    {
+        if(!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean))
+        {
+            return;
+        }
+
+        com.sun.management.ThreadMXBean threads=(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+        if(!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled())
+        {
+            return;
+        }
+
+        // the first calls can allocate themselves
+        threads.getCurrentThreadAllocatedBytes();
+        threads.getCurrentThreadAllocatedBytes();
+
+        long before=threads.getCurrentThreadAllocatedBytes();
+
+        for(int round=0 ; round < MEASURED_ROUNDS ; ++round)
+        {
+            backend.readStates(buffer, 0, NUM_CONTROLLERS);
+        }
+
+        long allocated=threads.getCurrentThreadAllocatedBytes() - before;
+
+        Checks.expectEquals(0, allocated, name + " bytes allocated by " + MEASURED_ROUNDS + " batch reads");
+    }
+
+    /**
+     * Check the buffer of a batch after pollAll against controllers polled one at a time
+     * @param rounds The number of rounds
+     */
+    private static void checkBatch(int rounds)
+    {
+        SyntheticControllerBackend batched=new SyntheticControllerBackend(NUM_CONTROLLERS, new SyntheticControllerBackend.SweepScript());
+        SyntheticControllerBackend single=new SyntheticControllerBackend(NUM_CONTROLLERS, new SyntheticControllerBackend.SweepScript());
+        List<GameController> controllers=GameControllerManager.getAllBackendControllers(batched);
+        GameControllerBatch batch=GameControllerManager.createBatch(controllers);
+        GameControllerStateBuffer buffer=batch.getBuffer();
+        GameControllerStateView view=new GameControllerStateView();
+        GameControllerState state=new GameControllerState();
+        int mismatches=0;
+
+        // creating the controllers polled each of them once
+        for(int id=0 ; id < NUM_CONTROLLERS ; ++id)
+        {
+            single.readState(id, state);
+        }
+
+        for(int round=0 ; round < rounds ; ++round)
+        {
+            // take a controller out and put it back in turn
+            int unplugged=round % (NUM_CONTROLLERS + 1);
+
+            for(int id=0 ; id < NUM_CONTROLLERS ; ++id)
+            {
+                batched.setConnected(id, id!=unplugged);
+                single.setConnected(id, id!=unplugged);
+            }
+
+            int connected=batch.pollAll();
+            int expected=0;
+
+            for(int i=0 ; i < NUM_CONTROLLERS ; ++i)
+            {
+                view.wrap(buffer, i);
+
+                if(single.readState(view.getId(), state))
+                {
+                    ++expected;
+                    mismatches+=matches(state, view, view.getId()) ? 0 : 1;
+                }
+                else
+                {
+                    mismatches+=view.isConnected() ? 1 : 0;
+                }
+            }
+
+            Checks.expectEquals(expected, connected, "batch connected count in round " + round);
+        }
+
+        Checks.expectEquals(0, mismatches, "batch records not matching their state");
+    }
+
+    /**
+     * Pick the skipped records and the disconnected controllers for a round, the same for both
+     * backends. Every record is filled with a connected state no controller gives, so a skipped
+     * record that gets written, or a disconnected one that does not, is seen.
+     * @param buffer The buffer, whose records are filled and marked skipped
+     * @param round The round
+     * @param batched The backend read as a batch
+     * @param single The backend read one controller at a time
+     */
+    private static void setRound(GameControllerStateBuffer buffer, int round, SyntheticControllerBackend batched, SyntheticControllerBackend single)
+    {
+        for(int i=0 ; i < NUM_CONTROLLERS ; ++i)
+        {
+            boolean skipped=isSkipped(round, i);
+            // a different mix every round, repeating every 35 rounds
+            boolean connected=((round + i * 3) % 7)!=0;
+
+            // the put clears the skip flag, and marking a record skipped clears its connected flag
+            buffer.put(i, true, -1, 2.0f, 2.0f, 2.0f, 2.0f, 2.0f, 2.0f, 2.0f, 2.0f, 2.0f);
+
+            if(skipped)
+            {
+                buffer.setSkipped(i, true);
+            }
+
+            batched.setConnected(IDS[i], connected);
+            single.setConnected(IDS[i], connected);
+        }
+    }
+
+    /**
+     * Find whether a record is skipped in a round
+     * @param round The round
+     * @param index The index of the record
+     * @return true if the record is skipped
+     */
+    private static boolean isSkipped(int round, int index)
+    {
+        return ((round + index) % 5)==0;
+    }
+
+    /**
+     * Find whether a view of a record matches a state read on its own
+     * @param state The state
+     * @param view The view
+     * @param id The id the record should have
+     * @return true if every field matches
+     */
+    private static boolean matches(GameControllerState state, GameControllerStateView view, int id)
+    {
+        boolean buttons=true;
+
+        for(int button=0 ; button < GameControllerState.MAX_BUTTONS ; ++button)
+        {
+            buttons&=(state.isPressed(button)==view.isPressed(button));
+        }
+
+        return buttons && view.isConnected() && (view.getId()==id) && (state.getButtonMap()==view.getButtonMap())
+                && (state.getX()==view.getX()) && (state.getY()==view.getY()) && (state.getZ()==view.getZ())
+                && (state.getLeftTrigger()==view.getLeftTrigger()) && (state.getRightTrigger()==view.getRightTrigger())
+                && (state.getR()==view.getR()) && (state.getU()==view.getU()) && (state.getV()==view.getV())
+                && (state.getPOV()==view.getPOV());
+    }
+
+}
@@ -0,0 +1,493 @@
+package com.zairon.GameControllerEngine;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks a ControllerStreamServer and RemoteControllerStream against each other over the loopback
+ * interface, with eight synthetic controllers streamed at 1 kHz. It checks that the remote
+ * controllers decode to the same state as the server's, that nothing is lost or reordered and
+ * that only the first packets are keyframes, and that a client which stops reading and acking is
+ * conflated instead of having every sample queued for it. Then the stream goes through a Relay that
+ * drops and reorders packets, to check the loss, out of order and stale counts of the receiver, and
+ * the server is restarted under a running receiver, which has to follow the new server.
+ * @author Michael Watkins
+ *
+ */
+public class StreamLoopbackCheck
+{
+    /**
+     * The number of controllers streamed
+     */
+    private static final int SLOTS=8;
+
+    /**
+     * The rate the server sends at, in Hz
+     */
+    private static final int RATE=1000;
+
+    /**
+     * How long the stalled client stops reading, in milliseconds
+     */
+    private static final long STALL=500L;
+
+    /**
+     * The loopback address with any free port
+     */
+    private static final InetSocketAddress LOOPBACK=new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+    /**
+     * Run the check
+     * @param args Not used
+     * @throws IOException if the sockets cannot be opened
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        checkRemoteStream();
+        checkStalledClient();
+        checkLossyLink();
+        checkRestart(20L);
+        checkRestart(600L);
+        Checks.finish("StreamLoopbackCheck");
+    }
+
+    /**
+     * Stream to a RemoteControllerStream and compare what it decoded with the server's controllers
+     * @throws IOException if the sockets cannot be opened
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static void checkRemoteStream() throws IOException, InterruptedException
+    {
+        List<GameController> controllers=GameControllerManager.getAllBackendControllers(new SyntheticControllerBackend(SLOTS, new SyntheticControllerBackend.SweepScript()));
+        ControllerStreamServer server=GameControllerManager.createStreamServer(controllers, LOOPBACK, RATE);
+
+        server.start();
+
+        RemoteControllerStream stream=GameControllerManager.createRemoteStream(server.getLocalAddress(), SLOTS);
+        List<GameController> remotes=GameControllerManager.getAllRemoteControllers(stream);
+
+        stream.start();
+        Thread.sleep(2000);
+        server.stop();
+
+        // let the last packet in
+        Thread.sleep(100);
+
+        System.out.println("remote stream: " + stream.getPacketCount() + " packets, " + server.getKeyframeCount() + " keyframes, "
+                           + stream.getLostCount() + " lost, " + stream.getOutOfOrderCount() + " out of order");
+        Checks.expect(stream.getPacketCount() > RATE, "more than " + RATE + " packets received");
+        Checks.expectEquals(0L, stream.getLostCount(), "lost packets");
+        Checks.expectEquals(0L, stream.getOutOfOrderCount(), "packets out of order");
+        Checks.expectEquals(0L, stream.getDuplicateCount(), "duplicate packets");
+        Checks.expectEquals(0L, stream.getStaleCount(), "stale records");
+        Checks.expectEquals(0L, stream.getMissingBaseCount(), "records missing their base");
+        Checks.expectEquals(0L, server.getConflatedCount(), "conflated sends");
+
+        // keyframes only go out as whole packets until the first ack arrives, a few milliseconds at most
+        long keyframes=server.getKeyframeCount();
+
+        Checks.expect((keyframes >= SLOTS) && (keyframes % SLOTS==0) && (keyframes <= stream.getPacketCount() * SLOTS / 100),
+                      "keyframes were " + keyframes + ", expected whole packets of " + SLOTS + " and under 1% of the records");
+        Checks.expectEquals(0L, countMismatches(controllers, remotes), "remote controllers not matching the server");
+
+        stream.stop();
+        Checks.expect(stream.getFailure()==null, "the remote stream did not fail");
+        Checks.expect(server.getFailure()==null, "the server did not fail");
+    }
+
+    /**
+     * Subscribe with a bare channel, stop reading and acking for STALL, and check the server held
+     * back instead of queueing every sample
+     * @throws IOException if the sockets cannot be opened
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static void checkStalledClient() throws IOException, InterruptedException
+    {
+        List<GameController> controllers=GameControllerManager.getAllBackendControllers(new SyntheticControllerBackend(SLOTS, new SyntheticControllerBackend.SweepScript()));
+        ControllerStreamServer server=GameControllerManager.createStreamServer(controllers, LOOPBACK, RATE);
+
+        server.start();
+
+        try(DatagramChannel channel=DatagramChannel.open())
+        {
+            ByteBuffer buffer=ByteBuffer.allocate(ControllerStreamProtocol.MAX_PACKET_SIZE);
+
+            channel.connect(server.getLocalAddress());
+            channel.configureBlocking(false);
+            send(channel, buffer, ControllerStreamProtocol.TYPE_SUBSCRIBE, ControllerStreamProtocol.NO_SEQUENCE);
+
+            int before=receive(channel, buffer, 300L, true);
+            long stallStart=System.nanoTime();
+
+            Thread.sleep(STALL);
+
+            long conflated=server.getConflatedCount();
+
+            // everything the server sent during the stall is waiting in the socket
+            int queued=receive(channel, buffer, 0L, false);
+            long most=ControllerStreamServer.MAX_IN_FLIGHT + (System.nanoTime() - stallStart) / ControllerStreamServer.PROBE_INTERVAL + 2;
+            int after=receive(channel, buffer, 300L, true);
+
+            System.out.println("stalled client: " + before + " packets before, " + queued + " queued during the stall, "
+                               + after + " after, " + conflated + " sends conflated");
+            Checks.expect(before > 100, "the client received packets before the stall");
+            Checks.expect(conflated > 0, "the server conflated the stalled client");
+            Checks.expect(queued <= most, queued + " packets queued during the stall, expected at most " + most);
+            Checks.expect(after > 100, "the client received packets at the full rate after the stall, got " + after);
+        }
+
+        server.stop();
+        Checks.expect(server.getFailure()==null, "the server did not fail");
+    }
+
+    /**
+     * Stream through a relay that drops 5% of the packets to the client and holds back 3% to send
+     * after the next one, then stops dropping so the last samples arrive
+     * @throws IOException if the sockets cannot be opened
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static void checkLossyLink() throws IOException, InterruptedException
+    {
+        List<GameController> controllers=GameControllerManager.getAllBackendControllers(new SyntheticControllerBackend(SLOTS, new SyntheticControllerBackend.SweepScript()));
+        ControllerStreamServer server=GameControllerManager.createStreamServer(controllers, LOOPBACK, RATE);
+
+        server.start();
+
+        Relay relay=new Relay(server.getLocalAddress());
+        Thread relayThread=new Thread(relay, "StreamLoopbackCheck-Relay");
+
+        relayThread.setDaemon(true);
+        relayThread.start();
+
+        RemoteControllerStream stream=GameControllerManager.createRemoteStream(relay.getAddress(), SLOTS);
+        List<GameController> remotes=GameControllerManager.getAllRemoteControllers(stream);
+
+        stream.start();
+        Thread.sleep(2000);
+
+        long lost=stream.getLostCount();
+        double lossRate=stream.getLossRate();
+        long outOfOrder=stream.getOutOfOrderCount();
+        long stale=stream.getStaleCount();
+
+        relay.lossy=false;
+        Thread.sleep(300);
+        server.stop();
+        Thread.sleep(100);
+
+        System.out.println("lossy link: " + stream.getPacketCount() + " packets, " + relay.dropped + " dropped and " + relay.held + " held back by the relay, "
+                           + lost + " lost, " + outOfOrder + " out of order, " + stale + " stale records");
+        Checks.expect(relay.dropped > 0, "the relay dropped packets");
+        Checks.expect((lossRate > 0.02) && (lossRate < 0.10), "loss rate was " + lossRate + ", expected near the 5% dropped");
+        Checks.expect((lost > 0) && (lost <= relay.dropped), lost + " lost, expected up to the " + relay.dropped + " dropped");
+        Checks.expect((outOfOrder > 0) && (outOfOrder <= relay.held), outOfOrder + " out of order, expected up to the " + relay.held + " held back");
+        Checks.expect(stale >= outOfOrder, stale + " stale records, expected at least one for each packet out of order");
+        Checks.expectEquals(0L, stream.getMissingBaseCount(), "records missing their base");
+        Checks.expectEquals(0L, countMismatches(controllers, remotes), "remote controllers not matching the server after the link cleared");
+
+        stream.stop();
+        relay.close();
+        Checks.expect(stream.getFailure()==null, "the remote stream did not fail");
+    }
+
+    /**
+     * Restart the server on the same port under a running receiver, which has to throw away the
+     * sequence numbers of the old server and follow the new one
+     * @param gap How long the server is down, in milliseconds
+     * @throws IOException if the sockets cannot be opened
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static void checkRestart(long gap) throws IOException, InterruptedException
+    {
+        ControllerStreamServer server=GameControllerManager.createStreamServer(GameControllerManager.getAllBackendControllers(new SyntheticControllerBackend(SLOTS, new SyntheticControllerBackend.SweepScript())), LOOPBACK, RATE);
+
+        server.start();
+
+        InetSocketAddress address=server.getLocalAddress();
+        RemoteControllerStream stream=GameControllerManager.createRemoteStream(address, SLOTS);
+        List<GameController> remotes=GameControllerManager.getAllRemoteControllers(stream);
+
+        stream.start();
+        Thread.sleep(1500);
+        server.stop();
+        Thread.sleep(gap);
+
+        List<GameController> controllers=GameControllerManager.getAllBackendControllers(new SyntheticControllerBackend(SLOTS, new SyntheticControllerBackend.SweepScript()));
+
+        server=GameControllerManager.createStreamServer(controllers, address, RATE);
+        server.start();
+        Thread.sleep(1000);
+
+        long age=stream.getSampleAge(0);
+
+        server.stop();
+        Thread.sleep(100);
+
+        System.out.println("restart after " + gap + " ms: sample age " + age / 1000 + " us, " + stream.getStaleCount() + " stale records, "
+                           + server.getKeyframeCount() + " keyframes from the new server");
+        Checks.expect(age < 100000000L, "the newest sample was " + age / 1000 + " us old, expected the new server's samples");
+        Checks.expectEquals(0L, stream.getStaleCount(), "stale records after a restart of " + gap + " ms");
+        Checks.expectEquals(0L, stream.getMissingBaseCount(), "records missing their base after a restart of " + gap + " ms");
+        Checks.expectEquals(0L, countMismatches(controllers, remotes), "remote controllers not matching the new server after a restart of " + gap + " ms");
+
+        stream.stop();
+    }
+
+    /**
+     * Receive packets for a time, optionally acking each one
+     * @param channel The channel, in non-blocking mode
+     * @param buffer The buffer to receive into
+     * @param time How long to receive for in milliseconds, or zero to stop when none are waiting
+     * @param ack true to ack each packet
+     * @return The number of data packets received
+     * @throws IOException if the channel fails
+     */
+    private static int receive(DatagramChannel channel, ByteBuffer buffer, long time, boolean ack) throws IOException
+    {
+        long end=System.nanoTime() + time * 1000000L;
+        int count=0;
+
+        do
+        {
+            buffer.clear();
+
+            if(channel.read(buffer) <= 0)
+            {
+                if(time==0)
+                {
+                    break;
+                }
+
+                Thread.onSpinWait();
+                continue;
+            }
+
+            buffer.flip();
+
+            if(ControllerStreamProtocol.getHeader(buffer)!=ControllerStreamProtocol.TYPE_DATA)
+            {
+                continue;
+            }
+
+            ++count;
+
+            // skip the record count to the packet sequence number
+            buffer.getShort();
+
+            int sequence=buffer.getInt();
+
+            if(ack)
+            {
+                send(channel, buffer, ControllerStreamProtocol.TYPE_ACK, sequence);
+            }
+        }
+        while((time==0) || (System.nanoTime() < end));
+
+        return count;
+    }
+
+    /**
+     * Send a control packet or an ack for a packet, naming no samples
+     * @param channel The channel
+     * @param buffer The buffer to build the packet in
+     * @param type The packet type
+     * @param packetSequence The packet to ack, for an ack
+     * @throws IOException if the channel fails
+     */
+    private static void send(DatagramChannel channel, ByteBuffer buffer, byte type, int packetSequence) throws IOException
+    {
+        buffer.clear();
+        ControllerStreamProtocol.putHeader(buffer, type, 0);
+        buffer.putLong(System.nanoTime());
+
+        if(type==ControllerStreamProtocol.TYPE_ACK)
+        {
+            buffer.putInt(packetSequence);
+        }
+
+        buffer.flip();
+        channel.write(buffer);
+    }
+
+    /**
+     * Count the remote controllers whose state does not match the server's controller in the same slot
+     * @param controllers The server's controllers
+     * @param remotes The remote controllers
+     * @return The number that do not match
+     */
+    static int countMismatches(List<GameController> controllers, List<GameController> remotes)
+    {
+        int mismatches=0;
+
+        for(int slot=0 ; slot < controllers.size() ; ++slot)
+        {
+            remotes.get(slot).poll();
+
+            GameControllerState expected=controllers.get(slot).getState();
+            GameControllerState actual=remotes.get(slot).getState();
+
+            if((expected.getButtonMap()!=actual.getButtonMap()) || (expected.getX()!=actual.getX()) || (expected.getY()!=actual.getY())
+               || (expected.getZ()!=actual.getZ()) || (expected.getR()!=actual.getR()) || (expected.getU()!=actual.getU())
+               || (expected.getV()!=actual.getV()) || (expected.getLeftTrigger()!=actual.getLeftTrigger())
+               || (expected.getRightTrigger()!=actual.getRightTrigger()) || (expected.getPOV()!=actual.getPOV()))
+            {
+                System.out.println("slot " + slot + " does not match the server");
+                ++mismatches;
+            }
+        }
+
+        return mismatches;
+    }
+
+    /**
+     * Forwards datagrams between one client and a server, dropping and reordering the packets to
+     * the client with a fixed seed while lossy is set
+     */
+    private static final class Relay implements Runnable
+    {
+        /**
+         * The channel the client talks to
+         */
+        private final DatagramChannel clientChannel;
+
+        /**
+         * The channel connected to the server
+         */
+        private final DatagramChannel serverChannel;
+
+        /**
+         * The selector waiting on both channels
+         */
+        private final Selector selector;
+
+        /**
+         * Whether to drop and reorder packets
+         */
+        private volatile boolean lossy=true;
+
+        /**
+         * The number of packets dropped
+         */
+        private volatile long dropped;
+
+        /**
+         * The number of packets held back and sent after the next one
+         */
+        private volatile long held;
+
+        /**
+         * Open the relay
+         * @param server The address of the server
+         * @throws IOException if the channels cannot be opened
+         */
+        private Relay(InetSocketAddress server) throws IOException
+        {
+            clientChannel=DatagramChannel.open().bind(LOOPBACK);
+            serverChannel=DatagramChannel.open().connect(server);
+            selector=Selector.open();
+            clientChannel.configureBlocking(false);
+            serverChannel.configureBlocking(false);
+            clientChannel.register(selector, SelectionKey.OP_READ);
+            serverChannel.register(selector, SelectionKey.OP_READ);
+        }
+
+        /**
+         * Get the address for the client to use as the server
+         * @return The address of the relay
+         * @throws IOException if the channel is closed
+         */
+        private InetSocketAddress getAddress() throws IOException
+        {
+            return (InetSocketAddress)clientChannel.getLocalAddress();
+        }
+
+        /**
+         * Close the relay, stopping its thread
+         * @throws IOException if the channels cannot be closed
+         */
+        private void close() throws IOException
+        {
+            selector.close();
+            clientChannel.close();
+            serverChannel.close();
+        }
+
+        @Override
+        public void run()
+        {
+            ByteBuffer buffer=ByteBuffer.allocate(ControllerStreamProtocol.MAX_PACKET_SIZE);
+            ByteBuffer heldBuffer=ByteBuffer.allocate(ControllerStreamProtocol.MAX_PACKET_SIZE);
+            boolean holding=false;
+            SocketAddress client=null;
+            Random random=new Random(1);
+
+            try
+            {
+                while(selector.isOpen())
+                {
+                    selector.select(10L);
+                    selector.selectedKeys().clear();
+
+                    SocketAddress from;
+
+                    buffer.clear();
+
+                    while((from=clientChannel.receive(buffer))!=null)
+                    {
+                        client=from;
+                        buffer.flip();
+                        serverChannel.write(buffer);
+                        buffer.clear();
+                    }
+
+                    while((client!=null) && (serverChannel.read(buffer) > 0))
+                    {
+                        buffer.flip();
+
+                        double roll=random.nextDouble();
+
+                        if(lossy && (roll < 0.05))
+                        {
+                            ++dropped;
+                        }
+                        else if(lossy && (roll < 0.08) && !holding)
+                        {
+                            heldBuffer.clear();
+                            heldBuffer.put(buffer);
+                            heldBuffer.flip();
+                            holding=true;
+                            ++held;
+                        }
+                        else
+                        {
+                            clientChannel.send(buffer, client);
+
+                            if(holding)
+                            {
+                                clientChannel.send(heldBuffer, client);
+                                holding=false;
+                            }
+                        }
+
+                        buffer.clear();
+                    }
+                }
+            }
+            catch(IOException | RuntimeException e)
+            {
+                // closed
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.zairon.GameControllerEngine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A Java Flight Recorder event for a poll of a GameControllerBatch that took longer than the
+ * threshold, 1 ms by default. Set the threshold to 0 ms to record every batch poll.
+ * @author Michael Watkins
+ *
+ */
+@Name("com.zairon.GameControllerEngine.BatchPoll")
+@Label("Controller Batch Poll")
+@Description("A poll of a batch of game controllers that took longer than the threshold")
+@Category("GameControllerEngine")
+@Threshold("1 ms")
+class BatchPollEvent extends Event
+{
+    /**
+     * The number of controllers in the batch
+     */
+    @Label("Controllers")
+    int controllers;
+
+    /**
+     * The number of controllers connected
+     */
+    @Label("Connected")
+    int connected;
+}
@@ -0,0 +1,381 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.Arrays;
+
+/**
+ * Remaps the buttons of a controller, compiled from a table of where each button goes so a
+ * whole button map is remapped at once. Buttons that move by the same distance are moved
+ * together with one mask and one rotate, so the usual remaps (swapping face buttons, moving
+ * a block of buttons) take a few masks and rotates per poll. Remaps that scatter the buttons
+ * over more distances than that use byte lookup tables instead, four lookups per poll.
+ * <p>
+ * Mappings are immutable, so one can be shared by many controllers and swapped on a controller
+ * while it is being polled, see GameController.setButtonMapping. Mappings for a device family and
+ * for a user profile are combined with then().
+ * @author Michael Watkins
+ *
+ */
+public class ButtonMapping
+{
+    /**
+     * The target for a button that is dropped
+     */
+    public static final int NONE=-1;
+
+    /**
+     * The number of buttons in a button map
+     */
+    private static final int NUM_BUTTONS=GameControllerState.MAX_BUTTONS;
+
+    /**
+     * The most distances moved before lookup tables are used instead
+     */
+    private static final int MAX_GROUPS=4;
+
+    /**
+     * The mapping that leaves every button alone
+     */
+    public static final ButtonMapping IDENTITY=compile(new int[0]);
+
+    /**
+     * Where each button goes, or NONE if dropped
+     */
+    private final int targets[];
+
+    /**
+     * The masks of the buttons moved by each distance, zero for unused groups. The groups are
+     * kept in fields rather than an array so apply is straight-line code.
+     */
+    private final int mask0, mask1, mask2, mask3;
+
+    /**
+     * The distances each group is rotated left
+     */
+    private final int shift0, shift1, shift2, shift3;
+
+    /**
+     * The byte lookup tables, or null if using the groups
+     */
+    private final int tables[];
+
+    /**
+     * Protect the mapping from instantiation (make it come from compile).
+     * @param targets Where each button goes, NUM_BUTTONS long
+     */
+    protected ButtonMapping(int targets[])
+    {
+        this.targets=targets;
+
+        // collect the buttons moved by each distance
+        int masks[]=new int[NUM_BUTTONS];
+
+        for(int button=0 ; button < NUM_BUTTONS ; ++button)
+        {
+            if(targets[button]!=NONE)
+            {
+                masks[(targets[button] - button) & (NUM_BUTTONS - 1)]|=1 << button;
+            }
+        }
+
+        int count=0;
+
+        for(int shift=0 ; shift < NUM_BUTTONS ; ++shift)
+        {
+            if(masks[shift]!=0)
+            {
+                count++;
+            }
+        }
+
+        int groupMasks[]=new int[MAX_GROUPS];
+        int groupShifts[]=new int[MAX_GROUPS];
+
+        if(count <= MAX_GROUPS)
+        {
+            tables=null;
+
+            count=0;
+
+            for(int shift=0 ; shift < NUM_BUTTONS ; ++shift)
+            {
+                if(masks[shift]!=0)
+                {
+                    groupMasks[count]=masks[shift];
+                    groupShifts[count]=shift;
+                    count++;
+                }
+            }
+        }
+        else
+        {
+            // one table of 256 entries for each byte of the button map
+            tables=new int[4 * 256];
+
+            for(int table=0 ; table < 4 ; ++table)
+            {
+                for(int value=0 ; value < 256 ; ++value)
+                {
+                    tables[(table * 256) + value]=map(value << (table * 8));
+                }
+            }
+        }
+
+        mask0=groupMasks[0];
+        mask1=groupMasks[1];
+        mask2=groupMasks[2];
+        mask3=groupMasks[3];
+        shift0=groupShifts[0];
+        shift1=groupShifts[1];
+        shift2=groupShifts[2];
+        shift3=groupShifts[3];
+    }
+
+    /**
+     * Compile a mapping from a table of where each button goes
+     * @param targets The button each button goes to, by button number, or NONE to drop it.
+     * Buttons past the end of the table stay where they are. Two buttons may go to the same button.
+     * @return The mapping
+     */
+    public static ButtonMapping compile(int targets[])
+    {
+        if(targets.length > NUM_BUTTONS)
+        {
+            throw new IllegalArgumentException("Cannot map " + targets.length + " buttons, the most is " + NUM_BUTTONS + "\n");
+        }
+
+        int full[]=new int[NUM_BUTTONS];
+
+        for(int button=0 ; button < NUM_BUTTONS ; ++button)
+        {
+            int target=(button < targets.length) ? targets[button] : button;
+
+            if((target < NONE) || (target >= NUM_BUTTONS))
+            {
+                throw new IllegalArgumentException("Cannot map button " + button + " to " + target + ", value is illegal\n");
+            }
+
+            full[button]=target;
+        }
+
+        return new ButtonMapping(full);
+    }
+
+    /**
+     * Compile a mapping from a spec such as "BUTTON1=BUTTON2, BUTTON2=BUTTON1, BUTTON10=NONE".
+     * Buttons can be given by name or by number from zero, and buttons not in the spec stay
+     * where they are. This is the form kept in device family and user profile settings.
+     * @param spec The spec
+     * @return The mapping
+     */
+    public static ButtonMapping parse(String spec)
+    {
+        int targets[]=new int[NUM_BUTTONS];
+
+        for(int button=0 ; button < NUM_BUTTONS ; ++button)
+        {
+            targets[button]=button;
+        }
+
+        for(String entry : spec.split(","))
+        {
+            entry=entry.trim();
+
+            if(entry.isEmpty())
+            {
+                continue;
+            }
+
+            int equals=entry.indexOf('=');
+
+            if(equals < 0)
+            {
+                throw new IllegalArgumentException("Cannot parse button mapping " + entry + ", expected button=button\n");
+            }
+
+            int button=parseButton(entry.substring(0, equals).trim());
+
+            if(button==NONE)
+            {
+                throw new IllegalArgumentException("Cannot parse button mapping " + entry + ", cannot map from NONE\n");
+            }
+
+            targets[button]=parseButton(entry.substring(equals + 1).trim());
+        }
+
+        return new ButtonMapping(targets);
+    }
+
+    /**
+     * Parse one button of a spec
+     * @param name The button name, number or NONE
+     * @return The button number, or NONE
+     */
+    private static int parseButton(String name)
+    {
+        if("NONE".equalsIgnoreCase(name))
+        {
+            return NONE;
+        }
+
+        try
+        {
+            int button=Integer.parseInt(name);
+
+            if(isButton(button))
+            {
+                return button;
+            }
+        }
+        catch(NumberFormatException e)
+        {
+            try
+            {
+                GameControllerButtons button=GameControllerButtons.valueOf(name.toUpperCase());
+
+                if(button.getMask()!=0)
+                {
+                    return button.ordinal();
+                }
+            }
+            catch(IllegalArgumentException e2)
+            {
+                // not a button name, fall through
+            }
+        }
+
+        throw new IllegalArgumentException("Cannot parse button " + name + ", value is illegal\n");
+    }
+
+    /**
+     * Return whether a number is a button in a button map
+     * @param button The number of the button
+     * @return true if the button has a bit in a button map, false otherwise
+     */
+    private static boolean isButton(int button)
+    {
+        return (button >= 0) && (button < NUM_BUTTONS);
+    }
+
+    /**
+     * Make the mapping that applies this mapping and then another one, such as a device family
+     * mapping and then a user profile.
+     * @param next The mapping applied after this one
+     * @return The combined mapping
+     */
+    public ButtonMapping then(ButtonMapping next)
+    {
+        int combined[]=new int[NUM_BUTTONS];
+
+        for(int button=0 ; button < NUM_BUTTONS ; ++button)
+        {
+            combined[button]=(targets[button]==NONE) ? NONE : next.targets[targets[button]];
+        }
+
+        return new ButtonMapping(combined);
+    }
+
+    /**
+     * Remap a button map
+     * @param buttonMap The button map, with bit n set if button n is pressed
+     * @return The remapped button map
+     */
+    public int apply(int buttonMap)
+    {
+        if(tables!=null)
+        {
+            return tables[buttonMap & 0xFF]
+                    | tables[256 + ((buttonMap >>> 8) & 0xFF)]
+                    | tables[512 + ((buttonMap >>> 16) & 0xFF)]
+                    | tables[768 + (buttonMap >>> 24)];
+        }
+
+        return Integer.rotateLeft(buttonMap & mask0, shift0)
+                | Integer.rotateLeft(buttonMap & mask1, shift1)
+                | Integer.rotateLeft(buttonMap & mask2, shift2)
+                | Integer.rotateLeft(buttonMap & mask3, shift3);
+    }
+
+    /**
+     * Remap a button map one button at a time, used to build the tables
+     * @param buttonMap The button map
+     * @return The remapped button map
+     */
+    private int map(int buttonMap)
+    {
+        int result=0;
+
+        for(int button=0 ; button < NUM_BUTTONS ; ++button)
+        {
+            if((((buttonMap >>> button) & 1)!=0) && (targets[button]!=NONE))
+            {
+                result|=1 << targets[button];
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Get where a button goes
+     * @param button The number of the button
+     * @return The number of the button it goes to, or NONE if dropped
+     */
+    public int getTarget(int button)
+    {
+        return isButton(button) ? targets[button] : NONE;
+    }
+
+    /**
+     * Get where a button goes
+     * @param button The button
+     * @return The button it goes to, or UNDEFINED if dropped
+     */
+    public GameControllerButtons getTarget(GameControllerButtons button)
+    {
+        return GameControllerButtons.get(getTarget(button.ordinal()));
+    }
+
+    /**
+     * Return whether this mapping uses lookup tables instead of masks and rotates
+     * @return true if using lookup tables, false otherwise
+     */
+    public boolean isTableDriven()
+    {
+        return tables!=null;
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        return (other instanceof ButtonMapping) && Arrays.equals(targets, ((ButtonMapping)other).targets);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Arrays.hashCode(targets);
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder=new StringBuilder();
+
+        for(int button=0 ; button < NUM_BUTTONS ; ++button)
+        {
+            if(targets[button]!=button)
+            {
+                if(builder.length() > 0)
+                {
+                    builder.append(", ");
+                }
+
+                builder.append(GameControllerButtons.get(button)).append('=');
+                builder.append((targets[button]==NONE) ? "NONE" : GameControllerButtons.get(targets[button]).toString());
+            }
+        }
+
+        return builder.toString();
+    }
+
+}
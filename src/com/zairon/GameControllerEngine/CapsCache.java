@@ -0,0 +1,373 @@
+package com.zairon.GameControllerEngine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps controller capabilities keyed by the identity of the device in each slot, so creating
+ * and reconnecting controllers does not build new capabilities through the backend every time.
+ * The identity comes from ControllerBackend.getDeviceIdentity, which for the natives is one
+ * device query with no objects or strings built; backends that cannot identify a device
+ * are not cached. The key also holds the backend and slot, since the names of the
+ * capabilities carry the slot number.
+ * <p>
+ * A cache can be given a file. The file is read when the cache is created and written again
+ * after a new device is seen, so a warm start finds every known device without asking the
+ * backend for capabilities. New devices are usually seen on the poll thread while reconnecting,
+ * so the write is done on a background thread SAVE_DELAY milliseconds later, and a burst of new
+ * devices is written once. Call save to write the file at once, such as before the application
+ * exits. The file is big-endian, starting with:
+ * <pre>
+ * type    field
+ * int     magic     MAGIC
+ * short   version   VERSION
+ * int     count     the number of entries
+ * </pre>
+ * followed by the entries, each the backend name in modified UTF-8, the int slot, the long
+ * identity and then the capabilities.
+ * @author Michael Watkins
+ *
+ */
+public class CapsCache
+{
+    /**
+     * The magic number at the start of a cache file, "GCCC" as a big-endian int
+     */
+    public static final int MAGIC=0x47434343;
+
+    /**
+     * The version of the cache file format
+     */
+    public static final int VERSION=1;
+
+    /**
+     * The time in milliseconds from a new device being seen to the file being written
+     */
+    public static final long SAVE_DELAY=1000;
+
+    /**
+     * The key for one slot of one backend holding one device
+     */
+    private static final class Key
+    {
+        /**
+         * The name of the backend
+         */
+        private final String backend;
+
+        /**
+         * The id of the slot
+         */
+        private final int id;
+
+        /**
+         * The identity of the device
+         */
+        private final long identity;
+
+        /**
+         * Construct the key
+         * @param backend The name of the backend
+         * @param id The id of the slot
+         * @param identity The identity of the device
+         */
+        Key(String backend, int id, long identity)
+        {
+            this.backend=backend;
+            this.id=id;
+            this.identity=identity;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if(!(obj instanceof Key))
+            {
+                return false;
+            }
+
+            Key other=(Key)obj;
+
+            return (id==other.id) && (identity==other.identity) && backend.equals(other.backend);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return (backend.hashCode() * 31 + id) * 31 + Long.hashCode(identity);
+        }
+    }
+
+    /**
+     * The cached capabilities
+     */
+    private final Map<Key, GameControllerCaps> entries=new ConcurrentHashMap<Key, GameControllerCaps>();
+
+    /**
+     * The file the cache is kept in, or null if the cache is only kept in memory
+     */
+    private final Path file;
+
+    /**
+     * The number of lookups found in the cache
+     */
+    private final AtomicLong hitCount=new AtomicLong();
+
+    /**
+     * The number of lookups that had to ask the backend
+     */
+    private final AtomicLong missCount=new AtomicLong();
+
+    /**
+     * Whether a background write of the file is waiting to run
+     */
+    private final AtomicBoolean savePending=new AtomicBoolean();
+
+    /**
+     * Protect the cache from instantiation (make it come from the factory).
+     * @param file The file to keep the cache in, or null to only keep it in memory
+     */
+    protected CapsCache(Path file)
+    {
+        this.file=file;
+    }
+
+    /**
+     * Get the capabilities for a controller, from the cache if the device in the slot has been
+     * seen before and from the backend otherwise.
+     * @param backend The backend for the controller
+     * @param id The id of the controller
+     * @return The capabilities for the controller
+     */
+    public GameControllerCaps getCaps(ControllerBackend backend, int id)
+    {
+        long identity=getDeviceIdentity(backend, id);
+
+        if(identity==ControllerBackend.NO_IDENTITY)
+        {
+            // empty slot or unknown device, so nothing to key on
+            return backend.getCaps(id);
+        }
+
+        Key key=new Key(backend.getName(), id, identity);
+        GameControllerCaps caps=entries.get(key);
+
+        if(caps!=null)
+        {
+            hitCount.incrementAndGet();
+            return caps;
+        }
+
+        missCount.incrementAndGet();
+        caps=backend.getCaps(id);
+        entries.put(key, caps);
+
+        if(file!=null)
+        {
+            saveLater();
+        }
+
+        return caps;
+    }
+
+    /**
+     * Write the file on a background thread after SAVE_DELAY, unless a write is already waiting
+     */
+    private void saveLater()
+    {
+        if(savePending.compareAndSet(false, true))
+        {
+            Thread thread=new Thread(this::saveDelayed, "CapsCache");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Wait SAVE_DELAY and write the file, for the thread started by saveLater
+     */
+    private void saveDelayed()
+    {
+        try
+        {
+            Thread.sleep(SAVE_DELAY);
+        }
+        catch(InterruptedException e)
+        {
+            // write now instead
+        }
+
+        // clear first, so a device seen during the write is written again
+        savePending.set(false);
+
+        try
+        {
+            save();
+        }
+        catch(IOException e)
+        {
+            // the file only saves time on the next start, so carry on without it
+        }
+    }
+
+    /**
+     * Get the identity of the device in a slot. Natives built before the identity query was added
+     * do not have it, so those devices are treated as unknown and never cached.
+     * @param backend The backend for the controller
+     * @param id The id of the controller
+     * @return The identity of the device, or NO_IDENTITY if it cannot be found
+     */
+    private static long getDeviceIdentity(ControllerBackend backend, int id)
+    {
+        try
+        {
+            return backend.getDeviceIdentity(id);
+        }
+        catch(UnsatisfiedLinkError e)
+        {
+            return ControllerBackend.NO_IDENTITY;
+        }
+    }
+
+    /**
+     * Get the file the cache is kept in
+     * @return The file, or null if the cache is only kept in memory
+     */
+    public Path getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Get the number of devices cached
+     * @return The number of entries
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Get the number of lookups found in the cache
+     * @return The number of hits
+     */
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    /**
+     * Get the number of lookups that had to ask the backend
+     * @return The number of misses
+     */
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    /**
+     * Forget every device. The file, if any, is left alone until the next save.
+     */
+    public void clear()
+    {
+        entries.clear();
+    }
+
+    /**
+     * Write the cache to its file. The file is written beside the old one and moved into place,
+     * so a process killed while saving leaves the old file whole where the file system can move
+     * atomically.
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void save() throws IOException
+    {
+        if(file==null)
+        {
+            throw new IllegalStateException("Cannot save a cache that has no file\n");
+        }
+
+        Path temp=file.resolveSibling(file.getFileName() + ".tmp");
+
+        try
+        {
+            try(DataOutputStream out=new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp))))
+            {
+                // take a copy so the count matches the entries written
+                ArrayList<Map.Entry<Key, GameControllerCaps>> snapshot=new ArrayList<Map.Entry<Key, GameControllerCaps>>(entries.entrySet());
+
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeInt(snapshot.size());
+
+                for(Map.Entry<Key, GameControllerCaps> entry : snapshot)
+                {
+                    Key key=entry.getKey();
+
+                    out.writeUTF(key.backend);
+                    out.writeInt(key.id);
+                    out.writeLong(key.identity);
+                    entry.getValue().write(out);
+                }
+            }
+
+            try
+            {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch(AtomicMoveNotSupportedException e)
+            {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Read the cache from its file, adding to the entries already cached
+     * @throws IOException if the file cannot be read or is not a cache file
+     */
+    void load() throws IOException
+    {
+        try(DataInputStream in=new DataInputStream(new BufferedInputStream(Files.newInputStream(file))))
+        {
+            if(in.readInt()!=MAGIC)
+            {
+                throw new IOException("File " + file + " is not a capabilities cache\n");
+            }
+
+            int version=in.readShort();
+
+            if(version!=VERSION)
+            {
+                throw new IOException("Cannot read version " + version + " of a capabilities cache\n");
+            }
+
+            int count=in.readInt();
+
+            for(int i=0 ; i < count ; ++i)
+            {
+                String backend=in.readUTF();
+                int id=in.readInt();
+                long identity=in.readLong();
+
+                entries.put(new Key(backend, id, identity), GameControllerCaps.read(in));
+            }
+        }
+    }
+
+}
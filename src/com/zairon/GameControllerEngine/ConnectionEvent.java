@@ -0,0 +1,18 @@
+package com.zairon.GameControllerEngine;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for a poll that found a controller connected when it had not
+ * been, or disconnected when it had been.
+ * @author Michael Watkins
+ *
+ */
+@Name("com.zairon.GameControllerEngine.Connection")
+@Label("Controller Connection")
+@Description("A game controller connected or disconnected, as seen by a poll")
+class ConnectionEvent extends ControllerEvent
+{
+}
@@ -0,0 +1,209 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A source of game controller capabilities and state. Backends are discovered by
+ * the GameControllerManager through java.util.ServiceLoader, so a backend must have
+ * a public no-argument constructor and be listed in
+ * META-INF/services/com.zairon.GameControllerEngine.ControllerBackend.
+ * @author Michael Watkins
+ *
+ */
+public interface ControllerBackend
+{
+    /**
+     * The device identity returned when a slot is empty or the backend cannot identify its device
+     */
+    public static final long NO_IDENTITY=0L;
+
+    /**
+     * Get the name of the backend. This is the name used to select the backend
+     * with the GameControllerManager.BACKEND_PROPERTY system property.
+     * @return The name of the backend
+     */
+    public String getName();
+
+    /**
+     * Get the priority of the backend. When no backend is selected by name, the available
+     * backend with the highest priority is used. A priority of zero or less means the backend
+     * is never picked automatically and has to be selected by name.
+     * @return The priority of the backend
+     */
+    public int getPriority();
+
+    /**
+     * Return whether the backend can be used on this platform. This must not load
+     * any native libraries.
+     * @return true if the backend can be used, false otherwise
+     */
+    public boolean isAvailable();
+
+    /**
+     * Get the backend ready for use, such as loading its native library. The manager calls this
+     * before using an available backend, and passes over a backend that cannot open for the next
+     * one. This may be called more than once. The default implementation has nothing to do.
+     * @return true if the backend is ready, false if it cannot be used
+     */
+    public default boolean open()
+    {
+        return true;
+    }
+
+    /**
+     * Get the number of controllers supported by the backend. This is not
+     * the number of controllers connected.
+     * @return The number of controllers supported by the backend.
+     */
+    public int getNumControllers();
+
+    /**
+     * Return whether the id given can be served by this backend.
+     * @param id The id of the controller to check
+     * @return true if the backend can serve the controller, false otherwise
+     */
+    public boolean isController(int id);
+
+    /**
+     * Return whether the controller is connected
+     * @param id The id of the controller to check
+     * @return true if the controller is connected, false otherwise
+     */
+    public boolean isConnected(int id);
+
+    /**
+     * Get the capabilities for the controller
+     * @param id The id of the controller to get the capabilities for
+     * @return The capabilities for the controller.
+     */
+    public GameControllerCaps getCaps(int id);
+
+    /**
+     * Get a number identifying the device in a slot, such as its vendor and product ids and a hash
+     * of its name, used by CapsCache to reuse capabilities. This must be much cheaper than getCaps,
+     * and a different device must give a different number. The default implementation cannot
+     * identify devices, so their capabilities are never cached.
+     * @param id The id of the controller
+     * @return The identity of the device, or NO_IDENTITY if the slot is empty or the device unknown
+     */
+    public default long getDeviceIdentity(int id)
+    {
+        return NO_IDENTITY;
+    }
+
+    /**
+     * Read the controller state.
+     * @param id The id of the controller to read
+     * @param state The object that will contain the controller state
+     * @return true if the controller is connected, false if the controller is not connected.
+     */
+    public boolean readState(int id, GameControllerState state);
+
+    /**
+     * Wait for a new state of the controller and read it. This is how a VirtualThreadPoller reads,
+     * with a thread for each controller. Backends whose devices push their input, such as the evdev
+     * backends, should override it to block until a new frame arrives. The default implementation
+     * cannot tell when the state changes, so it waits out the whole time and then reads.
+     * @param id The id of the controller to read
+     * @param state The object that will contain the controller state
+     * @param timeout The longest time to wait in nanoseconds, after which the state is read anyway
+     * @return true if the controller is connected, false if the controller is not connected.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public default boolean awaitState(int id, GameControllerState state, long timeout) throws InterruptedException
+    {
+        if(timeout > 0)
+        {
+            TimeUnit.NANOSECONDS.sleep(timeout);
+        }
+
+        return readState(id, state);
+    }
+
+    /**
+     * Read the state for a batch of controllers. The default implementation reads
+     * each controller in turn; backends that can read many controllers at once should override it.
+     * @param ids The ids of the controllers to read
+     * @param states The objects that will contain the controller states, matching the ids
+     * @param count The number of controllers to read from the start of the arrays
+     * @return The number of controllers that are connected
+     */
+    public default int readStates(int[] ids, GameControllerState[] states, int count)
+    {
+        int connected=0;
+
+        for(int i=0 ; i < count ; ++i)
+        {
+            if(readState(ids[i], states[i]))
+            {
+                ++connected;
+            }
+        }
+
+        return connected;
+    }
+
+    /**
+     * Read the state for a range of records in a packed state buffer. The id of each record
+     * is already filled in, and the backend fills in the rest of the record. The default
+     * implementation reads each controller through readState into the scratch state of the
+     * buffer and copies it into the record, so it does not allocate, but it is one call into the
+     * backend per controller; backends on the poll path should override it to write the records
+     * directly. A disconnected controller only has its flags cleared, like the natives.
+     * Records with FLAG_SKIP set must be left alone.
+     * @param buffer The buffer holding the records
+     * @param first The index of the first record to read
+     * @param count The number of records to read
+     * @return The number of controllers that are connected
+     */
+    public default int readStates(GameControllerStateBuffer buffer, int first, int count)
+    {
+        buffer.checkRange(first, count);
+
+        GameControllerState state=buffer.getScratchState();
+        int connected=0;
+
+        for(int i=first ; i < (first + count) ; ++i)
+        {
+            if(buffer.isSkipped(i))
+            {
+                continue;
+            }
+
+            if(readState(buffer.getId(i), state))
+            {
+                ++connected;
+                buffer.put(i, state);
+            }
+            else
+            {
+                buffer.putDisconnected(i);
+            }
+        }
+
+        return connected;
+    }
+
+    /**
+     * Get a list with the id's of the connected controllers
+     * @return An array list with the connected controllers.
+     */
+    public default ArrayList<Integer> getConnectedControllers()
+    {
+        ArrayList<Integer> list=new ArrayList<Integer>();
+
+        int numControllers=getNumControllers();
+
+        for(int i=0 ; i < numControllers ; ++i)
+        {
+            if(isController(i) && isConnected(i))
+            {
+                list.add(Integer.valueOf(i));
+            }
+        }
+
+        return list;
+    }
+
+}
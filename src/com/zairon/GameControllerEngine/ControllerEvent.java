@@ -0,0 +1,69 @@
+package com.zairon.GameControllerEngine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * The fields shared by the Java Flight Recorder events about one controller. The events are
+ * only filled in after isEnabled or shouldCommit says they will be recorded, so with no recording
+ * running the JIT removes them and they cost nothing.
+ * @author Michael Watkins
+ *
+ */
+@Category("GameControllerEngine")
+abstract class ControllerEvent extends Event
+{
+    /**
+     * The backend name recorded for controllers without a backend
+     */
+    static final String NO_BACKEND="none";
+
+    /**
+     * The id of the controller
+     */
+    @Label("Controller Id")
+    int controllerId;
+
+    /**
+     * The name of the backend the controller reads from
+     */
+    @Label("Backend")
+    String backend;
+
+    /**
+     * Whether the controller is connected
+     */
+    @Label("Connected")
+    boolean connected;
+
+    /**
+     * Fill in the fields for a controller
+     * @param controller The controller
+     * @param connected Whether the controller is connected
+     */
+    void set(GameController controller, boolean connected)
+    {
+        ControllerBackend backend=controller.getBackend();
+
+        this.controllerId=controller.getId();
+        this.backend=(backend!=null) ? backend.getName() : NO_BACKEND;
+        this.connected=connected;
+    }
+
+    /**
+     * End a timed event and record it if it is enabled and over its threshold
+     * @param controller The controller
+     * @param connected Whether the controller is connected
+     */
+    void finish(GameController controller, boolean connected)
+    {
+        end();
+
+        if(shouldCommit())
+        {
+            set(controller, connected);
+            commit();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.zairon.GameControllerEngine;
+
+/**
+ * The input latency of one controller, as a histogram for each LatencyStage. Each sample is
+ * stamped with System.nanoTime when the backend read it and when it was committed, see
+ * GameControllerState.getReadTime and getCommitTime, and each stage records the time between
+ * its two stamps. Turn it on with GameController.enableLatency; until then the stamps are still
+ * taken but nothing is recorded.
+ * @author Michael Watkins
+ *
+ */
+public class ControllerLatency
+{
+    /**
+     * The histograms, by LatencyStage ordinal
+     */
+    private final LatencyHistogram histograms[]=new LatencyHistogram[LatencyStage.NUM_STAGES];
+
+    /**
+     * Protect the latency from instantiation (make it come from the controller).
+     */
+    protected ControllerLatency()
+    {
+        for(int i=0 ; i < histograms.length ; ++i)
+        {
+            histograms[i]=new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Get the histogram for a stage
+     * @param stage The stage
+     * @return The histogram
+     */
+    public LatencyHistogram getHistogram(LatencyStage stage)
+    {
+        return histograms[stage.ordinal()];
+    }
+
+    /**
+     * Clear every histogram
+     */
+    public void reset()
+    {
+        for(LatencyHistogram histogram : histograms)
+        {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Record the time taken by a stage
+     * @param stage The stage
+     * @param nanos The time in nanoseconds
+     */
+    void record(LatencyStage stage, long nanos)
+    {
+        histograms[stage.ordinal()].record(nanos);
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder=new StringBuilder();
+
+        for(LatencyStage stage : LatencyStage.values())
+        {
+            builder.append(stage).append(' ').append(getHistogram(stage)).append('\n');
+        }
+
+        return builder.toString();
+    }
+
+}
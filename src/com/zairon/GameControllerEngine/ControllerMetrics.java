@@ -0,0 +1,221 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the polls of one controller for an operations view, see ControllerMetricsMXBean.
+ * The counters are LongAdders, which stripe their updates, so recording a poll costs a few
+ * uncontended adds on the polling thread; summing them is left to whoever reads the metrics.
+ * Turn the metrics on with GameController.enableMetrics, or register them with JMX through
+ * GameControllerManager.registerMBeans.
+ * @author Michael Watkins
+ *
+ */
+public class ControllerMetrics implements ControllerMetricsMXBean
+{
+    /**
+     * Nanoseconds in a second
+     */
+    private static final long NANOS_PER_SECOND=1000000000L;
+
+    /**
+     * The backend name reported for controllers without a backend
+     */
+    private static final String NO_BACKEND="none";
+
+    /**
+     * The controller measured
+     */
+    private final GameController controller;
+
+    /**
+     * The number of polls
+     */
+    private final LongAdder pollCount=new LongAdder();
+
+    /**
+     * The number of polls that found the controller disconnected
+     */
+    private final LongAdder failureCount=new LongAdder();
+
+    /**
+     * The number of connected to disconnected changes
+     */
+    private final LongAdder disconnectCount=new LongAdder();
+
+    /**
+     * The number of disconnected to connected changes
+     */
+    private final LongAdder reconnectCount=new LongAdder();
+
+    /**
+     * The number of poll durations recorded
+     */
+    private final LongAdder durationCount=new LongAdder();
+
+    /**
+     * The total of the poll durations recorded
+     */
+    private final LongAdder totalDuration=new LongAdder();
+
+    /**
+     * The longest poll duration recorded
+     */
+    private final AtomicLong maxDuration=new AtomicLong();
+
+    /**
+     * The time the metrics started, in System.nanoTime units
+     */
+    private volatile long start=System.nanoTime();
+
+    /**
+     * Whether the controller was connected at the last poll, only used by the polling thread
+     */
+    private boolean connected;
+
+    /**
+     * Whether a poll has been recorded, only used by the polling thread
+     */
+    private boolean polled;
+
+    /**
+     * Protect the metrics from instantiation (make it come from the controller).
+     * @param controller The controller measured
+     */
+    protected ControllerMetrics(GameController controller)
+    {
+        this.controller=controller;
+    }
+
+    @Override
+    public int getId()
+    {
+        return controller.getId();
+    }
+
+    @Override
+    public String getName()
+    {
+        return controller.getName();
+    }
+
+    @Override
+    public String getBackendName()
+    {
+        ControllerBackend backend=controller.getBackend();
+
+        return (backend!=null) ? backend.getName() : NO_BACKEND;
+    }
+
+    @Override
+    public boolean isConnected()
+    {
+        return controller.getState().isConnected();
+    }
+
+    @Override
+    public long getPollCount()
+    {
+        return pollCount.sum();
+    }
+
+    @Override
+    public long getPollFailureCount()
+    {
+        return failureCount.sum();
+    }
+
+    @Override
+    public long getDisconnectCount()
+    {
+        return disconnectCount.sum();
+    }
+
+    @Override
+    public long getReconnectCount()
+    {
+        return reconnectCount.sum();
+    }
+
+    @Override
+    public double getMeanPollDuration()
+    {
+        long count=durationCount.sum();
+
+        return (count > 0) ? (double)totalDuration.sum() / count : 0.0;
+    }
+
+    @Override
+    public long getMaxPollDuration()
+    {
+        return maxDuration.get();
+    }
+
+    @Override
+    public long getLastSampleAge()
+    {
+        long readTime=controller.getState().getReadTime();
+
+        return (readTime!=0) ? System.nanoTime() - readTime : -1L;
+    }
+
+    @Override
+    public double getSampleRate()
+    {
+        long elapsed=System.nanoTime() - start;
+
+        return (elapsed > 0) ? ((double)pollCount.sum() * NANOS_PER_SECOND) / elapsed : 0.0;
+    }
+
+    @Override
+    public void reset()
+    {
+        start=System.nanoTime();
+        pollCount.reset();
+        failureCount.reset();
+        disconnectCount.reset();
+        reconnectCount.reset();
+        durationCount.reset();
+        totalDuration.reset();
+        maxDuration.set(0L);
+    }
+
+    /**
+     * Record a poll. Called by the polling thread when the sample is committed.
+     * @param nowConnected Whether the controller was connected
+     * @param duration The time from the start of the read to the commit in nanoseconds, or -1 if not known
+     */
+    void record(boolean nowConnected, long duration)
+    {
+        pollCount.increment();
+
+        if(!nowConnected)
+        {
+            failureCount.increment();
+        }
+
+        // the first poll sets the starting point, it is not a change
+        if(polled && (nowConnected!=connected))
+        {
+            (nowConnected ? reconnectCount : disconnectCount).increment();
+        }
+
+        polled=true;
+        connected=nowConnected;
+
+        if(duration >= 0)
+        {
+            durationCount.increment();
+            totalDuration.add(duration);
+
+            long current=maxDuration.get();
+
+            while((duration > current) && !maxDuration.compareAndSet(current, duration))
+            {
+                current=maxDuration.get();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.zairon.GameControllerEngine;
+
+/**
+ * The management interface for the metrics of one controller, registered with JMX by
+ * GameControllerManager.registerMBeans. The times are in nanoseconds.
+ * @author Michael Watkins
+ *
+ */
+public interface ControllerMetricsMXBean
+{
+    /**
+     * Get the id of the controller
+     * @return The id
+     */
+    public int getId();
+
+    /**
+     * Get the name of the controller from its capabilities
+     * @return The name
+     */
+    public String getName();
+
+    /**
+     * Get the name of the backend the controller reads from
+     * @return The name of the backend, or "none" for controllers without one
+     */
+    public String getBackendName();
+
+    /**
+     * Return whether the controller was connected at the last poll
+     * @return true if connected, false otherwise
+     */
+    public boolean isConnected();
+
+    /**
+     * Get the number of polls since the metrics started
+     * @return The number of polls
+     */
+    public long getPollCount();
+
+    /**
+     * Get the number of polls that found the controller disconnected
+     * @return The number of failed polls
+     */
+    public long getPollFailureCount();
+
+    /**
+     * Get the number of times the controller went from connected to disconnected
+     * @return The number of disconnects
+     */
+    public long getDisconnectCount();
+
+    /**
+     * Get the number of times the controller went from disconnected to connected
+     * @return The number of reconnects
+     */
+    public long getReconnectCount();
+
+    /**
+     * Get the mean time from the start of the backend read to the commit of the sample
+     * @return The mean poll duration in nanoseconds
+     */
+    public double getMeanPollDuration();
+
+    /**
+     * Get the longest time from the start of the backend read to the commit of the sample
+     * @return The maximum poll duration in nanoseconds
+     */
+    public long getMaxPollDuration();
+
+    /**
+     * Get how long ago the backend returned the last sample
+     * @return The age of the last sample in nanoseconds, or -1 if the controller has never been read
+     */
+    public long getLastSampleAge();
+
+    /**
+     * Get the rate of polls since the metrics started
+     * @return The sample rate in Hz
+     */
+    public double getSampleRate();
+
+    /**
+     * Start the metrics again from zero
+     */
+    public void reset();
+}
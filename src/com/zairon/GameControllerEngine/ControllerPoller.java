@@ -0,0 +1,341 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.List;
+
+/**
+ * Polls a set of controllers on its own thread at a fixed rate, so input is sampled on a
+ * schedule that does not depend on the frame rate. The controllers are polled together
+ * through a GameControllerBatch. The poller keeps statistics on the rate it actually achieved,
+ * the polls that ran past their period (overruns) and how far each wake up was from its
+ * deadline (jitter). Other threads should read the controllers through snapshots, see
+ * GameController.enablePublishing. Register the poller with JMX through GameControllerManager.registerMBean.
+ * @author Michael Watkins
+ *
+ */
+public class ControllerPoller implements ControllerPollerMXBean
+{
+    /**
+     * The lowest polling rate supported, in Hz
+     */
+    public static final int MIN_RATE=125;
+
+    /**
+     * The highest polling rate supported, in Hz
+     */
+    public static final int MAX_RATE=8000;
+
+    /**
+     * The default polling rate, in Hz
+     */
+    public static final int DEFAULT_RATE=1000;
+
+    /**
+     * Nanoseconds in a second
+     */
+    private static final long NANOS_PER_SECOND=1000000000L;
+
+    /**
+     * The controllers polled
+     */
+    private final GameControllerBatch batch;
+
+    /**
+     * The polling rate in Hz
+     */
+    private final int rate;
+
+    /**
+     * The time between polls in nanoseconds
+     */
+    private final long period;
+
+    /**
+     * How to wait between polls
+     */
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * The thread doing the polling, or null if not started
+     */
+    private Thread thread;
+
+    /**
+     * Flag telling the polling thread to keep going
+     */
+    private volatile boolean running;
+
+    /**
+     * Flag asking the polling thread to reset the statistics
+     */
+    private volatile boolean resetRequested;
+
+    /**
+     * The time the statistics started, in System.nanoTime units
+     */
+    private volatile long statsStart;
+
+    /**
+     * The time the polling thread stopped, in System.nanoTime units
+     */
+    private volatile long statsEnd;
+
+    /**
+     * The number of polls since the statistics started
+     */
+    private volatile long pollCount;
+
+    /**
+     * The number of polls that ran past the start of the next period
+     */
+    private volatile long overrunCount;
+
+    /**
+     * The total of the absolute wake up errors, in nanoseconds
+     */
+    private volatile long totalJitter;
+
+    /**
+     * The largest absolute wake up error, in nanoseconds
+     */
+    private volatile long maxJitter;
+
+    /**
+     * The error that stopped the polling thread, or null
+     */
+    private volatile RuntimeException failure;
+
+    /**
+     * Protect the poller from instantiation (make it come from the factory).
+     * @param controllers The controllers to poll
+     * @param rate The polling rate in Hz, from MIN_RATE to MAX_RATE
+     * @param waitStrategy How to wait between polls
+     */
+    protected ControllerPoller(List<? extends GameController> controllers, int rate, WaitStrategy waitStrategy)
+    {
+        if((rate < MIN_RATE) || (rate > MAX_RATE))
+        {
+            throw new IllegalArgumentException("Cannot poll at " + rate + " Hz, the rate must be from " + MIN_RATE + " to " + MAX_RATE + " Hz\n");
+        }
+
+        this.batch=GameControllerManager.createBatch(controllers);
+        this.rate=rate;
+        this.period=NANOS_PER_SECOND / rate;
+        this.waitStrategy=waitStrategy;
+    }
+
+    /**
+     * Start polling on a new thread
+     */
+    public synchronized void start()
+    {
+        if(thread!=null)
+        {
+            throw new IllegalStateException("Poller has already been started\n");
+        }
+
+        running=true;
+        thread=new Thread(this::run, "ControllerPoller");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Stop polling and wait for the polling thread to finish
+     * @throws InterruptedException if interrupted while waiting for the thread
+     */
+    public synchronized void stop() throws InterruptedException
+    {
+        running=false;
+
+        if(thread!=null)
+        {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
+    /**
+     * Return whether the polling thread is running
+     * @return true if polling, false otherwise
+     */
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * Get the error that stopped the polling thread
+     * @return The error, or null if the thread has not failed
+     */
+    public RuntimeException getFailure()
+    {
+        return failure;
+    }
+
+    /**
+     * Get the batch of controllers polled
+     * @return The batch of controllers
+     */
+    public GameControllerBatch getBatch()
+    {
+        return batch;
+    }
+
+    /**
+     * Get the requested polling rate
+     * @return The polling rate in Hz
+     */
+    public int getRate()
+    {
+        return rate;
+    }
+
+    /**
+     * Get the wait strategy
+     * @return How the poller waits between polls
+     */
+    public WaitStrategy getWaitStrategy()
+    {
+        return waitStrategy;
+    }
+
+    /**
+     * Get the number of polls since the statistics started
+     * @return The number of polls
+     */
+    public long getPollCount()
+    {
+        return pollCount;
+    }
+
+    /**
+     * Get the number of polls that ran past the start of the next period. When the poller falls
+     * a whole period or more behind it skips the missed deadlines instead of trying to catch up.
+     * @return The number of overruns
+     */
+    public long getOverrunCount()
+    {
+        return overrunCount;
+    }
+
+    /**
+     * Get the rate actually achieved since the statistics started, up to now or to when the poller stopped
+     * @return The achieved rate in Hz
+     */
+    public double getAchievedRate()
+    {
+        long elapsed=(running ? System.nanoTime() : statsEnd) - statsStart;
+
+        return (elapsed > 0) ? ((double)pollCount * NANOS_PER_SECOND) / elapsed : 0.0;
+    }
+
+    /**
+     * Get the average distance of the wake ups from their deadlines
+     * @return The mean jitter in nanoseconds
+     */
+    public long getMeanJitter()
+    {
+        long count=pollCount;
+
+        return (count > 0) ? totalJitter / count : 0L;
+    }
+
+    /**
+     * Get the largest distance of a wake up from its deadline
+     * @return The maximum jitter in nanoseconds
+     */
+    public long getMaxJitter()
+    {
+        return maxJitter;
+    }
+
+    /**
+     * Reset the statistics. The polling thread does the reset before its next poll.
+     */
+    public void resetStats()
+    {
+        resetRequested=true;
+    }
+
+    /**
+     * The polling loop
+     */
+    private void run()
+    {
+        long deadline=System.nanoTime();
+
+        clearStats(deadline);
+
+        try
+        {
+            while(running)
+            {
+                long now=System.nanoTime();
+
+                if(resetRequested)
+                {
+                    resetRequested=false;
+                    clearStats(now);
+                }
+
+                batch.pollAll();
+
+                // only the polling thread writes the statistics
+                long jitter=Math.abs(now - deadline);
+                totalJitter+=jitter;
+
+                if(jitter > maxJitter)
+                {
+                    maxJitter=jitter;
+                }
+
+                ++pollCount;
+
+                deadline+=period;
+                now=System.nanoTime();
+
+                if(now - deadline > 0)
+                {
+                    // the poll ran into the next period
+                    ++overrunCount;
+                    
+                    if(now - deadline >= period)
+                    {
+                        // fell behind by whole periods, so skip the missed polls instead of bunching them up
+                        deadline+=((now - deadline) / period) * period;
+                    }
+                }
+
+                waitStrategy.waitUntil(deadline);
+            }
+        }
+        catch(InterruptedException e)
+        {
+            // stopped while waiting
+        }
+        catch(RuntimeException e)
+        {
+            failure=e;
+        }
+        finally
+        {
+            statsEnd=System.nanoTime();
+            running=false;
+        }
+    }
+
+    /**
+     * Clear the statistics, from the polling thread
+     * @param now The time the statistics start
+     */
+    private void clearStats(long now)
+    {
+        statsStart=now;
+        pollCount=0;
+        overrunCount=0;
+        totalJitter=0;
+        maxJitter=0;
+    }
+
+}
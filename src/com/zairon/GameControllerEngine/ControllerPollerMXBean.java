@@ -0,0 +1,57 @@
+package com.zairon.GameControllerEngine;
+
+/**
+ * The management interface for a ControllerPoller, registered with JMX by
+ * GameControllerManager.registerMBean. The times are in nanoseconds.
+ * @author Michael Watkins
+ *
+ */
+public interface ControllerPollerMXBean
+{
+    /**
+     * Return whether the polling thread is running
+     * @return true if polling, false otherwise
+     */
+    public boolean isRunning();
+
+    /**
+     * Get the requested polling rate
+     * @return The polling rate in Hz
+     */
+    public int getRate();
+
+    /**
+     * Get the number of polls since the statistics started
+     * @return The number of polls
+     */
+    public long getPollCount();
+
+    /**
+     * Get the number of polls that ran past the start of the next period
+     * @return The number of overruns
+     */
+    public long getOverrunCount();
+
+    /**
+     * Get the rate actually achieved since the statistics started
+     * @return The achieved rate in Hz
+     */
+    public double getAchievedRate();
+
+    /**
+     * Get the average distance of the wake ups from their deadlines
+     * @return The mean jitter in nanoseconds
+     */
+    public long getMeanJitter();
+
+    /**
+     * Get the largest distance of a wake up from its deadline
+     * @return The maximum jitter in nanoseconds
+     */
+    public long getMaxJitter();
+
+    /**
+     * Reset the statistics
+     */
+    public void resetStats();
+}
@@ -0,0 +1,379 @@
+package com.zairon.GameControllerEngine;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The wire format shared by ControllerStreamServer and RemoteGameController. Every packet starts
+ * with a small header, and everything is big endian. A data packet carries one record per controller
+ * slot. Each record has the sample sequence number for its slot and the sequence number of the base
+ * sample it was encoded against, then a field mask and only the fields that differ from the base.
+ * A base of NO_SEQUENCE marks a keyframe, which carries every field.
+ * <pre>
+ * header      int magic, byte type, byte reserved, short count
+ * data        header (count is the number of records), int packet sequence, long echo time, long echo hold, records
+ * record      byte slot, int sequence, int base sequence, short field mask, fields in mask order
+ * ack         header (count is the number of slots), long client time, int newest packet sequence, int newest sequence per slot
+ * subscribe   header (count is zero), long client time
+ * unsubscribe header (count is zero), long client time
+ * </pre>
+ * The echo time is the client time from the last ack the server heard, and the echo hold is how long
+ * the server held it before sending, so the client can measure the round trip without synchronized clocks.
+ * The packet sequence in an ack tells the server how many packets are still in flight to the client.
+ * @author Michael Watkins
+ *
+ */
+final class ControllerStreamProtocol
+{
+    /**
+     * The magic number at the start of every packet, "GCS1"
+     */
+    static final int MAGIC=0x47435331;
+
+    /**
+     * Packet type for samples sent to a subscriber
+     */
+    static final byte TYPE_DATA=1;
+
+    /**
+     * Packet type for a client asking for samples
+     */
+    static final byte TYPE_SUBSCRIBE=2;
+
+    /**
+     * Packet type for a client acknowledging the samples it has
+     */
+    static final byte TYPE_ACK=3;
+
+    /**
+     * Packet type for a client that no longer wants samples
+     */
+    static final byte TYPE_UNSUBSCRIBE=4;
+
+    /**
+     * The largest packet sent, small enough to never be fragmented
+     */
+    static final int MAX_PACKET_SIZE=1200;
+
+    /**
+     * The size of the header common to all packets
+     */
+    static final int HEADER_SIZE=8;
+
+    /**
+     * The size of the header of a data packet
+     */
+    static final int DATA_HEADER_SIZE=HEADER_SIZE + 4 + 8 + 8;
+
+    /**
+     * The size of a subscribe or unsubscribe packet
+     */
+    static final int CONTROL_SIZE=HEADER_SIZE + 8;
+
+    /**
+     * The size of the header of an ack, before the sequence numbers for the slots
+     */
+    static final int ACK_HEADER_SIZE=HEADER_SIZE + 8 + 4;
+
+    /**
+     * The size of a record header, before the fields
+     */
+    static final int RECORD_HEADER_SIZE=1 + 4 + 4 + 2;
+
+    /**
+     * The size of a keyframe record
+     */
+    static final int MAX_RECORD_SIZE=RECORD_HEADER_SIZE + 1 + 4 + (9 * 4);
+
+    /**
+     * The most slots a stream can carry
+     */
+    static final int MAX_SLOTS=255;
+
+    /**
+     * The number of samples each end keeps per slot to delta against, a power of two
+     */
+    static final int HISTORY=256;
+
+    /**
+     * The sequence number meaning no sample, and the base of a keyframe
+     */
+    static final int NO_SEQUENCE=0;
+
+    /**
+     * Field bit for the connected flag
+     */
+    static final int FIELD_CONNECTED=1;
+
+    /**
+     * Field bit for the button map
+     */
+    static final int FIELD_BUTTONS=1 << 1;
+
+    /**
+     * Field bit for the x-axis
+     */
+    static final int FIELD_X=1 << 2;
+
+    /**
+     * Field bit for the y-axis
+     */
+    static final int FIELD_Y=1 << 3;
+
+    /**
+     * Field bit for the z-axis
+     */
+    static final int FIELD_Z=1 << 4;
+
+    /**
+     * Field bit for the left trigger
+     */
+    static final int FIELD_LEFT_TRIGGER=1 << 5;
+
+    /**
+     * Field bit for the right trigger
+     */
+    static final int FIELD_RIGHT_TRIGGER=1 << 6;
+
+    /**
+     * Field bit for the r-axis
+     */
+    static final int FIELD_R=1 << 7;
+
+    /**
+     * Field bit for the u-axis
+     */
+    static final int FIELD_U=1 << 8;
+
+    /**
+     * Field bit for the v-axis
+     */
+    static final int FIELD_V=1 << 9;
+
+    /**
+     * Field bit for the point-of-view hat
+     */
+    static final int FIELD_POV=1 << 10;
+
+    /**
+     * All of the field bits, as sent in a keyframe
+     */
+    static final int ALL_FIELDS=(1 << 11) - 1;
+
+    /**
+     * Protect the protocol from instantiation (it only has static members).
+     */
+    private ControllerStreamProtocol()
+    {
+    }
+
+    /**
+     * Get the sequence number after another, skipping NO_SEQUENCE when it wraps
+     * @param sequence The sequence number
+     * @return The next sequence number
+     */
+    static int nextSequence(int sequence)
+    {
+        int next=sequence + 1;
+
+        return (next==NO_SEQUENCE) ? next + 1 : next;
+    }
+
+    /**
+     * Return whether one sequence number is after another, allowing for wrap around
+     * @param sequence The sequence number to test
+     * @param other The sequence number to compare against
+     * @return true if sequence is after other, false otherwise
+     */
+    static boolean isAfter(int sequence, int other)
+    {
+        return (sequence - other) > 0;
+    }
+
+    /**
+     * Write the header common to all packets
+     * @param buffer The buffer to write into
+     * @param type The packet type
+     * @param count The number of records or slots that follow
+     */
+    static void putHeader(ByteBuffer buffer, byte type, int count)
+    {
+        buffer.putInt(MAGIC);
+        buffer.put(type);
+        buffer.put((byte)0);
+        buffer.putShort((short)count);
+    }
+
+    /**
+     * Read and check the magic number and type of a packet, leaving the buffer at the count
+     * @param buffer The buffer to read from
+     * @return The packet type, or zero if the packet is not part of the protocol
+     */
+    static byte getHeader(ByteBuffer buffer)
+    {
+        if((buffer.remaining() < HEADER_SIZE) || (buffer.getInt()!=MAGIC))
+        {
+            return 0;
+        }
+
+        byte type=buffer.get();
+        buffer.get();
+
+        return type;
+    }
+
+    /**
+     * Get the fields of a state that differ from a base
+     * @param state The state to send
+     * @param base The state the receiver already has, or null for a keyframe
+     * @return The field mask
+     */
+    static int getChangedFields(GameControllerState state, GameControllerState base)
+    {
+        if(base==null)
+        {
+            return ALL_FIELDS;
+        }
+
+        int mask=0;
+
+        mask|=(state.isConnected()!=base.isConnected()) ? FIELD_CONNECTED : 0;
+        mask|=(state.getButtonMap()!=base.getButtonMap()) ? FIELD_BUTTONS : 0;
+        mask|=isChanged(state.getX(), base.getX()) ? FIELD_X : 0;
+        mask|=isChanged(state.getY(), base.getY()) ? FIELD_Y : 0;
+        mask|=isChanged(state.getZ(), base.getZ()) ? FIELD_Z : 0;
+        mask|=isChanged(state.getLeftTrigger(), base.getLeftTrigger()) ? FIELD_LEFT_TRIGGER : 0;
+        mask|=isChanged(state.getRightTrigger(), base.getRightTrigger()) ? FIELD_RIGHT_TRIGGER : 0;
+        mask|=isChanged(state.getR(), base.getR()) ? FIELD_R : 0;
+        mask|=isChanged(state.getU(), base.getU()) ? FIELD_U : 0;
+        mask|=isChanged(state.getV(), base.getV()) ? FIELD_V : 0;
+        mask|=isChanged(state.getPOV(), base.getPOV()) ? FIELD_POV : 0;
+
+        return mask;
+    }
+
+    /**
+     * Return whether a value has changed, comparing the bits so the receiver ends up with exactly the same value
+     * @param value The new value
+     * @param base The old value
+     * @return true if changed, false otherwise
+     */
+    private static boolean isChanged(float value, float base)
+    {
+        return Float.floatToRawIntBits(value)!=Float.floatToRawIntBits(base);
+    }
+
+    /**
+     * Write a record, with only the fields that differ from the base
+     * @param buffer The buffer to write into
+     * @param slot The slot of the controller
+     * @param sequence The sequence number of the sample
+     * @param baseSequence The sequence number of the base, or NO_SEQUENCE for a keyframe
+     * @param state The sample
+     * @param base The base sample, or null for a keyframe
+     */
+    static void putRecord(ByteBuffer buffer, int slot, int sequence, int baseSequence, GameControllerState state, GameControllerState base)
+    {
+        int mask=getChangedFields(state, base);
+
+        buffer.put((byte)slot);
+        buffer.putInt(sequence);
+        buffer.putInt(baseSequence);
+        buffer.putShort((short)mask);
+
+        if((mask & FIELD_CONNECTED)!=0)
+        {
+            buffer.put(state.isConnected() ? (byte)1 : (byte)0);
+        }
+
+        if((mask & FIELD_BUTTONS)!=0)
+        {
+            buffer.putInt(state.getButtonMap());
+        }
+
+        putField(buffer, mask, FIELD_X, state.getX());
+        putField(buffer, mask, FIELD_Y, state.getY());
+        putField(buffer, mask, FIELD_Z, state.getZ());
+        putField(buffer, mask, FIELD_LEFT_TRIGGER, state.getLeftTrigger());
+        putField(buffer, mask, FIELD_RIGHT_TRIGGER, state.getRightTrigger());
+        putField(buffer, mask, FIELD_R, state.getR());
+        putField(buffer, mask, FIELD_U, state.getU());
+        putField(buffer, mask, FIELD_V, state.getV());
+        putField(buffer, mask, FIELD_POV, state.getPOV());
+    }
+
+    /**
+     * Write a float field if its bit is in the mask
+     * @param buffer The buffer to write into
+     * @param mask The field mask
+     * @param field The bit for the field
+     * @param value The value of the field
+     */
+    private static void putField(ByteBuffer buffer, int mask, int field, float value)
+    {
+        if((mask & field)!=0)
+        {
+            buffer.putFloat(value);
+        }
+    }
+
+    /**
+     * Get the number of bytes taken by the fields in a mask
+     * @param mask The field mask
+     * @return The size of the fields in bytes
+     */
+    static int getFieldsSize(int mask)
+    {
+        int size=Integer.bitCount(mask & ~(FIELD_CONNECTED | FIELD_BUTTONS)) * 4;
+
+        size+=((mask & FIELD_CONNECTED)!=0) ? 1 : 0;
+        size+=((mask & FIELD_BUTTONS)!=0) ? 4 : 0;
+
+        return size;
+    }
+
+    /**
+     * Read the fields of a record into a state that already holds the base. The fields not in the mask are left alone.
+     * @param buffer The buffer positioned at the fields
+     * @param mask The field mask from the record
+     * @param state The state to update
+     */
+    static void getFields(ByteBuffer buffer, int mask, GameControllerState state)
+    {
+        if((mask & FIELD_CONNECTED)!=0)
+        {
+            state.setConnected(buffer.get()!=0);
+        }
+
+        if((mask & FIELD_BUTTONS)!=0)
+        {
+            state.setButtonMap(buffer.getInt());
+        }
+
+        float x=getField(buffer, mask, FIELD_X, state.getX());
+        float y=getField(buffer, mask, FIELD_Y, state.getY());
+        float z=getField(buffer, mask, FIELD_Z, state.getZ());
+        float leftTrigger=getField(buffer, mask, FIELD_LEFT_TRIGGER, state.getLeftTrigger());
+        float rightTrigger=getField(buffer, mask, FIELD_RIGHT_TRIGGER, state.getRightTrigger());
+        float r=getField(buffer, mask, FIELD_R, state.getR());
+        float u=getField(buffer, mask, FIELD_U, state.getU());
+        float v=getField(buffer, mask, FIELD_V, state.getV());
+
+        state.setAxes(x, y, z, r, u, v);
+        state.setTriggers(leftTrigger, rightTrigger);
+        state.setPOV(getField(buffer, mask, FIELD_POV, state.getPOV()));
+    }
+
+    /**
+     * Read a float field if its bit is in the mask
+     * @param buffer The buffer to read from
+     * @param mask The field mask
+     * @param field The bit for the field
+     * @param value The value to keep if the field is not in the mask
+     * @return The value of the field
+     */
+    private static float getField(ByteBuffer buffer, int mask, int field, float value)
+    {
+        return ((mask & field)!=0) ? buffer.getFloat() : value;
+    }
+
+}
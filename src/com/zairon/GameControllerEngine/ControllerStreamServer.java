@@ -0,0 +1,743 @@
+package com.zairon.GameControllerEngine;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streams the state of a set of controllers over UDP, so the controllers can be read on another
+ * machine by a RemoteGameController. The server polls its controllers on its own thread at a fixed
+ * rate and gives each sample a sequence number per slot (the index of the controller in the list).
+ * Clients subscribe by sending a packet to the server's port and keep the subscription alive with
+ * acks naming the newest sample they have for each slot. A client that subscribes again is sent
+ * keyframes, since it may have forgotten its samples. Each send is one batch: a datagram per
+ * subscriber with a record for every slot, delta encoded against the sample that subscriber last
+ * acknowledged, or a full keyframe when the subscriber has not acknowledged a sample still in the
+ * history. Nothing is queued: every send carries only the newest sample, a send that would block
+ * is dropped, and a subscriber with more than MAX_IN_FLIGHT packets unacknowledged is skipped (apart
+ * from a probe every PROBE_INTERVAL), so a link that falls behind skips the stale samples instead of
+ * having them delivered late.
+ * The raw state is sent as polled, after any button mapping; dead zones are applied by the receiver.
+ * See ControllerStreamProtocol for the wire format.
+ * @author Michael Watkins
+ *
+ */
+public class ControllerStreamServer
+{
+    /**
+     * The default port
+     */
+    public static final int DEFAULT_PORT=27960;
+
+    /**
+     * The most subscribers served at once
+     */
+    public static final int MAX_SUBSCRIBERS=32;
+
+    /**
+     * How long a subscriber is kept without hearing from it, in nanoseconds
+     */
+    public static final long SUBSCRIBER_TIMEOUT=2000000000L;
+
+    /**
+     * The most packets sent to a subscriber and not acknowledged before sends to it are skipped
+     */
+    public static final int MAX_IN_FLIGHT=32;
+
+    /**
+     * How often a subscriber that has fallen behind is still sent the newest samples, in nanoseconds
+     */
+    public static final long PROBE_INTERVAL=50000000L;
+
+    /**
+     * Nanoseconds in a second
+     */
+    private static final long NANOS_PER_SECOND=1000000000L;
+
+    /**
+     * The mask for a sequence number to get its place in the history
+     */
+    private static final int HISTORY_MASK=ControllerStreamProtocol.HISTORY - 1;
+
+    /**
+     * The controllers streamed, one per slot
+     */
+    private final GameController controllers[];
+
+    /**
+     * The controllers polled
+     */
+    private final GameControllerBatch batch;
+
+    /**
+     * The send rate in Hz
+     */
+    private final int rate;
+
+    /**
+     * The time between sends in nanoseconds
+     */
+    private final long period;
+
+    /**
+     * How to wait between sends
+     */
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * The channel the server sends and receives on
+     */
+    private final DatagramChannel channel;
+
+    /**
+     * The buffer packets are built in
+     */
+    private final ByteBuffer sendBuffer=ByteBuffer.allocateDirect(ControllerStreamProtocol.MAX_PACKET_SIZE);
+
+    /**
+     * The buffer packets are received into
+     */
+    private final ByteBuffer receiveBuffer=ByteBuffer.allocateDirect(ControllerStreamProtocol.MAX_PACKET_SIZE);
+
+    /**
+     * The recent samples for each slot, indexed by sequence number
+     */
+    private final GameControllerState history[][];
+
+    /**
+     * The sequence number of each sample in the history
+     */
+    private final int historySequences[][];
+
+    /**
+     * The sequence number of the newest sample for each slot
+     */
+    private final int sequences[];
+
+    /**
+     * The subscribers, only used by the server thread
+     */
+    private final ArrayList<Subscriber> subscribers=new ArrayList<Subscriber>();
+
+    /**
+     * The thread doing the streaming, or null if not started
+     */
+    private Thread thread;
+
+    /**
+     * Flag telling the server thread to keep going
+     */
+    private volatile boolean running;
+
+    /**
+     * The error that stopped the server thread, or null
+     */
+    private volatile RuntimeException failure;
+
+    /**
+     * The number of subscribers
+     */
+    private volatile int subscriberCount;
+
+    /**
+     * The number of samples taken for each slot
+     */
+    private volatile long sampleCount;
+
+    /**
+     * The number of packets sent
+     */
+    private volatile long packetCount;
+
+    /**
+     * The number of bytes sent
+     */
+    private volatile long byteCount;
+
+    /**
+     * The number of packets dropped because the send would have blocked or failed
+     */
+    private volatile long droppedCount;
+
+    /**
+     * The number of keyframe records sent
+     */
+    private volatile long keyframeCount;
+
+    /**
+     * The number of sends skipped because the subscriber had fallen behind
+     */
+    private volatile long conflatedCount;
+
+    /**
+     * Protect the server from instantiation (make it come from the factory).
+     * @param controllers The controllers to stream, up to ControllerStreamProtocol.MAX_SLOTS
+     * @param address The address to bind to
+     * @param rate The send rate in Hz, from ControllerPoller.MIN_RATE to ControllerPoller.MAX_RATE
+     * @param waitStrategy How to wait between sends
+     * @throws IOException if the channel cannot be opened or bound
+     */
+    protected ControllerStreamServer(List<? extends GameController> controllers, InetSocketAddress address, int rate, WaitStrategy waitStrategy) throws IOException
+    {
+        if((rate < ControllerPoller.MIN_RATE) || (rate > ControllerPoller.MAX_RATE))
+        {
+            throw new IllegalArgumentException("Cannot stream at " + rate + " Hz, the rate must be from " + ControllerPoller.MIN_RATE + " to " + ControllerPoller.MAX_RATE + " Hz\n");
+        }
+
+        if(controllers.size() > ControllerStreamProtocol.MAX_SLOTS)
+        {
+            throw new IllegalArgumentException("Cannot stream " + controllers.size() + " controllers, the most is " + ControllerStreamProtocol.MAX_SLOTS + "\n");
+        }
+
+        this.controllers=controllers.toArray(new GameController[controllers.size()]);
+        this.batch=GameControllerManager.createBatch(controllers);
+        this.rate=rate;
+        this.period=NANOS_PER_SECOND / rate;
+        this.waitStrategy=waitStrategy;
+        this.history=new GameControllerState[this.controllers.length][ControllerStreamProtocol.HISTORY];
+        this.historySequences=new int[this.controllers.length][ControllerStreamProtocol.HISTORY];
+        this.sequences=new int[this.controllers.length];
+
+        for(GameControllerState slot[] : history)
+        {
+            for(int i=0 ; i < slot.length ; ++i)
+            {
+                slot[i]=new GameControllerState();
+            }
+        }
+
+        this.channel=DatagramChannel.open();
+
+        try
+        {
+            channel.bind(address);
+            channel.configureBlocking(false);
+        }
+        catch(IOException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Start streaming on a new thread
+     */
+    public synchronized void start()
+    {
+        if(thread!=null)
+        {
+            throw new IllegalStateException("Stream server has already been started\n");
+        }
+
+        running=true;
+        thread=new Thread(this::run, "ControllerStreamServer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Stop streaming, wait for the server thread to finish and close the channel
+     * @throws InterruptedException if interrupted while waiting for the thread
+     */
+    public synchronized void stop() throws InterruptedException
+    {
+        running=false;
+
+        if(thread!=null)
+        {
+            thread.interrupt();
+            thread.join();
+        }
+
+        try
+        {
+            channel.close();
+        }
+        catch(IOException e)
+        {
+            // nothing left to send on it
+        }
+    }
+
+    /**
+     * Return whether the server thread is running
+     * @return true if streaming, false otherwise
+     */
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * Get the error that stopped the server thread
+     * @return The error, or null if the thread has not failed
+     */
+    public RuntimeException getFailure()
+    {
+        return failure;
+    }
+
+    /**
+     * Get the address the server is bound to, which has the port chosen when bound to port zero
+     * @return The address
+     */
+    public InetSocketAddress getLocalAddress()
+    {
+        try
+        {
+            return (InetSocketAddress)channel.getLocalAddress();
+        }
+        catch(IOException e)
+        {
+            throw new IllegalStateException("Cannot get the address of the stream server\n", e);
+        }
+    }
+
+    /**
+     * Get the controllers streamed, in slot order
+     * @return The controllers
+     */
+    public List<GameController> getControllers()
+    {
+        return List.of(controllers);
+    }
+
+    /**
+     * Get the send rate
+     * @return The send rate in Hz
+     */
+    public int getRate()
+    {
+        return rate;
+    }
+
+    /**
+     * Get the number of subscribers
+     * @return The number of subscribers
+     */
+    public int getSubscriberCount()
+    {
+        return subscriberCount;
+    }
+
+    /**
+     * Get the number of samples taken for each slot
+     * @return The number of samples
+     */
+    public long getSampleCount()
+    {
+        return sampleCount;
+    }
+
+    /**
+     * Get the number of packets sent to all of the subscribers
+     * @return The number of packets
+     */
+    public long getPacketCount()
+    {
+        return packetCount;
+    }
+
+    /**
+     * Get the number of bytes sent to all of the subscribers
+     * @return The number of bytes
+     */
+    public long getByteCount()
+    {
+        return byteCount;
+    }
+
+    /**
+     * Get the number of packets dropped because the send would have blocked or failed
+     * @return The number of packets dropped
+     */
+    public long getDroppedCount()
+    {
+        return droppedCount;
+    }
+
+    /**
+     * Get the number of keyframe records sent, which carry every field instead of a delta
+     * @return The number of keyframes
+     */
+    public long getKeyframeCount()
+    {
+        return keyframeCount;
+    }
+
+    /**
+     * Get the number of sends skipped because the subscriber had too many packets unacknowledged.
+     * Each skipped send is a sample the subscriber will never see; it gets the newest one instead.
+     * @return The number of sends skipped
+     */
+    public long getConflatedCount()
+    {
+        return conflatedCount;
+    }
+
+    /**
+     * The streaming loop
+     */
+    private void run()
+    {
+        long deadline=System.nanoTime();
+
+        try
+        {
+            while(running)
+            {
+                receive(System.nanoTime());
+                batch.pollAll();
+                sample();
+                send(System.nanoTime());
+
+                deadline+=period;
+                long now=System.nanoTime();
+
+                if(now - deadline >= period)
+                {
+                    // fell behind by whole periods, so skip the missed sends instead of bunching them up
+                    deadline+=((now - deadline) / period) * period;
+                }
+
+                waitStrategy.waitUntil(deadline);
+            }
+        }
+        catch(InterruptedException e)
+        {
+            // stopped while waiting
+        }
+        catch(RuntimeException e)
+        {
+            failure=e;
+        }
+        finally
+        {
+            running=false;
+        }
+    }
+
+    /**
+     * Handle the packets received from clients
+     * @param now The current time
+     */
+    private void receive(long now)
+    {
+        while(true)
+        {
+            SocketAddress from;
+
+            receiveBuffer.clear();
+
+            try
+            {
+                from=channel.receive(receiveBuffer);
+            }
+            catch(IOException e)
+            {
+                throw new IllegalStateException("Cannot receive on the stream server\n", e);
+            }
+
+            if(from==null)
+            {
+                break;
+            }
+
+            receiveBuffer.flip();
+            handle(from, receiveBuffer, now);
+        }
+
+        // drop the subscribers that have gone quiet
+        for(int i=subscribers.size() - 1 ; i >= 0 ; --i)
+        {
+            if(now - subscribers.get(i).heardTime > SUBSCRIBER_TIMEOUT)
+            {
+                subscribers.remove(i);
+            }
+        }
+
+        subscriberCount=subscribers.size();
+    }
+
+    /**
+     * Handle a packet from a client. Packets that are not part of the protocol are ignored.
+     * @param from The address of the client
+     * @param buffer The packet
+     * @param now The time it was received
+     */
+    private void handle(SocketAddress from, ByteBuffer buffer, long now)
+    {
+        byte type=ControllerStreamProtocol.getHeader(buffer);
+
+        if((type==0) || (buffer.remaining() < ControllerStreamProtocol.CONTROL_SIZE - ControllerStreamProtocol.HEADER_SIZE + 2))
+        {
+            return;
+        }
+
+        int count=buffer.getShort() & 0xFFFF;
+        long clientTime=buffer.getLong();
+        Subscriber subscriber=findSubscriber(from);
+
+        if(type==ControllerStreamProtocol.TYPE_UNSUBSCRIBE)
+        {
+            subscribers.remove(subscriber);
+            return;
+        }
+
+        if(subscriber==null)
+        {
+            if((type!=ControllerStreamProtocol.TYPE_SUBSCRIBE) || (subscribers.size() >= MAX_SUBSCRIBERS))
+            {
+                return;
+            }
+
+            subscriber=new Subscriber(from, controllers.length);
+            subscribers.add(subscriber);
+        }
+
+        else if(type==ControllerStreamProtocol.TYPE_SUBSCRIBE)
+        {
+            // the client has started again, so it has none of the samples it acknowledged
+            Arrays.fill(subscriber.acked, ControllerStreamProtocol.NO_SEQUENCE);
+            subscriber.ackedPacket=subscriber.packetSequence;
+        }
+
+        subscriber.heardTime=now;
+        subscriber.echoTime=clientTime;
+
+        if((type==ControllerStreamProtocol.TYPE_ACK) && (buffer.remaining() >= 4))
+        {
+            int packetSequence=buffer.getInt();
+
+            if(!ControllerStreamProtocol.isAfter(packetSequence, subscriber.packetSequence)
+               && ((subscriber.ackedPacket==ControllerStreamProtocol.NO_SEQUENCE) || ControllerStreamProtocol.isAfter(packetSequence, subscriber.ackedPacket)))
+            {
+                subscriber.ackedPacket=packetSequence;
+            }
+
+            int slots=Math.min(Math.min(count, controllers.length), buffer.remaining() / 4);
+
+            for(int slot=0 ; slot < slots ; ++slot)
+            {
+                int sequence=buffer.getInt();
+                int acked=subscriber.acked[slot];
+
+                // acks can arrive out of order, and an ack for a sample never sent is ignored
+                if((sequence!=ControllerStreamProtocol.NO_SEQUENCE) && !ControllerStreamProtocol.isAfter(sequence, sequences[slot])
+                   && ((acked==ControllerStreamProtocol.NO_SEQUENCE) || ControllerStreamProtocol.isAfter(sequence, acked)))
+                {
+                    subscriber.acked[slot]=sequence;
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the subscriber for an address
+     * @param address The address of the client
+     * @return The subscriber, or null if the client has not subscribed
+     */
+    private Subscriber findSubscriber(SocketAddress address)
+    {
+        for(Subscriber subscriber : subscribers)
+        {
+            if(subscriber.address.equals(address))
+            {
+                return subscriber;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Add the sample just polled for each slot to the history
+     */
+    private void sample()
+    {
+        for(int slot=0 ; slot < controllers.length ; ++slot)
+        {
+            int sequence=ControllerStreamProtocol.nextSequence(sequences[slot]);
+            int index=sequence & HISTORY_MASK;
+
+            history[slot][index].copy(controllers[slot].getState());
+            historySequences[slot][index]=sequence;
+            sequences[slot]=sequence;
+        }
+
+        ++sampleCount;
+    }
+
+    /**
+     * Send the newest sample for each slot to each subscriber
+     * @param now The current time
+     */
+    private void send(long now)
+    {
+        for(Subscriber subscriber : subscribers)
+        {
+            int records=0;
+
+            if(isBehind(subscriber, now))
+            {
+                ++conflatedCount;
+                continue;
+            }
+
+            subscriber.sentTime=now;
+            startPacket(subscriber, now);
+
+            for(int slot=0 ; slot < controllers.length ; ++slot)
+            {
+                if(sendBuffer.remaining() < ControllerStreamProtocol.MAX_RECORD_SIZE)
+                {
+                    sendPacket(subscriber, records);
+                    startPacket(subscriber, now);
+                    records=0;
+                }
+
+                int sequence=sequences[slot];
+                int acked=subscriber.acked[slot];
+                int ackedIndex=acked & HISTORY_MASK;
+                GameControllerState state=history[slot][sequence & HISTORY_MASK];
+
+                if((acked!=ControllerStreamProtocol.NO_SEQUENCE) && (historySequences[slot][ackedIndex]==acked))
+                {
+                    ControllerStreamProtocol.putRecord(sendBuffer, slot, sequence, acked, state, history[slot][ackedIndex]);
+                }
+                else
+                {
+                    // the subscriber has nothing still in the history to delta against
+                    ControllerStreamProtocol.putRecord(sendBuffer, slot, sequence, ControllerStreamProtocol.NO_SEQUENCE, state, null);
+                    ++keyframeCount;
+                }
+
+                ++records;
+            }
+
+            sendPacket(subscriber, records);
+        }
+    }
+
+    /**
+     * Return whether a subscriber has too many packets in flight to be sent another. A subscriber that has
+     * not acknowledged a packet yet is counted from its first packet. Subscribers that are behind are
+     * still probed, in case the acks were lost rather than the link being slow.
+     * @param subscriber The subscriber
+     * @param now The current time
+     * @return true to skip the subscriber, false to send to it
+     */
+    private boolean isBehind(Subscriber subscriber, long now)
+    {
+        return ((subscriber.packetSequence - subscriber.ackedPacket) > MAX_IN_FLIGHT) && (now - subscriber.sentTime < PROBE_INTERVAL);
+    }
+
+    /**
+     * Start building a data packet for a subscriber
+     * @param subscriber The subscriber
+     * @param now The current time
+     */
+    private void startPacket(Subscriber subscriber, long now)
+    {
+        sendBuffer.clear();
+        ControllerStreamProtocol.putHeader(sendBuffer, ControllerStreamProtocol.TYPE_DATA, 0);
+        sendBuffer.putInt(subscriber.packetSequence=ControllerStreamProtocol.nextSequence(subscriber.packetSequence));
+        sendBuffer.putLong(subscriber.echoTime);
+        sendBuffer.putLong(now - subscriber.heardTime);
+    }
+
+    /**
+     * Send the data packet that has been built to a subscriber, dropping it if the send would block
+     * @param subscriber The subscriber
+     * @param records The number of records in the packet
+     */
+    private void sendPacket(Subscriber subscriber, int records)
+    {
+        // fill in the record count now it is known
+        sendBuffer.putShort(6, (short)records);
+        sendBuffer.flip();
+
+        int size=sendBuffer.remaining();
+        int sent;
+
+        try
+        {
+            sent=channel.send(sendBuffer, subscriber.address);
+        }
+        catch(IOException e)
+        {
+            sent=0;
+        }
+
+        if(sent==size)
+        {
+            ++packetCount;
+            byteCount+=size;
+        }
+        else
+        {
+            ++droppedCount;
+        }
+    }
+
+    /**
+     * A client receiving the stream
+     */
+    private static final class Subscriber
+    {
+        /**
+         * The address of the client
+         */
+        private final SocketAddress address;
+
+        /**
+         * The newest sequence number the client has acknowledged for each slot
+         */
+        private final int acked[];
+
+        /**
+         * When the client was last heard from, in System.nanoTime units
+         */
+        private long heardTime;
+
+        /**
+         * The client time from the last packet heard, echoed back for the round trip
+         */
+        private long echoTime;
+
+        /**
+         * The sequence number of the last packet sent to the client
+         */
+        private int packetSequence;
+
+        /**
+         * The newest packet sequence number the client has acknowledged
+         */
+        private int ackedPacket;
+
+        /**
+         * When the client was last sent samples, in System.nanoTime units
+         */
+        private long sentTime;
+
+        /**
+         * Create a subscriber
+         * @param address The address of the client
+         * @param slots The number of slots streamed
+         */
+        private Subscriber(SocketAddress address, int slots)
+        {
+            this.address=address;
+            this.acked=new int[slots];
+        }
+
+    }
+
+}
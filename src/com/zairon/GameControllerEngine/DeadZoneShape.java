@@ -0,0 +1,61 @@
+package com.zairon.GameControllerEngine;
+
+/**
+ * The shapes of dead zone for the points and axes. The point shapes are tested without a
+ * square root, against the square of the dead zone, except SCALED_RADIAL outside the dead zone,
+ * which needs the length of the stick to rescale it.
+ * @author Michael Watkins
+ *
+ */
+public enum DeadZoneShape
+{
+    /**
+     * Each axis is zeroed when it is inside the dead zone, on its own. Diagonals near the
+     * center snap to the axes. For an axis this is the same as RADIAL.
+     */
+    AXIAL("AXIAL"),
+    /**
+     * The point is zeroed when it is inside the dead zone circle, and otherwise left alone.
+     * For an axis this is the same as AXIAL.
+     */
+    RADIAL("RADIAL"),
+    /**
+     * The point is zeroed inside the dead zone circle, and outside it the length is rescaled so
+     * the output starts from zero at the edge of the dead zone and reaches 1.0 at full deflection.
+     * The length is capped at 1.0. For an axis the position is rescaled the same way.
+     */
+    SCALED_RADIAL("SCALED_RADIAL"),
+    /**
+     * The point is zeroed inside the dead zone circle, and outside it each axis inside the dead
+     * zone is zeroed on its own. This is the default, and how the engine has always worked.
+     * For an axis this is the same as AXIAL.
+     */
+    HYBRID("HYBRID"),
+    /**
+     * The point is zeroed inside the dead zone circle, and outside it each axis is zeroed when
+     * the stick is within a wedge around the other axis, the wedge widening with the deflection.
+     * The dead zone is also the slope of the wedge, so 0.25 snaps about 14 degrees either side
+     * of the axes. For an axis this is the same as AXIAL.
+     */
+    BOWTIE("BOWTIE");
+    
+    /**
+     * The label for the shape
+     */
+    private String label;
+    
+    /**
+     * Construct the enumeration value
+     * @param label The label for the enumeration value
+     */
+    private DeadZoneShape(String label)
+    {
+        this.label=label;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return this.label;
+    }
+}
@@ -0,0 +1,334 @@
+package com.zairon.GameControllerEngine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The backend for Linux evdev devices, in pure Java. Each device file under /dev/input that
+ * reports joystick or gamepad buttons is a controller, in the order of the event numbers.
+ * The devices can instead be listed with the DEVICES_PROPERTY system property, or given to the
+ * constructor, which also works for regular files and FIFOs of recorded input_events, so the
+ * backend can be tested away from real devices.
+ * <p>
+ * evdev only reports the axis ranges through an ioctl, which Java cannot make, so the
+ * capabilities use the standard gamepad ranges the xpad driver reports; values outside them are
+ * clamped. Opening a device file needs read permission on it, usually by being in the input group.
+ * @author Michael Watkins
+ *
+ */
+public class EvdevControllerBackend implements ControllerBackend
+{
+    /**
+     * The name of the backend
+     */
+    public static final String NAME="evdev";
+
+    /**
+     * The priority of the backend
+     */
+    public static final int PRIORITY=10;
+
+    /**
+     * The system property listing the device files, separated by the path separator
+     */
+    public static final String DEVICES_PROPERTY="com.zairon.GameControllerEngine.evdev.devices";
+
+    /**
+     * The string for Linux
+     */
+    public static final String LINUX_OS_STRING="Linux";
+
+    /**
+     * The directory holding the device files
+     */
+    public static final Path INPUT_DIRECTORY=Path.of("/dev/input");
+
+    /**
+     * The prefix of the event device files
+     */
+    private static final String EVENT_PREFIX="event";
+
+    /**
+     * The devices, or null if they have not been found yet
+     */
+    private List<EvdevDevice> devices;
+
+    /**
+     * Construct the backend. The devices are found when the backend is opened.
+     */
+    public EvdevControllerBackend()
+    {
+    }
+
+    /**
+     * Construct the backend for the device files given
+     * @param paths The device files, regular files or FIFOs, one for each controller id
+     */
+    public EvdevControllerBackend(List<Path> paths)
+    {
+        this.devices=createDevices(paths);
+    }
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    public int getPriority()
+    {
+        return PRIORITY;
+    }
+
+    @Override
+    public boolean isAvailable()
+    {
+        return System.getProperty("os.name").contains(LINUX_OS_STRING) || (System.getProperty(DEVICES_PROPERTY)!=null);
+    }
+
+    @Override
+    public boolean open()
+    {
+        // with no devices there is nothing to read, so let the manager fall back
+        return !getDevices().isEmpty();
+    }
+
+    @Override
+    public int getNumControllers()
+    {
+        return getDevices().size();
+    }
+
+    @Override
+    public boolean isController(int id)
+    {
+        return (id >= 0) && (id < getNumControllers());
+    }
+
+    @Override
+    public boolean isConnected(int id)
+    {
+        // opening a closed device is how a hotplug probe finds it again
+        return getDevice(id).open();
+    }
+
+    @Override
+    public GameControllerCaps getCaps(int id)
+    {
+        return getDevice(id).getCaps();
+    }
+
+    @Override
+    public long getDeviceIdentity(int id)
+    {
+        return getDevice(id).getIdentity();
+    }
+
+    @Override
+    public boolean readState(int id, GameControllerState state)
+    {
+        return getDevice(id).readState(state);
+    }
+
+    @Override
+    public boolean awaitState(int id, GameControllerState state, long timeout) throws InterruptedException
+    {
+        // the reader thread for the device signals each frame it decodes
+        return getDevice(id).awaitState(state, timeout);
+    }
+
+    @Override
+    public int readStates(GameControllerStateBuffer buffer, int first, int count)
+    {
+        buffer.checkRange(first, count);
+
+        int connected=0;
+
+        for(int i=first ; i < (first + count) ; ++i)
+        {
+            if(!buffer.isSkipped(i) && getDevice(buffer.getId(i)).readState(buffer, i))
+            {
+                ++connected;
+            }
+        }
+
+        return connected;
+    }
+
+    /**
+     * Get the device file for a controller
+     * @param id The id of the controller
+     * @return The path of the device file
+     */
+    public Path getPath(int id)
+    {
+        return getDevice(id).getPath();
+    }
+
+    /**
+     * Get the number of complete frames read from a device, to see how far a recording has got
+     * @param id The id of the controller
+     * @return The number of frames
+     */
+    public long getFrameCount(int id)
+    {
+        return getDevice(id).getFrameCount();
+    }
+
+    /**
+     * Close every device file and stop the reader threads. The devices open again when probed
+     * with isConnected.
+     */
+    public void close()
+    {
+        for(EvdevDevice device : getDevices())
+        {
+            device.close();
+        }
+    }
+
+    /**
+     * Get a device
+     * @param id The id of the controller
+     * @return The device
+     */
+    private EvdevDevice getDevice(int id)
+    {
+        return getDevices().get(id);
+    }
+
+    /**
+     * Get the devices, finding them the first time
+     * @return The devices
+     */
+    private synchronized List<EvdevDevice> getDevices()
+    {
+        if(devices==null)
+        {
+            String listed=System.getProperty(DEVICES_PROPERTY);
+            List<Path> paths=new ArrayList<Path>();
+
+            if(listed!=null)
+            {
+                for(String name : listed.split(File.pathSeparator))
+                {
+                    if(!name.isEmpty())
+                    {
+                        paths.add(Path.of(name));
+                    }
+                }
+            }
+            else
+            {
+                paths=findDevices();
+            }
+
+            devices=createDevices(paths);
+        }
+
+        return devices;
+    }
+
+    /**
+     * Create the devices for a list of files, and open them
+     * @param paths The device files
+     * @return The devices
+     */
+    private static List<EvdevDevice> createDevices(List<Path> paths)
+    {
+        ArrayList<EvdevDevice> created=new ArrayList<EvdevDevice>(paths.size());
+
+        for(Path path : paths)
+        {
+            EvdevDevice device=new EvdevDevice(path, created.size());
+
+            device.open();
+            created.add(device);
+        }
+
+        return created;
+    }
+
+    /**
+     * Find the event devices under INPUT_DIRECTORY that have joystick or gamepad buttons
+     * @return The device files, in event number order
+     */
+    private static List<Path> findDevices()
+    {
+        ArrayList<Path> found=new ArrayList<Path>();
+
+        try(DirectoryStream<Path> stream=Files.newDirectoryStream(INPUT_DIRECTORY, EVENT_PREFIX + "*"))
+        {
+            for(Path path : stream)
+            {
+                if(isJoystick(path.getFileName().toString()))
+                {
+                    found.add(path);
+                }
+            }
+        }
+        catch(IOException e)
+        {
+            // no input devices on this machine
+        }
+
+        found.sort((a, b) -> Integer.compare(eventNumber(a), eventNumber(b)));
+
+        return found;
+    }
+
+    /**
+     * Return whether an event device has joystick or gamepad buttons, from its key bitmap in sysfs
+     * @param name The file name of the device
+     * @return true if the device has joystick or gamepad buttons, or if sysfs cannot say
+     */
+    private static boolean isJoystick(String name)
+    {
+        String bitmap=EvdevDevice.readSysfs(EvdevDevice.SYSFS_INPUT.resolve(name).resolve("device/capabilities/key"));
+
+        if(bitmap==null)
+        {
+            return true;
+        }
+
+        // the words are hex longs of the kernel, most significant first
+        String words[]=bitmap.split("\\s+");
+        int wordBits=EvdevDecoder.getNativeEventSize()==EvdevDecoder.EVENT_SIZE_64 ? 64 : 32;
+
+        for(int code=EvdevDecoder.BTN_JOYSTICK ; code < EvdevDecoder.BTN_JOYSTICK + EvdevDecoder.NUM_BUTTON_CODES ; ++code)
+        {
+            int word=words.length - 1 - (code / wordBits);
+
+            if((word >= 0) && (((Long.parseUnsignedLong(words[word], 16) >>> (code % wordBits)) & 1L)!=0))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Get the event number of a device file
+     * @param path The device file
+     * @return The number after EVENT_PREFIX, or Integer.MAX_VALUE if there is none
+     */
+    private static int eventNumber(Path path)
+    {
+        try
+        {
+            return Integer.parseInt(path.getFileName().toString().substring(EVENT_PREFIX.length()));
+        }
+        catch(NumberFormatException e)
+        {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+}
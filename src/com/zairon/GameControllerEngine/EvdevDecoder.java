@@ -0,0 +1,537 @@
+package com.zairon.GameControllerEngine;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes Linux evdev input_event structs into controller samples. The events are read in bulk
+ * straight out of a ByteBuffer in native order, with absolute gets, so decoding does not allocate.
+ * The events between two SYN_REPORTs make one frame; the sample only changes when a frame is
+ * complete, so a reader never sees half of a frame. Axes are normalized through the ranges in
+ * the GameControllerCaps given, and turned to the conventions of the other backends: y and r
+ * are up positive, the triggers run from 0.0 to 1.0, z is the left trigger less the right
+ * trigger and the hat is in degrees.
+ * <p>
+ * An input_event is a struct timeval followed by a 16 bit type, a 16 bit code and a 32 bit value,
+ * 24 bytes on a 64-bit kernel and 16 bytes on a 32-bit one.
+ * @author Michael Watkins
+ *
+ */
+class EvdevDecoder
+{
+    /**
+     * The size of an input_event on a 64-bit kernel
+     */
+    static final int EVENT_SIZE_64=24;
+
+    /**
+     * The size of an input_event on a 32-bit kernel
+     */
+    static final int EVENT_SIZE_32=16;
+
+    /**
+     * The event type for synchronization events
+     */
+    static final int EV_SYN=0x00;
+
+    /**
+     * The event type for keys and buttons
+     */
+    static final int EV_KEY=0x01;
+
+    /**
+     * The event type for absolute axes
+     */
+    static final int EV_ABS=0x03;
+
+    /**
+     * The synchronization code ending a frame
+     */
+    static final int SYN_REPORT=0;
+
+    /**
+     * The synchronization code saying the kernel buffer overran and events were lost
+     */
+    static final int SYN_DROPPED=3;
+
+    /**
+     * The left stick x axis
+     */
+    static final int ABS_X=0x00;
+
+    /**
+     * The left stick y axis
+     */
+    static final int ABS_Y=0x01;
+
+    /**
+     * The left trigger on most gamepads
+     */
+    static final int ABS_Z=0x02;
+
+    /**
+     * The right stick x axis
+     */
+    static final int ABS_RX=0x03;
+
+    /**
+     * The right stick y axis
+     */
+    static final int ABS_RY=0x04;
+
+    /**
+     * The right trigger on most gamepads
+     */
+    static final int ABS_RZ=0x05;
+
+    /**
+     * The throttle, used as the v axis
+     */
+    static final int ABS_THROTTLE=0x06;
+
+    /**
+     * The right trigger on gamepads that report the triggers as pedals
+     */
+    static final int ABS_GAS=0x09;
+
+    /**
+     * The left trigger on gamepads that report the triggers as pedals
+     */
+    static final int ABS_BRAKE=0x0a;
+
+    /**
+     * The hat x axis, from -1 (left) to 1 (right)
+     */
+    static final int ABS_HAT0X=0x10;
+
+    /**
+     * The hat y axis, from -1 (up) to 1 (down)
+     */
+    static final int ABS_HAT0Y=0x11;
+
+    /**
+     * The first joystick button code
+     */
+    static final int BTN_JOYSTICK=0x120;
+
+    /**
+     * The number of button codes from BTN_JOYSTICK mapped to buttons
+     */
+    static final int NUM_BUTTON_CODES=32;
+
+    /**
+     * The d-pad up button, for gamepads reporting the d-pad as buttons
+     */
+    static final int BTN_DPAD_UP=0x220;
+
+    /**
+     * The d-pad down button
+     */
+    static final int BTN_DPAD_DOWN=0x221;
+
+    /**
+     * The d-pad left button
+     */
+    static final int BTN_DPAD_LEFT=0x222;
+
+    /**
+     * The d-pad right button
+     */
+    static final int BTN_DPAD_RIGHT=0x223;
+
+    /**
+     * The point-of-view hat position when neutral, matching the XInput natives
+     */
+    static final float POV_NEUTRAL=655.35f;
+
+    /**
+     * The button number for each code from BTN_JOYSTICK. The gamepad codes come first in XInput
+     * order (A, B, X, Y, shoulders, back, start, thumbs), then the rest of the gamepad codes,
+     * then the joystick codes.
+     */
+    private static final int BUTTONS[]=new int[NUM_BUTTON_CODES];
+
+    /**
+     * The hat position in degrees, indexed by (y + 1) * 3 + (x + 1)
+     */
+    private static final float POV_TABLE[]={315.0f, 0.0f, 45.0f, 270.0f, POV_NEUTRAL, 90.0f, 225.0f, 180.0f, 135.0f};
+
+    static
+    {
+        // BTN_SOUTH, BTN_EAST, BTN_X, BTN_Y, BTN_TL, BTN_TR, BTN_SELECT, BTN_START, BTN_THUMBL, BTN_THUMBR,
+        // then BTN_MODE, BTN_C, BTN_Z, BTN_TL2, BTN_TR2 and 0x13f
+        int gamepad[]={0x130, 0x131, 0x133, 0x134, 0x136, 0x137, 0x13a, 0x13b, 0x13d, 0x13e, 0x13c, 0x132, 0x135, 0x138, 0x139, 0x13f};
+
+        for(int i=0 ; i < gamepad.length ; ++i)
+        {
+            BUTTONS[gamepad[i] - BTN_JOYSTICK]=i;
+        }
+
+        // BTN_TRIGGER through BTN_DEAD for joysticks
+        for(int i=0 ; i < 16 ; ++i)
+        {
+            BUTTONS[i]=gamepad.length + i;
+        }
+    }
+
+    /**
+     * The size of each event
+     */
+    private final int eventSize;
+
+    /**
+     * The offset of the type in an event, after the timeval
+     */
+    private final int typeOffset;
+
+    /**
+     * The capabilities giving the axis ranges
+     */
+    private final GameControllerCaps caps;
+
+    /**
+     * The raw absolute axis values, up to ABS_HAT0Y, changed as events arrive
+     */
+    private final int axes[]=new int[ABS_HAT0Y + 1];
+
+    /**
+     * The buttons pressed, changed as events arrive
+     */
+    private int buttons;
+
+    /**
+     * The d-pad buttons pressed, one bit for each of BTN_DPAD_UP to BTN_DPAD_RIGHT
+     */
+    private int dpad;
+
+    /**
+     * Whether the triggers are reported as ABS_BRAKE and ABS_GAS instead of ABS_Z and ABS_RZ
+     */
+    private boolean pedalTriggers;
+
+    /**
+     * Whether events are being thrown away after a SYN_DROPPED
+     */
+    private boolean dropping;
+
+    /**
+     * The number of SYN_DROPPED events seen
+     */
+    private long droppedCount;
+
+    /**
+     * The number of complete frames decoded
+     */
+    private long frameCount;
+
+    /**
+     * The time of the last complete frame, in microseconds from the event timestamps
+     */
+    private long frameTime;
+
+    /**
+     * The x-axis position of the last complete frame
+     */
+    private float x;
+
+    /**
+     * The y-axis position of the last complete frame
+     */
+    private float y;
+
+    /**
+     * The z-axis position of the last complete frame
+     */
+    private float z;
+
+    /**
+     * The left trigger position of the last complete frame
+     */
+    private float leftTrigger;
+
+    /**
+     * The right trigger position of the last complete frame
+     */
+    private float rightTrigger;
+
+    /**
+     * The r-axis position of the last complete frame
+     */
+    private float r;
+
+    /**
+     * The u-axis position of the last complete frame
+     */
+    private float u;
+
+    /**
+     * The v-axis position of the last complete frame
+     */
+    private float v;
+
+    /**
+     * The hat position of the last complete frame
+     */
+    private float pov=POV_NEUTRAL;
+
+    /**
+     * The button map of the last complete frame
+     */
+    private int buttonMap;
+
+    /**
+     * Construct the decoder
+     * @param eventSize The size of an input_event, EVENT_SIZE_64 or EVENT_SIZE_32
+     * @param caps The capabilities giving the axis ranges
+     */
+    EvdevDecoder(int eventSize, GameControllerCaps caps)
+    {
+        if((eventSize!=EVENT_SIZE_64) && (eventSize!=EVENT_SIZE_32))
+        {
+            throw new IllegalArgumentException("Cannot decode events of " + eventSize + " bytes\n");
+        }
+
+        this.eventSize=eventSize;
+        this.typeOffset=eventSize - 8;
+        this.caps=caps;
+
+        // start with the sticks centered in their ranges
+        axes[ABS_X]=center(caps.getMinX(), caps.getMaxX());
+        axes[ABS_Y]=center(caps.getMinY(), caps.getMaxY());
+        axes[ABS_RX]=center(caps.getMinU(), caps.getMaxU());
+        axes[ABS_RY]=center(caps.getMinR(), caps.getMaxR());
+        axes[ABS_THROTTLE]=center(caps.getMinV(), caps.getMaxV());
+        commit();
+    }
+
+    /**
+     * Get the size of an input_event for the kernel this runs on
+     * @return The size of an input_event
+     */
+    static int getNativeEventSize()
+    {
+        return "32".equals(System.getProperty("sun.arch.data.model")) ? EVENT_SIZE_32 : EVENT_SIZE_64;
+    }
+
+    /**
+     * Decode every whole event between the position and the limit of the buffer. The position is
+     * left at the first event not decoded, so a part of an event can be compacted and completed
+     * by the next read.
+     * @param buffer The buffer of events, in native order
+     * @return The number of frames completed
+     */
+    int decode(ByteBuffer buffer)
+    {
+        int position=buffer.position();
+        int limit=buffer.limit();
+        int frames=0;
+
+        for( ; position + eventSize <= limit ; position+=eventSize)
+        {
+            int type=buffer.getShort(position + typeOffset) & 0xFFFF;
+            int code=buffer.getShort(position + typeOffset + 2) & 0xFFFF;
+            int value=buffer.getInt(position + typeOffset + 4);
+
+            if(type==EV_SYN)
+            {
+                if(code==SYN_REPORT)
+                {
+                    if(dropping)
+                    {
+                        // the frame after a drop is incomplete, so start again from the next one
+                        dropping=false;
+                    }
+                    else
+                    {
+                        frameTime=readTime(buffer, position);
+                        commit();
+                        ++frames;
+                    }
+                }
+                else if(code==SYN_DROPPED)
+                {
+                    dropping=true;
+                    ++droppedCount;
+                }
+            }
+            else if(dropping)
+            {
+                continue;
+            }
+            else if(type==EV_KEY)
+            {
+                key(code, value!=0);
+            }
+            else if((type==EV_ABS) && (code < axes.length))
+            {
+                axes[code]=value;
+
+                if((code==ABS_GAS) || (code==ABS_BRAKE))
+                {
+                    pedalTriggers=true;
+                }
+            }
+        }
+
+        buffer.position(position);
+        frameCount+=frames;
+
+        return frames;
+    }
+
+    /**
+     * Get the number of complete frames decoded
+     * @return The number of frames
+     */
+    long getFrameCount()
+    {
+        return frameCount;
+    }
+
+    /**
+     * Get the number of SYN_DROPPED events seen, each meaning the kernel lost events
+     * @return The number of drops
+     */
+    long getDroppedCount()
+    {
+        return droppedCount;
+    }
+
+    /**
+     * Get the time of the last complete frame
+     * @return The time in microseconds, from the kernel event timestamps
+     */
+    long getFrameTime()
+    {
+        return frameTime;
+    }
+
+    /**
+     * Copy the last complete frame into a state
+     * @param state The state to copy into
+     */
+    void copyTo(GameControllerState state)
+    {
+        state.setAxes(x, y, z, r, u, v);
+        state.setTriggers(leftTrigger, rightTrigger);
+        state.setPOV(pov);
+        state.setButtonMap(buttonMap);
+    }
+
+    /**
+     * Copy the last complete frame into a record of a packed state buffer
+     * @param buffer The buffer to copy into
+     * @param index The index of the record
+     */
+    void copyTo(GameControllerStateBuffer buffer, int index)
+    {
+        buffer.put(index, true, buttonMap, x, y, z, leftTrigger, rightTrigger, r, u, v, pov);
+    }
+
+    /**
+     * Apply a key event
+     * @param code The key code
+     * @param pressed true if pressed or repeating, false if released
+     */
+    private void key(int code, boolean pressed)
+    {
+        if((code >= BTN_JOYSTICK) && (code < BTN_JOYSTICK + NUM_BUTTON_CODES))
+        {
+            int bit=1 << BUTTONS[code - BTN_JOYSTICK];
+
+            buttons=pressed ? (buttons | bit) : (buttons & ~bit);
+        }
+        else if((code >= BTN_DPAD_UP) && (code <= BTN_DPAD_RIGHT))
+        {
+            int bit=1 << (code - BTN_DPAD_UP);
+
+            dpad=pressed ? (dpad | bit) : (dpad & ~bit);
+        }
+    }
+
+    /**
+     * Turn the raw values into the sample for a complete frame
+     */
+    private void commit()
+    {
+        x=normalize(axes[ABS_X], caps.getMinX(), caps.getMaxX());
+        // evdev is down positive, the other backends are up positive
+        y=-normalize(axes[ABS_Y], caps.getMinY(), caps.getMaxY());
+        u=normalize(axes[ABS_RX], caps.getMinU(), caps.getMaxU());
+        r=-normalize(axes[ABS_RY], caps.getMinR(), caps.getMaxR());
+        // a missing v axis reads -1.0, like the XInput natives
+        v=normalize(axes[ABS_THROTTLE], caps.getMinV(), caps.getMaxV());
+
+        leftTrigger=trigger(axes[pedalTriggers ? ABS_BRAKE : ABS_Z]);
+        rightTrigger=trigger(axes[pedalTriggers ? ABS_GAS : ABS_RZ]);
+        z=leftTrigger - rightTrigger;
+
+        // the hat can come as axes or as d-pad buttons
+        int hatX=Integer.signum(axes[ABS_HAT0X] + ((dpad >>> 3) & 1) - ((dpad >>> 2) & 1));
+        int hatY=Integer.signum(axes[ABS_HAT0Y] + ((dpad >>> 1) & 1) - (dpad & 1));
+        pov=POV_TABLE[(hatY + 1) * 3 + (hatX + 1)];
+
+        buttonMap=buttons;
+    }
+
+    /**
+     * Scale a raw axis value to -1.0 to 1.0 through its range
+     * @param value The raw value
+     * @param min The minimum of the range
+     * @param max The maximum of the range
+     * @return The scaled value, or -1.0 for an empty range
+     */
+    private static float normalize(int value, float min, float max)
+    {
+        if(max <= min)
+        {
+            return -1.0f;
+        }
+
+        float scaled=((value - min) * 2.0f) / (max - min) - 1.0f;
+
+        return Math.max(-1.0f, Math.min(1.0f, scaled));
+    }
+
+    /**
+     * Scale a raw trigger value to 0.0 to 1.0. The capabilities model the triggers as the two
+     * halves of the z-axis, so the trigger range is up to the maximum of the z-axis.
+     * @param value The raw value
+     * @return The scaled value
+     */
+    private float trigger(int value)
+    {
+        float max=caps.getMaxZ();
+
+        return (max > 0.0f) ? Math.max(0.0f, Math.min(1.0f, value / max)) : 0.0f;
+    }
+
+    /**
+     * Get the raw value at the middle of a range
+     * @param min The minimum of the range
+     * @param max The maximum of the range
+     * @return The middle of the range, rounded
+     */
+    private static int center(float min, float max)
+    {
+        return Math.round((min + max) * 0.5f);
+    }
+
+    /**
+     * Read the timestamp of an event
+     * @param buffer The buffer of events
+     * @param position The position of the event
+     * @return The timestamp in microseconds
+     */
+    private long readTime(ByteBuffer buffer, int position)
+    {
+        if(eventSize==EVENT_SIZE_64)
+        {
+            return buffer.getLong(position) * 1000000L + buffer.getLong(position + 8);
+        }
+        else
+        {
+            return (buffer.getInt(position) & 0xFFFFFFFFL) * 1000000L + buffer.getInt(position + 4);
+        }
+    }
+
+}
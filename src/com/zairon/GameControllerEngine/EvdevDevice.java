@@ -0,0 +1,297 @@
+package com.zairon.GameControllerEngine;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One evdev device file read by the EvdevControllerBackend. A reader thread blocks reading the
+ * file through a FileChannel and hands each read to the EvdevStream to decode.
+ * <p>
+ * The file can be a device under /dev/input, or a regular file or FIFO of recorded input_events.
+ * The file is opened on the reader thread, since opening a FIFO waits for a writer. A device
+ * that fails a read has been unplugged, and is disconnected until it opens again. The end of
+ * a regular file or FIFO ends the recording, and the device keeps its last frame.
+ * @author Michael Watkins
+ *
+ */
+class EvdevDevice extends EvdevStream
+{
+    /**
+     * The longest time open waits for the file to open, in milliseconds
+     */
+    static final long OPEN_WAIT_MILLIS=100L;
+
+    /**
+     * The directory in sysfs describing the input devices
+     */
+    static final Path SYSFS_INPUT=Path.of("/sys/class/input");
+
+    /**
+     * The device file
+     */
+    private final Path path;
+
+    /**
+     * The open file, or null if closed or still opening
+     */
+    private FileChannel channel;
+
+    /**
+     * The reader thread, or null if never opened or closed
+     */
+    private Thread thread;
+
+    /**
+     * The number of opens and closes, so a reader thread can tell it was closed while opening
+     */
+    private int generation;
+
+    /**
+     * Construct the device. The file is not opened until open is called.
+     * @param path The device file
+     * @param id The id of the slot, for the name of the device
+     */
+    EvdevDevice(Path path, int id)
+    {
+        this(path, id, SYSFS_INPUT.resolve(path.getFileName().toString()).resolve("device"));
+    }
+
+    /**
+     * Construct the device from its sysfs entry
+     * @param path The device file
+     * @param id The id of the slot, for the name of the device
+     * @param sysfs The sysfs directory of the device, which a recording does not have
+     */
+    private EvdevDevice(Path path, int id, Path sysfs)
+    {
+        super(deviceName(path, sysfs), id, parseHex(readSysfs(sysfs.resolve("id/vendor"))), parseHex(readSysfs(sysfs.resolve("id/product"))));
+
+        this.path=path;
+    }
+
+    /**
+     * Get the device file
+     * @return The path of the device file
+     */
+    Path getPath()
+    {
+        return path;
+    }
+
+    /**
+     * Start the reader thread opening the file, if the device is not open or opening, and wait
+     * up to OPEN_WAIT_MILLIS for it. Opening a FIFO waits for a writer, so a FIFO with no writer
+     * yet is left opening, and connects when the writer arrives.
+     * @return true if the device is open, false if the file cannot be opened or is still opening
+     */
+    synchronized boolean open()
+    {
+        if(isConnected())
+        {
+            return true;
+        }
+
+        if((thread==null) || !thread.isAlive())
+        {
+            // drop the file left by a failed read
+            closeChannel();
+
+            final int started=++generation;
+
+            thread=new Thread(() -> run(started), "EvdevReader-" + path.getFileName());
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        long deadline=System.nanoTime() + OPEN_WAIT_MILLIS * 1000000L;
+        long remaining;
+
+        while(!isConnected() && thread.isAlive() && ((remaining=deadline - System.nanoTime()) > 0))
+        {
+            try
+            {
+                wait(Math.max(1L, remaining / 1000000L));
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        return isConnected();
+    }
+
+    /**
+     * Close the file and stop the reader thread
+     */
+    synchronized void close()
+    {
+        disconnect(null);
+        // a thread still opening the file sees it is stale and closes the file itself
+        ++generation;
+        closeChannel();
+        thread=null;
+    }
+
+    /**
+     * The reader loop, opening the file and then reading it until it ends or fails
+     * @param started The generation of the open that started this thread
+     */
+    private void run(int started)
+    {
+        FileChannel reading;
+
+        try
+        {
+            reading=FileChannel.open(path, StandardOpenOption.READ);
+        }
+        catch(IOException e)
+        {
+            disconnect(e);
+
+            synchronized(this)
+            {
+                notifyAll();
+            }
+
+            return;
+        }
+
+        synchronized(this)
+        {
+            if(started!=generation)
+            {
+                // closed while opening
+                closeQuietly(reading);
+                return;
+            }
+
+            channel=reading;
+            connect();
+            notifyAll();
+        }
+
+        try
+        {
+            while(read(reading) >= 0)
+            {
+                // keep reading until the end of the file
+            }
+
+            // the end of a recording, so keep the last frame
+        }
+        catch(ClosedChannelException e)
+        {
+            // closed by close
+        }
+        catch(IOException e)
+        {
+            // the device has gone
+            disconnect(e);
+        }
+    }
+
+    /**
+     * Close the open file, which stops the reader thread, and wait for the thread so it is done
+     * with the buffer. A thread still opening the file has no file to close and is left to finish.
+     */
+    private void closeChannel()
+    {
+        if(channel!=null)
+        {
+            closeQuietly(channel);
+
+            boolean interrupted=false;
+
+            while(thread.isAlive())
+            {
+                try
+                {
+                    thread.join();
+                }
+                catch(InterruptedException e)
+                {
+                    interrupted=true;
+                }
+            }
+
+            if(interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            channel=null;
+        }
+    }
+
+    /**
+     * Close a file, ignoring errors
+     * @param file The file to close
+     */
+    private static void closeQuietly(FileChannel file)
+    {
+        try
+        {
+            file.close();
+        }
+        catch(IOException e)
+        {
+            // nothing more to do with it
+        }
+    }
+
+    /**
+     * Get the name of a device from sysfs
+     * @param path The device file
+     * @param sysfs The sysfs directory of the device
+     * @return The name of the device, or the file name if it has no sysfs entry
+     */
+    private static String deviceName(Path path, Path sysfs)
+    {
+        String name=readSysfs(sysfs.resolve("name"));
+
+        // a recording has no sysfs entry, so go by the file
+        return (name!=null) ? name : path.getFileName().toString();
+    }
+
+    /**
+     * Read a line from a sysfs file
+     * @param file The file
+     * @return The trimmed contents, or null if the file cannot be read
+     */
+    static String readSysfs(Path file)
+    {
+        try
+        {
+            return new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+        }
+        catch(IOException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Parse a hex id from sysfs
+     * @param text The text, or null
+     * @return The value, or zero if missing or not hex
+     */
+    private static long parseHex(String text)
+    {
+        try
+        {
+            return (text!=null) ? (Long.parseLong(text, 16) & 0xFFFFL) : 0L;
+        }
+        catch(NumberFormatException e)
+        {
+            return 0L;
+        }
+    }
+
+}
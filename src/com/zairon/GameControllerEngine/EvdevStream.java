@@ -0,0 +1,344 @@
+package com.zairon.GameControllerEngine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A stream of evdev input_events for one controller, and the last complete frame decoded from it.
+ * Whatever reads the stream hands each read to the stream, which decodes it as a batch under the
+ * write side of a sequence lock. Polling copies the last complete frame under an optimistic read,
+ * the same as GameControllerPublisher, so polling never blocks on the reader. The events are read
+ * into a direct ByteBuffer kept for the life of the stream. A thread polling only this stream can
+ * instead wait for each new frame with awaitState; that waits on a ReentrantLock rather than a
+ * monitor, so a virtual thread waiting does not hold on to its carrier thread.
+ * @author Michael Watkins
+ *
+ */
+class EvdevStream
+{
+    /**
+     * The number of events read at once
+     */
+    static final int EVENTS_PER_READ=64;
+
+    /**
+     * The capabilities of the device
+     */
+    private final GameControllerCaps caps;
+
+    /**
+     * The identity of the device, from its vendor and product ids and its name
+     */
+    private final long identity;
+
+    /**
+     * The buffer the events are read into, kept from read to read
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The decoder holding the last complete frame
+     */
+    private final EvdevDecoder decoder;
+
+    /**
+     * The sequence lock guarding the decoder
+     */
+    private final StampedLock lock=new StampedLock();
+
+    /**
+     * The lock for waiting on new frames
+     */
+    private final ReentrantLock arrivalLock=new ReentrantLock();
+
+    /**
+     * Signalled when frames arrive or the stream disconnects
+     */
+    private final Condition arrived=arrivalLock.newCondition();
+
+    /**
+     * The number of threads waiting on arrived, so the reader only signals when someone is waiting
+     */
+    private volatile int waiting;
+
+    /**
+     * The frame count when awaitState last returned, only used by the thread waiting
+     */
+    private long awaited;
+
+    /**
+     * Whether the stream is open and reading
+     */
+    private volatile boolean connected;
+
+    /**
+     * The error that disconnected the stream, or null
+     */
+    private volatile IOException failure;
+
+    /**
+     * Construct the stream
+     * @param name The name of the device
+     * @param id The id of the slot, for the name in the capabilities
+     * @param vendor The vendor id of the device, or zero if not known
+     * @param product The product id of the device, or zero if not known
+     */
+    EvdevStream(String name, int id, long vendor, long product)
+    {
+        // the name carries the slot number, like the names from the natives
+        this.caps=GameControllerCaps.createGamepadCaps(name + id);
+        // the high bit keeps the identity from being NO_IDENTITY
+        this.identity=Long.MIN_VALUE | ((vendor & 0xFFFFL) << 48) | ((product & 0xFFFFL) << 32) | (name.hashCode() & 0xFFFFFFFFL);
+        this.buffer=ByteBuffer.allocateDirect(EVENTS_PER_READ * EvdevDecoder.getNativeEventSize()).order(ByteOrder.nativeOrder());
+        this.decoder=new EvdevDecoder(EvdevDecoder.getNativeEventSize(), caps);
+    }
+
+    /**
+     * Get the capabilities of the device
+     * @return The capabilities
+     */
+    GameControllerCaps getCaps()
+    {
+        return caps;
+    }
+
+    /**
+     * Get the identity of the device
+     * @return The identity, or NO_IDENTITY if not connected
+     */
+    long getIdentity()
+    {
+        return connected ? identity : ControllerBackend.NO_IDENTITY;
+    }
+
+    /**
+     * Return whether the stream is open and reading
+     * @return true if connected, false otherwise
+     */
+    boolean isConnected()
+    {
+        return connected;
+    }
+
+    /**
+     * Mark the stream connected, throwing away any part of an event left from before
+     */
+    void connect()
+    {
+        buffer.clear();
+        failure=null;
+        connected=true;
+    }
+
+    /**
+     * Mark the stream disconnected
+     * @param failure The error that disconnected it, or null if closed
+     */
+    void disconnect(IOException failure)
+    {
+        this.failure=failure;
+        connected=false;
+        signal();
+    }
+
+    /**
+     * Get the error that disconnected the stream
+     * @return The error, or null if the stream has not failed
+     */
+    IOException getFailure()
+    {
+        return failure;
+    }
+
+    /**
+     * Get the number of complete frames read
+     * @return The number of frames
+     */
+    long getFrameCount()
+    {
+        while(true)
+        {
+            long stamp=lock.tryOptimisticRead();
+            long count=decoder.getFrameCount();
+
+            if((stamp!=0) && lock.validate(stamp))
+            {
+                return count;
+            }
+
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Read from a channel once and decode what was read. Only one thread may read a stream.
+     * @param channel The channel to read
+     * @return The number of bytes read, zero if a non-blocking channel had nothing, or -1 at the end of the stream
+     * @throws IOException if the read fails
+     */
+    int read(ReadableByteChannel channel) throws IOException
+    {
+        int count=channel.read(buffer);
+
+        if(count > 0)
+        {
+            buffer.flip();
+
+            long stamp=lock.writeLock();
+
+            try
+            {
+                decoder.decode(buffer);
+            }
+            finally
+            {
+                lock.unlockWrite(stamp);
+            }
+
+            // keep any part of an event for the next read
+            buffer.compact();
+            signal();
+        }
+
+        return count;
+    }
+
+    /**
+     * Copy the last complete frame into a state
+     * @param state The state to copy into
+     * @return true if connected, false otherwise
+     */
+    boolean readState(GameControllerState state)
+    {
+        if(!connected)
+        {
+            state.setConnected(false);
+            return false;
+        }
+
+        while(true)
+        {
+            long stamp=lock.tryOptimisticRead();
+
+            // a zero stamp means a batch is being decoded
+            if(stamp!=0)
+            {
+                decoder.copyTo(state);
+
+                if(lock.validate(stamp))
+                {
+                    break;
+                }
+            }
+
+            Thread.onSpinWait();
+        }
+
+        state.setConnected(true);
+
+        return true;
+    }
+
+    /**
+     * Wait for a complete frame newer than the one this returned last time, then copy the last
+     * complete frame into a state. Only one thread may wait on a stream.
+     * @param state The state to copy into
+     * @param timeout The longest time to wait in nanoseconds, after which the frame is copied anyway
+     * @return true if connected, false otherwise
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean awaitState(GameControllerState state, long timeout) throws InterruptedException
+    {
+        long remaining=timeout;
+
+        if((remaining > 0) && (getFrameCount()==awaited))
+        {
+            arrivalLock.lock();
+
+            try
+            {
+                // count this thread before checking again, so a frame arriving now signals it
+                ++waiting;
+
+                while((remaining > 0) && (getFrameCount()==awaited) && connected)
+                {
+                    remaining=arrived.awaitNanos(remaining);
+                }
+            }
+            finally
+            {
+                --waiting;
+                arrivalLock.unlock();
+            }
+
+            if((remaining > 0) && !connected)
+            {
+                // nothing will arrive from a closed stream, so wait out the time instead of spinning
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            }
+        }
+
+        awaited=getFrameCount();
+
+        return readState(state);
+    }
+
+    /**
+     * Wake the thread waiting for a frame, if there is one
+     */
+    private void signal()
+    {
+        if(waiting > 0)
+        {
+            arrivalLock.lock();
+
+            try
+            {
+                arrived.signalAll();
+            }
+            finally
+            {
+                arrivalLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Copy the last complete frame into a record of a packed state buffer
+     * @param states The buffer to copy into
+     * @param index The index of the record
+     * @return true if connected, false otherwise
+     */
+    boolean readState(GameControllerStateBuffer states, int index)
+    {
+        if(!connected)
+        {
+            states.putDisconnected(index);
+            return false;
+        }
+
+        while(true)
+        {
+            long stamp=lock.tryOptimisticRead();
+
+            if(stamp!=0)
+            {
+                decoder.copyTo(states, index);
+
+                if(lock.validate(stamp))
+                {
+                    return true;
+                }
+            }
+
+            Thread.onSpinWait();
+        }
+    }
+
+}
@@ -0,0 +1,281 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One subscriber to a SnapshotFlow or an InputEventFlow. The subscriber is only ever called from
+ * a drain task on the executor of the publisher, never from the polling thread, and the drain
+ * tasks for one subscription never overlap, so the subscriber sees its signals one at a time.
+ * The polling thread only stores the item and signals; a drain task is started when the first
+ * signal comes in and keeps going while more arrive. Items are delivered only while the
+ * subscriber has requested them; what happens to items while it has not is up to the publisher.
+ * @author Michael Watkins
+ *
+ * @param <T> The type of the items
+ */
+abstract class FlowSubscription<T> implements Flow.Subscription, Runnable
+{
+    /**
+     * The subscriber
+     */
+    private final Flow.Subscriber<? super T> subscriber;
+
+    /**
+     * The executor the drain tasks run on
+     */
+    private final Executor executor;
+
+    /**
+     * The number of items requested and not yet delivered, Long.MAX_VALUE for no limit
+     */
+    private final AtomicLong requested=new AtomicLong();
+
+    /**
+     * The number of signals since the drain task last looked, zero when no drain task is running
+     */
+    private final AtomicInteger work=new AtomicInteger();
+
+    /**
+     * Whether onSubscribe has been called, only used by the drain task
+     */
+    private boolean subscribed;
+
+    /**
+     * Whether the subscription has been cancelled or has finished
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * Whether the publisher has no more items
+     */
+    private volatile boolean completed;
+
+    /**
+     * The error to send the subscriber instead of more items, or null
+     */
+    private volatile Throwable error;
+
+    /**
+     * Construct the subscription. Call signal to send onSubscribe.
+     * @param subscriber The subscriber
+     * @param executor The executor the drain tasks run on
+     */
+    FlowSubscription(Flow.Subscriber<? super T> subscriber, Executor executor)
+    {
+        this.subscriber=subscriber;
+        this.executor=executor;
+    }
+
+    @Override
+    public void request(long n)
+    {
+        if(n <= 0)
+        {
+            fail(new IllegalArgumentException("Cannot request " + n + " items, the request must be positive\n"));
+            return;
+        }
+
+        long current;
+        long next;
+
+        do
+        {
+            current=requested.get();
+            // requests add up, stopping at no limit
+            next=current + n;
+            next=(next < 0) ? Long.MAX_VALUE : next;
+        }
+        while(!requested.compareAndSet(current, next));
+
+        signal();
+    }
+
+    @Override
+    public void cancel()
+    {
+        if(!cancelled)
+        {
+            cancelled=true;
+            detach();
+        }
+    }
+
+    /**
+     * Return whether the subscription has been cancelled or has finished
+     * @return true if cancelled, false otherwise
+     */
+    boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    /**
+     * Return whether the subscriber has asked for items it has not had yet. The publisher only
+     * needs to signal when it has, since a request signals by itself.
+     * @return true if items are wanted, false otherwise
+     */
+    boolean isRequested()
+    {
+        return requested.get() > 0;
+    }
+
+    /**
+     * Tell the subscription the publisher has no more items. The subscriber gets onComplete
+     * after the items already waiting.
+     */
+    void complete()
+    {
+        completed=true;
+        signal();
+    }
+
+    /**
+     * Tell the subscriber about an error instead of any more items
+     * @param error The error
+     */
+    void fail(Throwable error)
+    {
+        this.error=error;
+        signal();
+    }
+
+    /**
+     * Start a drain task if one is not already running. Called by the polling thread after
+     * storing an item, so this does not block.
+     */
+    void signal()
+    {
+        if(work.getAndIncrement()==0)
+        {
+            try
+            {
+                executor.execute(this);
+            }
+            catch(RejectedExecutionException e)
+            {
+                // nothing can be delivered without the executor
+                cancel();
+            }
+        }
+    }
+
+    /**
+     * The drain task, delivering items while there are items and requests
+     */
+    @Override
+    public void run()
+    {
+        int missed=1;
+
+        do
+        {
+            drain();
+            missed=work.addAndGet(-missed);
+        }
+        while(missed!=0);
+    }
+
+    /**
+     * Deliver what can be delivered now
+     */
+    private void drain()
+    {
+        if(!subscribed)
+        {
+            subscribed=true;
+
+            if(!call(() -> subscriber.onSubscribe(this)))
+            {
+                return;
+            }
+        }
+
+        while(!cancelled)
+        {
+            Throwable error=this.error;
+
+            if(error!=null)
+            {
+                cancel();
+                subscriber.onError(error);
+                return;
+            }
+
+            // look at completed before looking for items, so an item stored before complete is never lost
+            boolean done=completed;
+
+            if(!hasNext())
+            {
+                if(done)
+                {
+                    cancel();
+                    subscriber.onComplete();
+                }
+
+                return;
+            }
+
+            long wanted=requested.get();
+
+            if(wanted==0)
+            {
+                // the items wait, or are conflated, until the subscriber asks for more
+                return;
+            }
+
+            T item=next();
+
+            if(wanted!=Long.MAX_VALUE)
+            {
+                requested.decrementAndGet();
+            }
+
+            if(!call(() -> subscriber.onNext(item)))
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Call the subscriber, cancelling and sending onError if it throws
+     * @param call The call to make
+     * @return true if the call returned, false if it threw
+     */
+    private boolean call(Runnable call)
+    {
+        try
+        {
+            call.run();
+            return true;
+        }
+        catch(RuntimeException e)
+        {
+            cancel();
+            subscriber.onError(e);
+            return false;
+        }
+    }
+
+    /**
+     * Take the next item to deliver. Only called by the drain task.
+     * @return The item, or null if there is none waiting
+     */
+    abstract T next();
+
+    /**
+     * Return whether there are items waiting. Only called by the drain task.
+     * @return true if there is an item waiting, false otherwise
+     */
+    abstract boolean hasNext();
+
+    /**
+     * Stop the publisher from storing items for this subscription
+     */
+    abstract void detach();
+
+}
@@ -1,5 +1,9 @@
 package com.zairon.GameControllerEngine;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
 public abstract class GameController
 {
     /**
@@ -31,6 +35,11 @@ public abstract class GameController
      * The state for the controller
      */
     protected GameControllerState state;
+
+    /**
+     * The backend the controller reads its state from
+     */
+    protected ControllerBackend backend;
     
     /**
      * The game controller x/y point
@@ -67,6 +76,82 @@ public abstract class GameController
      */
     protected GameControllerPoint povPoint=new GameControllerPoint(0.0f);
 
+    /**
+     * Bit for the left trigger in the trigger maps
+     */
+    private static final int LEFT_TRIGGER_BIT=1;
+
+    /**
+     * Bit for the right trigger in the trigger maps
+     */
+    private static final int RIGHT_TRIGGER_BIT=2;
+
+    /**
+     * Which triggers are pressed, since the triggers are axes and not in the button map
+     */
+    private int triggerMap;
+
+    /**
+     * Which triggers were pressed in the sample before this one
+     */
+    private int previousTriggerMap;
+
+    /**
+     * The publisher for samples to other threads, or null if not publishing
+     */
+    private volatile GameControllerPublisher publisher;
+
+    /**
+     * The Flow publisher of the samples, or null if there is no flow
+     */
+    private volatile SnapshotFlow flow;
+
+    /**
+     * The latency histograms, or null if latency is not recorded
+     */
+    private volatile ControllerLatency latency;
+
+    /**
+     * The poll metrics, or null if they are not counted
+     */
+    private volatile ControllerMetrics metrics;
+
+    /**
+     * When the read of the sample being polled started, or zero if not timed, only used by the polling thread
+     */
+    private long readStart;
+
+    /**
+     * Whether the controller was connected at the last publish, written only by the polling thread
+     * and read by the hotplug monitor
+     */
+    private volatile boolean publishedConnected;
+
+    /**
+     * Whether the controller has been put back into polling by a hotplug monitor and not polled since
+     */
+    private volatile boolean awaitingPoll;
+
+    /**
+     * The detector turning changed samples into events, or null if not sending events
+     */
+    private volatile InputEventDetector eventDetector;
+
+    /**
+     * The recorder for the samples, or null if not recording
+     */
+    private volatile InputRecorder recorder;
+
+    /**
+     * The button remapping, or null to leave the buttons alone
+     */
+    private volatile ButtonMapping buttonMapping;
+
+    /**
+     * Whether a hotplug monitor has taken the controller out of polling while it is disconnected
+     */
+    private volatile boolean parked;
+
     /**
      * Return whether the controller is connected
      * @return true if connected, false otherwise
@@ -90,6 +175,236 @@ public abstract class GameController
      */
     public abstract boolean poll();
 
+    /**
+     * Wait for a new sample and poll it, for a thread that does nothing but poll this controller.
+     * Controllers over a backend that pushes its input return as soon as a new sample arrives.
+     * The default implementation waits out the whole time and then polls.
+     * @param timeout The longest time to wait in nanoseconds, after which the controller is polled anyway
+     * @return true if the controller is connected, false otherwise.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitPoll(long timeout) throws InterruptedException
+    {
+        if(timeout > 0)
+        {
+            TimeUnit.NANOSECONDS.sleep(timeout);
+        }
+
+        return poll();
+    }
+
+    /**
+     * Poll the game controller from a record that was already read into a packed state buffer.
+     * Used by GameControllerBatch to finish a batched read.
+     * @param view The view of the record for this controller
+     * @param readStart When the batch started reading the backend, in System.nanoTime units
+     * @param readTime When the backend returned the batch, in System.nanoTime units
+     * @return true if the controller is connected, false otherwise.
+     */
+    boolean poll(GameControllerStateView view, long readStart, long readTime)
+    {
+        latch();
+        stampRead(readStart, readTime);
+        
+        if(!view.isConnected())
+        {
+            // the rest of the record is not filled in when disconnected
+            state.setConnected(false);
+            publish();
+            return false;
+        }
+        
+        state.read(view);
+        update();
+        publish();
+        
+        return true;
+    }
+
+    /**
+     * Publish the current sample to other threads if publishing is enabled, send events
+     * for what changed if an event ring is set, and record the sample if a recorder is
+     * attached. Call this at the end of each poll, after update.
+     */
+    protected void publish()
+    {
+        GameControllerPublisher publisher=this.publisher;
+        SnapshotFlow flow=this.flow;
+        InputEventDetector eventDetector=this.eventDetector;
+        InputRecorder recorder=this.recorder;
+        ControllerLatency latency=this.latency;
+        ControllerMetrics metrics=this.metrics;
+        long commitTime;
+        
+        if((latency!=null) || (metrics!=null) || (eventDetector!=null) || (recorder!=null))
+        {
+            commitTime=System.nanoTime();
+            
+            // controllers that are never read, like the null controller, have no read time
+            if((latency!=null) && (state.getReadTime()!=0))
+            {
+                latency.record(LatencyStage.COMMIT, commitTime - state.getReadTime());
+            }
+            
+            if(metrics!=null)
+            {
+                metrics.record(state.isConnected(), (readStart!=0) ? commitTime - readStart : -1L);
+            }
+        }
+        else
+        {
+            // nothing needs the time between read and commit, so save the clock read on the poll path
+            commitTime=state.getReadTime();
+        }
+        
+        state.setCommitTime(commitTime);
+        
+        if(publisher!=null)
+        {
+            publisher.publish(this);
+        }
+        
+        if(flow!=null)
+        {
+            flow.publish(this);
+        }
+        
+        if(eventDetector!=null)
+        {
+            eventDetector.detect(this, commitTime);
+        }
+        
+        if(state.isConnected()!=publishedConnected)
+        {
+            publishedConnected=state.isConnected();
+            
+            ConnectionEvent connectionEvent=new ConnectionEvent();
+            
+            if(connectionEvent.isEnabled())
+            {
+                connectionEvent.set(this, publishedConnected);
+                connectionEvent.commit();
+            }
+        }
+        
+        // cleared after the connection is published, so the hotplug monitor never sees neither
+        if(awaitingPoll)
+        {
+            awaitingPoll=false;
+        }
+        
+        if(recorder!=null)
+        {
+            recorder.record(state, commitTime);
+        }
+    }
+
+    /**
+     * Get the start time for a backend read, to pass to stampRead. The clock is only read when
+     * latency or metrics are being recorded.
+     * @return The time in System.nanoTime units, or zero if neither is recorded
+     */
+    protected long startRead()
+    {
+        return ((latency!=null) || (metrics!=null)) ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Stamp the sample with when the backend returned it, and record how long the read took.
+     * Call this right after the backend read.
+     * @param readStart When the read started, from startRead, or zero to not record the read
+     * @param readTime When the read returned, in System.nanoTime units
+     */
+    protected void stampRead(long readStart, long readTime)
+    {
+        ControllerLatency latency=this.latency;
+        
+        this.readStart=readStart;
+        state.setReadTime(readTime);
+        
+        if((latency!=null) && (readStart!=0))
+        {
+            latency.record(LatencyStage.READ, readTime - readStart);
+        }
+    }
+
+    /**
+     * Stamp the sample with when it was read, without recording a read time. Used for reads
+     * whose time is not the cost of the read, such as waiting for the backend or playing back a recording.
+     * @param readTime When the read returned, in System.nanoTime units
+     */
+    protected void stampRead(long readTime)
+    {
+        // the poll duration then only counts the work after the read
+        this.readStart=readTime;
+        state.setReadTime(readTime);
+    }
+
+    /**
+     * Stamp a snapshot with when it was delivered to a consumer, and record how old the sample was.
+     * Used by snapshot and SnapshotFlow.
+     * @param snapshot The snapshot delivered
+     */
+    void stampDelivery(GameControllerSnapshot snapshot)
+    {
+        ControllerLatency latency=this.latency;
+        long deliveryTime=System.nanoTime();
+        
+        snapshot.setDeliveryTime(deliveryTime);
+        
+        if((latency!=null) && (snapshot.getCommitTime()!=0))
+        {
+            latency.record(LatencyStage.DELIVERY, deliveryTime - snapshot.getCommitTime());
+        }
+    }
+
+    /**
+     * Remember the current buttons and triggers as the previous ones. Call this before
+     * each new sample is read so the just pressed and just released tests see consecutive samples.
+     */
+    protected void latch()
+    {
+        state.latch();
+        previousTriggerMap=triggerMap;
+    }
+
+    /**
+     * Update the axes and points from the state after it has been read, applying the dead zones.
+     */
+    protected void update()
+    {
+        ButtonMapping buttonMapping=this.buttonMapping;
+        
+        // remap the buttons first, so everything after sees the remapped buttons
+        if(buttonMapping!=null)
+        {
+            state.setButtonMap(buttonMapping.apply(state.getButtonMap()));
+        }
+        
+        // state is updated, set the axis values for dead zone
+        xyPoint.setPos(state.getX(), state.getY());
+        zAxis.setP(state.getZ());
+        leftTriggerAxis.setP(state.getLeftTrigger());
+        rightTriggerAxis.setP(state.getRightTrigger());
+        // R axis is up/down axis, U is left/right axis
+        // so flip them for the axis position
+        ruPoint.setPos(state.getU(), state.getR());
+        vAxis.setP(state.getV());
+        
+        // if the POV is neutral, use 0,0, otherwise figure out
+        if(isPOVPressed())
+        {
+            povPoint.setAngle(state.getPOV(), DEFAULT_POV_RADIUS);    
+        }
+        else
+        {
+            povPoint.setPos(0.0f, 0.0f);
+        }
+        
+        // the triggers are axes, so keep their pressed state for edge detection
+        triggerMap=(isLeftTriggerPressed() ? LEFT_TRIGGER_BIT : 0) | (isRightTriggerPressed() ? RIGHT_TRIGGER_BIT : 0);
+    }
+
     /**
      * Get the id for the controller
      * @return The ID for the controller
@@ -99,6 +414,241 @@ public abstract class GameController
         return id;
     }
 
+    /**
+     * Get the backend the controller reads its state from
+     * @return The backend for the controller, or null if the controller has no backend
+     */
+    public ControllerBackend getBackend()
+    {
+        return backend;
+    }
+
+    /**
+     * Start publishing each sample after it is polled, so other threads can take consistent
+     * snapshots while this controller is polled. Publishing stays on once started.
+     * @return The publisher for the controller
+     */
+    public synchronized GameControllerPublisher enablePublishing()
+    {
+        if(publisher==null)
+        {
+            publisher=new GameControllerPublisher();
+        }
+        
+        return publisher;
+    }
+
+    /**
+     * Start a java.util.concurrent.Flow publisher of the samples, calling the subscribers on the
+     * common ForkJoinPool, the same as SubmissionPublisher. Subscribers that block should be given
+     * an executor of their own with enableFlow(Executor). The flow stays on once started.
+     * @return The flow for the controller
+     */
+    public SnapshotFlow enableFlow()
+    {
+        return enableFlow(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Start a java.util.concurrent.Flow publisher of the samples. The flow stays on once started;
+     * if it already was, the flow is returned as it is and the executor is not used.
+     * @param executor The executor the subscribers are called on
+     * @return The flow for the controller
+     */
+    public synchronized SnapshotFlow enableFlow(Executor executor)
+    {
+        if(flow==null)
+        {
+            flow=new SnapshotFlow(this, executor);
+        }
+        
+        return flow;
+    }
+
+    /**
+     * Get the Flow publisher of the samples
+     * @return The flow, or null if it has not been enabled
+     */
+    public SnapshotFlow getFlow()
+    {
+        return flow;
+    }
+
+    /**
+     * Start recording the input latency of the controller in histograms, one for each LatencyStage.
+     * Recording stays on once started.
+     * @return The latency for the controller
+     */
+    public synchronized ControllerLatency enableLatency()
+    {
+        if(latency==null)
+        {
+            latency=new ControllerLatency();
+        }
+        
+        return latency;
+    }
+
+    /**
+     * Get the latency histograms for the controller
+     * @return The latency, or null if it is not being recorded
+     */
+    public ControllerLatency getLatency()
+    {
+        return latency;
+    }
+
+    /**
+     * Start counting the polls of the controller, see ControllerMetricsMXBean. Counting stays on
+     * once started. GameControllerManager.registerMBeans does this for each controller it registers.
+     * @return The metrics for the controller
+     */
+    public synchronized ControllerMetrics enableMetrics()
+    {
+        if(metrics==null)
+        {
+            metrics=new ControllerMetrics(this);
+        }
+        
+        return metrics;
+    }
+
+    /**
+     * Get the poll metrics for the controller
+     * @return The metrics, or null if they are not counted
+     */
+    public ControllerMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Send an event to a ring for each change between samples, from now on. The controller
+     * must be polled from the thread that publishes to the ring.
+     * @param ring The ring for the events, or null to stop sending events
+     */
+    public void setEventRing(InputEventRing ring)
+    {
+        eventDetector=(ring!=null) ? new InputEventDetector(ring) : null;
+    }
+
+    /**
+     * Get the ring the events for the controller go to
+     * @return The ring, or null if not sending events
+     */
+    public InputEventRing getEventRing()
+    {
+        InputEventDetector eventDetector=this.eventDetector;
+        
+        return (eventDetector!=null) ? eventDetector.getRing() : null;
+    }
+
+    /**
+     * Set the button remapping for the controller. This can be changed while the controller
+     * is polled on another thread; the new mapping is used from the next poll. The previous
+     * sample keeps the old mapping, so the first poll after a change can report buttons
+     * as just pressed or just released.
+     * @param buttonMapping The mapping, or null to leave the buttons alone
+     */
+    public void setButtonMapping(ButtonMapping buttonMapping)
+    {
+        this.buttonMapping=buttonMapping;
+    }
+
+    /**
+     * Get the button remapping for the controller
+     * @return The mapping, or null if the buttons are left alone
+     */
+    public ButtonMapping getButtonMapping()
+    {
+        return buttonMapping;
+    }
+
+    /**
+     * Return whether a HotplugMonitor has taken the controller out of polling while it is
+     * disconnected. A parked controller is not read by poll or by batches, so an empty slot
+     * never stalls the polling thread; the monitor probes it on its own thread instead.
+     * @return true if parked, false otherwise
+     */
+    public boolean isParked()
+    {
+        return parked;
+    }
+
+    /**
+     * Set whether the controller is parked. Putting it back into polling marks it as awaiting its
+     * first poll, so the monitor does not park it again before the polling thread has seen it connect.
+     * Used by HotplugMonitor.
+     * @param parked true to take the controller out of polling, false to put it back
+     */
+    void setParked(boolean parked)
+    {
+        if(!parked)
+        {
+            awaitingPoll=true;
+        }
+        
+        this.parked=parked;
+    }
+
+    /**
+     * Return whether the controller was connected at its last poll, as seen from another thread.
+     * A controller put back into polling and not polled since counts as connected. Used by HotplugMonitor.
+     * @return true if connected or awaiting its first poll, false otherwise
+     */
+    boolean isPolledConnected()
+    {
+        return awaitingPoll || publishedConnected;
+    }
+
+    /**
+     * Get the recorder attached to the controller
+     * @return The recorder, or null if not recording
+     */
+    public InputRecorder getRecorder()
+    {
+        return recorder;
+    }
+
+    /**
+     * Set the recorder for the controller. Used by InputRecorder.attach.
+     * @param recorder The recorder, or null to stop recording
+     */
+    void setRecorder(InputRecorder recorder)
+    {
+        this.recorder=recorder;
+    }
+
+    /**
+     * Get the publisher for the controller
+     * @return The publisher, or null if publishing has not been enabled
+     */
+    public GameControllerPublisher getPublisher()
+    {
+        return publisher;
+    }
+
+    /**
+     * Take a consistent snapshot of the last sample published. This is safe to call from any
+     * thread while another thread polls, and it never blocks the polling thread.
+     * @param snapshot The snapshot to copy into
+     * @return The snapshot given, for chaining
+     */
+    public GameControllerSnapshot snapshot(GameControllerSnapshot snapshot)
+    {
+        GameControllerPublisher publisher=this.publisher;
+        
+        if(publisher==null)
+        {
+            throw new IllegalStateException("Publishing is not enabled for controller " + id + "\n");
+        }
+        
+        publisher.read(snapshot);
+        stampDelivery(snapshot);
+        
+        return snapshot;
+    }
+
     /**
      * Get the capabilities for the game controller
      * @return The capabilities for the game controller
@@ -271,11 +821,78 @@ public abstract class GameController
         }
         else
         {
-            // kind of bad practice, but access the array directly
-            return state.buttons[button];
+            return state.isPressed(button);
         }
         
     }
+    
+    /**
+     * Return true if a particular button went down since the previous poll
+     * @param button The number for the button from 0 to MAX_BUTTONS
+     * @return true if the button was just pressed, false otherwise.
+     */
+    public boolean isJustPressed(int button)
+    {
+        int trigger=getTriggerBit(button);
+        
+        if(trigger!=0)
+        {
+            return ((triggerMap & ~previousTriggerMap) & trigger)!=0;
+        }
+        else
+        {
+            return state.isJustPressed(button);
+        }
+    }
+    
+    /**
+     * Return true if a particular button went up since the previous poll
+     * @param button The number for the button from 0 to MAX_BUTTONS
+     * @return true if the button was just released, false otherwise.
+     */
+    public boolean isJustReleased(int button)
+    {
+        int trigger=getTriggerBit(button);
+        
+        if(trigger!=0)
+        {
+            return ((~triggerMap & previousTriggerMap) & trigger)!=0;
+        }
+        else
+        {
+            return state.isJustReleased(button);
+        }
+    }
+    
+    /**
+     * Return true if any button or trigger is pressed
+     * @return true if anything is pressed, false otherwise.
+     */
+    public boolean isAnyPressed()
+    {
+        return state.isAnyPressed() || (triggerMap!=0);
+    }
+    
+    /**
+     * Get the bit in the trigger maps for a button code
+     * @param button The button code
+     * @return The trigger bit, or zero if the code is not a trigger
+     */
+    private static int getTriggerBit(int button)
+    {
+        if(GameControllerButtons.LEFT_TRIGGER.is(button))
+        {
+            return LEFT_TRIGGER_BIT;
+        }
+        else if(GameControllerButtons.RIGHT_TRIGGER.is(button))
+        {
+            return RIGHT_TRIGGER_BIT;
+        }
+        else
+        {
+            return 0;
+        }
+    }
         
     /**
      * Return true if a particular button is pressed
@@ -286,5 +903,25 @@ public abstract class GameController
     {        
         return isPressed(button.ordinal());
     }
+    
+    /**
+     * Return true if a particular button went down since the previous poll
+     * @param button The GameControllerButtons enumeration value
+     * @return true if the button was just pressed, false otherwise.
+     */
+    public boolean isJustPressed(GameControllerButtons button)
+    {
+        return isJustPressed(button.ordinal());
+    }
+    
+    /**
+     * Return true if a particular button went up since the previous poll
+     * @param button The GameControllerButtons enumeration value
+     * @return true if the button was just released, false otherwise.
+     */
+    public boolean isJustReleased(GameControllerButtons button)
+    {
+        return isJustReleased(button.ordinal());
+    }
 
 }
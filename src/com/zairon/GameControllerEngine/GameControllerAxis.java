@@ -3,7 +3,8 @@ package com.zairon.GameControllerEngine;
 /**
  * A position for the game controller on a single axis. This implements a dead zone,
  * and when a position is assigned, if the value is in the dead zone it is set
- * to zero.
+ * to zero. With the SCALED_RADIAL shape the position outside the dead zone is also
+ * rescaled to start from zero at its edge, see DeadZoneShape.
  * @author Michael Watkins
  *
  */
@@ -24,11 +25,36 @@ public class GameControllerAxis
      */
     private float p;
     
+    /**
+     * The position on the axis before the dead zone
+     */
+    private float rawP;
+    
     /**
      * The dead zone.
      */
     private float deadZone;
     
+    /**
+     * The reciprocal of the range outside the dead zone, for rescaling
+     */
+    private float scale;
+    
+    /**
+     * Whether the position outside the dead zone is rescaled
+     */
+    private boolean scaled;
+    
+    /**
+     * The shape of the dead zone
+     */
+    private DeadZoneShape shape=DeadZoneShape.HYBRID;
+    
+    /**
+     * The response curve applied after the dead zone, or null for none
+     */
+    private volatile ResponseCurve responseCurve;
+    
     /**
      * Construct the controller axis
      * @param p The position on the axis
@@ -37,7 +63,8 @@ public class GameControllerAxis
     public GameControllerAxis(float p, float deadZone)
     {
         this.p=p;
-        this.deadZone=deadZone;
+        this.rawP=p;
+        setThresholds(deadZone);
     }
     
     /**
@@ -65,10 +92,61 @@ public class GameControllerAxis
      */
     public void setDeadZone(float deadZone)
     {
-        this.deadZone = deadZone;
+        setThresholds(deadZone);
+        
+        // run the current coordinate against the dead zone
+        testDeadZone(this.rawP);
+    }
+    
+    /**
+     * Get the shape of the dead zone
+     * @return the shape of the dead zone
+     */
+    public DeadZoneShape getDeadZoneShape()
+    {
+        return shape;
+    }
+    
+    /**
+     * Set the shape of the dead zone. On a single axis only SCALED_RADIAL differs from the rest.
+     * @param shape the new shape of the dead zone
+     */
+    public void setDeadZoneShape(DeadZoneShape shape)
+    {
+        this.shape=shape;
+        this.scaled=(shape==DeadZoneShape.SCALED_RADIAL);
         
         // run the current coordinate against the dead zone
-        testDeadZone(this.p);
+        testDeadZone(this.rawP);
+    }
+    
+    /**
+     * Get the response curve applied after the dead zone
+     * @return the response curve, or null for none
+     */
+    public ResponseCurve getResponseCurve()
+    {
+        return responseCurve;
+    }
+    
+    /**
+     * Set the response curve applied after the dead zone. This can be changed while the axis
+     * is set on another thread; the new curve is used from the next position.
+     * @param responseCurve the new response curve, or null for none
+     */
+    public void setResponseCurve(ResponseCurve responseCurve)
+    {
+        this.responseCurve=responseCurve;
+    }
+    
+    /**
+     * Work out the thresholds for a dead zone, so the test only compares and multiplies
+     * @param deadZone The dead zone
+     */
+    private void setThresholds(float deadZone)
+    {
+        this.deadZone=deadZone;
+        this.scale=(deadZone < 1.0f) ? 1.0f / (1.0f - deadZone) : 0.0f;
     }
 
     /**
@@ -92,20 +170,37 @@ public class GameControllerAxis
     
     /**
      * Test the coordinate for the dead zone. If the position is in
-     * the radius of the dead zone, then zero the coordinate.
+     * the radius of the dead zone, then zero the coordinate. The response curve,
+     * if any, is applied after.
      * @param p The position on the axis
      */
     private void testDeadZone(float p)
     {
-        if(Math.abs(p) <= deadZone)
+        float pAbs=Math.abs(p);
+        
+        rawP=p;
+        
+        if(pAbs <= deadZone)
         {
             this.p=NEUTRAL;
         }
+        else if(scaled)
+        {
+            // rescale so the position starts from zero at the edge of the dead zone, capped at one
+            this.p=Math.copySign(Math.min((pAbs - deadZone) * scale, 1.0f), p);
+        }
         else
         {
             this.p=p;
         }
         
+        ResponseCurve responseCurve=this.responseCurve;
+        
+        if(responseCurve!=null)
+        {
+            this.p=responseCurve.apply(this.p);
+        }
+        
     }
 
     /**
@@ -0,0 +1,214 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A fixed set of controllers that are polled together. The raw state of every controller
+ * is read into one packed GameControllerStateBuffer with a single call per backend, then
+ * each controller is updated from its record. Controllers without a backend, like the
+ * null controller, are polled one at a time.
+ * <p>
+ * For the JNI backends the single call needs a native library built with getControllerStates
+ * and getXInputControllerStates (ant dist). With an older library the backends read each
+ * controller in turn into the buffer instead, which still does not allocate but is one
+ * crossing into the natives per controller.
+ * @author Michael Watkins
+ *
+ */
+public class GameControllerBatch
+{
+    /**
+     * The controllers read through the buffer, grouped so each backend has one run of records
+     */
+    private final GameController controllers[];
+
+    /**
+     * The controllers that have no backend and are polled directly
+     */
+    private final GameController directControllers[];
+
+    /**
+     * The backend for each run of records
+     */
+    private final ControllerBackend backends[];
+
+    /**
+     * The index of the first record for each run
+     */
+    private final int firsts[];
+
+    /**
+     * The number of records for each run
+     */
+    private final int counts[];
+
+    /**
+     * When the last read of each run started, in System.nanoTime units
+     */
+    private final long readStarts[];
+
+    /**
+     * When the last read of each run returned, in System.nanoTime units
+     */
+    private final long readTimes[];
+
+    /**
+     * The packed state for all of the controllers
+     */
+    private final GameControllerStateBuffer buffer;
+
+    /**
+     * The view used to decode the records
+     */
+    private final GameControllerStateView view=new GameControllerStateView();
+
+    /**
+     * Protect the batch from instantiation (make it come from the factory).
+     * @param list The controllers to poll together
+     */
+    protected GameControllerBatch(List<? extends GameController> list)
+    {
+        // group the controllers by backend, keeping the order they first appear in
+        Map<ControllerBackend, ArrayList<GameController>> groups=new IdentityHashMap<ControllerBackend, ArrayList<GameController>>();
+        ArrayList<ControllerBackend> order=new ArrayList<ControllerBackend>();
+        ArrayList<GameController> direct=new ArrayList<GameController>();
+
+        for(GameController controller : list)
+        {
+            ControllerBackend backend=controller.getBackend();
+
+            if(backend==null)
+            {
+                direct.add(controller);
+            }
+            else
+            {
+                ArrayList<GameController> group=groups.get(backend);
+
+                if(group==null)
+                {
+                    group=new ArrayList<GameController>();
+                    groups.put(backend, group);
+                    order.add(backend);
+                }
+
+                group.add(controller);
+            }
+        }
+
+        this.directControllers=direct.toArray(new GameController[direct.size()]);
+        this.controllers=new GameController[list.size() - direct.size()];
+        this.backends=order.toArray(new ControllerBackend[order.size()]);
+        this.firsts=new int[backends.length];
+        this.counts=new int[backends.length];
+        this.readStarts=new long[backends.length];
+        this.readTimes=new long[backends.length];
+        this.buffer=new GameControllerStateBuffer(controllers.length);
+
+        int index=0;
+
+        for(int run=0 ; run < backends.length ; ++run)
+        {
+            firsts[run]=index;
+
+            for(GameController controller : groups.get(backends[run]))
+            {
+                controllers[index]=controller;
+                // the ids never change, so fill them in once
+                buffer.setId(index, controller.getId());
+                ++index;
+            }
+
+            counts[run]=index - firsts[run];
+        }
+    }
+
+    /**
+     * Poll all of the controllers, refreshing their state. Controllers parked by a
+     * HotplugMonitor are left alone.
+     * @return The number of controllers that are connected
+     */
+    public int pollAll()
+    {
+        BatchPollEvent event=new BatchPollEvent();
+        int connected=0;
+
+        event.begin();
+
+        // controllers parked by a hotplug monitor are skipped by the backends
+        for(int i=0 ; i < controllers.length ; ++i)
+        {
+            buffer.setSkipped(i, controllers[i].isParked());
+        }
+
+        // one read per backend fills the whole buffer
+        for(int run=0 ; run < backends.length ; ++run)
+        {
+            readStarts[run]=System.nanoTime();
+            backends[run].readStates(buffer, firsts[run], counts[run]);
+            readTimes[run]=System.nanoTime();
+        }
+
+        for(int run=0 ; run < backends.length ; ++run)
+        {
+            for(int i=firsts[run] ; i < (firsts[run] + counts[run]) ; ++i)
+            {
+                if(buffer.isSkipped(i))
+                {
+                    continue;
+                }
+
+                if(controllers[i].poll(view.wrap(buffer, i), readStarts[run], readTimes[run]))
+                {
+                    ++connected;
+                }
+            }
+        }
+
+        for(int i=0 ; i < directControllers.length ; ++i)
+        {
+            if(directControllers[i].isParked())
+            {
+                continue;
+            }
+
+            if(directControllers[i].poll())
+            {
+                ++connected;
+            }
+        }
+
+        event.end();
+
+        if(event.shouldCommit())
+        {
+            event.controllers=size();
+            event.connected=connected;
+            event.commit();
+        }
+
+        return connected;
+    }
+
+    /**
+     * Get the packed state buffer. The records hold the raw state from the last pollAll.
+     * @return The packed state buffer
+     */
+    public GameControllerStateBuffer getBuffer()
+    {
+        return buffer;
+    }
+
+    /**
+     * Get the number of controllers in the batch
+     * @return The number of controllers
+     */
+    public int size()
+    {
+        return controllers.length + directControllers.length;
+    }
+
+}
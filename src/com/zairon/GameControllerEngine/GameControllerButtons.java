@@ -1,5 +1,7 @@
 package com.zairon.GameControllerEngine;
 
+import java.util.Arrays;
+
 /**
  * This is an enumeration for all of the possible buttons supported by the engine.
  * Note that not all button values are supported, depending on the game controller.
@@ -57,6 +59,11 @@ public enum GameControllerButtons
      */
     UNDEFINED("UNDEFINED");
     
+    /**
+     * The regular buttons by code, so lookups do not copy values()
+     */
+    private static final GameControllerButtons BUTTONS[]=Arrays.copyOf(values(), MAX_BUTTONS.ordinal());
+    
     /**
      * The label for the controller button
      */
@@ -88,23 +95,18 @@ public enum GameControllerButtons
      */
     public static GameControllerButtons get(int code)
     {
-        // loop through the possible flags
-        for(GameControllerButtons button : GameControllerButtons.values())
-        {
-            // anything greater than or equal to max buttons is undefined
-            if(button.ordinal()>=MAX_BUTTONS.ordinal())
-            {
-                break;
-            }
-            else if(button.ordinal() == code)
-            {
-                return button;
-            }
-                
-        }
-        
-        return UNDEFINED;
-
+        // anything greater than or equal to max buttons is undefined
+        return isValidCode(code) ? BUTTONS[code] : UNDEFINED;
+    }
+    
+    /**
+     * Get the bit for this button in a button map
+     * @return The mask with the bit for this button set, or zero if this is not a regular button
+     */
+    public int getMask()
+    {
+        // the triggers have codes but no bits, they are axes
+        return (ordinal() < GameControllerState.MAX_BUTTONS) ? (1 << ordinal()) : 0;
     }
     
     /**
@@ -1,5 +1,9 @@
 package com.zairon.GameControllerEngine;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * The capabilities of a game controller
  * @author Michael Watkins
@@ -7,6 +11,26 @@ package com.zairon.GameControllerEngine;
  */
 public class GameControllerCaps
 {
+    /**
+     * Half of the raw axis range for a standard gamepad, matching XInput
+     */
+    static final float GAMEPAD_HALF_AXIS=32767.5f;
+
+    /**
+     * The maximum raw trigger value for a standard gamepad, matching XInput
+     */
+    static final float GAMEPAD_MAX_TRIGGER_AXIS=255.0f;
+
+    /**
+     * The number of buttons for a standard gamepad, matching XInput
+     */
+    static final int GAMEPAD_NUM_BUTTONS=10;
+
+    /**
+     * The number of axes for a standard gamepad, matching XInput
+     */
+    static final int GAMEPAD_NUM_AXES=3;
+
     /**
      * The name for the controller
      */
@@ -123,6 +147,126 @@ public class GameControllerCaps
     protected GameControllerCaps()
     {
     }
+
+    /**
+     * Create capabilities matching a standard XInput gamepad. Used by backends implemented in Java.
+     * These are the same values the natives report for an XInput controller.
+     * @param name The name for the controller
+     * @return The capabilities for a standard gamepad
+     */
+    static GameControllerCaps createGamepadCaps(String name)
+    {
+        GameControllerCaps caps=new GameControllerCaps();
+
+        caps.name=name;
+
+        // the stick axes use the raw XInput range
+        caps.minX=-GAMEPAD_HALF_AXIS;
+        caps.maxX=GAMEPAD_HALF_AXIS;
+        caps.minY=-GAMEPAD_HALF_AXIS;
+        caps.maxY=GAMEPAD_HALF_AXIS;
+        // the z-axis is built from the two triggers
+        caps.minZ=-GAMEPAD_MAX_TRIGGER_AXIS;
+        caps.maxZ=GAMEPAD_MAX_TRIGGER_AXIS;
+        caps.minR=-GAMEPAD_HALF_AXIS;
+        caps.maxR=GAMEPAD_HALF_AXIS;
+        caps.minU=-GAMEPAD_HALF_AXIS;
+        caps.maxU=GAMEPAD_HALF_AXIS;
+        // no v-axis for a gamepad
+        caps.minV=0.0f;
+        caps.maxV=0.0f;
+
+        caps.numButtons=GAMEPAD_NUM_BUTTONS;
+        caps.numAxes=GAMEPAD_NUM_AXES;
+
+        caps.hasZ=true;
+        caps.hasR=true;
+        caps.hasU=true;
+        caps.hasV=false;
+        caps.hasPOV=true;
+        caps.hasPOV4Dir=true;
+        caps.hasPOVCts=false;
+
+        return caps;
+    }
+    
+    /**
+     * Write the capabilities for a CapsCache file
+     * @param out Where to write the capabilities
+     * @throws IOException if the capabilities cannot be written
+     */
+    void write(DataOutput out) throws IOException
+    {
+        out.writeBoolean(name!=null);
+
+        if(name!=null)
+        {
+            out.writeUTF(name);
+        }
+
+        out.writeFloat(minX);
+        out.writeFloat(maxX);
+        out.writeFloat(minY);
+        out.writeFloat(maxY);
+        out.writeFloat(minZ);
+        out.writeFloat(maxZ);
+        out.writeFloat(minR);
+        out.writeFloat(maxR);
+        out.writeFloat(minU);
+        out.writeFloat(maxU);
+        out.writeFloat(minV);
+        out.writeFloat(maxV);
+
+        out.writeInt(numButtons);
+        out.writeInt(numAxes);
+
+        out.writeBoolean(hasZ);
+        out.writeBoolean(hasR);
+        out.writeBoolean(hasU);
+        out.writeBoolean(hasV);
+        out.writeBoolean(hasPOV);
+        out.writeBoolean(hasPOV4Dir);
+        out.writeBoolean(hasPOVCts);
+    }
+
+    /**
+     * Read capabilities written by write, for a CapsCache file
+     * @param in Where to read the capabilities from
+     * @return The capabilities
+     * @throws IOException if the capabilities cannot be read
+     */
+    static GameControllerCaps read(DataInput in) throws IOException
+    {
+        GameControllerCaps caps=new GameControllerCaps();
+
+        caps.name=in.readBoolean() ? in.readUTF() : null;
+
+        caps.minX=in.readFloat();
+        caps.maxX=in.readFloat();
+        caps.minY=in.readFloat();
+        caps.maxY=in.readFloat();
+        caps.minZ=in.readFloat();
+        caps.maxZ=in.readFloat();
+        caps.minR=in.readFloat();
+        caps.maxR=in.readFloat();
+        caps.minU=in.readFloat();
+        caps.maxU=in.readFloat();
+        caps.minV=in.readFloat();
+        caps.maxV=in.readFloat();
+
+        caps.numButtons=in.readInt();
+        caps.numAxes=in.readInt();
+
+        caps.hasZ=in.readBoolean();
+        caps.hasR=in.readBoolean();
+        caps.hasU=in.readBoolean();
+        caps.hasV=in.readBoolean();
+        caps.hasPOV=in.readBoolean();
+        caps.hasPOV4Dir=in.readBoolean();
+        caps.hasPOVCts=in.readBoolean();
+
+        return caps;
+    }
     
     /**
      * Get the name for the controller
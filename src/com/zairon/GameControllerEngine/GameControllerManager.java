@@ -1,6 +1,19 @@
 package com.zairon.GameControllerEngine;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 /**
  * Factory that creates controller instances.
@@ -9,13 +22,261 @@ import java.util.ArrayList;
  */
 public abstract class GameControllerManager
 {
+    /**
+     * The system property used to select a backend by name instead of by priority
+     */
+    public static final String BACKEND_PROPERTY="com.zairon.GameControllerEngine.backend";
+    
+    /**
+     * The system property naming a file for the capabilities cache, to keep it between runs
+     */
+    public static final String CAPS_CACHE_PROPERTY="com.zairon.GameControllerEngine.capsCache";
+    
+    /**
+     * The JMX domain the MBeans are registered in
+     */
+    public static final String MBEAN_DOMAIN="com.zairon.GameControllerEngine";
+    
+    /**
+     * The backends found by the service loader, or null if they have not been loaded yet
+     */
+    private static ArrayList<ControllerBackend> backends;
+    
+    /**
+     * The backend used to create controllers, or null if none is available
+     */
+    private static ControllerBackend backend;
+    
+    /**
+     * Flag indicating the backend has been picked
+     */
+    private static boolean backendPicked;
+    
+    /**
+     * Why the backend named by BACKEND_PROPERTY was not used, or null if it was used or none was named
+     */
+    private static String backendFailure;
+    
+    /**
+     * The cache the controllers get their capabilities from, or null if it has not been made yet
+     */
+    private static CapsCache capsCache;
+    
+    /**
+     * Flag indicating the manager MBean has been registered
+     */
+    private static boolean managerRegistered;
+    
+    /**
+     * The number of pollers registered, to name each one
+     */
+    private static int pollersRegistered;
+    
     /**
      * Flag indicating if any controllers are supported by the platform.
      * @return true if game controllers are supported, false otherwise.
      */
     public static boolean isSupported()
     {
-        return GameControllerNatives.isSupported();
+        return (getBackend()!=null);
+    }
+    
+    /**
+     * Get all of the backends found by the service loader, whether available or not.
+     * @return The list of backends
+     */
+    public static synchronized List<ControllerBackend> getBackends()
+    {
+        if(backends==null)
+        {
+            backends=new ArrayList<ControllerBackend>();
+            
+            for(ControllerBackend found : ServiceLoader.load(ControllerBackend.class, GameControllerManager.class.getClassLoader()))
+            {
+                backends.add(found);
+            }
+        }
+        
+        return backends;
+    }
+    
+    /**
+     * Get an available backend by name, opening it.
+     * @param name The name of the backend
+     * @return The backend, or null if there is no available backend with the name that opens
+     */
+    public static synchronized ControllerBackend getBackend(String name)
+    {
+        for(ControllerBackend found : getBackends())
+        {
+            if(found.getName().equals(name) && found.isAvailable() && found.open())
+            {
+                return found;
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Start getting the backend used to create controllers ready on a background thread, such
+     * as loading its native library, and return at once. Call this early in startup, so the
+     * first controller created has less or nothing to wait for.
+     */
+    public static void preload()
+    {
+        Thread thread=new Thread(GameControllerManager::getBackend, "GameControllerPreload");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Get the backend used to create controllers. The first time this is called the backend
+     * named by the BACKEND_PROPERTY system property is used, and if the property is not set or
+     * that backend is missing or does not open, the available backend with the highest priority
+     * above zero that opens is used. When no backend opens, controllers are created as null
+     * controllers. The backend is only picked once, whether or not one was found.
+     * @return The backend used to create controllers, or null if there is none
+     */
+    public static synchronized ControllerBackend getBackend()
+    {
+        if(!backendPicked)
+        {
+            // picked even if opening throws, so every later call gets the same answer
+            backendPicked=true;
+            
+            String name=System.getProperty(BACKEND_PROPERTY);
+            
+            if(name!=null)
+            {
+                backend=getBackend(name);
+                
+                if(backend==null)
+                {
+                    backendFailure="Cannot find available backend " + name + ", using the highest priority backend that opens\n";
+                }
+            }
+            
+            if(backend==null)
+            {
+                ArrayList<ControllerBackend> candidates=new ArrayList<ControllerBackend>();
+                
+                for(ControllerBackend found : getBackends())
+                {
+                    if((found.getPriority() > 0) && found.isAvailable())
+                    {
+                        candidates.add(found);
+                    }
+                }
+                
+                // take the highest priority backend that opens, so a missing native library falls back
+                candidates.sort((a, b) -> Integer.compare(b.getPriority(), a.getPriority()));
+                
+                for(ControllerBackend found : candidates)
+                {
+                    if(found.open())
+                    {
+                        backend=found;
+                        break;
+                    }
+                }
+            }
+        }
+        
+        return backend;
+    }
+    
+    /**
+     * Get why the backend named by the BACKEND_PROPERTY system property was not used, such as its
+     * native library not loading. Only known once the backend has been picked.
+     * @return The reason, or null if the named backend was used or no backend was named
+     */
+    public static synchronized String getBackendFailure()
+    {
+        return backendFailure;
+    }
+    
+    /**
+     * Set the backend used to create controllers, replacing the one picked automatically.
+     * @param backend The backend to use, or null to only create null controllers
+     */
+    public static synchronized void setBackend(ControllerBackend backend)
+    {
+        GameControllerManager.backend=backend;
+        backendPicked=true;
+    }
+    
+    /**
+     * Get the cache the controllers get their capabilities from. The first call makes the cache,
+     * kept in the file named by CAPS_CACHE_PROPERTY if set and in memory otherwise.
+     * @return The capabilities cache
+     */
+    public static synchronized CapsCache getCapsCache()
+    {
+        if(capsCache==null)
+        {
+            String name=System.getProperty(CAPS_CACHE_PROPERTY);
+            
+            if(name==null)
+            {
+                capsCache=createCapsCache();
+            }
+            else
+            {
+                try
+                {
+                    capsCache=createCapsCache(Path.of(name));
+                }
+                catch(IOException e)
+                {
+                    // a damaged file is rebuilt from the backend
+                    capsCache=new CapsCache(Path.of(name));
+                }
+            }
+        }
+        
+        return capsCache;
+    }
+    
+    /**
+     * Set the cache the controllers get their capabilities from.
+     * @param cache The cache to use
+     */
+    public static synchronized void setCapsCache(CapsCache cache)
+    {
+        if(cache==null)
+        {
+            throw new IllegalArgumentException("Cannot use a null capabilities cache\n");
+        }
+        
+        capsCache=cache;
+    }
+    
+    /**
+     * Create a capabilities cache kept only in memory.
+     * @return The cache
+     */
+    public static CapsCache createCapsCache()
+    {
+        return new CapsCache(null);
+    }
+    
+    /**
+     * Create a capabilities cache kept in a file, reading the file if it exists.
+     * @param file The file for the cache
+     * @return The cache
+     * @throws IOException if the file exists and cannot be read
+     */
+    public static CapsCache createCapsCache(Path file) throws IOException
+    {
+        CapsCache cache=new CapsCache(file);
+        
+        if(Files.exists(file))
+        {
+            cache.load();
+        }
+        
+        return cache;
     }
     
     /**
@@ -25,45 +286,176 @@ public abstract class GameControllerManager
      */
     public static GameController createController(int id)
     {
-        // use the operating system to figure out which controller to make
-        if(GameControllerNatives.isWindows())
+        ControllerBackend backend=getBackend();
+        
+        // use the backend to figure out which controller to make
+        if(backend==null)
+        {
+            // not supported, return the null connection instance
+            return createNullController(id);
+        }
+        else if(backend instanceof XInputControllerBackend)
         {
+            // XInput falls back to generic windows controllers for non-XInput ids
             return createWindowsController(id);
         }
         else
         {
-            // not supported, return the null connection instance
-            return createNullController(id);
+            return createBackendController(backend, id);
         }
     }
     
     /**
-     * Create a generic windows game controller
+     * Create a controller that reads from the backend given.
+     * @param backend The backend for the controller
      * @param id The identifier for the control to create
      * @return The game controller instance
      */
-    public static GameController createWindowsControllerOnly(int id)
+    public static GameController createBackendController(ControllerBackend backend, int id)
     {
-        final int maxId=GameControllerNatives.getNumControllers();
+        final int maxId=backend.getNumControllers();
         
         // check the id limit
         if(id < 0)
         {
             throw new IllegalArgumentException("Cannot create id " + id +", value is illegal\n");
         }
-        else if(id > maxId)
+        else if(id >= maxId)
         {
             throw new IllegalArgumentException("Cannot create id " + id +", only supporting up to " + maxId + " controller IDs\n");
         }
         
-        GameController controller;
+        return setupController(new XBoxGameController(), backend, id);
+    }
+    
+    /**
+     * Create a list of controllers for every id the backend supports.
+     * @param backend The backend for the controllers
+     * @return The list of controllers
+     */
+    public static ArrayList<GameController> getAllBackendControllers(ControllerBackend backend)
+    {
+        final int numControllers=backend.getNumControllers();
+        ArrayList<GameController> list=new ArrayList<GameController>(numControllers);
         
-        // make a generic controller
-        controller=new WindowsGameController();
+        for(int id=0; id < numControllers ; ++id)
+        {
+            list.add(createBackendController(backend, id));
+        }
         
+        return list;
+    }
+    
+    /**
+     * Create a list of all of the controllers from the backend used to create controllers.
+     * @return The list of all controllers, which is empty if no backend is available
+     */
+    public static ArrayList<GameController> getAllControllers()
+    {
+        ControllerBackend backend=getBackend();
+        
+        if(backend==null)
+        {
+            return new ArrayList<GameController>();
+        }
+        else if(backend instanceof XInputControllerBackend)
+        {
+            return getAllWindowsControllers();
+        }
+        else
+        {
+            return getAllBackendControllers(backend);
+        }
+    }
+    
+    /**
+     * Create a batch that polls the controllers given together, reading each backend with one call.
+     * @param controllers The controllers to poll together
+     * @return The batch for the controllers
+     */
+    public static GameControllerBatch createBatch(List<? extends GameController> controllers)
+    {
+        return new GameControllerBatch(controllers);
+    }
+    
+    /**
+     * Create a poller that polls all of the controllers from the backend on its own thread.
+     * The poller has to be started.
+     * @param rate The polling rate in Hz, from ControllerPoller.MIN_RATE to ControllerPoller.MAX_RATE
+     * @param waitStrategy How to wait between polls
+     * @return The poller
+     */
+    public static ControllerPoller createPoller(int rate, WaitStrategy waitStrategy)
+    {
+        return createPoller(getAllControllers(), rate, waitStrategy);
+    }
+    
+    /**
+     * Create a poller that polls the controllers given on its own thread. The poller has to be started.
+     * @param controllers The controllers to poll
+     * @param rate The polling rate in Hz, from ControllerPoller.MIN_RATE to ControllerPoller.MAX_RATE
+     * @param waitStrategy How to wait between polls
+     * @return The poller
+     */
+    public static ControllerPoller createPoller(List<? extends GameController> controllers, int rate, WaitStrategy waitStrategy)
+    {
+        return new ControllerPoller(controllers, rate, waitStrategy);
+    }
+    
+    /**
+     * Create a poller that polls each of the controllers given on its own virtual thread, publishing
+     * samples as their backends deliver them. The poller has to be started, which needs Java 21 or later.
+     * @param controllers The controllers to poll
+     * @param rate The polling rate in Hz for each controller, from ControllerPoller.MIN_RATE to ControllerPoller.MAX_RATE
+     * @return The poller
+     */
+    public static VirtualThreadPoller createVirtualPoller(List<? extends GameController> controllers, int rate)
+    {
+        return new VirtualThreadPoller(controllers, rate);
+    }
+    
+    /**
+     * Create a server that streams the controllers given over UDP, polling them on its own thread.
+     * The server has to be started.
+     * @param controllers The controllers to stream, one per slot
+     * @param address The address to bind to, with port zero to pick a free port
+     * @param rate The send rate in Hz, from ControllerPoller.MIN_RATE to ControllerPoller.MAX_RATE
+     * @return The server
+     * @throws IOException if the server cannot bind to the address
+     */
+    public static ControllerStreamServer createStreamServer(List<? extends GameController> controllers, InetSocketAddress address, int rate) throws IOException
+    {
+        return createStreamServer(controllers, address, rate, WaitStrategies.PARK);
+    }
+    
+    /**
+     * Create a server that streams the controllers given over UDP, polling them on its own thread.
+     * The server has to be started.
+     * @param controllers The controllers to stream, one per slot
+     * @param address The address to bind to, with port zero to pick a free port
+     * @param rate The send rate in Hz, from ControllerPoller.MIN_RATE to ControllerPoller.MAX_RATE
+     * @param waitStrategy How to wait between sends
+     * @return The server
+     * @throws IOException if the server cannot bind to the address
+     */
+    public static ControllerStreamServer createStreamServer(List<? extends GameController> controllers, InetSocketAddress address, int rate, WaitStrategy waitStrategy) throws IOException
+    {
+        return new ControllerStreamServer(controllers, address, rate, waitStrategy);
+    }
+    
+    /**
+     * Set up a new controller instance for a backend and do an initial poll.
+     * @param controller The controller to set up
+     * @param backend The backend for the controller
+     * @param id The identifier for the controller
+     * @return The controller
+     */
+    private static GameController setupController(GameController controller, ControllerBackend backend, int id)
+    {
         // set up the instance
         controller.id=id;
-        controller.caps=GameControllerNatives.getControllerCaps(id);
+        controller.backend=backend;
+        controller.caps=getCapsCache().getCaps(backend, id);
         controller.state=new GameControllerState();
         
         // do an initial poll
@@ -72,6 +464,244 @@ public abstract class GameControllerManager
         return controller;
     }
     
+    /**
+     * Create a reactor reading many streams of input_events on one thread. Add the streams with
+     * addSource, start it with start(), and create the controllers from it as a backend.
+     * @return The reactor
+     * @throws IOException if the selector cannot be opened
+     */
+    public static InputReactor createInputReactor() throws IOException
+    {
+        return new InputReactor();
+    }
+    
+    /**
+     * Create a java.util.concurrent.Flow publisher of the events in a ring, calling the subscribers
+     * on the common ForkJoinPool. Close it to stop reading the ring.
+     * @param ring The ring to read the events from
+     * @return The flow
+     */
+    public static InputEventFlow createEventFlow(InputEventRing ring)
+    {
+        return createEventFlow(ring, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Create a java.util.concurrent.Flow publisher of the events in a ring. Close it to stop reading the ring.
+     * @param ring The ring to read the events from
+     * @param executor The executor the subscribers are called on
+     * @return The flow
+     */
+    public static InputEventFlow createEventFlow(InputEventRing ring, Executor executor)
+    {
+        return new InputEventFlow(ring, executor);
+    }
+    
+    /**
+     * Register an MBean for each controller given with the platform MBean server, turning on the
+     * metrics of each controller, along with an MBean for the manager the first time. A controller
+     * already registered under the same name is replaced.
+     * @param controllers The controllers to register
+     */
+    public static synchronized void registerMBeans(List<? extends GameController> controllers)
+    {
+        MBeanServer server=ManagementFactory.getPlatformMBeanServer();
+        
+        try
+        {
+            if(!managerRegistered)
+            {
+                registerMBean(server, new GameControllerManagerMetrics(), new ObjectName(MBEAN_DOMAIN + ":type=GameControllerManager"));
+                managerRegistered=true;
+            }
+            
+            for(GameController controller : controllers)
+            {
+                registerMBean(server, controller.enableMetrics(), getObjectName(controller));
+            }
+        }
+        catch(JMException e)
+        {
+            throw new IllegalStateException("Cannot register the controller MBeans: " + e.getMessage() + "\n", e);
+        }
+    }
+    
+    /**
+     * Unregister the MBeans of the controllers given. The metrics keep counting.
+     * @param controllers The controllers to unregister
+     */
+    public static synchronized void unregisterMBeans(List<? extends GameController> controllers)
+    {
+        for(GameController controller : controllers)
+        {
+            unregisterMBean(getObjectName(controller));
+        }
+    }
+    
+    /**
+     * Register an MBean for a poller with the platform MBean server
+     * @param poller The poller to register
+     * @return The name the poller was registered under, to unregister it with
+     */
+    public static synchronized ObjectName registerMBean(ControllerPoller poller)
+    {
+        return registerPoller(poller, "ControllerPoller");
+    }
+    
+    /**
+     * Register an MBean for a virtual thread poller with the platform MBean server
+     * @param poller The poller to register
+     * @return The name the poller was registered under, to unregister it with
+     */
+    public static synchronized ObjectName registerMBean(VirtualThreadPoller poller)
+    {
+        return registerPoller(poller, "VirtualThreadPoller");
+    }
+    
+    /**
+     * Unregister an MBean if it is registered
+     * @param name The name of the MBean
+     */
+    public static synchronized void unregisterMBean(ObjectName name)
+    {
+        MBeanServer server=ManagementFactory.getPlatformMBeanServer();
+        
+        try
+        {
+            if(server.isRegistered(name))
+            {
+                server.unregisterMBean(name);
+            }
+        }
+        catch(JMException e)
+        {
+            throw new IllegalStateException("Cannot unregister " + name + ": " + e.getMessage() + "\n", e);
+        }
+    }
+    
+    /**
+     * Get the name a controller is registered under, from its backend and id
+     * @param controller The controller
+     * @return The name
+     */
+    public static ObjectName getObjectName(GameController controller)
+    {
+        ControllerBackend backend=controller.getBackend();
+        String backendName=(backend!=null) ? backend.getName() : "none";
+        
+        try
+        {
+            return new ObjectName(MBEAN_DOMAIN + ":type=GameController,backend=" + ObjectName.quote(backendName) + ",id=" + controller.getId());
+        }
+        catch(JMException e)
+        {
+            throw new IllegalArgumentException("Cannot name the MBean for controller " + controller.getId() + ": " + e.getMessage() + "\n", e);
+        }
+    }
+    
+    /**
+     * Register a poller under the next poller name
+     * @param poller The poller
+     * @param type The type in the name
+     * @return The name the poller was registered under
+     */
+    private static ObjectName registerPoller(Object poller, String type)
+    {
+        try
+        {
+            ObjectName name=new ObjectName(MBEAN_DOMAIN + ":type=" + type + ",index=" + pollersRegistered++);
+            
+            registerMBean(ManagementFactory.getPlatformMBeanServer(), poller, name);
+            
+            return name;
+        }
+        catch(JMException e)
+        {
+            throw new IllegalStateException("Cannot register the " + type + " MBean: " + e.getMessage() + "\n", e);
+        }
+    }
+    
+    /**
+     * Register an MBean, replacing one already registered under the name
+     * @param server The server to register with
+     * @param mbean The MBean
+     * @param name The name
+     * @throws JMException if the MBean cannot be registered
+     */
+    private static void registerMBean(MBeanServer server, Object mbean, ObjectName name) throws JMException
+    {
+        if(server.isRegistered(name))
+        {
+            server.unregisterMBean(name);
+        }
+        
+        server.registerMBean(mbean, name);
+    }
+    
+    /**
+     * Create a hotplug monitor for a set of controllers with the default timings. Start it with start().
+     * @param controllers The controllers to watch
+     * @return The monitor
+     */
+    public static HotplugMonitor createHotplugMonitor(List<? extends GameController> controllers)
+    {
+        return createHotplugMonitor(controllers, HotplugMonitor.DEFAULT_CHECK_INTERVAL, HotplugMonitor.DEFAULT_MIN_BACKOFF, HotplugMonitor.DEFAULT_MAX_BACKOFF);
+    }
+    
+    /**
+     * Create a hotplug monitor for a set of controllers. Start it with start().
+     * @param controllers The controllers to watch
+     * @param checkInterval The time between checks for disconnects, in milliseconds
+     * @param minBackoff The time before the first probe of a disconnected controller, in milliseconds
+     * @param maxBackoff The longest time between probes, in milliseconds
+     * @return The monitor
+     */
+    public static HotplugMonitor createHotplugMonitor(List<? extends GameController> controllers, long checkInterval, long minBackoff, long maxBackoff)
+    {
+        return new HotplugMonitor(controllers, checkInterval, minBackoff, maxBackoff);
+    }
+    
+    /**
+     * Get a named backend that has to be available.
+     * @param name The name of the backend
+     * @return The backend
+     */
+    private static ControllerBackend requireBackend(String name)
+    {
+        ControllerBackend found=getBackend(name);
+        
+        if(found==null)
+        {
+            throw new IllegalStateException("Backend " + name + " is not available\n");
+        }
+        
+        return found;
+    }
+    
+    /**
+     * Create a generic windows game controller
+     * @param id The identifier for the control to create
+     * @return The game controller instance
+     */
+    public static GameController createWindowsControllerOnly(int id)
+    {
+        final ControllerBackend windows=requireBackend(WindowsControllerBackend.NAME);
+        final int maxId=windows.getNumControllers();
+        
+        // check the id limit
+        if(id < 0)
+        {
+            throw new IllegalArgumentException("Cannot create id " + id +", value is illegal\n");
+        }
+        else if(id > maxId)
+        {
+            throw new IllegalArgumentException("Cannot create id " + id +", only supporting up to " + maxId + " controller IDs\n");
+        }
+        
+        // make a generic controller
+        return setupController(new WindowsGameController(), windows, id);
+    }
+    
     /**
      * Create an XBox-compatible controller if possible, otherwise a generic windows game controller
      * @param id The identifier for the control to create
@@ -79,7 +709,9 @@ public abstract class GameControllerManager
      */
     public static GameController createWindowsController(int id)
     {
-        final int maxId=GameControllerNatives.getNumControllers();
+        final ControllerBackend windows=requireBackend(WindowsControllerBackend.NAME);
+        final ControllerBackend xinput=requireBackend(XInputControllerBackend.NAME);
+        final int maxId=windows.getNumControllers();
         
         // check the id limit
         if(id < 0)
@@ -91,34 +723,17 @@ public abstract class GameControllerManager
             throw new IllegalArgumentException("Cannot create id " + id +", only supporting up to " + maxId + " controller IDs\n");
         }
         
-        GameController controller;
-        
         // see if the controller is an XBox controller
-        if(GameControllerNatives.isXInputController(id))
+        if(xinput.isController(id))
         {
             // make an XBox controller
-            controller=new XBoxGameController();
-
-            // set up the instance
-            controller.id=id;
-            controller.caps=GameControllerNatives.getXInputControllerCaps(id);
-            controller.state=new GameControllerState();
+            return setupController(new XBoxGameController(), xinput, id);
         }
         else
         {
             // make a generic controller
-            controller=new WindowsGameController();
-            
-            // set up the instance
-            controller.id=id;
-            controller.caps=GameControllerNatives.getControllerCaps(id);
-            controller.state=new GameControllerState();
+            return setupController(new WindowsGameController(), windows, id);
         }
-        
-        // do an initial poll
-        controller.poll();
-        
-        return controller;
     }
     
     /**
@@ -128,8 +743,9 @@ public abstract class GameControllerManager
     public static ArrayList<GameController> getAllWindowsControllers()
     {
         ArrayList<GameController> list=new ArrayList<GameController>();
+        final int numControllers=requireBackend(WindowsControllerBackend.NAME).getNumControllers();
         
-        for(int id=0; id < GameControllerNatives.getNumControllers() ; ++id)
+        for(int id=0; id < numControllers ; ++id)
         {
             GameController controller=createWindowsController(id);
             
@@ -149,8 +765,9 @@ public abstract class GameControllerManager
     public static ArrayList<GameController> getWindowsControllersOnly()
     {
         ArrayList<GameController> list=new ArrayList<GameController>();
+        final int numControllers=requireBackend(WindowsControllerBackend.NAME).getNumControllers();
         
-        for(int id=0; id < GameControllerNatives.getNumControllers() ; ++id)
+        for(int id=0; id < numControllers ; ++id)
         {
             GameController controller=createWindowsControllerOnly(id);
             
@@ -171,7 +788,8 @@ public abstract class GameControllerManager
      */
     public static GameController createXBoxController(int id)
     {
-        final int maxId=GameControllerNatives.getXInputNumControllers();
+        final ControllerBackend xinput=requireBackend(XInputControllerBackend.NAME);
+        final int maxId=xinput.getNumControllers();
         
         // check the id limit
         if(id < 0)
@@ -183,28 +801,16 @@ public abstract class GameControllerManager
             throw new IllegalArgumentException("Cannot create id " + id +", only supporting up to " + maxId + " controller IDs\n");
         }
         
-        GameController controller;
-        
         // see if the controller is an XBox controller
-        if(GameControllerNatives.isXInputController(id))
+        if(xinput.isController(id))
         {
             // make an XBox controller
-            controller=new XBoxGameController();
-
-            // set up the instance
-            controller.id=id;
-            controller.caps=GameControllerNatives.getXInputControllerCaps(id);
-            controller.state=new GameControllerState();
+            return setupController(new XBoxGameController(), xinput, id);
         }
         else
         {
             return null;
         }
-        
-        // do an initial poll
-        controller.poll();
-        
-        return controller;
     }
     
     /**
@@ -214,8 +820,9 @@ public abstract class GameControllerManager
     public static ArrayList<GameController> getAllXBoxControllers()
     {
         ArrayList<GameController> list=new ArrayList<GameController>();
+        final int numControllers=requireBackend(XInputControllerBackend.NAME).getNumControllers();
         
-        for(int id=0; id < GameControllerNatives.getXInputNumControllers() ; ++id)
+        for(int id=0; id < numControllers ; ++id)
         {
             GameController controller=createXBoxController(id);
             
@@ -228,6 +835,82 @@ public abstract class GameControllerManager
         return list;
     }
     
+    /**
+     * Create a game controller that plays back a recording made by InputRecorder. The controller
+     * gets the id and name of the recorded controller, with gamepad capabilities.
+     * @param file The recording file
+     * @return The game controller instance
+     * @throws IOException if the file cannot be read or is not a recording
+     */
+    public static ReplayGameController createReplayController(Path file) throws IOException
+    {
+        InputRecording recording=new InputRecording(file);
+        ReplayGameController controller=new ReplayGameController();
+        
+        // set up the instance from the recording
+        controller.id=recording.getId();
+        controller.caps=GameControllerCaps.createGamepadCaps(recording.getName());
+        controller.state=new GameControllerState();
+        controller.setRecording(recording);
+        
+        return controller;
+    }
+    
+    /**
+     * Create a stream that receives controllers from a ControllerStreamServer. The stream has to be
+     * started before its controllers see any samples.
+     * @param server The address of the server
+     * @param slots The number of controllers the server streams
+     * @return The stream
+     * @throws IOException if the channel cannot be opened
+     */
+    public static RemoteControllerStream createRemoteStream(InetSocketAddress server, int slots) throws IOException
+    {
+        return new RemoteControllerStream(server, slots);
+    }
+    
+    /**
+     * Create a game controller for one slot of a remote stream. The controller gets the slot as its
+     * id, with gamepad capabilities.
+     * @param stream The stream the samples come from
+     * @param slot The slot of the controller on the server
+     * @return The game controller instance
+     */
+    public static RemoteGameController createRemoteController(RemoteControllerStream stream, int slot)
+    {
+        if((slot < 0) || (slot >= stream.getSlots()))
+        {
+            throw new IllegalArgumentException("Remote stream has no slot " + slot + ", it has " + stream.getSlots() + "\n");
+        }
+        
+        RemoteGameController controller=new RemoteGameController();
+        
+        // set up the instance for the slot
+        controller.id=slot;
+        controller.caps=GameControllerCaps.createGamepadCaps(String.format("RemoteController%d", slot));
+        controller.state=new GameControllerState();
+        controller.setStream(stream);
+        
+        return controller;
+    }
+    
+    /**
+     * Get a game controller for every slot of a remote stream
+     * @param stream The stream the samples come from
+     * @return The list of remote controllers, in slot order
+     */
+    public static ArrayList<GameController> getAllRemoteControllers(RemoteControllerStream stream)
+    {
+        ArrayList<GameController> list=new ArrayList<GameController>();
+        
+        for(int slot=0; slot < stream.getSlots() ; ++slot)
+        {
+            list.add(createRemoteController(stream, slot));
+        }
+        
+        return list;
+    }
+    
     /**
      * Create a null game controller
      * @param id The identifier for the control to create
@@ -0,0 +1,40 @@
+package com.zairon.GameControllerEngine;
+
+/**
+ * The management interface for the GameControllerManager, registered with JMX the first time
+ * GameControllerManager.registerMBeans is called.
+ * @author Michael Watkins
+ *
+ */
+public interface GameControllerManagerMXBean
+{
+    /**
+     * Get the name of the backend used to create controllers
+     * @return The name of the backend, or "none" if no backend is available
+     */
+    public String getBackendName();
+
+    /**
+     * Get the number of controllers registered with JMX
+     * @return The number of controllers
+     */
+    public int getRegisteredControllerCount();
+
+    /**
+     * Get the number of capabilities in the capabilities cache
+     * @return The number of capabilities
+     */
+    public int getCapsCacheSize();
+
+    /**
+     * Get the number of capabilities found in the cache
+     * @return The number of hits
+     */
+    public long getCapsCacheHitCount();
+
+    /**
+     * Get the number of capabilities that had to be read from a backend
+     * @return The number of misses
+     */
+    public long getCapsCacheMissCount();
+}
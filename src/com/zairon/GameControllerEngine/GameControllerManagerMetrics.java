@@ -0,0 +1,61 @@
+package com.zairon.GameControllerEngine;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * The metrics of the GameControllerManager as a whole, see GameControllerManagerMXBean.
+ * @author Michael Watkins
+ *
+ */
+class GameControllerManagerMetrics implements GameControllerManagerMXBean
+{
+    /**
+     * The pattern matching the names of every controller registered
+     */
+    private final ObjectName controllerPattern;
+
+    /**
+     * Construct the metrics
+     * @throws MalformedObjectNameException if the controller pattern is not a legal name
+     */
+    GameControllerManagerMetrics() throws MalformedObjectNameException
+    {
+        controllerPattern=new ObjectName(GameControllerManager.MBEAN_DOMAIN + ":type=GameController,*");
+    }
+
+    @Override
+    public String getBackendName()
+    {
+        ControllerBackend backend=GameControllerManager.getBackend();
+
+        return (backend!=null) ? backend.getName() : "none";
+    }
+
+    @Override
+    public int getRegisteredControllerCount()
+    {
+        return ManagementFactory.getPlatformMBeanServer().queryNames(controllerPattern, null).size();
+    }
+
+    @Override
+    public int getCapsCacheSize()
+    {
+        return GameControllerManager.getCapsCache().size();
+    }
+
+    @Override
+    public long getCapsCacheHitCount()
+    {
+        return GameControllerManager.getCapsCache().getHitCount();
+    }
+
+    @Override
+    public long getCapsCacheMissCount()
+    {
+        return GameControllerManager.getCapsCache().getMissCount();
+    }
+
+}
@@ -1,9 +1,11 @@
 package com.zairon.GameControllerEngine;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 /**
  * This contains the natives for interacting with a game controller connected to the system.
+ * The library is loaded by NativeLoader; the first use of this class waits for it to load.
  * @author Michael Watkins
  *
  */
@@ -121,6 +123,14 @@ public class GameControllerNatives
      */
     public static native GameControllerCaps getControllerCaps(int id);
     
+    /**
+     * Get a number identifying the device connected, from its manufacturer and product ids and
+     * its name. This does not build any objects.
+     * @param id The id of the controller
+     * @return The identity of the device, or zero if not connected
+     */
+    public static native long getDeviceIdentity(int id);
+    
     /**
      * Get the controller state.
      * @param id The id of the controller to get the name for
@@ -129,6 +139,17 @@ public class GameControllerNatives
      */
     public static native boolean getControllerState(int id, GameControllerState state);
     
+    /**
+     * Get the controller state for a range of records in a packed state buffer, in one call.
+     * See GameControllerStateBuffer for the layout of the records. Only libraries built with
+     * this export have it, so callers must be ready for an UnsatisfiedLinkError.
+     * @param buffer The direct buffer holding the records, with the ids already filled in
+     * @param first The index of the first record to read
+     * @param count The number of records to read
+     * @return The number of controllers that are connected
+     */
+    public static native int getControllerStates(ByteBuffer buffer, int first, int count);
+    
     /**
      * Get the number of controllers supported by XInput. This is not
      * the number of controllers connected.
@@ -192,6 +213,14 @@ public class GameControllerNatives
      */
     public static native GameControllerCaps getXInputControllerCaps(int id);
     
+    /**
+     * Get a number identifying the device connected for XInput. XInput does not give the vendor
+     * and product ids, so this is built from the type, subtype and flags of the device.
+     * @param id The id of the controller
+     * @return The identity of the device, or zero if not connected
+     */
+    public static native long getXInputDeviceIdentity(int id);
+    
     /**
      * Get the controller state for XInput.
      * @param id The id of the controller to get the name for
@@ -200,15 +229,21 @@ public class GameControllerNatives
      */
     public static native boolean getXInputControllerState(int id, GameControllerState state);
     
+    /**
+     * Get the controller state for XInput for a range of records in a packed state buffer, in one call.
+     * See GameControllerStateBuffer for the layout of the records. Only libraries built with
+     * this export have it, so callers must be ready for an UnsatisfiedLinkError.
+     * @param buffer The direct buffer holding the records, with the ids already filled in
+     * @param first The index of the first record to read
+     * @param count The number of records to read
+     * @return The number of controllers that are connected
+     */
+    public static native int getXInputControllerStates(ByteBuffer buffer, int first, int count);
+    
     static
     {
-        // load the library exactly once
-        String arch=System.getProperty("sun.arch.data.model");
-        String os=getOsString();
-        String libName=os + NATIVE_LIBRARY_NAME + arch;
-        System.out.println("Loading library " + libName +" for " + arch + " bit architecture");
-        System.loadLibrary(libName);
-        
+        // the library loads on the NativeLoader thread, so only wait for it here for direct callers
+        NativeLoader.await();
     }
 
 }
@@ -3,7 +3,7 @@ package com.zairon.GameControllerEngine;
 /**
  * A position for the game controller on a single axis. This implements a dead zone,
  * and when a position is assigned, if the value is in the dead zone it is set
- * to zero.
+ * to zero. How the dead zone is applied depends on its shape, see DeadZoneShape.
  * @author Michael Watkins
  *
  */
@@ -24,11 +24,41 @@ public class GameControllerPoint
      */
     private boolean neutral;
     
+    /**
+     * The x-position before the dead zone
+     */
+    private float rawX;
+    
+    /**
+     * The y-position before the dead zone
+     */
+    private float rawY;
+    
     /**
      * The dead zone.
      */
     private float deadZone;
     
+    /**
+     * The square of the dead zone, so the radial tests need no square root
+     */
+    private float deadZoneSquared;
+    
+    /**
+     * The reciprocal of the range outside the dead zone, for rescaling
+     */
+    private float scale;
+    
+    /**
+     * The shape of the dead zone
+     */
+    private DeadZoneShape shape=DeadZoneShape.HYBRID;
+    
+    /**
+     * The response curve applied after the dead zone, or null for none
+     */
+    private volatile ResponseCurve responseCurve;
+    
     /**
      * Construct the controller point
      * @param x The x-axis position
@@ -39,7 +69,9 @@ public class GameControllerPoint
     {
         this.x=x;
         this.y=y;
-        this.deadZone=deadZone;
+        this.rawX=x;
+        this.rawY=y;
+        setThresholds(deadZone);
     }
     
     /**
@@ -66,10 +98,62 @@ public class GameControllerPoint
      */
     public void setDeadZone(float deadZone)
     {
-        this.deadZone = deadZone;
+        setThresholds(deadZone);
         
         // run the current coordinates through the dead zone test
-        testDeadZone(this.x, this.y);
+        testDeadZone(this.rawX, this.rawY);
+    }
+    
+    /**
+     * Get the shape of the dead zone
+     * @return the shape of the dead zone
+     */
+    public DeadZoneShape getDeadZoneShape()
+    {
+        return shape;
+    }
+    
+    /**
+     * Set the shape of the dead zone
+     * @param shape the new shape of the dead zone
+     */
+    public void setDeadZoneShape(DeadZoneShape shape)
+    {
+        this.shape=shape;
+        
+        // run the current coordinates through the dead zone test
+        testDeadZone(this.rawX, this.rawY);
+    }
+    
+    /**
+     * Get the response curve applied after the dead zone
+     * @return the response curve, or null for none
+     */
+    public ResponseCurve getResponseCurve()
+    {
+        return responseCurve;
+    }
+    
+    /**
+     * Set the response curve applied after the dead zone. The curve is applied to each
+     * coordinate on its own. This can be changed while the point is set on another thread;
+     * the new curve is used from the next position.
+     * @param responseCurve the new response curve, or null for none
+     */
+    public void setResponseCurve(ResponseCurve responseCurve)
+    {
+        this.responseCurve=responseCurve;
+    }
+    
+    /**
+     * Work out the thresholds for a dead zone, so the test only compares and multiplies
+     * @param deadZone The dead zone
+     */
+    private void setThresholds(float deadZone)
+    {
+        this.deadZone=deadZone;
+        this.deadZoneSquared=deadZone * deadZone;
+        this.scale=(deadZone < 1.0f) ? 1.0f / (1.0f - deadZone) : 0.0f;
     }
     
     /**
@@ -88,7 +172,7 @@ public class GameControllerPoint
     public void setX(float x)
     {
         // flow through the dead zone test
-        testDeadZone(x, this.y);        
+        testDeadZone(x, this.rawY);        
     }
 
     /**
@@ -107,7 +191,7 @@ public class GameControllerPoint
     public void setY(float y)
     {
         // flow through the dead zone test
-        testDeadZone(this.x, y);        
+        testDeadZone(this.rawX, y);        
     }
 
     /**
@@ -156,70 +240,80 @@ public class GameControllerPoint
     }
     
     /**
-     * Test the coordinates for the dead zone. If the position is in
-     * the radius of the dead zone, then zero both coordinates. If either
-     * coordinate is within the dead zone, it will be zeroed separately.
+     * Test the coordinates for the dead zone. The shape picks how; all of the shapes other
+     * than AXIAL first zero both coordinates if the position is in the radius of the dead zone.
+     * The radius is tested against the square of the dead zone, so only SCALED_RADIAL needs a
+     * square root, and only outside the dead zone.
      * @param x The x-axis position
      * @param y The y-axis position
      */
     private void testDeadZone(float x, float y)
     {
-        float dist=(float)Math.sqrt((x * x) + (y * y));
+        float xAbs=Math.abs(x);
+        float yAbs=Math.abs(y);
         
-        if(dist <= deadZone)
+        rawX=x;
+        rawY=y;
+        
+        if((shape!=DeadZoneShape.AXIAL) && (((x * x) + (y * y)) <= deadZoneSquared))
         {
-            // both of the coordinates are within the dead zone, so make both zero
-            this.x=0.0f;
-            this.y=0.0f;
-            
-            // set the neutral flag
-            neutral=true;
+            // the position is within the dead zone, so make both zero
+            store(0.0f, 0.0f);
+            return;
         }
-        else
+        
+        switch(shape)
+        {
+        case RADIAL:
+            // outside the dead zone radius the position is used as is
+            store(x, y);
+            break;
+            
+        case SCALED_RADIAL:
         {
-            float xAbs=Math.abs(x);
-            float yAbs=Math.abs(y);
+            // rescale the length so it starts from zero at the edge of the dead zone, capped at one
+            float inverseLength=1.0f / (float)Math.sqrt((x * x) + (y * y));
+            float factor=Math.min((1.0f - (deadZone * inverseLength)) * scale, inverseLength);
+            
+            store(x * factor, y * factor);
+            break;
+        }
             
-            // if both are in the dead zone, make neutral
-            if((xAbs <= deadZone) && (yAbs <= deadZone))
-            {
-                this.x=0.0f;
-                this.y=0.0f;
-                
-                // set the neutral flag
-                neutral=true;
-            }
-            else
-            {
-                // stick is not neutral
-                neutral=false;
-                
-                // the stick position is outside the dead zone
-                // now test individual coordinates for being in the dead zone
-                if(xAbs <= deadZone)
-                {
-                    this.x=0.0f;
-                }
-                else
-                {
-                    this.x=x;
-                }
-                
-                if(yAbs <= deadZone)
-                {
-                    this.y=0.0f;
-                }
-                else
-                {
-                    this.y=y;
-                }
-                
-            }
+        case BOWTIE:
+            // zero each coordinate inside the wedge around the other axis
+            store((xAbs <= (deadZone * yAbs)) ? 0.0f : x, (yAbs <= (deadZone * xAbs)) ? 0.0f : y);
+            break;
             
+        default:
+            // AXIAL and HYBRID test the individual coordinates for being in the dead zone
+            store((xAbs <= deadZone) ? 0.0f : x, (yAbs <= deadZone) ? 0.0f : y);
+            break;
         }
         
     }
     
+    /**
+     * Store the position after the dead zone and response curve, and whether it is neutral
+     * @param x The x-axis position
+     * @param y The y-axis position
+     */
+    private void store(float x, float y)
+    {
+        ResponseCurve responseCurve=this.responseCurve;
+        
+        if(responseCurve!=null)
+        {
+            x=responseCurve.apply(x);
+            y=responseCurve.apply(y);
+        }
+        
+        this.x=x;
+        this.y=y;
+        
+        // the stick is neutral when both coordinates are zero
+        neutral=(x==0.0f) && (y==0.0f);
+    }
+    
     @Override
     public String toString()
     {
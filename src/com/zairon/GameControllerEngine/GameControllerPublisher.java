@@ -0,0 +1,77 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Publishes complete controller samples from the thread that polls to any number of reader threads.
+ * This is a sequence lock built on StampedLock: the polling thread takes the write lock only
+ * for the copy of one sample, and readers copy the sample under an optimistic read stamp,
+ * retrying if a publish happened during the copy. Readers never take a lock and never block
+ * the polling thread, and a reader can never see the fields of two different samples mixed together.
+ * There must be only one thread publishing for a controller.
+ * @author Michael Watkins
+ *
+ */
+public class GameControllerPublisher
+{
+    /**
+     * The sequence lock guarding the published sample
+     */
+    private final StampedLock lock=new StampedLock();
+
+    /**
+     * The last sample published
+     */
+    private final GameControllerSnapshot published=new GameControllerSnapshot();
+
+    /**
+     * The number of samples published, only changed by the publishing thread
+     */
+    private long sequence;
+
+    /**
+     * Publish the current sample of a controller. Called by the polling thread after each poll.
+     * @param controller The controller to publish
+     */
+    void publish(GameController controller)
+    {
+        long stamp=lock.writeLock();
+
+        try
+        {
+            published.capture(controller, ++sequence);
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Copy the last sample published into a snapshot. This never blocks; if a sample is published
+     * while copying, the copy is done again.
+     * @param snapshot The snapshot to copy into
+     * @return The snapshot given, for chaining
+     */
+    public GameControllerSnapshot read(GameControllerSnapshot snapshot)
+    {
+        while(true)
+        {
+            long stamp=lock.tryOptimisticRead();
+
+            // a zero stamp means a publish is in progress
+            if(stamp!=0)
+            {
+                snapshot.copy(published);
+
+                if(lock.validate(stamp))
+                {
+                    return snapshot;
+                }
+            }
+
+            Thread.onSpinWait();
+        }
+    }
+
+}
@@ -0,0 +1,372 @@
+package com.zairon.GameControllerEngine;
+
+/**
+ * A consistent copy of one controller sample, taken from a GameControllerPublisher.
+ * The axes and points are the values after the dead zones were applied, the same as
+ * returned by the controller getters. Snapshots are owned by the reader and are reused
+ * from sample to sample, so taking one does not allocate.
+ * @author Michael Watkins
+ *
+ */
+public class GameControllerSnapshot
+{
+    /**
+     * The number of the sample, counting up from one for each sample published
+     */
+    private long sequence;
+
+    /**
+     * Indicates whether the game controller is connected
+     */
+    private boolean connected;
+
+    /**
+     * The button map
+     */
+    private int buttonMap;
+
+    /**
+     * The button map from the sample before this one
+     */
+    private int previousButtonMap;
+
+    /**
+     * The x-axis position of the x/y point
+     */
+    private float x;
+
+    /**
+     * The y-axis position of the x/y point
+     */
+    private float y;
+
+    /**
+     * The z-axis position
+     */
+    private float z;
+
+    /**
+     * The left trigger position
+     */
+    private float leftTrigger;
+
+    /**
+     * The right trigger position
+     */
+    private float rightTrigger;
+
+    /**
+     * The r-axis (up/down) position of the r/u point
+     */
+    private float r;
+
+    /**
+     * The u-axis (left/right) position of the r/u point
+     */
+    private float u;
+
+    /**
+     * The v-axis position
+     */
+    private float v;
+
+    /**
+     * The raw position of the point-of-view hat in degrees
+     */
+    private float pov;
+
+    /**
+     * The x-axis position of the point-of-view hat point
+     */
+    private float povX;
+
+    /**
+     * The y-axis position of the point-of-view hat point
+     */
+    private float povY;
+
+    /**
+     * Whether the left trigger is pressed
+     */
+    private boolean leftTriggerPressed;
+
+    /**
+     * Whether the right trigger is pressed
+     */
+    private boolean rightTriggerPressed;
+
+    /**
+     * When the backend returned the sample, in System.nanoTime units
+     */
+    private long readTime;
+
+    /**
+     * When the sample was committed, in System.nanoTime units
+     */
+    private long commitTime;
+
+    /**
+     * When the sample was delivered into this snapshot, in System.nanoTime units
+     */
+    private long deliveryTime;
+
+    /**
+     * Get the number of the sample. This is zero until a sample has been published.
+     * @return The number of the sample
+     */
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    /**
+     * Return whether the controller was connected
+     * @return true if connected, false otherwise
+     */
+    public boolean isConnected()
+    {
+        return connected;
+    }
+
+    /**
+     * Get the button map
+     * @return The button map, with bit n set if button n is pressed
+     */
+    public int getButtonMap()
+    {
+        return buttonMap;
+    }
+
+    /**
+     * Get the button map from the sample before this one
+     * @return The previous button map
+     */
+    public int getPreviousButtonMap()
+    {
+        return previousButtonMap;
+    }
+
+    /**
+     * Return true if a particular button is pressed
+     * @param button The number for the button from 0 to MAX_BUTTONS
+     * @return true if the button is pressed, false otherwise.
+     */
+    public boolean isPressed(int button)
+    {
+        return (button >= 0) && (button < GameControllerState.MAX_BUTTONS) && (((buttonMap >>> button) & 1)!=0);
+    }
+
+    /**
+     * Get the x-axis position of the x/y point, corrected for dead zone
+     * @return The x-axis position
+     */
+    public float getX()
+    {
+        return x;
+    }
+
+    /**
+     * Get the y-axis position of the x/y point, corrected for dead zone
+     * @return The y-axis position
+     */
+    public float getY()
+    {
+        return y;
+    }
+
+    /**
+     * Get the z-axis position, corrected for dead zone
+     * @return The z-axis position
+     */
+    public float getZ()
+    {
+        return z;
+    }
+
+    /**
+     * Get the left trigger position, corrected for dead zone
+     * @return The left trigger position
+     */
+    public float getLeftTrigger()
+    {
+        return leftTrigger;
+    }
+
+    /**
+     * Get the right trigger position, corrected for dead zone
+     * @return The right trigger position
+     */
+    public float getRightTrigger()
+    {
+        return rightTrigger;
+    }
+
+    /**
+     * Get the r-axis (up/down) position of the r/u point, corrected for dead zone
+     * @return The r-axis position
+     */
+    public float getR()
+    {
+        return r;
+    }
+
+    /**
+     * Get the u-axis (left/right) position of the r/u point, corrected for dead zone
+     * @return The u-axis position
+     */
+    public float getU()
+    {
+        return u;
+    }
+
+    /**
+     * Get the v-axis position, corrected for dead zone
+     * @return The v-axis position
+     */
+    public float getV()
+    {
+        return v;
+    }
+
+    /**
+     * Get the raw position of the point-of-view hat
+     * @return The position in degrees, 360.0 or more when neutral
+     */
+    public float getPOV()
+    {
+        return pov;
+    }
+
+    /**
+     * Get the x-axis position of the point-of-view hat point
+     * @return The x-axis position
+     */
+    public float getPOVX()
+    {
+        return povX;
+    }
+
+    /**
+     * Get the y-axis position of the point-of-view hat point
+     * @return The y-axis position
+     */
+    public float getPOVY()
+    {
+        return povY;
+    }
+
+    /**
+     * Return whether the left trigger is pressed
+     * @return true if the left trigger is pressed, false otherwise
+     */
+    public boolean isLeftTriggerPressed()
+    {
+        return leftTriggerPressed;
+    }
+
+    /**
+     * Return whether the right trigger is pressed
+     * @return true if the right trigger is pressed, false otherwise
+     */
+    public boolean isRightTriggerPressed()
+    {
+        return rightTriggerPressed;
+    }
+
+    /**
+     * Get when the backend returned the sample
+     * @return The time in System.nanoTime units, or zero if never read
+     */
+    public long getReadTime()
+    {
+        return readTime;
+    }
+
+    /**
+     * Get when the sample was committed, after the dead zones and button mapping were applied
+     * @return The time in System.nanoTime units, or zero if never committed
+     */
+    public long getCommitTime()
+    {
+        return commitTime;
+    }
+
+    /**
+     * Get when the sample was delivered into this snapshot, by GameController.snapshot or a SnapshotFlow
+     * @return The time in System.nanoTime units, or zero if not delivered that way
+     */
+    public long getDeliveryTime()
+    {
+        return deliveryTime;
+    }
+
+    /**
+     * Set when the sample was delivered
+     * @param deliveryTime The time in System.nanoTime units
+     */
+    void setDeliveryTime(long deliveryTime)
+    {
+        this.deliveryTime=deliveryTime;
+    }
+
+    /**
+     * Capture the current sample of a controller
+     * @param controller The controller to capture
+     * @param sequence The number of the sample
+     */
+    void capture(GameController controller, long sequence)
+    {
+        GameControllerState state=controller.getState();
+
+        this.sequence=sequence;
+        this.connected=state.isConnected();
+        this.buttonMap=state.getButtonMap();
+        this.previousButtonMap=state.getPreviousButtonMap();
+        this.x=controller.getXY().getX();
+        this.y=controller.getXY().getY();
+        this.z=controller.getZ().getP();
+        this.leftTrigger=controller.getLeftTrigger().getP();
+        this.rightTrigger=controller.getRightTrigger().getP();
+        // the r/u point keeps u as its x and r as its y
+        this.u=controller.getRU().getX();
+        this.r=controller.getRU().getY();
+        this.v=controller.getV().getP();
+        this.pov=state.getPOV();
+        this.povX=controller.getPOV().getX();
+        this.povY=controller.getPOV().getY();
+        this.leftTriggerPressed=controller.isLeftTriggerPressed();
+        this.rightTriggerPressed=controller.isRightTriggerPressed();
+        this.readTime=state.getReadTime();
+        this.commitTime=state.getCommitTime();
+        this.deliveryTime=0L;
+    }
+
+    /**
+     * Copy another snapshot into this one
+     * @param other The snapshot to copy
+     */
+    void copy(GameControllerSnapshot other)
+    {
+        this.sequence=other.sequence;
+        this.connected=other.connected;
+        this.buttonMap=other.buttonMap;
+        this.previousButtonMap=other.previousButtonMap;
+        this.x=other.x;
+        this.y=other.y;
+        this.z=other.z;
+        this.leftTrigger=other.leftTrigger;
+        this.rightTrigger=other.rightTrigger;
+        this.r=other.r;
+        this.u=other.u;
+        this.v=other.v;
+        this.pov=other.pov;
+        this.povX=other.povX;
+        this.povY=other.povY;
+        this.leftTriggerPressed=other.leftTriggerPressed;
+        this.rightTriggerPressed=other.rightTriggerPressed;
+        this.readTime=other.readTime;
+        this.commitTime=other.commitTime;
+        this.deliveryTime=other.deliveryTime;
+    }
+
+}
@@ -1,5 +1,7 @@
 package com.zairon.GameControllerEngine;
 
+import java.util.function.IntConsumer;
+
 /**
  * This contains the state of the controller. Used with GameControllerNatives.getControllerState.
  * @author Michael Watkins
@@ -67,14 +69,31 @@ public class GameControllerState
     private float pov;
     
     /**
-     * The set flags for the buttons
+     * The set flags for the buttons, with bit n set if button n is pressed.
+     * This is the source of truth for the buttons.
      */
     private int buttonMap;
     
     /**
-     * The array of buttons and whether they are pressed
+     * The button map from the sample before this one, used for edge detection
+     */
+    private int previousButtonMap;
+    
+    /**
+     * The array of buttons and whether they are pressed. This is only filled in from
+     * the button map when getButtons is called.
+     */
+    private final boolean buttons[]=new boolean[MAX_BUTTONS];
+    
+    /**
+     * When the backend returned this sample, in System.nanoTime units, or zero if never read
+     */
+    private long readTime;
+    
+    /**
+     * When this sample was committed after the dead zones were applied, in System.nanoTime units, or zero if never committed
      */
-    boolean buttons[]=new boolean[MAX_BUTTONS];
+    private long commitTime;
     
     /**
      * Return whether the controller is connected. If not connected, the capabilities
@@ -183,11 +202,53 @@ public class GameControllerState
     }
     
     /**
-     * Get the buttons array
+     * Get the button map from the sample before this one
+     * @return The previous button map
+     */
+    public int getPreviousButtonMap()
+    {
+        return previousButtonMap;
+    }
+    
+    /**
+     * Get the buttons that went down since the previous sample
+     * @return The button map of the buttons just pressed
+     */
+    public int getJustPressedMap()
+    {
+        return buttonMap & ~previousButtonMap;
+    }
+    
+    /**
+     * Get the buttons that went up since the previous sample
+     * @return The button map of the buttons just released
+     */
+    public int getJustReleasedMap()
+    {
+        return ~buttonMap & previousButtonMap;
+    }
+    
+    /**
+     * Get the buttons that changed since the previous sample
+     * @return The button map of the buttons that changed
+     */
+    public int getChangedMap()
+    {
+        return buttonMap ^ previousButtonMap;
+    }
+    
+    /**
+     * Get the buttons array. The array is refreshed from the button map on each call,
+     * so prefer getButtonMap or isPressed on the poll path.
      * @return The buttons array, with true in the array indicating the button is pressed.
      */
     public boolean[] getButtons()
     {
+        for(int i=0 ; i < MAX_BUTTONS ; ++i)
+        {
+            buttons[i]=((buttonMap >>> i) & 1)!=0;
+        }
+        
         return buttons;
     }
         
@@ -198,7 +259,269 @@ public class GameControllerState
      */
     public boolean isPressed(int button)
     {
-        return this.buttons[button];
+        return isSet(buttonMap, button);
+    }
+    
+    /**
+     * Return true if a particular button went down since the previous sample
+     * @param button The number for the button from 0 to MAX_BUTTONS
+     * @return true if the button was just pressed, false otherwise.
+     */
+    public boolean isJustPressed(int button)
+    {
+        return isSet(getJustPressedMap(), button);
+    }
+    
+    /**
+     * Return true if a particular button went up since the previous sample
+     * @param button The number for the button from 0 to MAX_BUTTONS
+     * @return true if the button was just released, false otherwise.
+     */
+    public boolean isJustReleased(int button)
+    {
+        return isSet(getJustReleasedMap(), button);
+    }
+    
+    /**
+     * Return true if any button is pressed
+     * @return true if any button is pressed, false otherwise.
+     */
+    public boolean isAnyPressed()
+    {
+        return buttonMap!=0;
+    }
+    
+    /**
+     * Return true if any of the buttons in a mask are pressed
+     * @param mask The button map of the buttons to test
+     * @return true if any of the buttons are pressed, false otherwise.
+     */
+    public boolean isAnyPressed(int mask)
+    {
+        return (buttonMap & mask)!=0;
+    }
+    
+    /**
+     * Return true if all of the buttons in a mask are pressed
+     * @param mask The button map of the buttons to test
+     * @return true if all of the buttons are pressed, false otherwise.
+     */
+    public boolean isAllPressed(int mask)
+    {
+        return (buttonMap & mask)==mask;
+    }
+    
+    /**
+     * Call an action for each pressed button, lowest button first
+     * @param action The action to call with the button number
+     */
+    public void forEachPressed(IntConsumer action)
+    {
+        forEachButton(buttonMap, action);
+    }
+    
+    /**
+     * Call an action for each button just pressed, lowest button first
+     * @param action The action to call with the button number
+     */
+    public void forEachJustPressed(IntConsumer action)
+    {
+        forEachButton(getJustPressedMap(), action);
+    }
+    
+    /**
+     * Call an action for each button just released, lowest button first
+     * @param action The action to call with the button number
+     */
+    public void forEachJustReleased(IntConsumer action)
+    {
+        forEachButton(getJustReleasedMap(), action);
+    }
+    
+    /**
+     * Call an action for each button set in a button map, lowest button first.
+     * This is the same as the loop
+     * <pre>
+     * for(int map=buttonMap ; map!=0 ; map &amp;= map - 1)
+     * {
+     *     int button=Integer.numberOfTrailingZeros(map);
+     * }
+     * </pre>
+     * which can be written out directly where even a lambda is too much.
+     * @param buttonMap The button map to walk
+     * @param action The action to call with the button number
+     */
+    public static void forEachButton(int buttonMap, IntConsumer action)
+    {
+        for(int map=buttonMap ; map!=0 ; map &= map - 1)
+        {
+            action.accept(Integer.numberOfTrailingZeros(map));
+        }
+    }
+    
+    /**
+     * Test a button in a button map. Buttons outside of the map are never set.
+     * @param map The button map
+     * @param button The number for the button
+     * @return true if the button is set, false otherwise.
+     */
+    private static boolean isSet(int map, int button)
+    {
+        return (button >= 0) && (button < MAX_BUTTONS) && (((map >>> button) & 1)!=0);
+    }
+    
+    /**
+     * Get when the backend returned this sample. Compare with System.nanoTime for the age of the sample.
+     * @return The time in System.nanoTime units, or zero if the controller has never been read
+     */
+    public long getReadTime()
+    {
+        return readTime;
+    }
+    
+    /**
+     * Get when this sample was committed, after the dead zones and button mapping were applied.
+     * The commit is only stamped when latency, events or recording are on for the controller;
+     * otherwise this is the read time.
+     * @return The time in System.nanoTime units, or zero if no sample has been committed
+     */
+    public long getCommitTime()
+    {
+        return commitTime;
+    }
+    
+    /**
+     * Set when the backend returned this sample. Used by GameController.
+     * @param readTime The time in System.nanoTime units
+     */
+    void setReadTime(long readTime)
+    {
+        this.readTime=readTime;
+    }
+    
+    /**
+     * Set when this sample was committed. Used by GameController.
+     * @param commitTime The time in System.nanoTime units
+     */
+    void setCommitTime(long commitTime)
+    {
+        this.commitTime=commitTime;
+    }
+    
+    /**
+     * Remember the current button map as the previous one. Called before each new sample is read,
+     * so the edges are always between two consecutive samples.
+     */
+    void latch()
+    {
+        previousButtonMap=buttonMap;
+    }
+
+    /**
+     * Set whether the controller is connected. Used by backends implemented in Java.
+     * @param connected true if connected, false otherwise
+     */
+    void setConnected(boolean connected)
+    {
+        this.connected=connected;
+    }
+
+    /**
+     * Set the axis values. Used by backends implemented in Java.
+     * @param x The x-axis value
+     * @param y The y-axis value
+     * @param z The z-axis value
+     * @param r The r-axis value
+     * @param u The u-axis value
+     * @param v The v-axis value
+     */
+    void setAxes(float x, float y, float z, float r, float u, float v)
+    {
+        this.x=x;
+        this.y=y;
+        this.z=z;
+        this.r=r;
+        this.u=u;
+        this.v=v;
+    }
+
+    /**
+     * Set the trigger values. Used by backends implemented in Java.
+     * @param leftTrigger The left trigger value, from 0.0 to 1.0
+     * @param rightTrigger The right trigger value, from 0.0 to 1.0
+     */
+    void setTriggers(float leftTrigger, float rightTrigger)
+    {
+        this.leftTrigger=leftTrigger;
+        this.rightTrigger=rightTrigger;
+    }
+
+    /**
+     * Set the point-of-view hat position. Used by backends implemented in Java.
+     * @param pov The point-of-view hat position in degrees
+     */
+    void setPOV(float pov)
+    {
+        this.pov=pov;
+    }
+
+    /**
+     * Set the button map. Used by backends implemented in Java.
+     * @param buttonMap The button map, with bit n set if button n is pressed
+     */
+    void setButtonMap(int buttonMap)
+    {
+        this.buttonMap=buttonMap;
+    }
+
+    /**
+     * Copy another state into this one, including the previous button map and the time stamps
+     * @param other The state to copy
+     */
+    void copy(GameControllerState other)
+    {
+        copySample(other);
+        previousButtonMap=other.previousButtonMap;
+        readTime=other.readTime;
+        commitTime=other.commitTime;
+    }
+
+    /**
+     * Copy the sample of another state into this one, leaving the previous button map and the time stamps
+     * @param other The state to copy
+     */
+    void copySample(GameControllerState other)
+    {
+        connected=other.connected;
+        x=other.x;
+        y=other.y;
+        z=other.z;
+        leftTrigger=other.leftTrigger;
+        rightTrigger=other.rightTrigger;
+        r=other.r;
+        u=other.u;
+        v=other.v;
+        pov=other.pov;
+        buttonMap=other.buttonMap;
+    }
+
+    /**
+     * Copy the state from a record in a packed state buffer
+     * @param view The view of the record to copy
+     */
+    void read(GameControllerStateView view)
+    {
+        connected=view.isConnected();
+        x=view.getX();
+        y=view.getY();
+        z=view.getZ();
+        leftTrigger=view.getLeftTrigger();
+        rightTrigger=view.getRightTrigger();
+        r=view.getR();
+        u=view.getU();
+        v=view.getV();
+        pov=view.getPOV();
+        setButtonMap(view.getButtonMap());
     }
 
     /**
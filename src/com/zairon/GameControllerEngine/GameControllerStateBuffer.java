@@ -0,0 +1,276 @@
+package com.zairon.GameControllerEngine;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A packed buffer holding the raw state of many controllers, so a whole set of controllers
+ * can be read with one call into a backend, and with one crossing into the natives.
+ * The buffer is a direct ByteBuffer in native byte order made of fixed-size records,
+ * one per controller. The id of each record is filled in before the read, and the backend
+ * fills in the rest. Each record is RECORD_SIZE bytes, laid out as:
+ * <pre>
+ * offset  type    field
+ *      0  int     id            the id of the controller to read
+ *      4  int     flags         FLAG_CONNECTED is set if the controller is connected,
+ *                               FLAG_SKIP is set before the read to leave the record alone
+ *      8  int     buttonMap     bit n is set if button n is pressed
+ *     12  float   x             -1.0 to 1.0
+ *     16  float   y             -1.0 to 1.0
+ *     20  float   z             -1.0 to 1.0
+ *     24  float   leftTrigger   0.0 to 1.0
+ *     28  float   rightTrigger  0.0 to 1.0
+ *     32  float   r             -1.0 to 1.0
+ *     36  float   u             -1.0 to 1.0
+ *     40  float   v             -1.0 to 1.0
+ *     44  float   pov           degrees, 360.0 or more when neutral
+ *     48          reserved, left as zero
+ * </pre>
+ * This must match the GCNStateRecord structure in the natives.
+ * @author Michael Watkins
+ *
+ */
+public class GameControllerStateBuffer
+{
+    /**
+     * The size of a record in bytes. This is one cache line so records never share a line.
+     */
+    public static final int RECORD_SIZE=64;
+
+    /**
+     * The offset of the controller id
+     */
+    public static final int ID_OFFSET=0;
+
+    /**
+     * The offset of the flags
+     */
+    public static final int FLAGS_OFFSET=4;
+
+    /**
+     * The offset of the button map
+     */
+    public static final int BUTTON_MAP_OFFSET=8;
+
+    /**
+     * The offset of the x-axis value
+     */
+    public static final int X_OFFSET=12;
+
+    /**
+     * The offset of the y-axis value
+     */
+    public static final int Y_OFFSET=16;
+
+    /**
+     * The offset of the z-axis value
+     */
+    public static final int Z_OFFSET=20;
+
+    /**
+     * The offset of the left trigger value
+     */
+    public static final int LEFT_TRIGGER_OFFSET=24;
+
+    /**
+     * The offset of the right trigger value
+     */
+    public static final int RIGHT_TRIGGER_OFFSET=28;
+
+    /**
+     * The offset of the r-axis value
+     */
+    public static final int R_OFFSET=32;
+
+    /**
+     * The offset of the u-axis value
+     */
+    public static final int U_OFFSET=36;
+
+    /**
+     * The offset of the v-axis value
+     */
+    public static final int V_OFFSET=40;
+
+    /**
+     * The offset of the point-of-view hat position
+     */
+    public static final int POV_OFFSET=44;
+
+    /**
+     * The flag set when the controller is connected
+     */
+    public static final int FLAG_CONNECTED=1;
+
+    /**
+     * The flag set before a read when the controller must not be read, such as a disconnected
+     * controller a HotplugMonitor is probing. The backend leaves the whole record alone.
+     */
+    public static final int FLAG_SKIP=2;
+
+    /**
+     * The packed records
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The number of records in the buffer
+     */
+    private final int capacity;
+
+    /**
+     * A state to read into before copying into a record, so backends without a batched read do not allocate
+     */
+    private final GameControllerState scratchState=new GameControllerState();
+
+    /**
+     * Construct the buffer
+     * @param capacity The number of controller records to hold
+     */
+    public GameControllerStateBuffer(int capacity)
+    {
+        if(capacity < 0)
+        {
+            throw new IllegalArgumentException("Cannot make a buffer for " + capacity + " controllers\n");
+        }
+
+        this.capacity=capacity;
+        this.buffer=ByteBuffer.allocateDirect(capacity * RECORD_SIZE).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Get the underlying direct buffer
+     * @return The buffer with the packed records
+     */
+    public ByteBuffer getBuffer()
+    {
+        return buffer;
+    }
+
+    /**
+     * Get the number of records in the buffer
+     * @return The number of records
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * Get the id of the controller for a record
+     * @param index The index of the record
+     * @return The id of the controller
+     */
+    public int getId(int index)
+    {
+        return buffer.getInt((index * RECORD_SIZE) + ID_OFFSET);
+    }
+
+    /**
+     * Set the id of the controller for a record
+     * @param index The index of the record
+     * @param id The id of the controller
+     */
+    public void setId(int index, int id)
+    {
+        buffer.putInt((index * RECORD_SIZE) + ID_OFFSET, id);
+    }
+
+    /**
+     * Write a record, leaving the id alone. Used by backends implemented in Java.
+     * @param index The index of the record
+     * @param connected Whether the controller is connected
+     * @param buttonMap The button map
+     * @param x The x-axis value
+     * @param y The y-axis value
+     * @param z The z-axis value
+     * @param leftTrigger The left trigger value
+     * @param rightTrigger The right trigger value
+     * @param r The r-axis value
+     * @param u The u-axis value
+     * @param v The v-axis value
+     * @param pov The point-of-view hat position
+     */
+    public void put(int index, boolean connected, int buttonMap, float x, float y, float z,
+            float leftTrigger, float rightTrigger, float r, float u, float v, float pov)
+    {
+        int offset=index * RECORD_SIZE;
+
+        buffer.putInt(offset + FLAGS_OFFSET, connected ? FLAG_CONNECTED : 0);
+        buffer.putInt(offset + BUTTON_MAP_OFFSET, buttonMap);
+        buffer.putFloat(offset + X_OFFSET, x);
+        buffer.putFloat(offset + Y_OFFSET, y);
+        buffer.putFloat(offset + Z_OFFSET, z);
+        buffer.putFloat(offset + LEFT_TRIGGER_OFFSET, leftTrigger);
+        buffer.putFloat(offset + RIGHT_TRIGGER_OFFSET, rightTrigger);
+        buffer.putFloat(offset + R_OFFSET, r);
+        buffer.putFloat(offset + U_OFFSET, u);
+        buffer.putFloat(offset + V_OFFSET, v);
+        buffer.putFloat(offset + POV_OFFSET, pov);
+    }
+
+    /**
+     * Write a record from a controller state, leaving the id alone.
+     * @param index The index of the record
+     * @param state The state to write
+     */
+    public void put(int index, GameControllerState state)
+    {
+        put(index, state.isConnected(), state.getButtonMap(), state.getX(), state.getY(), state.getZ(),
+                state.getLeftTrigger(), state.getRightTrigger(), state.getR(), state.getU(), state.getV(), state.getPOV());
+    }
+
+    /**
+     * Mark a record as disconnected, leaving the rest of the record alone.
+     * @param index The index of the record
+     */
+    public void putDisconnected(int index)
+    {
+        buffer.putInt((index * RECORD_SIZE) + FLAGS_OFFSET, 0);
+    }
+
+    /**
+     * Set whether a record is skipped by the next read, clearing the rest of the flags
+     * @param index The index of the record
+     * @param skip true to skip the record, false to read it
+     */
+    public void setSkipped(int index, boolean skip)
+    {
+        buffer.putInt((index * RECORD_SIZE) + FLAGS_OFFSET, skip ? FLAG_SKIP : 0);
+    }
+
+    /**
+     * Return whether a record is skipped by reads
+     * @param index The index of the record
+     * @return true if the record is skipped, false otherwise
+     */
+    public boolean isSkipped(int index)
+    {
+        return (buffer.getInt((index * RECORD_SIZE) + FLAGS_OFFSET) & FLAG_SKIP)!=0;
+    }
+
+    /**
+     * Get the state to read a controller into before copying it into a record. It is only used by
+     * the thread reading into this buffer, so it is not shared between pollers. Used by
+     * ControllerBackend.readStates.
+     * @return The scratch state
+     */
+    GameControllerState getScratchState()
+    {
+        return scratchState;
+    }
+
+    /**
+     * Check that a range of records is inside the buffer
+     * @param first The index of the first record
+     * @param count The number of records
+     */
+    public void checkRange(int first, int count)
+    {
+        if((first < 0) || (count < 0) || (first > (capacity - count)))
+        {
+            throw new IndexOutOfBoundsException("Cannot use records " + first + " to " + (first + count) + ", buffer only holds " + capacity + "\n");
+        }
+    }
+
+}
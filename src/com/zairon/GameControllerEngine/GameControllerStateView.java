@@ -0,0 +1,155 @@
+package com.zairon.GameControllerEngine;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A flyweight view of one record in a GameControllerStateBuffer. The view reads
+ * straight from the buffer, so it can be moved from record to record without allocating.
+ * @author Michael Watkins
+ *
+ */
+public class GameControllerStateView
+{
+    /**
+     * The buffer being viewed
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * The byte offset of the record being viewed
+     */
+    private int offset;
+
+    /**
+     * Point the view at a record
+     * @param stateBuffer The buffer holding the record
+     * @param index The index of the record
+     * @return This view, for chaining
+     */
+    public GameControllerStateView wrap(GameControllerStateBuffer stateBuffer, int index)
+    {
+        this.buffer=stateBuffer.getBuffer();
+        this.offset=index * GameControllerStateBuffer.RECORD_SIZE;
+
+        return this;
+    }
+
+    /**
+     * Get the id of the controller
+     * @return The id of the controller
+     */
+    public int getId()
+    {
+        return buffer.getInt(offset + GameControllerStateBuffer.ID_OFFSET);
+    }
+
+    /**
+     * Return whether the controller is connected
+     * @return true if connected, false otherwise
+     */
+    public boolean isConnected()
+    {
+        return (buffer.getInt(offset + GameControllerStateBuffer.FLAGS_OFFSET) & GameControllerStateBuffer.FLAG_CONNECTED)!=0;
+    }
+
+    /**
+     * Get the button map
+     * @return The button map, with bit n set if button n is pressed
+     */
+    public int getButtonMap()
+    {
+        return buffer.getInt(offset + GameControllerStateBuffer.BUTTON_MAP_OFFSET);
+    }
+
+    /**
+     * Return true if a particular button is pressed
+     * @param button The number for the button from 0 to MAX_BUTTONS
+     * @return true if the button is pressed, false otherwise.
+     */
+    public boolean isPressed(int button)
+    {
+        return ((getButtonMap() >>> button) & 1)!=0;
+    }
+
+    /**
+     * Get the value for the x-axis, ranging from -1.0 to 1.0
+     * @return the x-axis value
+     */
+    public float getX()
+    {
+        return buffer.getFloat(offset + GameControllerStateBuffer.X_OFFSET);
+    }
+
+    /**
+     * Get the value for the y-axis, ranging from -1.0 to 1.0
+     * @return the y-axis value
+     */
+    public float getY()
+    {
+        return buffer.getFloat(offset + GameControllerStateBuffer.Y_OFFSET);
+    }
+
+    /**
+     * Get the value for the z-axis, ranging from -1.0 to 1.0
+     * @return the z-axis value
+     */
+    public float getZ()
+    {
+        return buffer.getFloat(offset + GameControllerStateBuffer.Z_OFFSET);
+    }
+
+    /**
+     * Get the value for the left trigger, ranging from 0.0 to 1.0
+     * @return the left trigger value
+     */
+    public float getLeftTrigger()
+    {
+        return buffer.getFloat(offset + GameControllerStateBuffer.LEFT_TRIGGER_OFFSET);
+    }
+
+    /**
+     * Get the value for the right trigger, ranging from 0.0 to 1.0
+     * @return the right trigger value
+     */
+    public float getRightTrigger()
+    {
+        return buffer.getFloat(offset + GameControllerStateBuffer.RIGHT_TRIGGER_OFFSET);
+    }
+
+    /**
+     * Get the value for the r-axis, ranging from -1.0 to 1.0
+     * @return the r-axis value
+     */
+    public float getR()
+    {
+        return buffer.getFloat(offset + GameControllerStateBuffer.R_OFFSET);
+    }
+
+    /**
+     * Get the value for the u-axis, ranging from -1.0 to 1.0
+     * @return the u-axis value
+     */
+    public float getU()
+    {
+        return buffer.getFloat(offset + GameControllerStateBuffer.U_OFFSET);
+    }
+
+    /**
+     * Get the value for the v-axis, ranging from -1.0 to 1.0
+     * @return the v-axis value
+     */
+    public float getV()
+    {
+        return buffer.getFloat(offset + GameControllerStateBuffer.V_OFFSET);
+    }
+
+    /**
+     * Get the value for the point-of-view hat in degrees
+     * @return the point-of-view hat position value
+     */
+    public float getPOV()
+    {
+        return buffer.getFloat(offset + GameControllerStateBuffer.POV_OFFSET);
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.zairon.GameControllerEngine;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for a HotplugMonitor parking a disconnected controller, or putting
+ * it back into polling after a probe found it connected.
+ * @author Michael Watkins
+ *
+ */
+@Name("com.zairon.GameControllerEngine.Hotplug")
+@Label("Controller Hotplug")
+@Description("A hotplug monitor parked or unparked a game controller")
+class HotplugEvent extends ControllerEvent
+{
+}
@@ -0,0 +1,22 @@
+package com.zairon.GameControllerEngine;
+
+/**
+ * Told by a HotplugMonitor when controllers connect and disconnect. The calls are made
+ * on the monitor thread.
+ * @author Michael Watkins
+ *
+ */
+public interface HotplugListener
+{
+    /**
+     * A controller has connected. Its capabilities have been refreshed, and it is back in polling.
+     * @param controller The controller, the same instance as before it disconnected
+     */
+    void connected(GameController controller);
+
+    /**
+     * A controller has disconnected. It is parked until the monitor finds it again.
+     * @param controller The controller
+     */
+    void disconnected(GameController controller);
+}
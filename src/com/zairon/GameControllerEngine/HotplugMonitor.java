@@ -0,0 +1,294 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Watches a set of controllers for disconnects and reconnects on its own thread, so the thread
+ * polling the connected controllers never touches an empty slot. Reading an empty XInput slot
+ * can stall for milliseconds, so when a controller disconnects the monitor parks it, which takes
+ * it out of poll and out of batches, and then probes its backend on a backoff schedule, at most
+ * one probe per check. When the probe finds the controller, the monitor refreshes its capabilities
+ * and puts the same instance back into polling. Listeners are told of both changes.
+ * <p>
+ * A controller the polling thread is reading when it is parked finishes that poll; the first
+ * probe is at least MIN_BACKOFF later, so probing does not overlap it.
+ * @author Michael Watkins
+ *
+ */
+public class HotplugMonitor
+{
+    /**
+     * The default time between checks for disconnected controllers, in milliseconds
+     */
+    public static final long DEFAULT_CHECK_INTERVAL=50L;
+
+    /**
+     * The default time before the first probe of a disconnected controller, in milliseconds
+     */
+    public static final long DEFAULT_MIN_BACKOFF=250L;
+
+    /**
+     * The default longest time between probes of a disconnected controller, in milliseconds
+     */
+    public static final long DEFAULT_MAX_BACKOFF=4000L;
+
+    /**
+     * Nanoseconds in a millisecond
+     */
+    private static final long NANOS_PER_MILLI=1000000L;
+
+    /**
+     * The controllers watched
+     */
+    private final GameController controllers[];
+
+    /**
+     * The time of the next probe of each controller, in System.nanoTime units
+     */
+    private final long nextProbe[];
+
+    /**
+     * The current backoff of each controller, in nanoseconds
+     */
+    private final long backoff[];
+
+    /**
+     * The time between checks, in milliseconds
+     */
+    private final long checkInterval;
+
+    /**
+     * The time before the first probe, in nanoseconds
+     */
+    private final long minBackoff;
+
+    /**
+     * The longest time between probes, in nanoseconds
+     */
+    private final long maxBackoff;
+
+    /**
+     * The listeners for connection changes
+     */
+    private final List<HotplugListener> listeners=new CopyOnWriteArrayList<HotplugListener>();
+
+    /**
+     * The monitor thread, or null if not started
+     */
+    private Thread thread;
+
+    /**
+     * Flag telling the monitor thread to keep going
+     */
+    private volatile boolean running;
+
+    /**
+     * The number of probes made
+     */
+    private volatile long probeCount;
+
+    /**
+     * The index to start looking for the next probe from, so probes go round the controllers
+     */
+    private int probeStart;
+
+    /**
+     * Protect the monitor from instantiation (make it come from the factory).
+     * @param controllers The controllers to watch
+     * @param checkInterval The time between checks, in milliseconds
+     * @param minBackoff The time before the first probe of a disconnected controller, in milliseconds
+     * @param maxBackoff The longest time between probes, in milliseconds
+     */
+    protected HotplugMonitor(List<? extends GameController> controllers, long checkInterval, long minBackoff, long maxBackoff)
+    {
+        if((checkInterval <= 0) || (minBackoff <= 0) || (maxBackoff < minBackoff))
+        {
+            throw new IllegalArgumentException("Cannot monitor with check interval " + checkInterval + " and backoff " + minBackoff + " to " + maxBackoff + ", values are illegal\n");
+        }
+
+        this.controllers=controllers.toArray(new GameController[controllers.size()]);
+        this.nextProbe=new long[this.controllers.length];
+        this.backoff=new long[this.controllers.length];
+        this.checkInterval=checkInterval;
+        this.minBackoff=minBackoff * NANOS_PER_MILLI;
+        this.maxBackoff=maxBackoff * NANOS_PER_MILLI;
+    }
+
+    /**
+     * Add a listener for connection changes
+     * @param listener The listener
+     */
+    public void addListener(HotplugListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove a listener for connection changes
+     * @param listener The listener
+     */
+    public void removeListener(HotplugListener listener)
+    {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Start monitoring on a new thread
+     */
+    public synchronized void start()
+    {
+        if(thread!=null)
+        {
+            throw new IllegalStateException("Monitor has already been started\n");
+        }
+
+        running=true;
+        thread=new Thread(this::run, "HotplugMonitor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop monitoring and wait for the monitor thread to finish. Parked controllers stay parked.
+     * @throws InterruptedException if interrupted while waiting for the thread
+     */
+    public synchronized void stop() throws InterruptedException
+    {
+        running=false;
+
+        if(thread!=null)
+        {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
+    /**
+     * Return whether the monitor thread is running
+     * @return true if monitoring, false otherwise
+     */
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * Get the number of probes of disconnected controllers made
+     * @return The number of probes
+     */
+    public long getProbeCount()
+    {
+        return probeCount;
+    }
+
+    /**
+     * The monitor loop
+     */
+    private void run()
+    {
+        try
+        {
+            while(running)
+            {
+                check(System.nanoTime());
+                Thread.sleep(checkInterval);
+            }
+        }
+        catch(InterruptedException e)
+        {
+            // stopped while sleeping
+        }
+        finally
+        {
+            running=false;
+        }
+    }
+
+    /**
+     * Park the controllers that have disconnected, and probe one parked controller if its time has come
+     * @param now The current time, in System.nanoTime units
+     */
+    void check(long now)
+    {
+        for(int i=0 ; i < controllers.length ; ++i)
+        {
+            GameController controller=controllers[i];
+
+            // controllers without a backend have nothing to probe
+            if(!controller.isParked() && !controller.isPolledConnected() && (controller.getBackend()!=null))
+            {
+                controller.setParked(true);
+                backoff[i]=minBackoff;
+                nextProbe[i]=now + minBackoff;
+                recordHotplug(controller, false);
+
+                for(HotplugListener listener : listeners)
+                {
+                    listener.disconnected(controller);
+                }
+            }
+        }
+
+        // probe at most one controller per check, going round so none are starved
+        for(int n=0 ; n < controllers.length ; ++n)
+        {
+            int i=(probeStart + n) % controllers.length;
+
+            if(controllers[i].isParked() && (now - nextProbe[i] >= 0))
+            {
+                probeStart=i + 1;
+                probe(i, now);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Probe a parked controller, putting it back into polling if it has connected
+     * @param i The index of the controller
+     * @param now The current time, in System.nanoTime units
+     */
+    private void probe(int i, long now)
+    {
+        GameController controller=controllers[i];
+        ControllerBackend backend=controller.getBackend();
+
+        probeCount++;
+
+        if(!backend.isConnected(controller.getId()))
+        {
+            // wait longer each time, up to the longest backoff
+            backoff[i]=Math.min(backoff[i] * 2, maxBackoff);
+            nextProbe[i]=now + backoff[i];
+            return;
+        }
+
+        // the capabilities may belong to a different device now; unparking publishes them
+        controller.caps=GameControllerManager.getCapsCache().getCaps(backend, controller.getId());
+        controller.setParked(false);
+        recordHotplug(controller, true);
+
+        for(HotplugListener listener : listeners)
+        {
+            listener.connected(controller);
+        }
+    }
+
+    /**
+     * Record a flight recorder event for a controller parked or unparked, if recording
+     * @param controller The controller
+     * @param connected true if unparked because it connected, false if parked because it disconnected
+     */
+    private static void recordHotplug(GameController controller, boolean connected)
+    {
+        HotplugEvent event=new HotplugEvent();
+
+        if(event.isEnabled())
+        {
+            event.set(controller, connected);
+            event.commit();
+        }
+    }
+
+}
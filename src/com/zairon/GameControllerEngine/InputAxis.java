@@ -0,0 +1,110 @@
+package com.zairon.GameControllerEngine;
+
+/**
+ * The axes reported in AXIS input events.
+ * @author Michael Watkins
+ *
+ */
+public enum InputAxis
+{
+    /**
+     * The x-axis of the x/y point
+     */
+    X("X"),
+    /**
+     * The y-axis of the x/y point
+     */
+    Y("Y"),
+    /**
+     * The z-axis
+     */
+    Z("Z"),
+    /**
+     * The left trigger axis
+     */
+    LEFT_TRIGGER("LEFT_TRIGGER"),
+    /**
+     * The right trigger axis
+     */
+    RIGHT_TRIGGER("RIGHT_TRIGGER"),
+    /**
+     * The r-axis (up/down) of the r/u point
+     */
+    R("R"),
+    /**
+     * The u-axis (left/right) of the r/u point
+     */
+    U("U"),
+    /**
+     * The v-axis
+     */
+    V("V");
+    
+    /**
+     * The number of axes
+     */
+    public static final int NUM_AXES=8;
+    
+    /**
+     * The axes by ordinal, so lookups do not copy values()
+     */
+    private static final InputAxis AXES[]=values();
+    
+    /**
+     * The label for the axis
+     */
+    private String label;
+    
+    /**
+     * Construct the enumeration value
+     * @param label The label for the enumeration value
+     */
+    private InputAxis(String label)
+    {
+        this.label=label;
+    }
+    
+    /**
+     * Convert the ordinal given into an enumeration value
+     * @param ordinal The ordinal of the axis
+     * @return The axis
+     */
+    public static InputAxis get(int ordinal)
+    {
+        return AXES[ordinal];
+    }
+    
+    /**
+     * Get the position of this axis from a controller, after the dead zone
+     * @param controller The controller
+     * @return The position on the axis
+     */
+    public float getValue(GameController controller)
+    {
+        switch(this)
+        {
+        case X:
+            return controller.getXY().getX();
+        case Y:
+            return controller.getXY().getY();
+        case Z:
+            return controller.getZ().getP();
+        case LEFT_TRIGGER:
+            return controller.getLeftTrigger().getP();
+        case RIGHT_TRIGGER:
+            return controller.getRightTrigger().getP();
+        case R:
+            return controller.getRU().getY();
+        case U:
+            return controller.getRU().getX();
+        default:
+            return controller.getV().getP();
+        }
+    }
+    
+    @Override
+    public String toString()
+    {
+        return this.label;
+    }
+}
@@ -0,0 +1,179 @@
+package com.zairon.GameControllerEngine;
+
+/**
+ * One change to a controller, read from an InputEventRing. The event is a holder owned by the
+ * consumer and filled in from the ring, so reading events does not allocate. Depending on the
+ * type, the event is a button event, an axis event, a POV event or a connection event; the
+ * getters for the other types are not meaningful.
+ * @author Michael Watkins
+ *
+ */
+public class InputEvent
+{
+    /**
+     * The number of the event in the ring, counting up from zero
+     */
+    private long sequence;
+
+    /**
+     * The time the sample with the change was polled, in System.nanoTime units
+     */
+    private long timestamp;
+
+    /**
+     * The type of the event
+     */
+    private InputEventType type;
+
+    /**
+     * The id of the controller that changed
+     */
+    private int controllerId;
+
+    /**
+     * The button number or axis ordinal, depending on the type
+     */
+    private int code;
+
+    /**
+     * The new value, depending on the type
+     */
+    private float value;
+
+    /**
+     * Get the number of the event in the ring. Gaps in the numbers seen by a consumer never
+     * happen; events the ring had no room for are dropped before they get a number.
+     * @return The number of the event
+     */
+    public long getSequence()
+    {
+        return sequence;
+    }
+
+    /**
+     * Get the time the sample with the change was polled
+     * @return The time in System.nanoTime units
+     */
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    /**
+     * Get the type of the event
+     * @return The type of the event
+     */
+    public InputEventType getType()
+    {
+        return type;
+    }
+
+    /**
+     * Get the id of the controller that changed
+     * @return The id of the controller
+     */
+    public int getControllerId()
+    {
+        return controllerId;
+    }
+
+    /**
+     * Get the button for a BUTTON event
+     * @return The number of the button
+     */
+    public int getButton()
+    {
+        return code;
+    }
+
+    /**
+     * Return whether the button went down for a BUTTON event
+     * @return true if the button was pressed, false if it was released
+     */
+    public boolean isPressed()
+    {
+        return value!=0.0f;
+    }
+
+    /**
+     * Get the axis for an AXIS event
+     * @return The axis that moved
+     */
+    public InputAxis getAxis()
+    {
+        return InputAxis.get(code);
+    }
+
+    /**
+     * Get the raw value of the event. This is the axis position for an AXIS event, the
+     * angle for a POV event, and 1.0 or 0.0 for BUTTON and CONNECTION events.
+     * @return The value of the event
+     */
+    public float getValue()
+    {
+        return value;
+    }
+
+    /**
+     * Get the angle of the point-of-view hat for a POV event
+     * @return The angle in degrees, or InputEventType.POV_NEUTRAL when neutral
+     */
+    public float getPOV()
+    {
+        return value;
+    }
+
+    /**
+     * Return whether the point-of-view hat is pressed for a POV event
+     * @return true if the hat is pressed, false if it is neutral
+     */
+    public boolean isPOVPressed()
+    {
+        return value >= 0.0f;
+    }
+
+    /**
+     * Return whether the controller connected for a CONNECTION event
+     * @return true if the controller connected, false if it disconnected
+     */
+    public boolean isConnected()
+    {
+        return value!=0.0f;
+    }
+
+    /**
+     * Fill in the event
+     * @param sequence The number of the event
+     * @param timestamp The time of the sample
+     * @param type The type of the event
+     * @param controllerId The id of the controller
+     * @param code The button number or axis ordinal
+     * @param value The new value
+     */
+    void set(long sequence, long timestamp, InputEventType type, int controllerId, int code, float value)
+    {
+        this.sequence=sequence;
+        this.timestamp=timestamp;
+        this.type=type;
+        this.controllerId=controllerId;
+        this.code=code;
+        this.value=value;
+    }
+
+    @Override
+    public String toString()
+    {
+        switch(type)
+        {
+        case BUTTON:
+            return "ButtonEvent[" + controllerId + ", button " + code + (isPressed() ? " pressed]" : " released]");
+        case AXIS:
+            return "AxisEvent[" + controllerId + ", " + getAxis() + " " + value + "]";
+        case POV:
+            return "PovEvent[" + controllerId + ", " + (isPOVPressed() ? Float.toString(value) : "neutral") + "]";
+        default:
+            return "ConnectionEvent[" + controllerId + (isConnected() ? ", connected]" : ", disconnected]");
+        }
+    }
+
+}
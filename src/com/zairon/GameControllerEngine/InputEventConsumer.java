@@ -0,0 +1,123 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads events from an InputEventRing through its own cursor. Each consumer sees every event
+ * published after it was added, and must be read from only one thread at a time.
+ * @author Michael Watkins
+ *
+ */
+public class InputEventConsumer
+{
+    /**
+     * The ring being read
+     */
+    private final InputEventRing ring;
+
+    /**
+     * The sequence of the last event read
+     */
+    private final AtomicLong cursor;
+
+    /**
+     * The event filled in for the handler when draining
+     */
+    private final InputEvent event=new InputEvent();
+
+    /**
+     * Protect the consumer from instantiation (make it come from the ring).
+     * @param ring The ring to read
+     * @param cursor The sequence of the last event already seen
+     */
+    protected InputEventConsumer(InputEventRing ring, long cursor)
+    {
+        this.ring=ring;
+        this.cursor=new AtomicLong(cursor);
+    }
+
+    /**
+     * Get the ring being read
+     * @return The ring
+     */
+    public InputEventRing getRing()
+    {
+        return ring;
+    }
+
+    /**
+     * Get the sequence of the last event read
+     * @return The sequence of the last event read
+     */
+    public long getCursor()
+    {
+        return cursor.get();
+    }
+
+    /**
+     * Get the number of events waiting to be read
+     * @return The number of events
+     */
+    public int available()
+    {
+        return (int)(ring.getPublishedSequence() - cursor.get());
+    }
+
+    /**
+     * Read the next event if there is one
+     * @param event The event to fill in
+     * @return true if an event was read, false if there are no new events
+     */
+    public boolean poll(InputEvent event)
+    {
+        long sequence=cursor.get() + 1;
+
+        if(sequence > ring.getPublishedSequence())
+        {
+            return false;
+        }
+
+        ring.read(sequence, event);
+        // hand the slot back to the producer only after it was copied
+        cursor.lazySet(sequence);
+
+        return true;
+    }
+
+    /**
+     * Read all of the waiting events, passing each one to a handler
+     * @param handler The handler for the events
+     * @return The number of events read
+     */
+    public int drain(InputEventHandler handler)
+    {
+        long current=cursor.get();
+        long available=ring.getPublishedSequence();
+
+        for(long sequence=current + 1 ; sequence <= available ; ++sequence)
+        {
+            ring.read(sequence, event);
+            handler.onEvent(event);
+        }
+
+        // the slots go back to the producer together once the handler is done with them
+        cursor.lazySet(available);
+
+        return (int)(available - current);
+    }
+
+    /**
+     * Skip all of the waiting events
+     * @return The number of events skipped
+     */
+    public int skip()
+    {
+        long current=cursor.get();
+        long available=ring.getPublishedSequence();
+
+        cursor.lazySet(available);
+
+        return (int)(available - current);
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.Arrays;
+
+/**
+ * Compares each sample of a controller with the one before it and publishes an event to an
+ * InputEventRing for each thing that changed. The first sample is compared against a
+ * disconnected controller at rest, so buttons held and sticks pushed at the start are reported.
+ * A disconnect puts the comparison back at rest, the same as the start. The detector only takes
+ * in a change once its event is published, so a change dropped because the ring was full is
+ * published again from the next sample, and consumers never miss a release.
+ * @author Michael Watkins
+ *
+ */
+class InputEventDetector
+{
+    /**
+     * The ring the events go to
+     */
+    private final InputEventRing ring;
+
+    /**
+     * Whether the controller was connected in the last sample
+     */
+    private boolean connected;
+
+    /**
+     * The button map from the last sample
+     */
+    private int buttonMap;
+
+    /**
+     * The axis positions from the last sample, by InputAxis ordinal
+     */
+    private final float axes[]=new float[InputAxis.NUM_AXES];
+
+    /**
+     * The POV angle from the last sample, or POV_NEUTRAL
+     */
+    private float pov=InputEventType.POV_NEUTRAL;
+
+    /**
+     * Construct the detector
+     * @param ring The ring the events go to
+     */
+    InputEventDetector(InputEventRing ring)
+    {
+        this.ring=ring;
+    }
+
+    /**
+     * Get the ring the events go to
+     * @return The ring
+     */
+    InputEventRing getRing()
+    {
+        return ring;
+    }
+
+    /**
+     * Publish the changes between the last sample and the current sample of a controller
+     * @param controller The controller, after update
+     * @param timestamp The time of the sample, in System.nanoTime units
+     */
+    void detect(GameController controller, long timestamp)
+    {
+        int id=controller.getId();
+        boolean nowConnected=controller.isConnected();
+
+        if(nowConnected!=connected)
+        {
+            if(!ring.publish(InputEventType.CONNECTION, id, 0, nowConnected ? 1.0f : 0.0f, timestamp))
+            {
+                // the ring is full, so try the whole sample again next time
+                return;
+            }
+
+            connected=nowConnected;
+        }
+
+        // the rest of the state is stale while disconnected, so go back to rest without
+        // events; consumers treat a disconnect as everything released
+        if(!nowConnected)
+        {
+            buttonMap=0;
+            Arrays.fill(axes, 0.0f);
+            pov=InputEventType.POV_NEUTRAL;
+            return;
+        }
+
+        int newButtonMap=controller.getState().getButtonMap();
+        int changed=newButtonMap ^ buttonMap;
+
+        while(changed!=0)
+        {
+            int button=Integer.numberOfTrailingZeros(changed);
+            changed&=changed - 1;
+
+            if(!ring.publish(InputEventType.BUTTON, id, button, ((newButtonMap >>> button) & 1)!=0 ? 1.0f : 0.0f, timestamp))
+            {
+                break;
+            }
+
+            buttonMap^=1 << button;
+        }
+
+        for(int i=0 ; i < InputAxis.NUM_AXES ; ++i)
+        {
+            float value=InputAxis.get(i).getValue(controller);
+
+            // the dead zones hold the axes at rest, so resting axes do not make events
+            if((value!=axes[i]) && ring.publish(InputEventType.AXIS, id, i, value, timestamp))
+            {
+                axes[i]=value;
+            }
+        }
+
+        float newPOV=controller.isPOVPressed() ? controller.getState().getPOV() : InputEventType.POV_NEUTRAL;
+
+        if((newPOV!=pov) && ring.publish(InputEventType.POV, id, 0, newPOV, timestamp))
+        {
+            pov=newPOV;
+        }
+    }
+
+}
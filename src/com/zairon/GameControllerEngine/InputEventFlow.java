@@ -0,0 +1,212 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+/**
+ * A java.util.concurrent.Flow publisher of the events in an InputEventRing. This is the primitive
+ * friendly side of the Flow API: each subscriber reads the ring through its own InputEventConsumer
+ * into one InputEvent that is filled in again for every onNext, so delivering events never
+ * allocates. Copy what is needed out of the event before onNext returns. Events are not conflated,
+ * since a lost release would leave a button held; a subscriber that does not ask for more leaves
+ * its events in the ring, and once it is a whole ring behind new events are dropped and counted
+ * by the ring, the same as for any slow consumer. The subscribers are called on an executor, never
+ * on the polling thread. Make the flow with GameControllerManager.createEventFlow.
+ * @author Michael Watkins
+ *
+ */
+public class InputEventFlow implements Flow.Publisher<InputEvent>
+{
+    /**
+     * The ring the events are read from
+     */
+    private final InputEventRing ring;
+
+    /**
+     * The executor the subscribers are called on
+     */
+    private final Executor executor;
+
+    /**
+     * The subscriptions, replaced as a whole when one is added or removed
+     */
+    private volatile Subscription subscriptions[]=new Subscription[0];
+
+    /**
+     * Whether the flow has been closed
+     */
+    private volatile boolean closed;
+
+    /**
+     * A subscription reading the ring through its own consumer
+     */
+    private class Subscription extends FlowSubscription<InputEvent>
+    {
+        /**
+         * The consumer reading the ring
+         */
+        private final InputEventConsumer consumer;
+
+        /**
+         * The event filled in for each onNext
+         */
+        private final InputEvent event=new InputEvent();
+
+        /**
+         * Construct the subscription
+         * @param subscriber The subscriber
+         */
+        Subscription(Flow.Subscriber<? super InputEvent> subscriber)
+        {
+            super(subscriber, executor);
+
+            consumer=ring.addConsumer();
+        }
+
+        @Override
+        InputEvent next()
+        {
+            return consumer.poll(event) ? event : null;
+        }
+
+        @Override
+        boolean hasNext()
+        {
+            return consumer.available() > 0;
+        }
+
+        @Override
+        void detach()
+        {
+            ring.removeConsumer(consumer);
+            remove(this);
+        }
+    }
+
+    /**
+     * Protect the flow from instantiation (make it come from the factory).
+     * @param ring The ring to read the events from
+     * @param executor The executor the subscribers are called on
+     */
+    protected InputEventFlow(InputEventRing ring, Executor executor)
+    {
+        this.ring=ring;
+        this.executor=executor;
+    }
+
+    /**
+     * Subscribe. The subscriber sees the events published after it subscribed.
+     * @param subscriber The subscriber
+     */
+    @Override
+    public synchronized void subscribe(Flow.Subscriber<? super InputEvent> subscriber)
+    {
+        Subscription subscription=new Subscription(subscriber);
+
+        if(closed)
+        {
+            ring.removeConsumer(subscription.consumer);
+            subscription.complete();
+            return;
+        }
+
+        Subscription list[]=Arrays.copyOf(subscriptions, subscriptions.length + 1);
+
+        list[list.length - 1]=subscription;
+        subscriptions=list;
+
+        // the ring only wakes the flow while it has subscribers
+        if(list.length==1)
+        {
+            ring.addFlow(this);
+        }
+
+        // sends onSubscribe
+        subscription.signal();
+    }
+
+    /**
+     * Get the ring the events are read from
+     * @return The ring
+     */
+    public InputEventRing getRing()
+    {
+        return ring;
+    }
+
+    /**
+     * Get the number of subscribers
+     * @return The number of subscribers
+     */
+    public int getSubscriberCount()
+    {
+        return subscriptions.length;
+    }
+
+    /**
+     * Return whether the flow has been closed
+     * @return true if closed, false otherwise
+     */
+    public boolean isClosed()
+    {
+        return closed;
+    }
+
+    /**
+     * Close the flow and stop reading the ring. Each subscriber gets onComplete after the events already in the ring.
+     */
+    public synchronized void close()
+    {
+        closed=true;
+        ring.removeFlow(this);
+
+        for(Subscription subscription : subscriptions)
+        {
+            subscription.complete();
+        }
+    }
+
+    /**
+     * Wake the subscribers that have asked for events. Called by the ring after each publish.
+     */
+    void signal()
+    {
+        for(Subscription subscription : subscriptions)
+        {
+            if(subscription.isRequested())
+            {
+                subscription.signal();
+            }
+        }
+    }
+
+    /**
+     * Remove a subscription, when it is cancelled or finished
+     * @param subscription The subscription to remove
+     */
+    private synchronized void remove(Subscription subscription)
+    {
+        Subscription list[]=subscriptions;
+
+        for(int i=0 ; i < list.length ; ++i)
+        {
+            if(list[i]==subscription)
+            {
+                Subscription newList[]=new Subscription[list.length - 1];
+
+                System.arraycopy(list, 0, newList, 0, i);
+                System.arraycopy(list, i + 1, newList, i, list.length - i - 1);
+                subscriptions=newList;
+
+                if(newList.length==0)
+                {
+                    ring.removeFlow(this);
+                }
+
+                return;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.zairon.GameControllerEngine;
+
+/**
+ * Receives input events drained from an InputEventRing.
+ * @author Michael Watkins
+ *
+ */
+public interface InputEventHandler
+{
+    /**
+     * Handle one event. The event object is reused for the next event, so copy anything
+     * that needs to be kept.
+     * @param event The event
+     */
+    void onEvent(InputEvent event);
+}
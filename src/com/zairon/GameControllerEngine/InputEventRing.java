@@ -0,0 +1,297 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A preallocated ring of input events with one producer and any number of consumers.
+ * Controllers attached to the ring with GameController.setEventRing compare each sample with
+ * the one before and add an event only for what changed. Every consumer sees every event, each
+ * through its own cursor. The events are kept as parallel primitive arrays, so adding and
+ * reading events never allocates.
+ * <p>
+ * All of the controllers feeding a ring must be polled from the same thread, for example
+ * by one ControllerPoller. The producer never waits for slow consumers: when a consumer is
+ * a whole ring behind, new events are dropped and counted instead.
+ * @author Michael Watkins
+ *
+ */
+public class InputEventRing
+{
+    /**
+     * The default number of events the ring holds
+     */
+    public static final int DEFAULT_CAPACITY=4096;
+
+    /**
+     * The number of events the ring holds, a power of two
+     */
+    private final int capacity;
+
+    /**
+     * The mask turning a sequence into a slot index
+     */
+    private final int mask;
+
+    /**
+     * The poll time of each event
+     */
+    private final long timestamps[];
+
+    /**
+     * The type ordinal of each event
+     */
+    private final byte types[];
+
+    /**
+     * The controller id of each event
+     */
+    private final int controllerIds[];
+
+    /**
+     * The button number or axis ordinal of each event
+     */
+    private final int codes[];
+
+    /**
+     * The value of each event
+     */
+    private final float values[];
+
+    /**
+     * The sequence of the last event published, -1 if none
+     */
+    private final AtomicLong published=new AtomicLong(-1L);
+
+    /**
+     * The sequence for the next event, only used by the producer
+     */
+    private long next;
+
+    /**
+     * The lowest consumer cursor seen last time it was checked, only used by the producer
+     */
+    private long gatingCache=-1L;
+
+    /**
+     * The number of events dropped because a consumer was too far behind
+     */
+    private volatile long droppedCount;
+
+    /**
+     * The consumers reading the ring, replaced when one is added or removed
+     */
+    private volatile InputEventConsumer consumers[]=new InputEventConsumer[0];
+
+    /**
+     * The flows woken after each publish, replaced when one is added or removed
+     */
+    private volatile InputEventFlow flows[]=new InputEventFlow[0];
+
+    /**
+     * Construct the ring with the default capacity
+     */
+    public InputEventRing()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Construct the ring
+     * @param capacity The number of events to hold, must be a power of two
+     */
+    public InputEventRing(int capacity)
+    {
+        if((capacity < 2) || (Integer.bitCount(capacity)!=1))
+        {
+            throw new IllegalArgumentException("Cannot make a ring of " + capacity + " events, the capacity must be a power of two\n");
+        }
+
+        this.capacity=capacity;
+        this.mask=capacity - 1;
+        this.timestamps=new long[capacity];
+        this.types=new byte[capacity];
+        this.controllerIds=new int[capacity];
+        this.codes=new int[capacity];
+        this.values=new float[capacity];
+    }
+
+    /**
+     * Get the number of events the ring holds
+     * @return The capacity of the ring
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * Get the number of events dropped because a consumer was a whole ring behind
+     * @return The number of dropped events
+     */
+    public long getDroppedCount()
+    {
+        return droppedCount;
+    }
+
+    /**
+     * Get the sequence of the last event published
+     * @return The sequence, or -1 if no events have been published
+     */
+    public long getPublishedSequence()
+    {
+        return published.get();
+    }
+
+    /**
+     * Add a consumer to the ring. The consumer sees the events published after it was added.
+     * @return The consumer, to be read from one thread
+     */
+    public synchronized InputEventConsumer addConsumer()
+    {
+        InputEventConsumer consumer=new InputEventConsumer(this, published.get());
+        InputEventConsumer list[]=Arrays.copyOf(consumers, consumers.length + 1);
+
+        list[list.length - 1]=consumer;
+        consumers=list;
+
+        return consumer;
+    }
+
+    /**
+     * Remove a consumer from the ring, so the producer no longer waits on it for room
+     * @param consumer The consumer to remove
+     * @return true if the consumer was removed, false if it was not reading this ring
+     */
+    public synchronized boolean removeConsumer(InputEventConsumer consumer)
+    {
+        InputEventConsumer list[]=consumers;
+
+        for(int i=0 ; i < list.length ; ++i)
+        {
+            if(list[i]==consumer)
+            {
+                InputEventConsumer newList[]=new InputEventConsumer[list.length - 1];
+
+                System.arraycopy(list, 0, newList, 0, i);
+                System.arraycopy(list, i + 1, newList, i, list.length - i - 1);
+                consumers=newList;
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Add a flow to wake after each publish. Used by InputEventFlow.
+     * @param flow The flow to wake
+     */
+    synchronized void addFlow(InputEventFlow flow)
+    {
+        InputEventFlow list[]=Arrays.copyOf(flows, flows.length + 1);
+
+        list[list.length - 1]=flow;
+        flows=list;
+    }
+
+    /**
+     * Stop waking a flow. Used by InputEventFlow.
+     * @param flow The flow to stop waking
+     */
+    synchronized void removeFlow(InputEventFlow flow)
+    {
+        InputEventFlow list[]=flows;
+
+        for(int i=0 ; i < list.length ; ++i)
+        {
+            if(list[i]==flow)
+            {
+                InputEventFlow newList[]=new InputEventFlow[list.length - 1];
+
+                System.arraycopy(list, 0, newList, 0, i);
+                System.arraycopy(list, i + 1, newList, i, list.length - i - 1);
+                flows=newList;
+
+                return;
+            }
+        }
+    }
+
+    /**
+     * Publish an event. Only one thread may publish to a ring.
+     * @param type The type of the event
+     * @param controllerId The id of the controller
+     * @param code The button number or axis ordinal
+     * @param value The new value
+     * @param timestamp The time of the sample, in System.nanoTime units
+     * @return true if the event was published, false if it was dropped because the ring is full
+     */
+    public boolean publish(InputEventType type, int controllerId, int code, float value, long timestamp)
+    {
+        long sequence=next;
+        long wrapPoint=sequence - capacity;
+
+        // only look at the consumer cursors again when the cached one says the ring is full
+        if(wrapPoint > gatingCache)
+        {
+            gatingCache=getMinimumCursor(sequence - 1);
+
+            if(wrapPoint > gatingCache)
+            {
+                droppedCount++;
+                return false;
+            }
+        }
+
+        int slot=(int)sequence & mask;
+
+        timestamps[slot]=timestamp;
+        types[slot]=(byte)type.ordinal();
+        controllerIds[slot]=controllerId;
+        codes[slot]=code;
+        values[slot]=value;
+
+        next=sequence + 1;
+        // the ordered store makes the slot visible to the consumers before the sequence
+        published.lazySet(sequence);
+
+        for(InputEventFlow flow : flows)
+        {
+            flow.signal();
+        }
+
+        return true;
+    }
+
+    /**
+     * Get the lowest cursor of all the consumers
+     * @param current The cursor to use when there are no consumers
+     * @return The lowest cursor
+     */
+    private long getMinimumCursor(long current)
+    {
+        long minimum=current;
+
+        for(InputEventConsumer consumer : consumers)
+        {
+            minimum=Math.min(minimum, consumer.getCursor());
+        }
+
+        return minimum;
+    }
+
+    /**
+     * Copy one event out of the ring
+     * @param sequence The sequence of the event
+     * @param event The event to fill in
+     */
+    void read(long sequence, InputEvent event)
+    {
+        int slot=(int)sequence & mask;
+
+        event.set(sequence, timestamps[slot], InputEventType.get(types[slot]), controllerIds[slot], codes[slot], values[slot]);
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.zairon.GameControllerEngine;
+
+/**
+ * The kinds of input events published when a controller sample changes.
+ * @author Michael Watkins
+ *
+ */
+public enum InputEventType
+{
+    /**
+     * A button went down or up. The code is the button number and the value is 1.0 for pressed, 0.0 for released.
+     */
+    BUTTON("BUTTON"),
+    /**
+     * An axis moved. The code is the InputAxis ordinal and the value is the position after the dead zone.
+     */
+    AXIS("AXIS"),
+    /**
+     * The point-of-view hat moved. The value is the angle in degrees, or POV_NEUTRAL when neutral.
+     */
+    POV("POV"),
+    /**
+     * The controller connected or disconnected. The value is 1.0 for connected, 0.0 for disconnected.
+     */
+    CONNECTION("CONNECTION");
+    
+    /**
+     * The value of a POV event when the hat is neutral
+     */
+    public static final float POV_NEUTRAL=-1.0f;
+    
+    /**
+     * The event types by ordinal, so lookups do not copy values()
+     */
+    private static final InputEventType TYPES[]=values();
+    
+    /**
+     * The label for the event type
+     */
+    private String label;
+    
+    /**
+     * Construct the enumeration value
+     * @param label The label for the enumeration value
+     */
+    private InputEventType(String label)
+    {
+        this.label=label;
+    }
+    
+    /**
+     * Convert the ordinal given into an enumeration value
+     * @param ordinal The ordinal of the type
+     * @return The event type
+     */
+    public static InputEventType get(int ordinal)
+    {
+        return TYPES[ordinal];
+    }
+    
+    @Override
+    public String toString()
+    {
+        return this.label;
+    }
+}
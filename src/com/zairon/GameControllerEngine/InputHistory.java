@@ -0,0 +1,329 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.Arrays;
+
+/**
+ * A history of one player's input indexed by frame, for rollback netcode. Each frame is packed into
+ * three longs in one primitive ring: the button map, the connected flag and the point-of-view hat
+ * in hundredths of a degree, and the eight axes quantized to 16 bits each. The quantized input is
+ * the input: both ends of a match simulate from the same packed values, so a confirmed remote input
+ * can be compared exactly with the one that was predicted for it. Getting, putting and comparing a
+ * frame are O(1) and never allocate. A frame stays in the history until a frame a whole capacity
+ * later is put over it. The history is meant for the game thread, and is not safe to share between threads.
+ * @author Michael Watkins
+ *
+ */
+public class InputHistory
+{
+    /**
+     * The default number of frames held, about eight seconds at 60 frames a second
+     */
+    public static final int DEFAULT_CAPACITY=512;
+
+    /**
+     * The scale of a quantized axis, so -1.0 to 1.0 becomes -32767 to 32767
+     */
+    public static final float AXIS_SCALE=32767.0f;
+
+    /**
+     * The scale of the quantized point-of-view hat, in steps per degree
+     */
+    public static final float POV_SCALE=100.0f;
+
+    /**
+     * The quantized point-of-view hat when neutral, which unpacks to 655.35 degrees
+     */
+    private static final int POV_NEUTRAL=0xFFFF;
+
+    /**
+     * The number of longs in a packed frame
+     */
+    private static final int WORDS=3;
+
+    /**
+     * The bit in the first word set when the controller is connected
+     */
+    private static final long CONNECTED_BIT=1L << 48;
+
+    /**
+     * The frame number held in an empty place
+     */
+    private static final int NO_FRAME=-1;
+
+    /**
+     * The number of frames held, a power of two
+     */
+    private final int capacity;
+
+    /**
+     * The mask for a frame number to get its place in the ring
+     */
+    private final int mask;
+
+    /**
+     * The frame number held in each place
+     */
+    private final int frames[];
+
+    /**
+     * The packed frames, WORDS longs each
+     */
+    private final long data[];
+
+    /**
+     * The newest frame put, or NO_FRAME
+     */
+    private int latestFrame=NO_FRAME;
+
+    /**
+     * Construct the history with the default capacity
+     */
+    public InputHistory()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Construct the history
+     * @param capacity The number of frames to hold, must be a power of two
+     */
+    public InputHistory(int capacity)
+    {
+        if((capacity < 2) || (Integer.bitCount(capacity)!=1))
+        {
+            throw new IllegalArgumentException("Cannot make a history of " + capacity + " frames, the capacity must be a power of two\n");
+        }
+
+        this.capacity=capacity;
+        this.mask=capacity - 1;
+        this.frames=new int[capacity];
+        this.data=new long[capacity * WORDS];
+
+        Arrays.fill(frames, NO_FRAME);
+    }
+
+    /**
+     * Get the number of frames held
+     * @return The capacity
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * Get the newest frame put
+     * @return The frame number, or -1 if nothing has been put
+     */
+    public int getLatestFrame()
+    {
+        return latestFrame;
+    }
+
+    /**
+     * Return whether the history holds the input for a frame
+     * @param frame The frame number
+     * @return true if the frame is held, false if it was never put or has been put over
+     */
+    public boolean contains(int frame)
+    {
+        return (frame >= 0) && (frames[frame & mask]==frame);
+    }
+
+    /**
+     * Put the input for a frame from the last poll of a controller
+     * @param frame The frame number, zero or more
+     * @param controller The controller
+     */
+    public void put(int frame, GameController controller)
+    {
+        put(frame, controller.getState());
+    }
+
+    /**
+     * Put the input for a frame, quantizing it. Putting a frame again replaces it, as when a predicted
+     * input is replaced by the confirmed one.
+     * @param frame The frame number, zero or more
+     * @param state The input
+     */
+    public void put(int frame, GameControllerState state)
+    {
+        if(frame < 0)
+        {
+            throw new IllegalArgumentException("Cannot put frame " + frame + ", frames start at zero\n");
+        }
+
+        int index=(frame & mask) * WORDS;
+
+        frames[frame & mask]=frame;
+        data[index]=pack0(state);
+        data[index + 1]=pack1(state);
+        data[index + 2]=pack2(state);
+
+        if(frame > latestFrame)
+        {
+            latestFrame=frame;
+        }
+    }
+
+    /**
+     * Copy the input for a frame into a state. The previous button map and the time stamps of the state are left alone.
+     * @param frame The frame number
+     * @param state The state to copy into
+     * @return true if the frame was held, false if not, in which case the state is left alone
+     */
+    public boolean get(int frame, GameControllerState state)
+    {
+        if(!contains(frame))
+        {
+            return false;
+        }
+
+        int index=(frame & mask) * WORDS;
+        long word0=data[index];
+        long word1=data[index + 1];
+        long word2=data[index + 2];
+        int pov=(int)(word0 >>> 32) & 0xFFFF;
+
+        state.setConnected((word0 & CONNECTED_BIT)!=0);
+        state.setButtonMap((int)word0);
+        state.setAxes(unpackAxis(word1), unpackAxis(word1 >>> 16), unpackAxis(word1 >>> 32), unpackAxis(word1 >>> 48),
+                      unpackAxis(word2), unpackAxis(word2 >>> 16));
+        state.setTriggers(unpackAxis(word2 >>> 32), unpackAxis(word2 >>> 48));
+        state.setPOV(pov / POV_SCALE);
+
+        return true;
+    }
+
+    /**
+     * Get the button map for a frame, the most used part of the input
+     * @param frame The frame number
+     * @return The button map, or zero if the frame is not held
+     */
+    public int getButtonMap(int frame)
+    {
+        return contains(frame) ? (int)data[(frame & mask) * WORDS] : 0;
+    }
+
+    /**
+     * Compare the input for a frame with a state, once the state is quantized. This is the check
+     * for a misprediction when the confirmed input for a frame arrives.
+     * @param frame The frame number
+     * @param state The input to compare
+     * @return true if the frame is held and its input is the same, false otherwise
+     */
+    public boolean compare(int frame, GameControllerState state)
+    {
+        if(!contains(frame))
+        {
+            return false;
+        }
+
+        int index=(frame & mask) * WORDS;
+
+        return (data[index]==pack0(state)) && (data[index + 1]==pack1(state)) && (data[index + 2]==pack2(state));
+    }
+
+    /**
+     * Compare the input for a frame with the same frame in another history
+     * @param frame The frame number
+     * @param other The other history
+     * @return true if both histories hold the frame and its input is the same, false otherwise
+     */
+    public boolean compare(int frame, InputHistory other)
+    {
+        if(!contains(frame) || !other.contains(frame))
+        {
+            return false;
+        }
+
+        int index=(frame & mask) * WORDS;
+        int otherIndex=(frame & other.mask) * WORDS;
+
+        return (data[index]==other.data[otherIndex]) && (data[index + 1]==other.data[otherIndex + 1]) && (data[index + 2]==other.data[otherIndex + 2]);
+    }
+
+    /**
+     * Find the first frame in a range where this history and another differ, which is where a rollback has to
+     * resimulate from. A frame that either history does not hold counts as different.
+     * @param from The first frame to compare
+     * @param to The last frame to compare
+     * @param other The other history
+     * @return The first frame that differs, or -1 if they are the same over the range
+     */
+    public int findDifference(int from, int to, InputHistory other)
+    {
+        for(int frame=from ; frame <= to ; ++frame)
+        {
+            if(!compare(frame, other))
+            {
+                return frame;
+            }
+        }
+
+        return NO_FRAME;
+    }
+
+    /**
+     * Forget every frame
+     */
+    public void clear()
+    {
+        Arrays.fill(frames, NO_FRAME);
+        latestFrame=NO_FRAME;
+    }
+
+    /**
+     * Pack the button map, point-of-view hat and connected flag
+     * @param state The input
+     * @return The first word
+     */
+    private static long pack0(GameControllerState state)
+    {
+        float pov=state.getPOV();
+        int quantized=((pov >= 0.0f) && (pov < GameController.MAX_POV_VALUE)) ? Math.round(pov * POV_SCALE) : POV_NEUTRAL;
+
+        return (state.getButtonMap() & 0xFFFFFFFFL) | ((long)quantized << 32) | (state.isConnected() ? CONNECTED_BIT : 0L);
+    }
+
+    /**
+     * Pack the x, y, z and r axes
+     * @param state The input
+     * @return The second word
+     */
+    private static long pack1(GameControllerState state)
+    {
+        return packAxis(state.getX()) | (packAxis(state.getY()) << 16) | (packAxis(state.getZ()) << 32) | (packAxis(state.getR()) << 48);
+    }
+
+    /**
+     * Pack the u and v axes and the triggers
+     * @param state The input
+     * @return The third word
+     */
+    private static long pack2(GameControllerState state)
+    {
+        return packAxis(state.getU()) | (packAxis(state.getV()) << 16) | (packAxis(state.getLeftTrigger()) << 32) | (packAxis(state.getRightTrigger()) << 48);
+    }
+
+    /**
+     * Quantize an axis to 16 bits, clamped to -1.0 to 1.0
+     * @param value The axis value
+     * @return The quantized value in the low 16 bits
+     */
+    private static long packAxis(float value)
+    {
+        return Math.round(Math.max(-1.0f, Math.min(1.0f, value)) * AXIS_SCALE) & 0xFFFFL;
+    }
+
+    /**
+     * Get an axis back from the low 16 bits of a word
+     * @param bits The bits holding the quantized value
+     * @return The axis value
+     */
+    private static float unpackAxis(long bits)
+    {
+        return (short)bits / AXIS_SCALE;
+    }
+
+}
@@ -0,0 +1,392 @@
+package com.zairon.GameControllerEngine;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Reads many streams of evdev input_events on one thread, as a backend. Each stream is a
+ * non-blocking channel, such as a pipe or a socket, registered with one Selector. When a stream
+ * is ready its reader drains everything waiting as a batch, decoding each read into the last
+ * complete frame for that controller, so dozens of devices need one thread instead of one each.
+ * Controllers read the frames as with any backend, from GameControllerManager.createBackendController
+ * or a ControllerPoller.
+ * <p>
+ * Java can only select on channels such as pipes and sockets, not on device files or FIFOs, which
+ * the EvdevControllerBackend reads with a thread each. A stream that ends keeps its last frame,
+ * like a recording; a stream that fails is disconnected.
+ * @author Michael Watkins
+ *
+ */
+public class InputReactor implements ControllerBackend
+{
+    /**
+     * The name of the backend
+     */
+    public static final String NAME="reactor";
+
+    /**
+     * The priority of the backend. Zero, since the streams have to be added before it is of any use.
+     */
+    public static final int PRIORITY=0;
+
+    /**
+     * The selector for every stream
+     */
+    private final Selector selector;
+
+    /**
+     * The streams, indexed by controller id, replaced as a whole when a stream is added
+     */
+    private volatile EvdevStream streams[]=new EvdevStream[0];
+
+    /**
+     * The channels, indexed by controller id
+     */
+    private SelectableChannel channels[]=new SelectableChannel[0];
+
+    /**
+     * The ids of the streams waiting to be registered by the reactor thread
+     */
+    private final Queue<Integer> pending=new ConcurrentLinkedQueue<Integer>();
+
+    /**
+     * The reactor thread, or null if not started
+     */
+    private Thread thread;
+
+    /**
+     * Flag telling the reactor thread to keep going
+     */
+    private volatile boolean running;
+
+    /**
+     * The error that stopped the reactor thread, or null
+     */
+    private volatile IOException failure;
+
+    /**
+     * The number of times the reactor woke with streams ready
+     */
+    private volatile long wakeupCount;
+
+    /**
+     * The number of reads that returned input
+     */
+    private volatile long readCount;
+
+    /**
+     * Protect the reactor from instantiation (make it come from the factory).
+     * @throws IOException if the selector cannot be opened
+     */
+    protected InputReactor() throws IOException
+    {
+        this.selector=Selector.open();
+    }
+
+    /**
+     * Add a stream of input_events as the next controller id. The channel is made non-blocking.
+     * Streams can be added before or after the reactor is started.
+     * @param <C> The type of the channel
+     * @param channel The channel, such as the source of a Pipe or a SocketChannel
+     * @param name The name of the device, for its capabilities
+     * @return The controller id of the stream
+     * @throws IOException if the channel cannot be made non-blocking
+     */
+    public synchronized <C extends SelectableChannel & ReadableByteChannel> int addSource(C channel, String name) throws IOException
+    {
+        channel.configureBlocking(false);
+
+        int id=channels.length;
+        EvdevStream stream=new EvdevStream(name, id, 0L, 0L);
+
+        stream.connect();
+
+        channels=Arrays.copyOf(channels, id + 1);
+        channels[id]=channel;
+        streams=Arrays.copyOf(streams, id + 1);
+        streams[id]=stream;
+
+        pending.add(Integer.valueOf(id));
+        selector.wakeup();
+
+        return id;
+    }
+
+    /**
+     * Close the channel of a stream and disconnect its controller
+     * @param id The controller id of the stream
+     */
+    public synchronized void closeSource(int id)
+    {
+        try
+        {
+            // closing the channel cancels its key
+            channels[id].close();
+        }
+        catch(IOException e)
+        {
+            // nothing more to do with it
+        }
+
+        streams[id].disconnect(null);
+    }
+
+    /**
+     * Start reading on a new thread
+     */
+    public synchronized void start()
+    {
+        if(thread!=null)
+        {
+            throw new IllegalStateException("Reactor has already been started\n");
+        }
+
+        running=true;
+        thread=new Thread(this::run, "InputReactor");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Stop reading and wait for the reactor thread to finish. The channels are left open.
+     * @throws InterruptedException if interrupted while waiting for the thread
+     */
+    public void stop() throws InterruptedException
+    {
+        Thread stopping;
+
+        synchronized(this)
+        {
+            running=false;
+            stopping=thread;
+        }
+
+        if(stopping!=null)
+        {
+            selector.wakeup();
+            stopping.join();
+        }
+    }
+
+    /**
+     * Return whether the reactor thread is running
+     * @return true if reading, false otherwise
+     */
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * Get the error that stopped the reactor thread
+     * @return The error, or null if the thread has not failed
+     */
+    public IOException getFailure()
+    {
+        return failure;
+    }
+
+    /**
+     * Get the number of times the reactor woke with streams ready
+     * @return The number of wake ups
+     */
+    public long getWakeupCount()
+    {
+        return wakeupCount;
+    }
+
+    /**
+     * Get the number of reads that returned input. Fewer reads than wake ups times ready streams
+     * would mean streams are not being drained.
+     * @return The number of reads
+     */
+    public long getReadCount()
+    {
+        return readCount;
+    }
+
+    /**
+     * Get the number of complete frames read from a stream
+     * @param id The controller id of the stream
+     * @return The number of frames
+     */
+    public long getFrameCount(int id)
+    {
+        return streams[id].getFrameCount();
+    }
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    public int getPriority()
+    {
+        return PRIORITY;
+    }
+
+    @Override
+    public boolean isAvailable()
+    {
+        return true;
+    }
+
+    @Override
+    public int getNumControllers()
+    {
+        return streams.length;
+    }
+
+    @Override
+    public boolean isController(int id)
+    {
+        return (id >= 0) && (id < getNumControllers());
+    }
+
+    @Override
+    public boolean isConnected(int id)
+    {
+        return streams[id].isConnected();
+    }
+
+    @Override
+    public GameControllerCaps getCaps(int id)
+    {
+        return streams[id].getCaps();
+    }
+
+    @Override
+    public long getDeviceIdentity(int id)
+    {
+        return streams[id].getIdentity();
+    }
+
+    @Override
+    public boolean readState(int id, GameControllerState state)
+    {
+        return streams[id].readState(state);
+    }
+
+    @Override
+    public boolean awaitState(int id, GameControllerState state, long timeout) throws InterruptedException
+    {
+        // the reactor thread signals each frame it decodes
+        return streams[id].awaitState(state, timeout);
+    }
+
+    @Override
+    public int readStates(GameControllerStateBuffer buffer, int first, int count)
+    {
+        buffer.checkRange(first, count);
+
+        EvdevStream current[]=streams;
+        int connected=0;
+
+        for(int i=first ; i < (first + count) ; ++i)
+        {
+            if(!buffer.isSkipped(i) && current[buffer.getId(i)].readState(buffer, i))
+            {
+                ++connected;
+            }
+        }
+
+        return connected;
+    }
+
+    /**
+     * The reactor loop
+     */
+    private void run()
+    {
+        try
+        {
+            while(running)
+            {
+                register();
+
+                // the action form of select does not allocate an iterator for the ready keys
+                if(selector.select(this::drain) > 0)
+                {
+                    ++wakeupCount;
+                }
+            }
+        }
+        catch(IOException e)
+        {
+            failure=e;
+        }
+        finally
+        {
+            running=false;
+        }
+    }
+
+    /**
+     * Register the streams added since the last select, on the reactor thread
+     * @throws IOException if a channel cannot be registered
+     */
+    private void register() throws IOException
+    {
+        Integer id;
+
+        while((id=pending.poll())!=null)
+        {
+            SelectableChannel channel;
+            EvdevStream stream;
+
+            synchronized(this)
+            {
+                channel=channels[id.intValue()];
+                stream=streams[id.intValue()];
+            }
+
+            if(channel.isOpen())
+            {
+                channel.register(selector, SelectionKey.OP_READ, stream);
+            }
+        }
+    }
+
+    /**
+     * Drain a ready stream, on the reactor thread
+     * @param key The key of the stream
+     */
+    private void drain(SelectionKey key)
+    {
+        EvdevStream stream=(EvdevStream)key.attachment();
+        ReadableByteChannel channel=(ReadableByteChannel)key.channel();
+
+        try
+        {
+            int count;
+
+            // read until the stream has nothing more waiting
+            while((count=stream.read(channel)) > 0)
+            {
+                ++readCount;
+            }
+
+            if(count < 0)
+            {
+                // the end of the stream, so keep the last frame and stop selecting it
+                key.cancel();
+                channel.close();
+            }
+        }
+        catch(IOException e)
+        {
+            key.cancel();
+            stream.disconnect(e);
+        }
+    }
+
+}
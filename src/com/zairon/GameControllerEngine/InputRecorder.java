@@ -0,0 +1,444 @@
+package com.zairon.GameControllerEngine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records the raw samples of one controller to a memory-mapped file, for bug reports and replay
+ * with ReplayGameController. The recording is written by the polling thread as the controller
+ * is published, straight into a MappedByteBuffer, so recording does not allocate and does not
+ * make system calls. Only samples that changed are written, and each record only holds what
+ * changed since the record before it.
+ * <p>
+ * The file is little-endian. It starts with a HEADER_SIZE byte header:
+ * <pre>
+ * offset  type    field
+ *      0  int     magic         MAGIC
+ *      4  short   version       VERSION
+ *      6  short   header size   HEADER_SIZE
+ *      8  int     id            the id of the controller recorded
+ *     12  int     keyframe      the time between keyframes in microseconds
+ *     16  long    start         the start of the recording in milliseconds since the epoch
+ *     24  long    end           the offset just past the last complete record
+ *     32  short   name length   the length of the controller name in bytes
+ *     34  byte[]  name          the controller name in UTF-8, up to MAX_NAME_LENGTH bytes
+ * </pre>
+ * Each record after the header is:
+ * <pre>
+ * varint  mask      the RECORD_ flags, saying what follows
+ * varint  time      microseconds since the record before, or since the start for a keyframe
+ * varint  buttons   the XOR of the button map with the one before, if RECORD_BUTTONS
+ * int     values    the raw float bits of each axis flagged, in RECORD_X to RECORD_POV order
+ * </pre>
+ * A keyframe holds every value, XORed against an empty button map, so a reader can start from
+ * any keyframe. A keyframe is written when a sample changes KEYFRAME_INTERVAL or more after the
+ * last keyframe. Varints are unsigned, seven bits to a byte with the high bit set on all but the last.
+ * @author Michael Watkins
+ *
+ */
+public class InputRecorder implements Closeable
+{
+    /**
+     * The magic number at the start of a recording, "GCRL"
+     */
+    public static final int MAGIC=0x4C524347;
+
+    /**
+     * The version of the recording format
+     */
+    public static final short VERSION=1;
+
+    /**
+     * The size of the header in bytes
+     */
+    public static final short HEADER_SIZE=128;
+
+    /**
+     * The offset of the controller id in the header
+     */
+    public static final int ID_OFFSET=8;
+
+    /**
+     * The offset of the keyframe interval in the header
+     */
+    public static final int KEYFRAME_OFFSET=12;
+
+    /**
+     * The offset of the start time in the header
+     */
+    public static final int START_OFFSET=16;
+
+    /**
+     * The offset of the end of the records in the header
+     */
+    public static final int END_OFFSET=24;
+
+    /**
+     * The offset of the controller name in the header
+     */
+    public static final int NAME_OFFSET=32;
+
+    /**
+     * The longest controller name kept, in bytes
+     */
+    public static final int MAX_NAME_LENGTH=HEADER_SIZE - NAME_OFFSET - 2;
+
+    /**
+     * The record is a keyframe
+     */
+    public static final int RECORD_KEYFRAME=0x001;
+
+    /**
+     * The controller is connected, this is the value and not a change
+     */
+    public static final int RECORD_CONNECTED=0x002;
+
+    /**
+     * The button map changed
+     */
+    public static final int RECORD_BUTTONS=0x004;
+
+    /**
+     * The x-axis changed, the first of the axis flags
+     */
+    public static final int RECORD_X=0x008;
+
+    /**
+     * The point-of-view hat changed, the last of the axis flags
+     */
+    public static final int RECORD_POV=0x800;
+
+    /**
+     * The number of float values in a sample
+     */
+    public static final int NUM_VALUES=9;
+
+    /**
+     * The largest record in bytes
+     */
+    public static final int MAX_RECORD_SIZE=64;
+
+    /**
+     * The default time between keyframes in microseconds
+     */
+    public static final int KEYFRAME_INTERVAL=1000000;
+
+    /**
+     * The default largest size of the file in bytes
+     */
+    public static final long DEFAULT_MAX_SIZE=64L * 1024L * 1024L;
+
+    /**
+     * The channel the file was mapped from
+     */
+    private final FileChannel channel;
+
+    /**
+     * The mapped file
+     */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * The offset the next record goes at
+     */
+    private int position=HEADER_SIZE;
+
+    /**
+     * The controller being recorded, or null
+     */
+    private GameController controller;
+
+    /**
+     * The System.nanoTime of the start of the recording
+     */
+    private long startNanos;
+
+    /**
+     * The time of the last record in microseconds since the start
+     */
+    private long lastTime;
+
+    /**
+     * The time of the last keyframe in microseconds since the start, negative before the first
+     */
+    private long lastKeyframe=-KEYFRAME_INTERVAL;
+
+    /**
+     * Whether the controller was connected in the last record
+     */
+    private boolean connected;
+
+    /**
+     * The button map in the last record
+     */
+    private int buttonMap;
+
+    /**
+     * The raw float bits in the last record, from x to pov
+     */
+    private final int values[]=new int[NUM_VALUES];
+
+    /**
+     * The raw float bits of the sample being recorded
+     */
+    private final int current[]=new int[NUM_VALUES];
+
+    /**
+     * The number of records written
+     */
+    private volatile long recordCount;
+
+    /**
+     * The number of changed samples not written because the file is full
+     */
+    private volatile long droppedCount;
+
+    /**
+     * Construct a recorder with the default largest size
+     * @param file The file to record to, replaced if it exists
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public InputRecorder(Path file) throws IOException
+    {
+        this(file, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Construct a recorder
+     * @param file The file to record to, replaced if it exists
+     * @param maxSize The largest size of the file in bytes. The file is this size while recording.
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public InputRecorder(Path file, long maxSize) throws IOException
+    {
+        if((maxSize < HEADER_SIZE + MAX_RECORD_SIZE) || (maxSize > Integer.MAX_VALUE))
+        {
+            throw new IllegalArgumentException("Cannot record to " + maxSize + " bytes, the size must be from " + (HEADER_SIZE + MAX_RECORD_SIZE) + " to " + Integer.MAX_VALUE + "\n");
+        }
+
+        channel=FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try
+        {
+            buffer=channel.map(FileChannel.MapMode.READ_WRITE, 0, maxSize);
+        }
+        catch(IOException e)
+        {
+            channel.close();
+            throw e;
+        }
+
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Start recording a controller. Each sample published by the controller from now on is recorded.
+     * A recorder records only one controller, once.
+     * @param controller The controller to record
+     */
+    public synchronized void attach(GameController controller)
+    {
+        if(this.controller!=null)
+        {
+            throw new IllegalStateException("Recorder has already recorded controller " + this.controller.getId() + "\n");
+        }
+
+        GameControllerCaps caps=controller.getCaps();
+        byte name[]=(caps!=null && caps.getName()!=null) ? caps.getName().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        int nameLength=Math.min(name.length, MAX_NAME_LENGTH);
+
+        buffer.putInt(0, MAGIC);
+        buffer.putShort(4, VERSION);
+        buffer.putShort(6, HEADER_SIZE);
+        buffer.putInt(ID_OFFSET, controller.getId());
+        buffer.putInt(KEYFRAME_OFFSET, KEYFRAME_INTERVAL);
+        buffer.putLong(START_OFFSET, System.currentTimeMillis());
+        buffer.putLong(END_OFFSET, position);
+        buffer.putShort(NAME_OFFSET, (short)nameLength);
+
+        for(int i=0 ; i < nameLength ; ++i)
+        {
+            buffer.put(NAME_OFFSET + 2 + i, name[i]);
+        }
+
+        startNanos=System.nanoTime();
+        this.controller=controller;
+        controller.setRecorder(this);
+    }
+
+    /**
+     * Stop recording the controller
+     */
+    public synchronized void detach()
+    {
+        if(controller!=null)
+        {
+            controller.setRecorder(null);
+        }
+    }
+
+    /**
+     * Get the controller being recorded
+     * @return The controller, or null if none was attached
+     */
+    public GameController getController()
+    {
+        return controller;
+    }
+
+    /**
+     * Get the number of records written
+     * @return The number of records
+     */
+    public long getRecordCount()
+    {
+        return recordCount;
+    }
+
+    /**
+     * Get the number of changed samples not written because the file is full
+     * @return The number of dropped samples
+     */
+    public long getDroppedCount()
+    {
+        return droppedCount;
+    }
+
+    /**
+     * Get the number of bytes used in the file, header included
+     * @return The size of the recording in bytes
+     */
+    public long getSize()
+    {
+        return buffer.getLong(END_OFFSET);
+    }
+
+    /**
+     * Record the current sample of the controller. Called by the polling thread from publish.
+     * @param state The raw state of the controller
+     * @param timestamp The time of the sample, in System.nanoTime units
+     */
+    void record(GameControllerState state, long timestamp)
+    {
+        long time=(timestamp - startNanos) / 1000L;
+        boolean keyframe=(time - lastKeyframe) >= KEYFRAME_INTERVAL;
+        boolean nowConnected=state.isConnected();
+        int newButtonMap=state.getButtonMap();
+        int mask=nowConnected ? RECORD_CONNECTED : 0;
+        int changed=keyframe ? ~0 : (newButtonMap ^ buttonMap);
+
+        current[0]=Float.floatToRawIntBits(state.getX());
+        current[1]=Float.floatToRawIntBits(state.getY());
+        current[2]=Float.floatToRawIntBits(state.getZ());
+        current[3]=Float.floatToRawIntBits(state.getLeftTrigger());
+        current[4]=Float.floatToRawIntBits(state.getRightTrigger());
+        current[5]=Float.floatToRawIntBits(state.getR());
+        current[6]=Float.floatToRawIntBits(state.getU());
+        current[7]=Float.floatToRawIntBits(state.getV());
+        current[8]=Float.floatToRawIntBits(state.getPOV());
+
+        if(changed!=0)
+        {
+            mask|=RECORD_BUTTONS;
+        }
+
+        for(int i=0 ; i < NUM_VALUES ; ++i)
+        {
+            if(keyframe || current[i]!=values[i])
+            {
+                mask|=RECORD_X << i;
+            }
+        }
+
+        if(!keyframe && (mask==(connected ? RECORD_CONNECTED : 0)))
+        {
+            // nothing changed, so nothing to write
+            return;
+        }
+
+        if(position > buffer.capacity() - MAX_RECORD_SIZE)
+        {
+            droppedCount++;
+            return;
+        }
+
+        int pos=position;
+
+        if(keyframe)
+        {
+            mask|=RECORD_KEYFRAME;
+            pos=putVarint(pos, mask);
+            pos=putVarint(pos, time);
+            pos=putVarint(pos, newButtonMap & 0xFFFFFFFFL);
+            lastKeyframe=time;
+        }
+        else
+        {
+            pos=putVarint(pos, mask);
+            pos=putVarint(pos, time - lastTime);
+
+            if((mask & RECORD_BUTTONS)!=0)
+            {
+                pos=putVarint(pos, changed & 0xFFFFFFFFL);
+            }
+        }
+
+        for(int i=0 ; i < NUM_VALUES ; ++i)
+        {
+            if((mask & (RECORD_X << i))!=0)
+            {
+                buffer.putInt(pos, current[i]);
+                pos+=4;
+                values[i]=current[i];
+            }
+        }
+
+        connected=nowConnected;
+        buttonMap=newButtonMap;
+        lastTime=time;
+        position=pos;
+        // the end goes in after the record, so a reader never sees half a record
+        buffer.putLong(END_OFFSET, pos);
+        recordCount++;
+    }
+
+    /**
+     * Write an unsigned varint
+     * @param pos The offset to write at
+     * @param value The value to write
+     * @return The offset after the varint
+     */
+    private int putVarint(int pos, long value)
+    {
+        while((value & ~0x7FL)!=0)
+        {
+            buffer.put(pos++, (byte)((value & 0x7F) | 0x80));
+            value>>>=7;
+        }
+
+        buffer.put(pos++, (byte)value);
+
+        return pos;
+    }
+
+    /**
+     * Stop recording and flush the file to disk. The file stays its full size; the header says
+     * where the records end.
+     * @throws IOException if the file cannot be flushed or closed
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        detach();
+        buffer.force();
+        channel.close();
+    }
+
+}
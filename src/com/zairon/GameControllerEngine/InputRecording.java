@@ -0,0 +1,419 @@
+package com.zairon.GameControllerEngine;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a recording written by InputRecorder, one record at a time, keeping the sample the
+ * records add up to. The recording is memory mapped, and the end is read from the header each
+ * time, so a recording still being written can be followed. A sparse index of the keyframes
+ * is kept for seeking.
+ * @author Michael Watkins
+ *
+ */
+class InputRecording
+{
+    /**
+     * The mapped recording
+     */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * The id of the controller recorded
+     */
+    private final int id;
+
+    /**
+     * The name of the controller recorded
+     */
+    private final String name;
+
+    /**
+     * The start of the recording in milliseconds since the epoch
+     */
+    private final long startMillis;
+
+    /**
+     * The offset of the next record
+     */
+    private int offset=InputRecorder.HEADER_SIZE;
+
+    /**
+     * The time of the sample in microseconds since the start, -1 before the first record
+     */
+    private long time=-1L;
+
+    /**
+     * Whether the controller is connected in the sample
+     */
+    private boolean connected;
+
+    /**
+     * The button map of the sample
+     */
+    private int buttonMap;
+
+    /**
+     * The raw values of the sample, from x to pov
+     */
+    private final float values[]=new float[InputRecorder.NUM_VALUES];
+
+    /**
+     * The times of the keyframes indexed
+     */
+    private long keyframeTimes[]=new long[64];
+
+    /**
+     * The offsets of the keyframes indexed
+     */
+    private int keyframeOffsets[]=new int[64];
+
+    /**
+     * The number of keyframes indexed
+     */
+    private int keyframeCount;
+
+    /**
+     * The offset the index has been built up to
+     */
+    private int indexedEnd=InputRecorder.HEADER_SIZE;
+
+    /**
+     * Open a recording
+     * @param file The recording file
+     * @throws IOException if the file cannot be mapped or is not a recording
+     */
+    InputRecording(Path file) throws IOException
+    {
+        try(FileChannel channel=FileChannel.open(file, StandardOpenOption.READ))
+        {
+            buffer=channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if((buffer.capacity() < InputRecorder.HEADER_SIZE) || (buffer.getInt(0)!=InputRecorder.MAGIC))
+        {
+            throw new IOException("File " + file + " is not an input recording\n");
+        }
+
+        if(buffer.getShort(4)!=InputRecorder.VERSION)
+        {
+            throw new IOException("Cannot read version " + buffer.getShort(4) + " of an input recording\n");
+        }
+
+        byte nameBytes[]=new byte[Math.min(buffer.getShort(InputRecorder.NAME_OFFSET), InputRecorder.MAX_NAME_LENGTH)];
+
+        for(int i=0 ; i < nameBytes.length ; ++i)
+        {
+            nameBytes[i]=buffer.get(InputRecorder.NAME_OFFSET + 2 + i);
+        }
+
+        id=buffer.getInt(InputRecorder.ID_OFFSET);
+        name=new String(nameBytes, StandardCharsets.UTF_8);
+        startMillis=buffer.getLong(InputRecorder.START_OFFSET);
+        
+        index();
+    }
+
+    /**
+     * Get the id of the controller recorded
+     * @return The id of the controller
+     */
+    int getId()
+    {
+        return id;
+    }
+
+    /**
+     * Get the name of the controller recorded
+     * @return The name of the controller
+     */
+    String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Get the start of the recording
+     * @return The start in milliseconds since the epoch
+     */
+    long getStartMillis()
+    {
+        return startMillis;
+    }
+
+    /**
+     * Get the offset just past the last complete record
+     * @return The end of the records
+     */
+    private int getEnd()
+    {
+        return (int)Math.min(buffer.getLong(InputRecorder.END_OFFSET), buffer.capacity());
+    }
+
+    /**
+     * Return whether there is another record
+     * @return true if there is another record, false at the end
+     */
+    boolean hasNext()
+    {
+        return offset < getEnd();
+    }
+
+    /**
+     * Get the time of the next record without reading it
+     * @return The time in microseconds since the start, or Long.MAX_VALUE at the end
+     */
+    long peekTime()
+    {
+        return hasNext() ? getRecordTime(offset, time) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Read the next record into the sample
+     */
+    void next()
+    {
+        int mask=(int)readVarint();
+        long value=readVarint();
+
+        if((mask & InputRecorder.RECORD_KEYFRAME)!=0)
+        {
+            time=value;
+            buttonMap=(int)readVarint();
+        }
+        else
+        {
+            time+=value;
+
+            if((mask & InputRecorder.RECORD_BUTTONS)!=0)
+            {
+                buttonMap^=(int)readVarint();
+            }
+        }
+
+        connected=(mask & InputRecorder.RECORD_CONNECTED)!=0;
+
+        for(int i=0 ; i < InputRecorder.NUM_VALUES ; ++i)
+        {
+            if((mask & (InputRecorder.RECORD_X << i))!=0)
+            {
+                values[i]=buffer.getFloat(offset);
+                offset+=4;
+            }
+        }
+    }
+
+    /**
+     * Read a varint at the offset, moving past it
+     * @return The value
+     */
+    private long readVarint()
+    {
+        long value=0;
+        int shift=0;
+        byte b;
+
+        do
+        {
+            b=buffer.get(offset++);
+            value|=(b & 0x7FL) << shift;
+            shift+=7;
+        }
+        while(b < 0);
+
+        return value;
+    }
+
+    /**
+     * Get the length of the varint at an offset
+     * @param pos The offset of the varint
+     * @return The length in bytes
+     */
+    private int getVarintLength(int pos)
+    {
+        int length=1;
+
+        while(buffer.get(pos++) < 0)
+        {
+            length++;
+        }
+
+        return length;
+    }
+
+    /**
+     * Get the time of a record without reading the rest of it
+     * @param pos The offset of the record
+     * @param previousTime The time of the record before it
+     * @return The time in microseconds since the start
+     */
+    private long getRecordTime(int pos, long previousTime)
+    {
+        int savedOffset=offset;
+
+        offset=pos;
+        long mask=readVarint();
+        long value=readVarint();
+        offset=savedOffset;
+
+        return ((mask & InputRecorder.RECORD_KEYFRAME)!=0) ? value : previousTime + value;
+    }
+
+    /**
+     * Get the offset of the record after a record, without reading it
+     * @param pos The offset of the record
+     * @return The offset of the next record
+     */
+    private int skipRecord(int pos)
+    {
+        int savedOffset=offset;
+
+        offset=pos;
+        int mask=(int)readVarint();
+        pos=offset + getVarintLength(offset);
+        offset=savedOffset;
+
+        if((mask & InputRecorder.RECORD_BUTTONS)!=0)
+        {
+            pos+=getVarintLength(pos);
+        }
+
+        // four bytes for each axis flagged
+        return pos + 4 * Integer.bitCount((mask / InputRecorder.RECORD_X) & ((1 << InputRecorder.NUM_VALUES) - 1));
+    }
+
+    /**
+     * Move to the last sample at or before a time, starting from the keyframe before it
+     * @param target The time in microseconds since the start
+     */
+    void seek(long target)
+    {
+        index();
+
+        // find the last keyframe at or before the target
+        int found=Arrays.binarySearch(keyframeTimes, 0, keyframeCount, target);
+
+        if(found < 0)
+        {
+            found=-found - 2;
+        }
+
+        rewind();
+
+        if(found >= 0)
+        {
+            offset=keyframeOffsets[found];
+        }
+
+        while(peekTime() <= target)
+        {
+            next();
+        }
+    }
+
+    /**
+     * Move back to before the first record
+     */
+    void rewind()
+    {
+        offset=InputRecorder.HEADER_SIZE;
+        time=-1L;
+        connected=false;
+        buttonMap=0;
+        Arrays.fill(values, 0.0f);
+    }
+
+    /**
+     * Add the keyframes written since the index was last built to the index
+     */
+    private void index()
+    {
+        int end=getEnd();
+        int pos=indexedEnd;
+
+        while(pos < end)
+        {
+            if((buffer.get(pos) & InputRecorder.RECORD_KEYFRAME)!=0)
+            {
+                if(keyframeCount==keyframeTimes.length)
+                {
+                    keyframeTimes=Arrays.copyOf(keyframeTimes, keyframeCount * 2);
+                    keyframeOffsets=Arrays.copyOf(keyframeOffsets, keyframeCount * 2);
+                }
+
+                keyframeOffsets[keyframeCount]=pos;
+                keyframeTimes[keyframeCount]=getRecordTime(pos, 0L);
+                keyframeCount++;
+            }
+
+            pos=skipRecord(pos);
+        }
+
+        indexedEnd=end;
+    }
+
+    /**
+     * Get the time of the sample
+     * @return The time in microseconds since the start, or -1 before the first record
+     */
+    long getTime()
+    {
+        return time;
+    }
+
+    /**
+     * Get the time of the last record written
+     * @return The time in microseconds since the start, or -1 if there are no records
+     */
+    long getDuration()
+    {
+        index();
+
+        if(keyframeCount==0)
+        {
+            return -1L;
+        }
+
+        // add up the times from the last keyframe
+        int pos=keyframeOffsets[keyframeCount - 1];
+        long duration=keyframeTimes[keyframeCount - 1];
+
+        for(pos=skipRecord(pos); pos < indexedEnd; pos=skipRecord(pos))
+        {
+            duration=getRecordTime(pos, duration);
+        }
+
+        return duration;
+    }
+
+    /**
+     * Copy the sample into a controller state
+     * @param state The state to fill in
+     */
+    void copyTo(GameControllerState state)
+    {
+        state.setConnected(connected);
+        state.setButtonMap(buttonMap);
+        state.setAxes(values[0], values[1], values[2], values[5], values[6], values[7]);
+        state.setTriggers(values[3], values[4]);
+        state.setPOV(values[8]);
+    }
+
+    /**
+     * Return whether the controller is connected in the sample
+     * @return true if connected, false otherwise
+     */
+    boolean isConnected()
+    {
+        return connected;
+    }
+
+}
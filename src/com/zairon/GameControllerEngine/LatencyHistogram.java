@@ -0,0 +1,216 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-memory histogram of latencies in nanoseconds, in the style of HdrHistogram. Values
+ * below 64 ns have a bucket each; above that each power of two is split into 32 buckets, so a
+ * value is known to within about 3% anywhere in the range, which goes up to about 68 seconds.
+ * Longer values are counted in the top bucket, but the maximum is still exact. The buckets are
+ * allocated once, so recording never allocates, and it is safe to record from many threads
+ * and read from another while recording.
+ * @author Michael Watkins
+ *
+ */
+public class LatencyHistogram
+{
+    /**
+     * The number of bits of precision kept for each value
+     */
+    private static final int SUB_BUCKET_BITS=5;
+
+    /**
+     * The number of buckets each power of two is split into
+     */
+    private static final int SUB_BUCKET_COUNT=1 << SUB_BUCKET_BITS;
+
+    /**
+     * The highest power of two tracked in the buckets, 2^36 ns is about 68 seconds
+     */
+    private static final int MAX_EXPONENT=36;
+
+    /**
+     * The number of buckets, two exact rows and then a row for each power of two up to the highest
+     */
+    private static final int NUM_BUCKETS=((MAX_EXPONENT - SUB_BUCKET_BITS) + 2) * SUB_BUCKET_COUNT;
+
+    /**
+     * The count in each bucket
+     */
+    private final AtomicLongArray counts=new AtomicLongArray(NUM_BUCKETS);
+
+    /**
+     * The number of values recorded
+     */
+    private final LongAdder totalCount=new LongAdder();
+
+    /**
+     * The sum of the values recorded
+     */
+    private final LongAdder totalValue=new LongAdder();
+
+    /**
+     * The largest value recorded
+     */
+    private final AtomicLong max=new AtomicLong();
+
+    /**
+     * Record a value
+     * @param value The latency in nanoseconds, negative values count as zero
+     */
+    public void record(long value)
+    {
+        long clamped=Math.max(value, 0L);
+
+        counts.incrementAndGet(getIndex(clamped));
+        totalCount.increment();
+        totalValue.add(clamped);
+
+        long current=max.get();
+
+        while((clamped > current) && !max.compareAndSet(current, clamped))
+        {
+            current=max.get();
+        }
+    }
+
+    /**
+     * Get the number of values recorded
+     * @return The number of values
+     */
+    public long getTotalCount()
+    {
+        return totalCount.sum();
+    }
+
+    /**
+     * Get the largest value recorded
+     * @return The largest value in nanoseconds, or zero if none were recorded
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * Get the mean of the values recorded
+     * @return The mean in nanoseconds, or zero if none were recorded
+     */
+    public double getMean()
+    {
+        long count=totalCount.sum();
+
+        return (count > 0) ? (double)totalValue.sum() / count : 0.0;
+    }
+
+    /**
+     * Get the value at a percentile. This is the highest value that falls in the same bucket as the
+     * value at the percentile, so it is at most about 3% high, and is never more than the maximum.
+     * @param percentile The percentile, from 0.0 to 100.0
+     * @return The value in nanoseconds, or zero if none were recorded
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        if((percentile < 0.0) || (percentile > 100.0))
+        {
+            throw new IllegalArgumentException("Cannot get the " + percentile + " percentile, the percentile must be from 0 to 100\n");
+        }
+
+        long total=0;
+
+        for(int i=0 ; i < NUM_BUCKETS ; ++i)
+        {
+            total+=counts.get(i);
+        }
+
+        if(total==0)
+        {
+            return 0L;
+        }
+
+        // the rank of the value wanted, at least the first
+        long rank=Math.max((long)Math.ceil((percentile / 100.0) * total), 1L);
+        long seen=0;
+
+        for(int i=0 ; i < NUM_BUCKETS ; ++i)
+        {
+            seen+=counts.get(i);
+
+            if(seen >= rank)
+            {
+                return Math.min(getHighestValue(i), max.get());
+            }
+        }
+
+        return max.get();
+    }
+
+    /**
+     * Clear the histogram. Values recorded during the reset may be lost.
+     */
+    public void reset()
+    {
+        for(int i=0 ; i < NUM_BUCKETS ; ++i)
+        {
+            counts.set(i, 0L);
+        }
+
+        totalCount.reset();
+        totalValue.reset();
+        max.set(0L);
+    }
+
+    /**
+     * Get the bucket for a value
+     * @param value The value, not negative
+     * @return The index of the bucket
+     */
+    static int getIndex(long value)
+    {
+        if(value < (SUB_BUCKET_COUNT << 1))
+        {
+            // the first two powers of two are exact
+            return (int)value;
+        }
+
+        int exponent=63 - Long.numberOfLeadingZeros(value);
+
+        if(exponent > MAX_EXPONENT)
+        {
+            return NUM_BUCKETS - 1;
+        }
+
+        // keep the top bits of the value, from SUB_BUCKET_COUNT to twice that
+        int shift=exponent - SUB_BUCKET_BITS;
+
+        return (shift * SUB_BUCKET_COUNT) + (int)(value >>> shift);
+    }
+
+    /**
+     * Get the highest value that falls in a bucket
+     * @param index The index of the bucket
+     * @return The highest value in the bucket
+     */
+    static long getHighestValue(int index)
+    {
+        if(index < (SUB_BUCKET_COUNT << 1))
+        {
+            return index;
+        }
+
+        int shift=(index / SUB_BUCKET_COUNT) - 1;
+        long top=index - ((long)shift * SUB_BUCKET_COUNT);
+
+        return ((top + 1) << shift) - 1;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "LatencyHistogram[count " + getTotalCount() + ", mean " + (long)getMean() + " ns, p50 " + getValueAtPercentile(50.0)
+            + " ns, p99 " + getValueAtPercentile(99.0) + " ns, p99.9 " + getValueAtPercentile(99.9) + " ns, max " + getMax() + " ns]";
+    }
+
+}
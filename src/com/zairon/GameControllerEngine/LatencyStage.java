@@ -0,0 +1,49 @@
+package com.zairon.GameControllerEngine;
+
+/**
+ * The stages of input latency recorded by ControllerLatency, from the poll to the consumer.
+ * @author Michael Watkins
+ *
+ */
+public enum LatencyStage
+{
+    /**
+     * The backend read, from the start of the poll until the backend returned the sample.
+     * Not recorded for polls that wait for the backend, since the time includes the wait.
+     */
+    READ("READ"),
+    /**
+     * From the backend read to the commit of the sample, after the dead zones and mappings were applied
+     */
+    COMMIT("COMMIT"),
+    /**
+     * From the commit of the sample to its delivery to a consumer, through a snapshot or a SnapshotFlow.
+     * This is how old the sample was when the consumer got it.
+     */
+    DELIVERY("DELIVERY");
+    
+    /**
+     * The number of stages
+     */
+    public static final int NUM_STAGES=3;
+    
+    /**
+     * The label for the stage
+     */
+    private String label;
+    
+    /**
+     * Construct the enumeration value
+     * @param label The label for the enumeration value
+     */
+    private LatencyStage(String label)
+    {
+        this.label=label;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return this.label;
+    }
+}
@@ -0,0 +1,395 @@
+package com.zairon.GameControllerEngine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Loads the native library for the JNI backends on a background thread, the first time it is
+ * asked for, instead of when GameControllerNatives is first touched. Call start early to have the
+ * library loading while the application starts up, and await where the natives are needed.
+ * <p>
+ * The library is looked for in the jar as NATIVE_RESOURCE_DIR + System.mapLibraryName(name),
+ * with its SHA-256 checksum beside it in a file ending CHECKSUM_EXTENSION. A library without its
+ * checksum is not loaded. It is extracted once to a directory named after the checksum under the
+ * cache directory, and later runs load the extracted file after checking it against the checksum.
+ * The cache directory is per user, under LOCALAPPDATA on Windows and XDG_CACHE_HOME or ~/.cache
+ * elsewhere, and the checksum directory is made readable and writable by the owner only, so
+ * another user cannot swap the library between the check and the load. Without a library in the
+ * jar, the library is loaded from java.library.path as before.
+ * @author Michael Watkins
+ *
+ */
+public class NativeLoader
+{
+    /**
+     * The system property naming the directory the library is extracted to
+     */
+    public static final String CACHE_DIRECTORY_PROPERTY="com.zairon.GameControllerEngine.nativeCache";
+
+    /**
+     * The directory in the jar holding the native libraries
+     */
+    public static final String NATIVE_RESOURCE_DIR="/native/";
+
+    /**
+     * The extension of the checksum file beside each library in the jar
+     */
+    public static final String CHECKSUM_EXTENSION=".sha256";
+
+    /**
+     * The checksum algorithm
+     */
+    private static final String CHECKSUM_ALGORITHM="SHA-256";
+
+    /**
+     * The number of checksum characters used to name the extract directory
+     */
+    private static final int CHECKSUM_DIR_LENGTH=16;
+
+    /**
+     * The name of the directory for this library under the per-user cache directories
+     */
+    private static final String CACHE_DIR_NAME="GameControllerEngine";
+
+    /**
+     * The permissions of the extract directory on file systems with POSIX permissions
+     */
+    private static final Set<PosixFilePermission> OWNER_ONLY=PosixFilePermissions.fromString("rwx------");
+
+    /**
+     * The result of loading, or null if loading has not started
+     */
+    private static CompletableFuture<Boolean> result;
+
+    /**
+     * The file the library was loaded from, or null if loaded from java.library.path or not loaded
+     */
+    private static volatile Path libraryFile;
+
+    /**
+     * The error that stopped the library loading, or null
+     */
+    private static volatile Throwable failure;
+
+    /**
+     * Prevent instantiation
+     */
+    private NativeLoader()
+    {
+    }
+
+    /**
+     * Start loading the library on a background thread, if not already started. This returns at once.
+     */
+    public static synchronized void start()
+    {
+        if(result==null)
+        {
+            result=new CompletableFuture<Boolean>();
+
+            Thread thread=new Thread(NativeLoader::load, "NativeLoader");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Wait for the library to load, starting the loading if needed
+     * @return true if the library loaded, false if it could not be loaded
+     */
+    public static boolean await()
+    {
+        start();
+
+        CompletableFuture<Boolean> loading;
+
+        synchronized(NativeLoader.class)
+        {
+            loading=result;
+        }
+
+        // the load thread never completes exceptionally
+        return loading.join().booleanValue();
+    }
+
+    /**
+     * Return whether the library has loaded, without waiting
+     * @return true if the library is loaded, false if it is still loading, failed or was never started
+     */
+    public static synchronized boolean isLoaded()
+    {
+        return (result!=null) && result.isDone() && result.join().booleanValue();
+    }
+
+    /**
+     * Get the error that stopped the library loading
+     * @return The error, or null if the library has not failed to load
+     */
+    public static Throwable getFailure()
+    {
+        return failure;
+    }
+
+    /**
+     * Get the file the library was loaded from
+     * @return The extracted library, or null if it came from java.library.path or has not loaded
+     */
+    public static Path getLibraryFile()
+    {
+        return libraryFile;
+    }
+
+    /**
+     * Get the name of the library for this platform, without the prefix and extension of the platform
+     * @return The name of the library
+     */
+    public static String getLibraryName()
+    {
+        // do not use GameControllerNatives methods here, since its class initialization waits on this
+        String os=System.getProperty("os.name").contains(GameControllerNatives.WINDOWS_OS_STRING) ? GameControllerNatives.WINDOWS_OS_STRING : "";
+
+        return os + GameControllerNatives.NATIVE_LIBRARY_NAME + System.getProperty("sun.arch.data.model");
+    }
+
+    /**
+     * Load the library, on the load thread
+     */
+    private static void load()
+    {
+        boolean loaded=false;
+
+        try
+        {
+            String libName=getLibraryName();
+            Path file=extract(System.mapLibraryName(libName));
+
+            if(file!=null)
+            {
+                System.load(file.toString());
+                libraryFile=file;
+            }
+            else
+            {
+                System.loadLibrary(libName);
+            }
+
+            loaded=true;
+        }
+        catch(IOException | RuntimeException | UnsatisfiedLinkError e)
+        {
+            failure=e;
+        }
+        finally
+        {
+            result.complete(Boolean.valueOf(loaded));
+        }
+    }
+
+    /**
+     * Extract the library from the jar to the cache directory, unless it is already there
+     * @param fileName The file name of the library
+     * @return The extracted library, or null if the library is not in the jar
+     * @throws IOException if the library cannot be extracted, or does not match its checksum
+     */
+    private static Path extract(String fileName) throws IOException
+    {
+        byte library[]=readResource(NATIVE_RESOURCE_DIR + fileName);
+
+        if(library==null)
+        {
+            return null;
+        }
+
+        byte checksumFile[]=readResource(NATIVE_RESOURCE_DIR + fileName + CHECKSUM_EXTENSION);
+
+        if(checksumFile==null)
+        {
+            throw new IOException("Library " + fileName + " in the jar has no " + CHECKSUM_EXTENSION + " checksum beside it\n");
+        }
+
+        // the checksum file starts with the hex digest, in any case
+        String expected=new String(checksumFile, StandardCharsets.US_ASCII).trim().split("\\s+")[0].toLowerCase();
+        String checksum=checksum(library);
+
+        if(!expected.equals(checksum))
+        {
+            throw new IOException("Library " + fileName + " in the jar does not match its checksum\n");
+        }
+
+        Path dir=getCacheDirectory().resolve(checksum.substring(0, CHECKSUM_DIR_LENGTH));
+        Path file=dir.resolve(fileName);
+
+        createPrivateDirectory(dir);
+
+        if(Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS))
+        {
+            byte extracted[];
+
+            try(InputStream in=Files.newInputStream(file, LinkOption.NOFOLLOW_LINKS))
+            {
+                extracted=in.readAllBytes();
+            }
+
+            if(checksum.equals(checksum(extracted)))
+            {
+                // extracted by an earlier run
+                return file;
+            }
+        }
+
+        // write beside the library and move it into place, so another process never loads half a file
+        Path temp=Files.createTempFile(dir, fileName, ".tmp");
+
+        try
+        {
+            Files.write(temp, library);
+
+            try
+            {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch(AtomicMoveNotSupportedException e)
+            {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+
+        return file;
+    }
+
+    /**
+     * Get the directory the library is extracted under, set by CACHE_DIRECTORY_PROPERTY or else
+     * the cache directory of the user
+     * @return The cache directory
+     */
+    private static Path getCacheDirectory()
+    {
+        String cacheName=System.getProperty(CACHE_DIRECTORY_PROPERTY);
+
+        if(cacheName!=null)
+        {
+            return Path.of(cacheName);
+        }
+
+        String localAppData=System.getenv("LOCALAPPDATA");
+
+        if((localAppData!=null) && !localAppData.isEmpty())
+        {
+            return Path.of(localAppData, CACHE_DIR_NAME);
+        }
+
+        String cacheHome=System.getenv("XDG_CACHE_HOME");
+
+        if((cacheHome!=null) && !cacheHome.isEmpty())
+        {
+            return Path.of(cacheHome, CACHE_DIR_NAME);
+        }
+
+        return Path.of(System.getProperty("user.home"), ".cache", CACHE_DIR_NAME);
+    }
+
+    /**
+     * Make the directory the library is extracted to, if it is not there, so only its owner can use
+     * it. Where the file system has POSIX permissions, a directory already there must belong to this
+     * user and is made owner only. On Windows the directory inherits the access of the user profile
+     * it is under.
+     * @param dir The directory
+     * @throws IOException if the directory cannot be made, or belongs to another user
+     */
+    private static void createPrivateDirectory(Path dir) throws IOException
+    {
+        if(!dir.getFileSystem().supportedFileAttributeViews().contains("posix"))
+        {
+            Files.createDirectories(dir);
+            return;
+        }
+
+        if(dir.getParent()!=null)
+        {
+            Files.createDirectories(dir.getParent());
+        }
+
+        try
+        {
+            Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+        }
+        catch(FileAlreadyExistsException e)
+        {
+            // made by an earlier run, or another process extracting at the same time
+        }
+
+        PosixFileAttributes attributes=Files.readAttributes(dir, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        UserPrincipal user=dir.getFileSystem().getUserPrincipalLookupService().lookupPrincipalByName(System.getProperty("user.name"));
+
+        if(!attributes.isDirectory() || !attributes.owner().equals(user))
+        {
+            throw new IOException("Cannot extract the library to " + dir + ", it is not a directory owned by " + user.getName() + "\n");
+        }
+
+        if(!attributes.permissions().equals(OWNER_ONLY))
+        {
+            Files.setPosixFilePermissions(dir, OWNER_ONLY);
+        }
+    }
+
+    /**
+     * Read a resource from the jar
+     * @param name The name of the resource
+     * @return The bytes of the resource, or null if there is no such resource
+     * @throws IOException if the resource cannot be read
+     */
+    private static byte[] readResource(String name) throws IOException
+    {
+        try(InputStream in=NativeLoader.class.getResourceAsStream(name))
+        {
+            return (in!=null) ? in.readAllBytes() : null;
+        }
+    }
+
+    /**
+     * Get the checksum of some bytes
+     * @param data The bytes
+     * @return The SHA-256 checksum in lower case hex
+     */
+    private static String checksum(byte data[])
+    {
+        try
+        {
+            byte digest[]=MessageDigest.getInstance(CHECKSUM_ALGORITHM).digest(data);
+            StringBuilder hex=new StringBuilder(digest.length * 2);
+
+            for(byte b : digest)
+            {
+                hex.append(Character.forDigit((b >>> 4) & 0xF, 16));
+                hex.append(Character.forDigit(b & 0xF, 16));
+            }
+
+            return hex.toString();
+        }
+        catch(NoSuchAlgorithmException e)
+        {
+            // every Java platform has SHA-256
+            throw new IllegalStateException("Cannot find " + CHECKSUM_ALGORITHM + "\n", e);
+        }
+    }
+
+}
@@ -18,6 +18,7 @@ public class NullGameController extends XBoxGameController
     public boolean poll()
     {
         // polling is no-action for the null controller
+        publish();
         return state.isConnected();
     }
 
@@ -0,0 +1,23 @@
+package com.zairon.GameControllerEngine;
+
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event for every poll of a controller, from the backend read to the publish.
+ * This is off by default since controllers are polled up to thousands of times a second;
+ * SlowPollEvent records just the slow ones. The stack trace is left out, since it is always the poll loop. Batched polls are recorded as a BatchPollEvent.
+ * @author Michael Watkins
+ *
+ */
+@Name("com.zairon.GameControllerEngine.Poll")
+@Label("Controller Poll")
+@Description("A poll of a game controller, from the backend read to the publish")
+@Enabled(false)
+@StackTrace(false)
+class PollEvent extends ControllerEvent
+{
+}
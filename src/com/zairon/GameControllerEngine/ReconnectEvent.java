@@ -0,0 +1,18 @@
+package com.zairon.GameControllerEngine;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for a call to GameController.reconnect, including the
+ * capabilities refresh when it succeeds. Connected is whether the reconnect succeeded.
+ * @author Michael Watkins
+ *
+ */
+@Name("com.zairon.GameControllerEngine.Reconnect")
+@Label("Controller Reconnect")
+@Description("A reconnect of a game controller")
+class ReconnectEvent extends ControllerEvent
+{
+}
@@ -0,0 +1,787 @@
+package com.zairon.GameControllerEngine;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Receives the stream sent by a ControllerStreamServer, for RemoteGameControllers to poll. A receiver
+ * thread subscribes to the server, decodes each data packet against the samples it already has, and
+ * acknowledges the newest sample for every slot after each batch of packets. The newest sample for
+ * each slot is published through a sequence lock, like GameControllerPublisher, so polling a remote
+ * controller copies it without ever blocking or waiting for the network.
+ * <p>
+ * Packets that arrive out of order are counted, and their records are only used if they are still
+ * newer than what the slot has. A gap in the packet sequence numbers is counted as lost until the
+ * missing packet turns up. The round trip time is measured from the times the server echoes back,
+ * so the clocks of the two machines do not have to agree. The receive path reuses its buffers and
+ * samples, so it does not allocate.
+ * <p>
+ * A server that restarts counts its sequence numbers from the start again. The receiver forgets
+ * the sequence numbers and history it has when it subscribes again after hearing nothing, and when
+ * a packet or a keyframe arrives more than HISTORY behind the newest it has, so the samples of a
+ * restarted server are not thrown away as stale.
+ * @author Michael Watkins
+ *
+ */
+public class RemoteControllerStream
+{
+    /**
+     * How long without a packet before the receiver subscribes again, in nanoseconds
+     */
+    public static final long SUBSCRIBE_INTERVAL=250000000L;
+
+    /**
+     * How long without a sample before a remote controller reads as disconnected, in nanoseconds
+     */
+    public static final long DISCONNECT_TIMEOUT=500000000L;
+
+    /**
+     * How long the receiver thread waits for a packet before checking its subscription, in milliseconds
+     */
+    private static final long SELECT_TIMEOUT=50L;
+
+    /**
+     * The mask for a sequence number to get its place in the history
+     */
+    private static final int HISTORY_MASK=ControllerStreamProtocol.HISTORY - 1;
+
+    /**
+     * The address of the server
+     */
+    private final InetSocketAddress server;
+
+    /**
+     * The number of slots received
+     */
+    private final int slots;
+
+    /**
+     * The channel, connected to the server
+     */
+    private final DatagramChannel channel;
+
+    /**
+     * The selector the receiver thread waits on
+     */
+    private final Selector selector;
+
+    /**
+     * The action for ready keys, which has nothing to do since there is only the one channel
+     */
+    private final Consumer<SelectionKey> ready=key -> {};
+
+    /**
+     * The buffer packets are received into
+     */
+    private final ByteBuffer receiveBuffer=ByteBuffer.allocateDirect(ControllerStreamProtocol.MAX_PACKET_SIZE);
+
+    /**
+     * The buffer packets are built in
+     */
+    private final ByteBuffer sendBuffer=ByteBuffer.allocateDirect(ControllerStreamProtocol.MAX_PACKET_SIZE);
+
+    /**
+     * The recent samples for each slot, indexed by sequence number, only used by the receiver thread
+     */
+    private final GameControllerState history[][];
+
+    /**
+     * The sequence number of each sample in the history
+     */
+    private final int historySequences[][];
+
+    /**
+     * The sequence number of the newest sample for each slot
+     */
+    private final int sequences[];
+
+    /**
+     * The sequence lock guarding the newest sample for each slot
+     */
+    private final StampedLock locks[];
+
+    /**
+     * The newest sample for each slot, as published to the controllers
+     */
+    private final GameControllerState published[];
+
+    /**
+     * When the newest sample for each slot was received, in System.nanoTime units
+     */
+    private final long receivedTimes[];
+
+    /**
+     * The round trip times to the server
+     */
+    private final LatencyHistogram roundTrips=new LatencyHistogram();
+
+    /**
+     * The sequence number of the newest packet received
+     */
+    private int packetSequence;
+
+    /**
+     * When a packet was last received, in System.nanoTime units
+     */
+    private long heardTime;
+
+    /**
+     * When the receiver last subscribed, in System.nanoTime units
+     */
+    private long subscribeTime;
+
+    /**
+     * The receiver thread, or null if not started
+     */
+    private Thread thread;
+
+    /**
+     * Flag telling the receiver thread to keep going
+     */
+    private volatile boolean running;
+
+    /**
+     * The error that stopped the receiver thread, or null
+     */
+    private volatile RuntimeException failure;
+
+    /**
+     * The number of data packets received
+     */
+    private volatile long packetCount;
+
+    /**
+     * The number of packets missing from the sequence
+     */
+    private volatile long lostCount;
+
+    /**
+     * The number of packets received after a newer one
+     */
+    private volatile long outOfOrderCount;
+
+    /**
+     * The number of packets received twice
+     */
+    private volatile long duplicateCount;
+
+    /**
+     * The number of records skipped because the slot already had a newer sample
+     */
+    private volatile long staleCount;
+
+    /**
+     * The number of records skipped because the sample they were encoded against was not in the history
+     */
+    private volatile long missingBaseCount;
+
+    /**
+     * The last round trip time measured, in nanoseconds
+     */
+    private volatile long roundTrip;
+
+    /**
+     * Protect the stream from instantiation (make it come from the factory).
+     * @param server The address of the server
+     * @param slots The number of slots to receive, from 1 to ControllerStreamProtocol.MAX_SLOTS
+     * @throws IOException if the channel cannot be opened
+     */
+    protected RemoteControllerStream(InetSocketAddress server, int slots) throws IOException
+    {
+        if((slots < 1) || (slots > ControllerStreamProtocol.MAX_SLOTS))
+        {
+            throw new IllegalArgumentException("Cannot receive " + slots + " slots, there must be from 1 to " + ControllerStreamProtocol.MAX_SLOTS + "\n");
+        }
+
+        this.server=server;
+        this.slots=slots;
+        this.history=new GameControllerState[slots][ControllerStreamProtocol.HISTORY];
+        this.historySequences=new int[slots][ControllerStreamProtocol.HISTORY];
+        this.sequences=new int[slots];
+        this.locks=new StampedLock[slots];
+        this.published=new GameControllerState[slots];
+        this.receivedTimes=new long[slots];
+
+        for(int slot=0 ; slot < slots ; ++slot)
+        {
+            for(int i=0 ; i < ControllerStreamProtocol.HISTORY ; ++i)
+            {
+                history[slot][i]=new GameControllerState();
+            }
+
+            locks[slot]=new StampedLock();
+            published[slot]=new GameControllerState();
+        }
+
+        this.channel=DatagramChannel.open();
+
+        try
+        {
+            channel.connect(server);
+            channel.configureBlocking(false);
+            this.selector=Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+        }
+        catch(IOException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Subscribe to the server and start receiving on a new thread
+     */
+    public synchronized void start()
+    {
+        if(thread!=null)
+        {
+            throw new IllegalStateException("Remote stream has already been started\n");
+        }
+
+        running=true;
+        thread=new Thread(this::run, "RemoteControllerStream");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Unsubscribe from the server, wait for the receiver thread to finish and close the channel
+     * @throws InterruptedException if interrupted while waiting for the thread
+     */
+    public synchronized void stop() throws InterruptedException
+    {
+        running=false;
+
+        if(thread!=null)
+        {
+            selector.wakeup();
+            thread.join();
+        }
+
+        try
+        {
+            selector.close();
+            channel.close();
+        }
+        catch(IOException e)
+        {
+            // nothing left to receive on it
+        }
+    }
+
+    /**
+     * Return whether the receiver thread is running
+     * @return true if receiving, false otherwise
+     */
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * Get the error that stopped the receiver thread
+     * @return The error, or null if the thread has not failed
+     */
+    public RuntimeException getFailure()
+    {
+        return failure;
+    }
+
+    /**
+     * Get the address of the server
+     * @return The address
+     */
+    public InetSocketAddress getServer()
+    {
+        return server;
+    }
+
+    /**
+     * Get the number of slots received
+     * @return The number of slots
+     */
+    public int getSlots()
+    {
+        return slots;
+    }
+
+    /**
+     * Get the number of data packets received, including the ones out of order
+     * @return The number of packets
+     */
+    public long getPacketCount()
+    {
+        return packetCount;
+    }
+
+    /**
+     * Get the number of packets missing from the sequence. A packet that turns up late is taken back off.
+     * @return The number of packets lost
+     */
+    public long getLostCount()
+    {
+        return lostCount;
+    }
+
+    /**
+     * Get the fraction of the packets sent that were lost
+     * @return The loss, from 0.0 to 1.0
+     */
+    public double getLossRate()
+    {
+        long lost=lostCount;
+        long sent=packetCount - duplicateCount + lost;
+
+        return (sent > 0) ? (double)lost / sent : 0.0;
+    }
+
+    /**
+     * Get the number of packets received after a newer one
+     * @return The number of packets out of order
+     */
+    public long getOutOfOrderCount()
+    {
+        return outOfOrderCount;
+    }
+
+    /**
+     * Get the number of packets received more than once
+     * @return The number of duplicates
+     */
+    public long getDuplicateCount()
+    {
+        return duplicateCount;
+    }
+
+    /**
+     * Get the number of records skipped because the slot already had a newer sample
+     * @return The number of stale records
+     */
+    public long getStaleCount()
+    {
+        return staleCount;
+    }
+
+    /**
+     * Get the number of records skipped because the sample they were encoded against had gone from
+     * the history. The server sends a keyframe once it hears the newer acks.
+     * @return The number of records skipped
+     */
+    public long getMissingBaseCount()
+    {
+        return missingBaseCount;
+    }
+
+    /**
+     * Get the last round trip time measured
+     * @return The round trip time in nanoseconds, or zero if none has been measured
+     */
+    public long getRoundTrip()
+    {
+        return roundTrip;
+    }
+
+    /**
+     * Get the histogram of round trip times. The one way latency is about half of the round trip.
+     * @return The histogram, in nanoseconds
+     */
+    public LatencyHistogram getRoundTrips()
+    {
+        return roundTrips;
+    }
+
+    /**
+     * Get the time since the newest sample for a slot was received
+     * @param slot The slot
+     * @return The age in nanoseconds, or Long.MAX_VALUE if no sample has been received
+     */
+    public long getSampleAge(int slot)
+    {
+        long receivedTime=read(slot, null);
+
+        return (receivedTime!=0) ? System.nanoTime() - receivedTime : Long.MAX_VALUE;
+    }
+
+    /**
+     * Copy the newest sample for a slot. This never blocks; if a sample is published while copying,
+     * the copy is done again. The previous button map and time stamps of the state are left alone.
+     * @param slot The slot
+     * @param state The state to copy into, or null to only get the time
+     * @return When the sample was received in System.nanoTime units, or zero if none has been received
+     */
+    long read(int slot, GameControllerState state)
+    {
+        StampedLock lock=locks[slot];
+
+        while(true)
+        {
+            long stamp=lock.tryOptimisticRead();
+
+            // a zero stamp means a publish is in progress
+            if(stamp!=0)
+            {
+                if(state!=null)
+                {
+                    state.copySample(published[slot]);
+                }
+
+                long receivedTime=receivedTimes[slot];
+
+                if(lock.validate(stamp))
+                {
+                    return receivedTime;
+                }
+            }
+
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * The receiving loop
+     */
+    private void run()
+    {
+        try
+        {
+            subscribe(System.nanoTime());
+
+            while(running)
+            {
+                selector.select(ready, SELECT_TIMEOUT);
+
+                long now=System.nanoTime();
+                boolean received=false;
+
+                while(receive(now))
+                {
+                    received=true;
+                }
+
+                if(received)
+                {
+                    // one ack for everything drained, naming only the newest samples
+                    acknowledge(now);
+                }
+                else if((now - heardTime > SUBSCRIBE_INTERVAL) && (now - subscribeTime > SUBSCRIBE_INTERVAL))
+                {
+                    // the server may have restarted or dropped us, or not be up yet
+                    reset();
+                    subscribe(now);
+                }
+            }
+
+            sendControl(ControllerStreamProtocol.TYPE_UNSUBSCRIBE, System.nanoTime());
+        }
+        catch(ClosedChannelException e)
+        {
+            // stopped
+        }
+        catch(IOException e)
+        {
+            failure=new IllegalStateException("Cannot receive from " + server + "\n", e);
+        }
+        catch(RuntimeException e)
+        {
+            failure=e;
+        }
+        finally
+        {
+            running=false;
+        }
+    }
+
+    /**
+     * Receive and handle one packet
+     * @param now The current time
+     * @return true if a packet was received, false if there are none waiting
+     * @throws IOException if the receive fails
+     */
+    private boolean receive(long now) throws IOException
+    {
+        receiveBuffer.clear();
+
+        try
+        {
+            if(channel.read(receiveBuffer) <= 0)
+            {
+                return false;
+            }
+        }
+        catch(PortUnreachableException e)
+        {
+            // nothing is listening on the server port yet
+            return false;
+        }
+
+        receiveBuffer.flip();
+        handle(receiveBuffer, now);
+
+        return true;
+    }
+
+    /**
+     * Handle a data packet. Packets that are not part of the protocol are ignored.
+     * @param buffer The packet
+     * @param now The time it was received
+     */
+    private void handle(ByteBuffer buffer, long now)
+    {
+        if((ControllerStreamProtocol.getHeader(buffer)!=ControllerStreamProtocol.TYPE_DATA)
+           || (buffer.remaining() < ControllerStreamProtocol.DATA_HEADER_SIZE - ControllerStreamProtocol.HEADER_SIZE + 2))
+        {
+            return;
+        }
+
+        int count=buffer.getShort() & 0xFFFF;
+        int sequence=buffer.getInt();
+        long echoTime=buffer.getLong();
+        long echoHold=buffer.getLong();
+
+        ++packetCount;
+        heardTime=now;
+
+        if(isRestart(sequence, packetSequence))
+        {
+            // the server has started again without us noticing the silence
+            reset();
+        }
+
+        if(packetSequence==ControllerStreamProtocol.NO_SEQUENCE)
+        {
+            packetSequence=sequence;
+        }
+        else if(ControllerStreamProtocol.isAfter(sequence, packetSequence))
+        {
+            lostCount+=sequence - packetSequence - 1;
+            packetSequence=sequence;
+        }
+        else if(sequence==packetSequence)
+        {
+            ++duplicateCount;
+            return;
+        }
+        else
+        {
+            // it was counted as lost when the newer packet arrived
+            ++outOfOrderCount;
+            lostCount=Math.max(lostCount - 1, 0L);
+        }
+
+        long trip=now - echoTime - echoHold;
+
+        if(trip > 0)
+        {
+            roundTrip=trip;
+            roundTrips.record(trip);
+        }
+
+        for(int i=0 ; i < count ; ++i)
+        {
+            if(buffer.remaining() < ControllerStreamProtocol.RECORD_HEADER_SIZE)
+            {
+                break;
+            }
+
+            int slot=buffer.get() & 0xFF;
+            int recordSequence=buffer.getInt();
+            int baseSequence=buffer.getInt();
+            int mask=buffer.getShort() & 0xFFFF;
+            int size=ControllerStreamProtocol.getFieldsSize(mask);
+
+            if(buffer.remaining() < size)
+            {
+                break;
+            }
+
+            if(!apply(buffer, slot, recordSequence, baseSequence, mask, now))
+            {
+                buffer.position(buffer.position() + size);
+            }
+        }
+    }
+
+    /**
+     * Decode a record into the history and publish it, if it is newer than what the slot has
+     * @param buffer The buffer positioned at the fields of the record
+     * @param slot The slot
+     * @param sequence The sequence number of the sample
+     * @param baseSequence The sequence number of the base, or NO_SEQUENCE for a keyframe
+     * @param mask The field mask
+     * @param now The time the record was received
+     * @return true if the fields were read, false if the record was skipped
+     */
+    private boolean apply(ByteBuffer buffer, int slot, int sequence, int baseSequence, int mask, long now)
+    {
+        if(slot >= slots)
+        {
+            return false;
+        }
+
+        if((baseSequence==ControllerStreamProtocol.NO_SEQUENCE) && isRestart(sequence, sequences[slot]))
+        {
+            resetSlot(slot);
+        }
+
+        if((sequences[slot]!=ControllerStreamProtocol.NO_SEQUENCE) && !ControllerStreamProtocol.isAfter(sequence, sequences[slot]))
+        {
+            ++staleCount;
+            return false;
+        }
+
+        GameControllerState state=history[slot][sequence & HISTORY_MASK];
+
+        if(baseSequence!=ControllerStreamProtocol.NO_SEQUENCE)
+        {
+            int baseIndex=baseSequence & HISTORY_MASK;
+
+            if(historySequences[slot][baseIndex]!=baseSequence)
+            {
+                ++missingBaseCount;
+                return false;
+            }
+
+            state.copySample(history[slot][baseIndex]);
+        }
+
+        ControllerStreamProtocol.getFields(buffer, mask, state);
+        historySequences[slot][sequence & HISTORY_MASK]=sequence;
+        sequences[slot]=sequence;
+        publish(slot, state, now);
+
+        return true;
+    }
+
+    /**
+     * Return whether a sequence number is so far behind the newest that it must come from a server that
+     * has started again, rather than being late
+     * @param sequence The sequence number received
+     * @param newest The newest sequence number received, or NO_SEQUENCE
+     * @return true if the server has restarted, false otherwise
+     */
+    private static boolean isRestart(int sequence, int newest)
+    {
+        return (newest!=ControllerStreamProtocol.NO_SEQUENCE) && ControllerStreamProtocol.isAfter(newest, sequence + ControllerStreamProtocol.HISTORY);
+    }
+
+    /**
+     * Forget the packet sequence number and the sequence numbers and history of every slot, so the
+     * stream starts again from the next packet. The published samples are kept.
+     */
+    private void reset()
+    {
+        packetSequence=ControllerStreamProtocol.NO_SEQUENCE;
+
+        for(int slot=0 ; slot < slots ; ++slot)
+        {
+            resetSlot(slot);
+        }
+    }
+
+    /**
+     * Forget the sequence numbers and history of a slot, so it starts again from the next keyframe
+     * @param slot The slot
+     */
+    private void resetSlot(int slot)
+    {
+        sequences[slot]=ControllerStreamProtocol.NO_SEQUENCE;
+        Arrays.fill(historySequences[slot], ControllerStreamProtocol.NO_SEQUENCE);
+    }
+
+    /**
+     * Publish the newest sample for a slot
+     * @param slot The slot
+     * @param state The sample
+     * @param now The time it was received
+     */
+    private void publish(int slot, GameControllerState state, long now)
+    {
+        StampedLock lock=locks[slot];
+        long stamp=lock.writeLock();
+
+        try
+        {
+            published[slot].copySample(state);
+            receivedTimes[slot]=now;
+        }
+        finally
+        {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Acknowledge the newest packet and the newest sample for every slot
+     * @param now The current time
+     * @throws IOException if the send fails
+     */
+    private void acknowledge(long now) throws IOException
+    {
+        sendBuffer.clear();
+        ControllerStreamProtocol.putHeader(sendBuffer, ControllerStreamProtocol.TYPE_ACK, slots);
+        sendBuffer.putLong(now);
+        sendBuffer.putInt(packetSequence);
+
+        for(int slot=0 ; slot < slots ; ++slot)
+        {
+            sendBuffer.putInt(sequences[slot]);
+        }
+
+        send();
+    }
+
+    /**
+     * Subscribe to the server
+     * @param now The current time
+     * @throws IOException if the send fails
+     */
+    private void subscribe(long now) throws IOException
+    {
+        subscribeTime=now;
+        sendControl(ControllerStreamProtocol.TYPE_SUBSCRIBE, now);
+    }
+
+    /**
+     * Send a subscribe or unsubscribe packet
+     * @param type The packet type
+     * @param now The current time
+     * @throws IOException if the send fails
+     */
+    private void sendControl(byte type, long now) throws IOException
+    {
+        sendBuffer.clear();
+        ControllerStreamProtocol.putHeader(sendBuffer, type, 0);
+        sendBuffer.putLong(now);
+        send();
+    }
+
+    /**
+     * Send the packet that has been built. A packet that cannot be sent is dropped, like any lost datagram.
+     * @throws IOException if the channel has been closed
+     */
+    private void send() throws IOException
+    {
+        sendBuffer.flip();
+
+        try
+        {
+            channel.write(sendBuffer);
+        }
+        catch(PortUnreachableException e)
+        {
+            // nothing is listening on the server port yet, so subscribe again later
+        }
+    }
+
+}
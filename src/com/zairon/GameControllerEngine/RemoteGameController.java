@@ -0,0 +1,84 @@
+package com.zairon.GameControllerEngine;
+
+/**
+ * A game controller on another machine, streamed by a ControllerStreamServer and received by a
+ * RemoteControllerStream. Each poll returns the newest sample received for the controller's slot,
+ * copied without blocking, and applies the dead zones and response curves here like any local
+ * controller. A slot that has had no sample for RemoteControllerStream.DISCONNECT_TIMEOUT reads as
+ * disconnected, the same as a pad that was unplugged.
+ * @author Michael Watkins
+ *
+ */
+public class RemoteGameController extends XBoxGameController
+{
+    /**
+     * The stream the samples come from
+     */
+    private RemoteControllerStream stream;
+
+    /**
+     * Protect the controller from instantiation (make it come from the factory).
+     */
+    protected RemoteGameController()
+    {
+    }
+
+    /**
+     * Set the stream the samples come from. Used by the factory.
+     * @param stream The stream
+     */
+    void setStream(RemoteControllerStream stream)
+    {
+        this.stream=stream;
+    }
+
+    /**
+     * Get the stream the samples come from, for its latency and loss statistics
+     * @return The stream
+     */
+    public RemoteControllerStream getStream()
+    {
+        return stream;
+    }
+
+    /**
+     * Poll the game controller with the newest sample received. This never waits for the network.
+     * @return true if the remote controller is connected and still streaming, false otherwise.
+     */
+    @Override
+    public boolean poll()
+    {
+        latch();
+
+        long readStart=startRead();
+        long receivedTime=stream.read(getId(), state);
+        long readTime=System.nanoTime();
+
+        stampRead(readStart, readTime);
+
+        if(readTime - receivedTime > RemoteControllerStream.DISCONNECT_TIMEOUT)
+        {
+            // the stream has stopped, so the controller is as good as unplugged
+            state.setConnected(false);
+        }
+
+        if(!state.isConnected())
+        {
+            publish();
+            return false;
+        }
+
+        update();
+        publish();
+
+        return true;
+    }
+
+    @Override
+    public boolean reconnect()
+    {
+        // the stream decides when the controller is connected
+        return poll();
+    }
+
+}
@@ -0,0 +1,270 @@
+package com.zairon.GameControllerEngine;
+
+/**
+ * A game controller that plays back a recording made by InputRecorder. Each poll returns the
+ * recorded sample for the current playback time, so games, tests and load runs see the same
+ * input the recorded controller gave. Playback can run at real time, at a multiple of real time,
+ * or a record per poll (frame stepped), and can jump to any time through a sparse index
+ * of the keyframes in the recording.
+ * @author Michael Watkins
+ *
+ */
+public class ReplayGameController extends XBoxGameController
+{
+    /**
+     * Microseconds in a nanosecond, as a divisor
+     */
+    private static final double NANOS_PER_MICRO=1000.0;
+
+    /**
+     * The recording played back
+     */
+    private InputRecording recording;
+
+    /**
+     * The playback speed, 1.0 for real time
+     */
+    private double speed=1.0;
+
+    /**
+     * Whether each poll steps one record instead of following the clock
+     */
+    private boolean frameStep;
+
+    /**
+     * Whether the playback clock has been started
+     */
+    private boolean started;
+
+    /**
+     * The System.nanoTime when the playback clock was started
+     */
+    private long baseNanos;
+
+    /**
+     * The recording time when the playback clock was started, in microseconds
+     */
+    private long baseTime;
+
+    /**
+     * Protect the controller from instantiation (make it come from the factory).
+     */
+    protected ReplayGameController()
+    {
+    }
+
+    /**
+     * Set the recording to play back. Used by the factory.
+     * @param recording The recording
+     */
+    void setRecording(InputRecording recording)
+    {
+        this.recording=recording;
+    }
+
+    /**
+     * Poll the game controller. In frame-stepped playback this moves to the next record,
+     * otherwise it moves to the last record at or before the playback clock. The clock starts
+     * at the first poll.
+     * @return true if the recorded controller is connected, false otherwise.
+     */
+    @Override
+    public boolean poll()
+    {
+        if(frameStep)
+        {
+            latch();
+
+            if(recording.hasNext())
+            {
+                recording.next();
+            }
+
+            return apply();
+        }
+
+        long now=System.nanoTime();
+
+        if(!started)
+        {
+            startClock(now);
+        }
+
+        return pollAt(baseTime + (long)(((now - baseNanos) / NANOS_PER_MICRO) * speed));
+    }
+
+    /**
+     * Poll the game controller at a given recording time, for playback driven by a clock other
+     * than the system one. Going back in time seeks.
+     * @param time The time in microseconds since the start of the recording
+     * @return true if the recorded controller is connected, false otherwise.
+     */
+    public boolean pollAt(long time)
+    {
+        latch();
+
+        if(time < recording.getTime())
+        {
+            recording.seek(time);
+        }
+        else
+        {
+            while(recording.peekTime() <= time)
+            {
+                recording.next();
+            }
+        }
+
+        return apply();
+    }
+
+    /**
+     * Copy the sample from the recording into the controller
+     * @return true if the recorded controller is connected, false otherwise.
+     */
+    private boolean apply()
+    {
+        recording.copyTo(state);
+        stampRead(System.nanoTime());
+
+        if(!state.isConnected())
+        {
+            publish();
+            return false;
+        }
+
+        update();
+        publish();
+
+        return true;
+    }
+
+    /**
+     * Start the playback clock from the current recording time
+     * @param now The System.nanoTime to start at
+     */
+    private void startClock(long now)
+    {
+        started=true;
+        baseNanos=now;
+        baseTime=Math.max(recording.getTime(), 0L);
+    }
+
+    /**
+     * Jump to a time in the recording. The next poll returns the last sample at or before the
+     * time, and the playback clock continues from there.
+     * @param time The time in microseconds since the start of the recording
+     */
+    public void seek(long time)
+    {
+        recording.seek(time);
+        started=true;
+        baseNanos=System.nanoTime();
+        baseTime=Math.max(time, 0L);
+    }
+
+    /**
+     * Go back to the start of the recording. The playback clock starts again at the next poll.
+     */
+    public void rewind()
+    {
+        recording.rewind();
+        started=false;
+    }
+
+    /**
+     * Set the playback speed. The clock continues from the current recording time.
+     * @param speed The speed, 1.0 for real time, 10.0 for ten times real time
+     */
+    public void setSpeed(double speed)
+    {
+        if(!(speed > 0.0))
+        {
+            throw new IllegalArgumentException("Cannot play back at speed " + speed + ", the speed must be more than zero\n");
+        }
+
+        if(started)
+        {
+            startClock(System.nanoTime());
+        }
+
+        this.speed=speed;
+    }
+
+    /**
+     * Get the playback speed
+     * @return The speed, 1.0 for real time
+     */
+    public double getSpeed()
+    {
+        return speed;
+    }
+
+    /**
+     * Set whether each poll steps one record instead of following the clock. Stepping plays back
+     * as fast as the controller is polled, with every recorded change seen once.
+     * @param frameStep true to step a record per poll, false to follow the clock
+     */
+    public void setFrameStep(boolean frameStep)
+    {
+        if(this.frameStep && !frameStep)
+        {
+            started=false;
+        }
+
+        this.frameStep=frameStep;
+    }
+
+    /**
+     * Return whether each poll steps one record
+     * @return true if frame stepped, false if following the clock
+     */
+    public boolean isFrameStep()
+    {
+        return frameStep;
+    }
+
+    /**
+     * Get the recording time of the current sample
+     * @return The time in microseconds since the start of the recording, or -1 before the first sample
+     */
+    public long getTime()
+    {
+        return recording.getTime();
+    }
+
+    /**
+     * Get the time of the last sample in the recording
+     * @return The time in microseconds since the start of the recording, or -1 if it is empty
+     */
+    public long getDuration()
+    {
+        return recording.getDuration();
+    }
+
+    /**
+     * Get when the recording was made
+     * @return The start of the recording in milliseconds since the epoch
+     */
+    public long getRecordingStart()
+    {
+        return recording.getStartMillis();
+    }
+
+    /**
+     * Return whether playback has reached the end of the recording
+     * @return true if there are no more samples, false otherwise
+     */
+    public boolean isFinished()
+    {
+        return !recording.hasNext();
+    }
+
+    @Override
+    public boolean reconnect()
+    {
+        // the recording decides when the controller is connected
+        return poll();
+    }
+
+}
@@ -0,0 +1,277 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A response curve for an axis, shaping how far the output moves for how far the control is
+ * pushed. Every curve is compiled into a lookup table over 0.0 to 1.0 and evaluated by linear
+ * interpolation, so any curve costs the same small fixed amount per sample, without Math.pow
+ * or spline math on the polling thread. The curve is applied to the magnitude, so it is
+ * symmetric around zero, and inputs past 1.0 are treated as 1.0.
+ * <p>
+ * Curves are immutable, so one can be shared by many axes and swapped while the axes are polled,
+ * see GameControllerAxis.setResponseCurve and GameControllerPoint.setResponseCurve.
+ * @author Michael Watkins
+ *
+ */
+public class ResponseCurve
+{
+    /**
+     * The number of steps in the lookup table
+     */
+    public static final int TABLE_SIZE=256;
+
+    /**
+     * The curve that leaves the values alone
+     */
+    public static final ResponseCurve LINEAR=compile(x -> x);
+
+    /**
+     * The output at each step, with one extra copy of the last entry so a full input needs no test
+     */
+    private final float table[]=new float[TABLE_SIZE + 2];
+
+    /**
+     * Protect the curve from instantiation (make it come from the factories).
+     * @param function The curve, called for inputs from 0.0 to 1.0
+     */
+    protected ResponseCurve(DoubleUnaryOperator function)
+    {
+        for(int i=0 ; i <= TABLE_SIZE ; ++i)
+        {
+            table[i]=(float)function.applyAsDouble((double)i / TABLE_SIZE);
+        }
+
+        table[TABLE_SIZE + 1]=table[TABLE_SIZE];
+    }
+
+    /**
+     * Compile any curve into a lookup table
+     * @param function The curve, called for inputs from 0.0 to 1.0. It should give 0.0 for 0.0,
+     * so the axis stays neutral at rest.
+     * @return The curve
+     */
+    public static ResponseCurve compile(DoubleUnaryOperator function)
+    {
+        return new ResponseCurve(function);
+    }
+
+    /**
+     * Make the linear curve
+     * @return The linear curve
+     */
+    public static ResponseCurve linear()
+    {
+        return LINEAR;
+    }
+
+    /**
+     * Make a power curve, output = input ^ exponent. Exponents over one give finer control near
+     * the center, exponents under one a faster start.
+     * @param exponent The exponent, more than zero
+     * @return The curve
+     */
+    public static ResponseCurve power(double exponent)
+    {
+        if(!(exponent > 0.0))
+        {
+            throw new IllegalArgumentException("Cannot make a power curve with exponent " + exponent + ", value is illegal\n");
+        }
+
+        return compile(x -> Math.pow(x, exponent));
+    }
+
+    /**
+     * Make an exponential curve, output = (e ^ (k * input) - 1) / (e ^ k - 1). Positive k gives
+     * finer control near the center, negative k a faster start, and zero is linear.
+     * @param k The steepness of the curve
+     * @return The curve
+     */
+    public static ResponseCurve exponential(double k)
+    {
+        if(Math.abs(k) < 1.0e-6)
+        {
+            return LINEAR;
+        }
+
+        double denominator=Math.expm1(k);
+
+        return compile(x -> Math.expm1(k * x) / denominator);
+    }
+
+    /**
+     * Make an S-curve, output = input ^ k / (input ^ k + (1 - input) ^ k). It is flat near the
+     * center and near full deflection for k over one, and linear for k of one.
+     * @param k The steepness of the curve, more than zero
+     * @return The curve
+     */
+    public static ResponseCurve sCurve(double k)
+    {
+        if(!(k > 0.0))
+        {
+            throw new IllegalArgumentException("Cannot make an S-curve with steepness " + k + ", value is illegal\n");
+        }
+
+        return compile(x ->
+        {
+            double a=Math.pow(x, k);
+            double b=Math.pow(1.0 - x, k);
+
+            return (a + b > 0.0) ? a / (a + b) : 0.0;
+        });
+    }
+
+    /**
+     * Make a curve of straight lines through a set of points
+     * @param inputs The inputs of the points, increasing, from 0.0 to 1.0
+     * @param outputs The outputs of the points
+     * @return The curve
+     */
+    public static ResponseCurve piecewise(float inputs[], float outputs[])
+    {
+        checkPoints(inputs, outputs);
+
+        return compile(x ->
+        {
+            int i=findSegment(inputs, x);
+
+            if(i < 0)
+            {
+                return (x < inputs[0]) ? outputs[0] : outputs[outputs.length - 1];
+            }
+
+            double t=(x - inputs[i]) / (inputs[i + 1] - inputs[i]);
+
+            return outputs[i] + ((outputs[i + 1] - outputs[i]) * t);
+        });
+    }
+
+    /**
+     * Make a smooth curve through a set of points. This is a monotone cubic spline, so it
+     * does not overshoot between points that only go up.
+     * @param inputs The inputs of the points, increasing, from 0.0 to 1.0
+     * @param outputs The outputs of the points
+     * @return The curve
+     */
+    public static ResponseCurve spline(float inputs[], float outputs[])
+    {
+        checkPoints(inputs, outputs);
+
+        int n=inputs.length;
+        double slopes[]=new double[n - 1];
+        double tangents[]=new double[n];
+
+        for(int i=0 ; i < n - 1 ; ++i)
+        {
+            slopes[i]=(outputs[i + 1] - outputs[i]) / (double)(inputs[i + 1] - inputs[i]);
+        }
+
+        tangents[0]=slopes[0];
+        tangents[n - 1]=slopes[n - 2];
+
+        for(int i=1 ; i < n - 1 ; ++i)
+        {
+            tangents[i]=((slopes[i - 1] * slopes[i]) <= 0.0) ? 0.0 : (slopes[i - 1] + slopes[i]) / 2.0;
+        }
+
+        // limit the tangents so the curve stays monotone (Fritsch-Carlson)
+        for(int i=0 ; i < n - 1 ; ++i)
+        {
+            if(slopes[i]==0.0)
+            {
+                tangents[i]=0.0;
+                tangents[i + 1]=0.0;
+            }
+            else
+            {
+                double a=tangents[i] / slopes[i];
+                double b=tangents[i + 1] / slopes[i];
+                double length=(a * a) + (b * b);
+
+                if(length > 9.0)
+                {
+                    double factor=3.0 / Math.sqrt(length);
+
+                    tangents[i]=factor * a * slopes[i];
+                    tangents[i + 1]=factor * b * slopes[i];
+                }
+            }
+        }
+
+        return compile(x ->
+        {
+            int i=findSegment(inputs, x);
+
+            if(i < 0)
+            {
+                return (x < inputs[0]) ? outputs[0] : outputs[n - 1];
+            }
+
+            double h=inputs[i + 1] - inputs[i];
+            double t=(x - inputs[i]) / h;
+            double t2=t * t;
+            double t3=t2 * t;
+
+            // cubic Hermite basis
+            return (((2.0 * t3) - (3.0 * t2) + 1.0) * outputs[i])
+                    + ((t3 - (2.0 * t2) + t) * h * tangents[i])
+                    + (((-2.0 * t3) + (3.0 * t2)) * outputs[i + 1])
+                    + ((t3 - t2) * h * tangents[i + 1]);
+        });
+    }
+
+    /**
+     * Check the points of a piecewise curve or spline
+     * @param inputs The inputs of the points
+     * @param outputs The outputs of the points
+     */
+    private static void checkPoints(float inputs[], float outputs[])
+    {
+        if((inputs.length < 2) || (inputs.length!=outputs.length))
+        {
+            throw new IllegalArgumentException("Cannot make a curve from " + inputs.length + " inputs and " + outputs.length + " outputs\n");
+        }
+
+        for(int i=0 ; i < inputs.length ; ++i)
+        {
+            if((inputs[i] < 0.0f) || (inputs[i] > 1.0f) || ((i > 0) && (inputs[i] <= inputs[i - 1])))
+            {
+                throw new IllegalArgumentException("Cannot make a curve with input " + inputs[i] + ", inputs must increase from 0.0 to 1.0\n");
+            }
+        }
+    }
+
+    /**
+     * Find the segment of a set of points holding an input
+     * @param inputs The inputs of the points
+     * @param x The input
+     * @return The index of the point starting the segment, or -1 if outside the points
+     */
+    private static int findSegment(float inputs[], double x)
+    {
+        for(int i=0 ; i < inputs.length - 1 ; ++i)
+        {
+            if((x >= inputs[i]) && (x <= inputs[i + 1]))
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Apply the curve to a value
+     * @param value The value, from -1.0 to 1.0
+     * @return The value after the curve, with the same sign
+     */
+    public float apply(float value)
+    {
+        float position=Math.min(Math.abs(value), 1.0f) * TABLE_SIZE;
+        int i=(int)position;
+        float low=table[i];
+
+        return Math.copySign(low + ((table[i + 1] - low) * (position - i)), value);
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.zairon.GameControllerEngine;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A Java Flight Recorder event for a poll of a controller that took longer than the threshold,
+ * 1 ms by default, which is a whole period at the default polling rate. Change the threshold in
+ * the recording settings.
+ * @author Michael Watkins
+ *
+ */
+@Name("com.zairon.GameControllerEngine.SlowPoll")
+@Label("Slow Controller Poll")
+@Description("A poll of a game controller that took longer than the threshold")
+@Threshold("1 ms")
+class SlowPollEvent extends ControllerEvent
+{
+}
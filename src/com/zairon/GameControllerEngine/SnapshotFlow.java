@@ -0,0 +1,299 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+/**
+ * A java.util.concurrent.Flow publisher of the samples of one controller, for reactive tools and
+ * telemetry that would otherwise poll the controller in a loop of their own. Each sample polled
+ * is copied into every subscription, and the subscribers are called on an executor, never on the
+ * polling thread. Backpressure is by conflation: each subscription keeps at most its depth of
+ * samples waiting, and when the subscriber has not asked for more a new sample pushes out the
+ * oldest one. A depth of one gives a slow subscriber, such as a UI thread, just the newest sample.
+ * The snapshots given to onNext belong to the subscriber. Make the flow with
+ * GameController.enableFlow.
+ * @author Michael Watkins
+ *
+ */
+public class SnapshotFlow implements Flow.Publisher<GameControllerSnapshot>
+{
+    /**
+     * The default number of samples a subscription keeps waiting, just the newest one
+     */
+    public static final int DEFAULT_DEPTH=1;
+
+    /**
+     * The controller the samples come from
+     */
+    private final GameController controller;
+
+    /**
+     * The executor the subscribers are called on
+     */
+    private final Executor executor;
+
+    /**
+     * The subscriptions, replaced as a whole when one is added or removed
+     */
+    private volatile Subscription subscriptions[]=new Subscription[0];
+
+    /**
+     * The number of samples published, only changed by the polling thread
+     */
+    private long sequence;
+
+    /**
+     * Whether the flow has been closed
+     */
+    private volatile boolean closed;
+
+    /**
+     * A subscription keeping a ring of the newest samples
+     */
+    private class Subscription extends FlowSubscription<GameControllerSnapshot>
+    {
+        /**
+         * The samples waiting, reused as the ring goes round
+         */
+        private final GameControllerSnapshot ring[];
+
+        /**
+         * The index of the oldest sample waiting
+         */
+        private int head;
+
+        /**
+         * The number of samples waiting
+         */
+        private int count;
+
+        /**
+         * The number of samples pushed out before they were delivered
+         */
+        private long conflatedCount;
+
+        /**
+         * Construct the subscription
+         * @param subscriber The subscriber
+         * @param depth The number of samples to keep waiting
+         */
+        Subscription(Flow.Subscriber<? super GameControllerSnapshot> subscriber, int depth)
+        {
+            super(subscriber, executor);
+
+            ring=new GameControllerSnapshot[depth];
+
+            for(int i=0 ; i < depth ; ++i)
+            {
+                ring[i]=new GameControllerSnapshot();
+            }
+        }
+
+        /**
+         * Store the current sample of a controller, pushing out the oldest if the ring is full.
+         * Called by the polling thread.
+         * @param controller The controller
+         * @param sequence The number of the sample
+         */
+        synchronized void offer(GameController controller, long sequence)
+        {
+            if(count==ring.length)
+            {
+                head=(head + 1) % ring.length;
+                --count;
+                ++conflatedCount;
+            }
+
+            ring[(head + count) % ring.length].capture(controller, sequence);
+            ++count;
+        }
+
+        /**
+         * Get the number of samples pushed out before they were delivered
+         * @return The number of samples
+         */
+        synchronized long getConflatedCount()
+        {
+            return conflatedCount;
+        }
+
+        @Override
+        synchronized GameControllerSnapshot next()
+        {
+            if(count==0)
+            {
+                return null;
+            }
+
+            // the ring slot is reused, so the subscriber gets its own copy
+            GameControllerSnapshot snapshot=new GameControllerSnapshot();
+
+            snapshot.copy(ring[head]);
+            head=(head + 1) % ring.length;
+            --count;
+            controller.stampDelivery(snapshot);
+
+            return snapshot;
+        }
+
+        @Override
+        synchronized boolean hasNext()
+        {
+            return count > 0;
+        }
+
+        @Override
+        void detach()
+        {
+            remove(this);
+        }
+    }
+
+    /**
+     * Protect the flow from instantiation (make it come from the controller).
+     * @param controller The controller the samples come from
+     * @param executor The executor the subscribers are called on
+     */
+    protected SnapshotFlow(GameController controller, Executor executor)
+    {
+        this.controller=controller;
+        this.executor=executor;
+    }
+
+    /**
+     * Subscribe with the default depth, so a slow subscriber gets just the newest sample
+     * @param subscriber The subscriber
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super GameControllerSnapshot> subscriber)
+    {
+        subscribe(subscriber, DEFAULT_DEPTH);
+    }
+
+    /**
+     * Subscribe, keeping up to a number of samples waiting while the subscriber has not asked for more
+     * @param subscriber The subscriber
+     * @param depth The number of samples to keep waiting, at least one
+     */
+    public synchronized void subscribe(Flow.Subscriber<? super GameControllerSnapshot> subscriber, int depth)
+    {
+        if(depth < 1)
+        {
+            throw new IllegalArgumentException("Cannot keep " + depth + " samples waiting, the depth must be at least one\n");
+        }
+
+        Subscription subscription=new Subscription(subscriber, depth);
+
+        if(closed)
+        {
+            subscription.complete();
+            return;
+        }
+
+        Subscription list[]=Arrays.copyOf(subscriptions, subscriptions.length + 1);
+
+        list[list.length - 1]=subscription;
+        subscriptions=list;
+        // sends onSubscribe
+        subscription.signal();
+    }
+
+    /**
+     * Get the number of subscribers
+     * @return The number of subscribers
+     */
+    public int getSubscriberCount()
+    {
+        return subscriptions.length;
+    }
+
+    /**
+     * Get the number of samples pushed out for all of the subscribers before they were delivered
+     * @return The number of samples
+     */
+    public long getConflatedCount()
+    {
+        long total=0;
+
+        for(Subscription subscription : subscriptions)
+        {
+            total+=subscription.getConflatedCount();
+        }
+
+        return total;
+    }
+
+    /**
+     * Return whether the flow has been closed
+     * @return true if closed, false otherwise
+     */
+    public boolean isClosed()
+    {
+        return closed;
+    }
+
+    /**
+     * Close the flow. Each subscriber gets onComplete after the samples already waiting.
+     */
+    public synchronized void close()
+    {
+        closed=true;
+
+        for(Subscription subscription : subscriptions)
+        {
+            subscription.complete();
+        }
+    }
+
+    /**
+     * Publish the current sample of a controller to every subscriber. Called by the polling thread after each poll.
+     * @param controller The controller to publish
+     */
+    void publish(GameController controller)
+    {
+        Subscription list[]=subscriptions;
+
+        if(list.length==0)
+        {
+            return;
+        }
+
+        ++sequence;
+
+        for(Subscription subscription : list)
+        {
+            subscription.offer(controller, sequence);
+
+            // without requests the sample just waits in the ring, so there is nothing to wake
+            if(subscription.isRequested())
+            {
+                subscription.signal();
+            }
+        }
+    }
+
+    /**
+     * Remove a subscription, when it is cancelled or finished
+     * @param subscription The subscription to remove
+     */
+    private synchronized void remove(Subscription subscription)
+    {
+        Subscription list[]=subscriptions;
+
+        for(int i=0 ; i < list.length ; ++i)
+        {
+            if(list[i]==subscription)
+            {
+                Subscription newList[]=new Subscription[list.length - 1];
+
+                System.arraycopy(list, 0, newList, 0, i);
+                System.arraycopy(list, i + 1, newList, i, list.length - i - 1);
+                subscriptions=newList;
+
+                return;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,459 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * An in-memory backend that produces scripted controller state. This needs no native library
+ * or hardware, so it can be used to benchmark and load-test the poll path on any platform.
+ * Each read of a controller advances that controller's tick by one and asks the script for
+ * the sample at that tick. All of the controllers share one script.
+ * @author Michael Watkins
+ *
+ */
+public class SyntheticControllerBackend implements ControllerBackend
+{
+    /**
+     * The name of the backend
+     */
+    public static final String NAME="synthetic";
+
+    /**
+     * The priority of the backend. This is zero so that the synthetic backend is only used when selected by name.
+     */
+    public static final int PRIORITY=0;
+
+    /**
+     * The system property with the number of controllers to simulate when made by the service loader
+     */
+    public static final String NUM_CONTROLLERS_PROPERTY="com.zairon.GameControllerEngine.synthetic.controllers";
+
+    /**
+     * The default number of controllers to simulate
+     */
+    public static final int DEFAULT_NUM_CONTROLLERS=4;
+
+    /**
+     * The neutral value for the point-of-view hat, the same as reported by the natives
+     */
+    public static final float POV_NEUTRAL=655.35f;
+
+    /**
+     * The device identity of every connected simulated controller
+     */
+    public static final long SYNTHETIC_IDENTITY=0x53594E5448L;
+
+    /**
+     * A script that produces the samples for the synthetic controllers.
+     */
+    public interface Script
+    {
+        /**
+         * Fill in the sample for a controller. This is called on the poll path, so it should not allocate.
+         * @param id The id of the controller
+         * @param tick The number of times the controller has been read before
+         * @param sample The sample to fill in, which still holds the previous values for the controller
+         */
+        public void step(int id, long tick, Sample sample);
+    }
+
+    /**
+     * A single sample for a synthetic controller. The values use the same ranges as GameControllerState.
+     */
+    public static class Sample
+    {
+        /**
+         * The x-axis value
+         */
+        private float x;
+
+        /**
+         * The y-axis value
+         */
+        private float y;
+
+        /**
+         * The z-axis value
+         */
+        private float z;
+
+        /**
+         * The left trigger value
+         */
+        private float leftTrigger;
+
+        /**
+         * The right trigger value
+         */
+        private float rightTrigger;
+
+        /**
+         * The r-axis value
+         */
+        private float r;
+
+        /**
+         * The u-axis value
+         */
+        private float u;
+
+        /**
+         * The v-axis value
+         */
+        private float v;
+
+        /**
+         * The point-of-view hat position
+         */
+        private float pov=POV_NEUTRAL;
+
+        /**
+         * The button map
+         */
+        private int buttonMap;
+
+        /**
+         * Set the left stick position
+         * @param x The x-axis value, from -1.0 to 1.0
+         * @param y The y-axis value, from -1.0 to 1.0
+         */
+        public void setXY(float x, float y)
+        {
+            this.x=x;
+            this.y=y;
+        }
+
+        /**
+         * Set the right stick position
+         * @param u The u-axis (left/right) value, from -1.0 to 1.0
+         * @param r The r-axis (up/down) value, from -1.0 to 1.0
+         */
+        public void setRU(float u, float r)
+        {
+            this.u=u;
+            this.r=r;
+        }
+
+        /**
+         * Set the trigger values. The z-axis is set from the triggers the same way the natives do it.
+         * @param leftTrigger The left trigger value, from 0.0 to 1.0
+         * @param rightTrigger The right trigger value, from 0.0 to 1.0
+         */
+        public void setTriggers(float leftTrigger, float rightTrigger)
+        {
+            this.leftTrigger=leftTrigger;
+            this.rightTrigger=rightTrigger;
+            this.z=leftTrigger - rightTrigger;
+        }
+
+        /**
+         * Set the v-axis value
+         * @param v The v-axis value, from -1.0 to 1.0
+         */
+        public void setV(float v)
+        {
+            this.v=v;
+        }
+
+        /**
+         * Set the point-of-view hat position
+         * @param pov The position in degrees, or POV_NEUTRAL for neutral
+         */
+        public void setPOV(float pov)
+        {
+            this.pov=pov;
+        }
+
+        /**
+         * Set the button map
+         * @param buttonMap The button map, with bit n set if button n is pressed
+         */
+        public void setButtonMap(int buttonMap)
+        {
+            this.buttonMap=buttonMap;
+        }
+
+        /**
+         * Copy the sample into a controller state
+         * @param state The state to copy into
+         */
+        void copyTo(GameControllerState state)
+        {
+            state.setAxes(x, y, z, r, u, v);
+            state.setTriggers(leftTrigger, rightTrigger);
+            state.setPOV(pov);
+            state.setButtonMap(buttonMap);
+        }
+
+        /**
+         * Copy the sample into a record of a packed state buffer
+         * @param buffer The buffer to copy into
+         * @param index The index of the record
+         */
+        void copyTo(GameControllerStateBuffer buffer, int index)
+        {
+            buffer.put(index, true, buttonMap, x, y, z, leftTrigger, rightTrigger, r, u, v, pov);
+        }
+    }
+
+    /**
+     * The default script. Sweeps the sticks and triggers around with a sine table,
+     * rotates the point-of-view hat and walks a single pressed button through the gamepad buttons.
+     * Each controller is offset by its id so the controllers do not all move together.
+     */
+    public static class SweepScript implements Script
+    {
+        /**
+         * The number of entries in the sine table, must be a power of two
+         */
+        private static final int TABLE_SIZE=256;
+
+        /**
+         * Mask to wrap an index into the sine table
+         */
+        private static final int TABLE_MASK=TABLE_SIZE - 1;
+
+        /**
+         * The sine table for one full turn
+         */
+        private static final float SINE[]=new float[TABLE_SIZE];
+
+        static
+        {
+            for(int i=0 ; i < TABLE_SIZE ; ++i)
+            {
+                SINE[i]=(float)Math.sin((2.0 * Math.PI * i) / TABLE_SIZE);
+            }
+        }
+
+        @Override
+        public void step(int id, long tick, Sample sample)
+        {
+            int phase=(int)tick + (id * 17);
+            float sin=SINE[phase & TABLE_MASK];
+            // a quarter turn later is the cosine
+            float cos=SINE[(phase + (TABLE_SIZE / 4)) & TABLE_MASK];
+
+            sample.setXY(sin, cos);
+            sample.setRU(cos, -sin);
+
+            if(sin > 0.0f)
+            {
+                sample.setTriggers(sin, 0.0f);
+            }
+            else
+            {
+                sample.setTriggers(0.0f, -sin);
+            }
+
+            // the hat moves every 128 ticks through the 8 directions and neutral
+            int pov=(int)(((tick >>> 7) + id) % 9);
+            sample.setPOV(pov==8 ? POV_NEUTRAL : pov * 45.0f);
+
+            // the pressed button moves every 64 ticks
+            sample.setButtonMap(1 << (int)(((tick >>> 6) + id) % GameControllerCaps.GAMEPAD_NUM_BUTTONS));
+        }
+    }
+
+    /**
+     * The number of simulated controllers
+     */
+    private final int numControllers;
+
+    /**
+     * The samples for each controller
+     */
+    private final Sample samples[];
+
+    /**
+     * The number of reads done for each controller
+     */
+    private final long ticks[];
+
+    /**
+     * Whether each controller is connected, 1 if it is and 0 if not. setConnected can be called
+     * from any thread while the controllers are polled, and a HotplugMonitor reads the flags from
+     * its own thread, so they are atomic.
+     */
+    private final AtomicIntegerArray connected;
+
+    /**
+     * The script producing the samples
+     */
+    private volatile Script script;
+
+    /**
+     * Construct the backend with the number of controllers from the NUM_CONTROLLERS_PROPERTY
+     * system property and the default script. This is the constructor used by the service loader.
+     */
+    public SyntheticControllerBackend()
+    {
+        this(Integer.getInteger(NUM_CONTROLLERS_PROPERTY, DEFAULT_NUM_CONTROLLERS).intValue(), new SweepScript());
+    }
+
+    /**
+     * Construct the backend. All of the controllers start connected.
+     * @param numControllers The number of controllers to simulate
+     * @param script The script producing the samples
+     */
+    public SyntheticControllerBackend(int numControllers, Script script)
+    {
+        if(numControllers < 0)
+        {
+            throw new IllegalArgumentException("Cannot simulate " + numControllers + " controllers\n");
+        }
+
+        this.numControllers=numControllers;
+        this.samples=new Sample[numControllers];
+        this.ticks=new long[numControllers];
+        this.connected=new AtomicIntegerArray(numControllers);
+        this.script=script;
+
+        for(int i=0 ; i < numControllers ; ++i)
+        {
+            samples[i]=new Sample();
+            connected.set(i, 1);
+        }
+    }
+
+    /**
+     * Get the script producing the samples
+     * @return The script
+     */
+    public Script getScript()
+    {
+        return script;
+    }
+
+    /**
+     * Replace the script producing the samples. This can be done while controllers are polled.
+     * @param script The new script
+     */
+    public void setScript(Script script)
+    {
+        this.script=script;
+    }
+
+    /**
+     * Simulate plugging in or unplugging a controller. This can be done from any thread while
+     * controllers are polled.
+     * @param id The id of the controller
+     * @param connected true to connect the controller, false to disconnect it
+     */
+    public void setConnected(int id, boolean connected)
+    {
+        this.connected.set(id, connected ? 1 : 0);
+    }
+
+    /**
+     * Get the number of times a controller has been read
+     * @param id The id of the controller
+     * @return The tick for the controller
+     */
+    public long getTick(int id)
+    {
+        return ticks[id];
+    }
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    public int getPriority()
+    {
+        return PRIORITY;
+    }
+
+    @Override
+    public boolean isAvailable()
+    {
+        // works everywhere
+        return true;
+    }
+
+    @Override
+    public int getNumControllers()
+    {
+        return numControllers;
+    }
+
+    @Override
+    public boolean isController(int id)
+    {
+        return (id >= 0) && (id < numControllers);
+    }
+
+    @Override
+    public boolean isConnected(int id)
+    {
+        return connected.get(id)!=0;
+    }
+
+    @Override
+    public GameControllerCaps getCaps(int id)
+    {
+        return GameControllerCaps.createGamepadCaps(String.format("SyntheticController%d", id));
+    }
+
+    @Override
+    public long getDeviceIdentity(int id)
+    {
+        // every simulated controller is the same kind of gamepad
+        return isConnected(id) ? SYNTHETIC_IDENTITY : NO_IDENTITY;
+    }
+
+    @Override
+    public boolean readState(int id, GameControllerState state)
+    {
+        if(!isConnected(id))
+        {
+            state.setConnected(false);
+            return false;
+        }
+
+        Sample sample=samples[id];
+
+        script.step(id, ticks[id]++, sample);
+        sample.copyTo(state);
+        state.setConnected(true);
+
+        return true;
+    }
+
+    @Override
+    public int readStates(GameControllerStateBuffer buffer, int first, int count)
+    {
+        buffer.checkRange(first, count);
+
+        Script script=this.script;
+        int numConnected=0;
+
+        for(int i=first ; i < (first + count) ; ++i)
+        {
+            int id=buffer.getId(i);
+
+            if(buffer.isSkipped(i))
+            {
+                continue;
+            }
+            else if(!isConnected(id))
+            {
+                buffer.putDisconnected(i);
+            }
+            else
+            {
+                Sample sample=samples[id];
+
+                script.step(id, ticks[id]++, sample);
+                sample.copyTo(buffer, i);
+
+                ++numConnected;
+            }
+        }
+
+        return numConnected;
+    }
+
+}
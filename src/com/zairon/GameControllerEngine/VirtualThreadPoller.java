@@ -0,0 +1,304 @@
+package com.zairon.GameControllerEngine;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Polls each controller on its own virtual thread, as an alternative to the single loop of
+ * ControllerPoller. Each thread waits on its controller with GameController.awaitPoll, so a
+ * controller over a backend that pushes its input, such as the evdev backends, publishes each sample
+ * as soon as it arrives, and is polled again at the end of each period if nothing arrived.
+ * Controllers over backends that cannot wait are polled once a period. A virtual thread blocked
+ * waiting does not hold a platform thread, so this scales to thousands of simulated or remote
+ * controllers. This needs Java 21 or later to run; the virtual threads are made through reflection,
+ * so the library still builds and runs on Java 17 and only start fails there. Other threads should read the controllers through
+ * snapshots, see GameController.enablePublishing. Register the poller with JMX through
+ * GameControllerManager.registerMBean.
+ * @author Michael Watkins
+ *
+ */
+public class VirtualThreadPoller implements VirtualThreadPollerMXBean
+{
+    /**
+     * Nanoseconds in a second
+     */
+    private static final long NANOS_PER_SECOND=1000000000L;
+
+    /**
+     * The controllers polled
+     */
+    private final List<GameController> controllers;
+
+    /**
+     * The polling rate in Hz for each controller
+     */
+    private final int rate;
+
+    /**
+     * The longest time between polls of a controller in nanoseconds
+     */
+    private final long period;
+
+    /**
+     * The polling threads, or null if not started
+     */
+    private Thread threads[];
+
+    /**
+     * Flag telling the polling threads to keep going
+     */
+    private volatile boolean running;
+
+    /**
+     * The time the statistics started, in System.nanoTime units
+     */
+    private volatile long statsStart;
+
+    /**
+     * The time the polling threads stopped, in System.nanoTime units
+     */
+    private volatile long statsEnd;
+
+    /**
+     * The number of polls since the statistics started, added to by every thread
+     */
+    private final LongAdder pollCount=new LongAdder();
+
+    /**
+     * The number of polls that returned before the end of their period because a new sample arrived
+     */
+    private final LongAdder earlyCount=new LongAdder();
+
+    /**
+     * The error that stopped the polling threads, or null
+     */
+    private volatile RuntimeException failure;
+
+    /**
+     * Protect the poller from instantiation (make it come from the factory).
+     * @param controllers The controllers to poll
+     * @param rate The polling rate in Hz for each controller, from ControllerPoller.MIN_RATE to ControllerPoller.MAX_RATE
+     */
+    protected VirtualThreadPoller(List<? extends GameController> controllers, int rate)
+    {
+        if((rate < ControllerPoller.MIN_RATE) || (rate > ControllerPoller.MAX_RATE))
+        {
+            throw new IllegalArgumentException("Cannot poll at " + rate + " Hz, the rate must be from " + ControllerPoller.MIN_RATE + " to " + ControllerPoller.MAX_RATE + " Hz\n");
+        }
+
+        this.controllers=new ArrayList<GameController>(controllers);
+        this.rate=rate;
+        this.period=NANOS_PER_SECOND / rate;
+    }
+
+    /**
+     * Start polling, with a new virtual thread for each controller
+     * @throws UnsupportedOperationException if the Java runtime does not have virtual threads
+     */
+    public synchronized void start()
+    {
+        if(threads!=null)
+        {
+            throw new IllegalStateException("Poller has already been started\n");
+        }
+
+        ThreadFactory factory=newVirtualThreadFactory("VirtualThreadPoller-");
+
+        running=true;
+        statsStart=System.nanoTime();
+        threads=new Thread[controllers.size()];
+
+        for(int i=0 ; i < threads.length ; ++i)
+        {
+            GameController controller=controllers.get(i);
+
+            threads[i]=factory.newThread(() -> run(controller));
+            threads[i].start();
+        }
+    }
+
+    /**
+     * Make a factory for virtual threads, the same as Thread.ofVirtual().name(prefix, 0).factory(),
+     * through reflection so this class compiles for Java 17
+     * @param prefix The start of the thread names, followed by a count from 0
+     * @return The factory
+     * @throws UnsupportedOperationException if the Java runtime does not have virtual threads
+     */
+    private static ThreadFactory newVirtualThreadFactory(String prefix)
+    {
+        try
+        {
+            Class<?> builderClass=Class.forName("java.lang.Thread$Builder");
+            Object builder=Thread.class.getMethod("ofVirtual").invoke(null);
+
+            builder=builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+
+            return (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+        }
+        catch(ClassNotFoundException | NoSuchMethodException e)
+        {
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or later\n", e);
+        }
+        catch(InvocationTargetException e)
+        {
+            // Java 19 and 20 have the methods but throw unless preview features are enabled
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or later\n", e.getCause());
+        }
+        catch(IllegalAccessException e)
+        {
+            throw new UnsupportedOperationException("Cannot make virtual threads\n", e);
+        }
+    }
+
+    /**
+     * Stop polling and wait for the polling threads to finish
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public synchronized void stop() throws InterruptedException
+    {
+        running=false;
+
+        if(threads!=null)
+        {
+            for(Thread thread : threads)
+            {
+                thread.interrupt();
+            }
+
+            for(Thread thread : threads)
+            {
+                thread.join();
+            }
+        }
+    }
+
+    /**
+     * Return whether the polling threads are running
+     * @return true if polling, false otherwise
+     */
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * Get the error that stopped the polling threads. An error polling any controller stops them all.
+     * @return The error, or null if no thread has failed
+     */
+    public RuntimeException getFailure()
+    {
+        return failure;
+    }
+
+    /**
+     * Get the controllers polled
+     * @return The controllers
+     */
+    public List<GameController> getControllers()
+    {
+        return controllers;
+    }
+
+    /**
+     * Get the requested polling rate for each controller
+     * @return The polling rate in Hz
+     */
+    public int getRate()
+    {
+        return rate;
+    }
+
+    /**
+     * Get the number of polls of all the controllers since the statistics started
+     * @return The number of polls
+     */
+    public long getPollCount()
+    {
+        return pollCount.sum();
+    }
+
+    /**
+     * Get the number of polls that returned early because the backend had a new sample
+     * @return The number of early polls
+     */
+    public long getEarlyCount()
+    {
+        return earlyCount.sum();
+    }
+
+    /**
+     * Get the rate actually achieved for each controller since the statistics started, up to now
+     * or to when the poller stopped. This is the average over the controllers.
+     * @return The achieved rate in Hz
+     */
+    public double getAchievedRate()
+    {
+        long elapsed=(running ? System.nanoTime() : statsEnd) - statsStart;
+        int count=controllers.size();
+
+        return ((elapsed > 0) && (count > 0)) ? ((double)pollCount.sum() * NANOS_PER_SECOND) / ((double)elapsed * count) : 0.0;
+    }
+
+    /**
+     * Reset the statistics. Polls in progress may be counted either side of the reset.
+     */
+    public void resetStats()
+    {
+        statsStart=System.nanoTime();
+        pollCount.reset();
+        earlyCount.reset();
+    }
+
+    /**
+     * The polling loop for one controller
+     * @param controller The controller to poll
+     */
+    private void run(GameController controller)
+    {
+        long deadline=System.nanoTime() + period;
+
+        try
+        {
+            while(running)
+            {
+                controller.awaitPoll(deadline - System.nanoTime());
+                pollCount.increment();
+
+                long now=System.nanoTime();
+
+                if(now - deadline < 0)
+                {
+                    // a new sample arrived before the period was up, so keep the same deadline
+                    earlyCount.increment();
+                }
+                else
+                {
+                    deadline+=period;
+
+                    if(now - deadline >= 0)
+                    {
+                        // fell behind by whole periods, so start again from now instead of bunching polls up
+                        deadline=now + period;
+                    }
+                }
+            }
+        }
+        catch(InterruptedException e)
+        {
+            // stopped while waiting
+        }
+        catch(RuntimeException e)
+        {
+            failure=e;
+            running=false;
+        }
+        finally
+        {
+            statsEnd=System.nanoTime();
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.zairon.GameControllerEngine;
+
+/**
+ * The management interface for a VirtualThreadPoller, registered with JMX by
+ * GameControllerManager.registerMBean.
+ * @author Michael Watkins
+ *
+ */
+public interface VirtualThreadPollerMXBean
+{
+    /**
+     * Return whether the polling threads are running
+     * @return true if polling, false otherwise
+     */
+    public boolean isRunning();
+
+    /**
+     * Get the requested polling rate for each controller
+     * @return The polling rate in Hz
+     */
+    public int getRate();
+
+    /**
+     * Get the number of polls of all the controllers since the statistics started
+     * @return The number of polls
+     */
+    public long getPollCount();
+
+    /**
+     * Get the number of polls that returned early because the backend had a new sample
+     * @return The number of early polls
+     */
+    public long getEarlyCount();
+
+    /**
+     * Get the rate actually achieved for each controller since the statistics started
+     * @return The achieved rate in Hz
+     */
+    public double getAchievedRate();
+
+    /**
+     * Reset the statistics
+     */
+    public void resetStats();
+}
@@ -0,0 +1,121 @@
+package com.zairon.GameControllerEngine;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The standard ways for the ControllerPoller to wait between polls. These trade CPU use for
+ * how close to the deadline the poller wakes up. Thread.sleep is the cheapest and the least
+ * precise, while spinning is the most precise and uses a whole core.
+ * @author Michael Watkins
+ *
+ */
+public enum WaitStrategies implements WaitStrategy
+{
+    /**
+     * Sleep with Thread.sleep. Good enough for low rates; the wake up is often late by a millisecond or more.
+     */
+    SLEEP
+    {
+        @Override
+        public void waitUntil(long deadline) throws InterruptedException
+        {
+            long remaining=deadline - System.nanoTime();
+            
+            if(remaining > 0)
+            {
+                Thread.sleep(remaining / NANOS_PER_MILLI, (int)(remaining % NANOS_PER_MILLI));
+            }
+        }
+    },
+    /**
+     * Park with LockSupport.parkNanos. Finer than sleep, but the wake up still depends on the OS timer slack.
+     */
+    PARK
+    {
+        @Override
+        public void waitUntil(long deadline) throws InterruptedException
+        {
+            long remaining;
+            
+            // parking can return early, so keep going until the deadline
+            while((remaining=deadline - System.nanoTime()) > 0)
+            {
+                LockSupport.parkNanos(remaining);
+                checkInterrupted();
+            }
+        }
+    },
+    /**
+     * Call Thread.yield until the deadline. Precise and gives the core to other threads when they need it.
+     */
+    YIELD
+    {
+        @Override
+        public void waitUntil(long deadline) throws InterruptedException
+        {
+            while(deadline - System.nanoTime() > 0)
+            {
+                Thread.yield();
+                checkInterrupted();
+            }
+        }
+    },
+    /**
+     * Busy-spin until the deadline. The most precise, and uses a whole core.
+     */
+    SPIN
+    {
+        @Override
+        public void waitUntil(long deadline) throws InterruptedException
+        {
+            while(deadline - System.nanoTime() > 0)
+            {
+                Thread.onSpinWait();
+            }
+            
+            checkInterrupted();
+        }
+    },
+    /**
+     * Park until close to the deadline, then busy-spin for the rest. Nearly as precise as spinning
+     * while only spinning for a short time each period.
+     */
+    HYBRID
+    {
+        @Override
+        public void waitUntil(long deadline) throws InterruptedException
+        {
+            long remaining;
+            
+            while((remaining=deadline - System.nanoTime()) > HYBRID_SPIN_NANOS)
+            {
+                LockSupport.parkNanos(remaining - HYBRID_SPIN_NANOS);
+                checkInterrupted();
+            }
+            
+            SPIN.waitUntil(deadline);
+        }
+    };
+    
+    /**
+     * Nanoseconds in a millisecond
+     */
+    private static final long NANOS_PER_MILLI=1000000L;
+    
+    /**
+     * How long before the deadline the hybrid strategy stops parking and starts spinning
+     */
+    public static final long HYBRID_SPIN_NANOS=100000L;
+    
+    /**
+     * Throw if the current thread has been interrupted, clearing the interrupt.
+     * @throws InterruptedException if the thread was interrupted
+     */
+    private static void checkInterrupted() throws InterruptedException
+    {
+        if(Thread.interrupted())
+        {
+            throw new InterruptedException();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.zairon.GameControllerEngine;
+
+/**
+ * How the ControllerPoller waits between polls. The standard strategies are in WaitStrategies.
+ * @author Michael Watkins
+ *
+ */
+public interface WaitStrategy
+{
+    /**
+     * Wait until the deadline given. Returning a little early or late is allowed; the poller
+     * measures how far off the wake up was and reports it as jitter.
+     * @param deadline The time to wait until, in System.nanoTime units
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void waitUntil(long deadline) throws InterruptedException;
+}
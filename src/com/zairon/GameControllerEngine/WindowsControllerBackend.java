@@ -0,0 +1,109 @@
+package com.zairon.GameControllerEngine;
+
+/**
+ * The backend for generic windows (winmm) controllers, using the JNI natives.
+ * @author Michael Watkins
+ *
+ */
+public class WindowsControllerBackend implements ControllerBackend
+{
+    /**
+     * The name of the backend
+     */
+    public static final String NAME="windows";
+
+    /**
+     * The priority of the backend
+     */
+    public static final int PRIORITY=10;
+
+    /**
+     * Whether the natives loaded have the batched read, which older builds of the library do not export
+     */
+    private volatile boolean batchLinked=true;
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    public int getPriority()
+    {
+        return PRIORITY;
+    }
+
+    @Override
+    public boolean isAvailable()
+    {
+        // check the operating system directly so the native library is not loaded
+        return System.getProperty("os.name").contains(GameControllerNatives.WINDOWS_OS_STRING);
+    }
+
+    @Override
+    public boolean open()
+    {
+        return NativeLoader.await();
+    }
+
+    @Override
+    public int getNumControllers()
+    {
+        return GameControllerNatives.getNumControllers();
+    }
+
+    @Override
+    public boolean isController(int id)
+    {
+        // every id up to the number of controllers is a valid winmm joystick
+        return (id >= 0) && (id < getNumControllers());
+    }
+
+    @Override
+    public boolean isConnected(int id)
+    {
+        return GameControllerNatives.isConnected(id);
+    }
+
+    @Override
+    public GameControllerCaps getCaps(int id)
+    {
+        return GameControllerNatives.getControllerCaps(id);
+    }
+
+    @Override
+    public long getDeviceIdentity(int id)
+    {
+        return GameControllerNatives.getDeviceIdentity(id);
+    }
+
+    @Override
+    public boolean readState(int id, GameControllerState state)
+    {
+        return GameControllerNatives.getControllerState(id, state);
+    }
+
+    @Override
+    public int readStates(GameControllerStateBuffer buffer, int first, int count)
+    {
+        buffer.checkRange(first, count);
+
+        if(batchLinked)
+        {
+            try
+            {
+                // read all of the records with one call into the natives
+                return GameControllerNatives.getControllerStates(buffer.getBuffer(), first, count);
+            }
+            catch(UnsatisfiedLinkError e)
+            {
+                // a library built before the batched read, so read each controller from now on
+                batchLinked=false;
+            }
+        }
+
+        return ControllerBackend.super.readStates(buffer, first, count);
+    }
+
+}
@@ -1,5 +1,7 @@
 package com.zairon.GameControllerEngine;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * The game controller interface.
  * @author Michael Watkins
@@ -14,15 +16,21 @@ public class XBoxGameController extends GameController
      */
     public boolean reconnect()
     {
+        ReconnectEvent event=new ReconnectEvent();
+        
+        event.begin();
+        
         // poll for reconnection
         if(!poll())
         {
+            event.finish(this, false);
             return false;
         }
         else
         {
             // refresh the capabilities
-            caps=GameControllerNatives.getXInputControllerCaps(getId());
+            caps=GameControllerManager.getCapsCache().getCaps(backend, getId());
+            event.finish(this, true);
             
             return true;
         }
@@ -37,34 +45,90 @@ public class XBoxGameController extends GameController
      */
     public boolean poll()
     {
-        // update the state
-        if(!GameControllerNatives.getXInputControllerState(getId(), getState()))
+        // a parked controller is being probed by a hotplug monitor, so leave it disconnected
+        if(isParked())
         {
             return false;
         }
         
-        // state is updated, set the axis values for dead zone
-        xyPoint.setPos(state.getX(), state.getY());
-        zAxis.setP(state.getZ());
-        leftTriggerAxis.setP(state.getLeftTrigger());
-        rightTriggerAxis.setP(state.getRightTrigger());
-        // R axis is up/down axis, U is left/right axis
-        // so flip them for the axis position
-        ruPoint.setPos(state.getU(), state.getR());
-        vAxis.setP(state.getV());
-        
-        // if the POV is neutral, use 0,0, otherwise figure out
-        if(isPOVPressed())
+        PollEvent pollEvent=new PollEvent();
+        SlowPollEvent slowPollEvent=new SlowPollEvent();
+        
+        pollEvent.begin();
+        slowPollEvent.begin();
+        
+        // keep the last sample for edge detection
+        latch();
+        
+        // update the state
+        long readStart=startRead();
+        boolean connected=backend.readState(getId(), getState());
+        
+        stampRead(readStart, System.nanoTime());
+        
+        // apply the dead zones to the new state
+        if(connected)
         {
-            povPoint.setAngle(state.getPOV(), DEFAULT_POV_RADIUS);    
+            update();
         }
-        else
+        
+        publish();
+        pollEvent.finish(this, connected);
+        slowPollEvent.finish(this, connected);
+        
+        return connected;
+    }
+
+    /**
+     * Wait for the backend to have a new sample and poll it. Controllers without a backend,
+     * such as the null and replay controllers, wait out the time and poll.
+     * @param timeout The longest time to wait in nanoseconds, after which the controller is polled anyway
+     * @return true if the controller is connected, false otherwise.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Override
+    public boolean awaitPoll(long timeout) throws InterruptedException
+    {
+        if(backend==null)
+        {
+            return super.awaitPoll(timeout);
+        }
+        
+        // a parked controller is being probed by a hotplug monitor, so only wait
+        if(isParked())
         {
-            povPoint.setPos(0.0f, 0.0f);
+            if(timeout > 0)
+            {
+                TimeUnit.NANOSECONDS.sleep(timeout);
+            }
+            
+            return false;
         }
         
-        // return that the controller is connected
-        return true;
+        // keep the last sample for edge detection
+        latch();
+        
+        // wait for and read the state, the time waiting is not read latency
+        boolean connected=backend.awaitState(getId(), getState(), timeout);
+        PollEvent pollEvent=new PollEvent();
+        SlowPollEvent slowPollEvent=new SlowPollEvent();
+        
+        // the events time the work after the wait, like the metrics
+        pollEvent.begin();
+        slowPollEvent.begin();
+        stampRead(System.nanoTime());
+        
+        // apply the dead zones to the new state
+        if(connected)
+        {
+            update();
+        }
+        
+        publish();
+        pollEvent.finish(this, connected);
+        slowPollEvent.finish(this, connected);
+        
+        return connected;
     }
 
     /**
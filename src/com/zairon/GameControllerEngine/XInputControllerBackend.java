@@ -0,0 +1,165 @@
+package com.zairon.GameControllerEngine;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The backend for XInput controllers, using the JNI natives. The natives report the raw XInput
+ * wButtons, which this backend puts in button order (A is button 0) to match the winmm backend.
+ * @author Michael Watkins
+ *
+ */
+public class XInputControllerBackend implements ControllerBackend
+{
+    /**
+     * The name of the backend
+     */
+    public static final String NAME="xinput";
+
+    /**
+     * The priority of the backend. XInput is preferred over winmm when both are available.
+     */
+    public static final int PRIORITY=20;
+
+    /**
+     * The mask of the A, B, X and Y buttons in wButtons, which go to buttons 0 to 3
+     */
+    private static final int FACE_MASK=0xF000;
+
+    /**
+     * The mask of the shoulder buttons in wButtons, which go to buttons 4 and 5
+     */
+    private static final int SHOULDER_MASK=0x0300;
+
+    /**
+     * The mask of the back button in wButtons, which goes to button 6
+     */
+    private static final int BACK_MASK=0x0020;
+
+    /**
+     * The mask of the start button in wButtons, which goes to button 7
+     */
+    private static final int START_MASK=0x0010;
+
+    /**
+     * The mask of the thumb buttons in wButtons, which go to buttons 8 and 9
+     */
+    private static final int THUMB_MASK=0x00C0;
+
+    /**
+     * Whether the natives loaded have the batched read, which older builds of the library do not export
+     */
+    private volatile boolean batchLinked=true;
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    public int getPriority()
+    {
+        return PRIORITY;
+    }
+
+    @Override
+    public boolean isAvailable()
+    {
+        // check the operating system directly so the native library is not loaded
+        return System.getProperty("os.name").contains(GameControllerNatives.WINDOWS_OS_STRING);
+    }
+
+    @Override
+    public boolean open()
+    {
+        return NativeLoader.await();
+    }
+
+    @Override
+    public int getNumControllers()
+    {
+        return GameControllerNatives.getXInputNumControllers();
+    }
+
+    @Override
+    public boolean isController(int id)
+    {
+        return GameControllerNatives.isXInputController(id);
+    }
+
+    @Override
+    public boolean isConnected(int id)
+    {
+        return GameControllerNatives.isXInputConnected(id);
+    }
+
+    @Override
+    public GameControllerCaps getCaps(int id)
+    {
+        return GameControllerNatives.getXInputControllerCaps(id);
+    }
+
+    @Override
+    public long getDeviceIdentity(int id)
+    {
+        return GameControllerNatives.getXInputDeviceIdentity(id);
+    }
+
+    @Override
+    public boolean readState(int id, GameControllerState state)
+    {
+        boolean connected=GameControllerNatives.getXInputControllerState(id, state);
+
+        state.setButtonMap(toButtonMap(state.getButtonMap()));
+
+        return connected;
+    }
+
+    @Override
+    public int readStates(GameControllerStateBuffer buffer, int first, int count)
+    {
+        buffer.checkRange(first, count);
+
+        if(batchLinked)
+        {
+            try
+            {
+                // read all of the records with one call into the natives
+                int connected=GameControllerNatives.getXInputControllerStates(buffer.getBuffer(), first, count);
+                ByteBuffer records=buffer.getBuffer();
+
+                for(int i=first ; i < (first + count) ; ++i)
+                {
+                    int offset=(i * GameControllerStateBuffer.RECORD_SIZE) + GameControllerStateBuffer.BUTTON_MAP_OFFSET;
+
+                    if(!buffer.isSkipped(i))
+                    {
+                        records.putInt(offset, toButtonMap(records.getInt(offset)));
+                    }
+                }
+
+                return connected;
+            }
+            catch(UnsatisfiedLinkError e)
+            {
+                // a library built before the batched read, so read each controller from now on
+                batchLinked=false;
+            }
+        }
+
+        return ControllerBackend.super.readStates(buffer, first, count);
+    }
+
+    /**
+     * Put the raw XInput wButtons in button order, with shifts and masks. The d-pad bits are left
+     * out, since the d-pad is reported as the point-of-view hat.
+     * @param buttons The wButtons from XInput
+     * @return The button map, with bit n set if button n is pressed
+     */
+    static int toButtonMap(int buttons)
+    {
+        return ((buttons & FACE_MASK) >>> 12) | ((buttons & SHOULDER_MASK) >>> 4) | ((buttons & BACK_MASK) << 1)
+               | ((buttons & START_MASK) << 3) | ((buttons & THUMB_MASK) << 2);
+    }
+
+}
@@ -2,7 +2,7 @@
 #include "com_zairon_GameControllerEngine_GameControllerNatives.h"
 #include <stdio.h>
 #include <windows.h>
-#include "XInput.h"
+#include "Xinput.h"
 
 /// The maximum number of buttons that can be tested
 #define GCN_MAX_BUTTONS 32
@@ -75,6 +75,31 @@
 #define GCN_XINPUT_RIGHT_THUMB_BUTTON (9)
 #define GCN_XINPUT_REST_OF_BUTTONS (GCN_XINPUT_RIGHT_THUMB_BUTTON+1)
 
+/// Flag set in a state record when the controller is connected
+#define GCN_STATE_CONNECTED 1
+
+/// Flag set in a state record before a read to leave the record alone
+#define GCN_STATE_SKIP 2
+
+/// One record in a packed state buffer. This must match the layout
+/// documented in GameControllerStateBuffer, and be 64 bytes.
+typedef struct
+{
+    jint id;
+    jint flags;
+    jint buttonMap;
+    jfloat x;
+    jfloat y;
+    jfloat z;
+    jfloat leftTrigger;
+    jfloat rightTrigger;
+    jfloat r;
+    jfloat u;
+    jfloat v;
+    jfloat pov;
+    jbyte reserved[16];
+} GCNStateRecord;
+
 /// Get the number of controllers
 JNIEXPORT jint JNICALL Java_com_zairon_GameControllerEngine_GameControllerNatives_getNumControllers
     (
@@ -563,6 +588,43 @@ JNIEXPORT jobject JNICALL Java_com_zairon_GameControllerEngine_GameControllerNat
     return capsObject;
 }
 
+/// Helper function to hash a device name with FNV-1a, for the device identity
+jint hashDeviceName
+    (
+    char *name
+    )
+{
+    unsigned int hash=2166136261u;
+
+    while(*name!='\0')
+    {
+        hash^=(unsigned char)(*name++);
+        hash*=16777619u;
+    }
+
+    return (jint)hash;
+}
+
+/// Get the identity of the device connected, without building the capabilities object
+JNIEXPORT jlong JNICALL Java_com_zairon_GameControllerEngine_GameControllerNatives_getDeviceIdentity
+    (
+    JNIEnv *env,
+    jobject obj,
+    jint id
+    )
+{
+    JOYCAPS jc;
+
+    if(!getJoyCaps(env, id, &jc))
+    {
+        // nothing connected
+        return 0;
+    }
+
+    // manufacturer and product ids in the high half, the name hash in the low half
+    return (((jlong)jc.wMid) << 48) | (((jlong)jc.wPid) << 32) | (((jlong)hashDeviceName(jc.szPname)) & 0xFFFFFFFFLL);
+}
+
 /// Helper function to calculate the scaled joystick position given the value
 jfloat calcJoyPos
     (
@@ -674,24 +736,9 @@ JNIEXPORT jboolean JNICALL Java_com_zairon_GameControllerEngine_GameControllerNa
     
     setFloatField(env, stateCls, stateObject, "pov", (jfloat)calcJoyPOV(ji.dwPOV));
     
+    // the winmm buttons are already in button order
     setIntField(env, stateCls, stateObject, "buttonMap", (jint)ji.dwButtons);
     
-    jboolean buttonStates[GCN_MAX_BUTTONS];
-    
-    int i;
-    
-    // get the button states
-    for(i=0; i < GCN_MAX_BUTTONS ; ++i)
-    {
-        buttonStates[i]=((ji.dwButtons & 1)==1);
-        
-        // shift off the bit in the button map
-        ji.dwButtons >>= 1;
-    }
-    
-    // set the field values
-    setBooleanArrayField(env, stateCls, stateObject, "buttons", GCN_MAX_BUTTONS, buttonStates);
-    
     // set whether connected
     setBooleanField(env, stateCls, stateObject, "connected", connected );
     
@@ -935,6 +982,26 @@ JNIEXPORT jobject JNICALL Java_com_zairon_GameControllerEngine_GameControllerNat
     return capsObject;
 }
 
+/// Get the identity of the device connected for XInput, without building the capabilities object
+JNIEXPORT jlong JNICALL Java_com_zairon_GameControllerEngine_GameControllerNatives_getXInputDeviceIdentity
+    (
+    JNIEnv *env,
+    jobject obj,
+    jint id
+    )
+{
+    XINPUT_CAPABILITIES xc;
+
+    if(!getXInputCaps(env, id, &xc))
+    {
+        // nothing connected
+        return 0;
+    }
+
+    // XInput has no vendor or product ids, and the type of a gamepad is never zero
+    return (((jlong)xc.Type) << 24) | (((jlong)xc.SubType) << 16) | ((jlong)xc.Flags);
+}
+
 /// Helper function to calculate the scaled joystick position given the value
 jfloat calcXInputPos
     (
@@ -1080,41 +1147,9 @@ JNIEXPORT jboolean JNICALL Java_com_zairon_GameControllerEngine_GameControllerNa
     
     setFloatField(env, stateCls, stateObject, "pov", (jfloat)calcXInputPOV(xs.Gamepad.wButtons));
     
+    // the raw wButtons, which XInputControllerBackend puts in button order
     setIntField(env, stateCls, stateObject, "buttonMap", (jint)xs.Gamepad.wButtons);
     
-    // keep the boolean field to the maximum number of buttons
-    // rather than the GCN_XINPUT_MAX_BUTTONS, because that is what the state field uses
-    jboolean buttonStates[GCN_MAX_BUTTONS];
-    
-    // have to manually set these
-    // if the mask is set, set the state to true, otherwise false
-    buttonStates[GCN_XINPUT_A_BUTTON]=((xs.Gamepad.wButtons & XINPUT_GAMEPAD_A)==XINPUT_GAMEPAD_A);
-    buttonStates[GCN_XINPUT_B_BUTTON]=((xs.Gamepad.wButtons & XINPUT_GAMEPAD_B)==XINPUT_GAMEPAD_B);
-    
-    buttonStates[GCN_XINPUT_X_BUTTON]=((xs.Gamepad.wButtons & XINPUT_GAMEPAD_X)==XINPUT_GAMEPAD_X);
-    buttonStates[GCN_XINPUT_Y_BUTTON]=((xs.Gamepad.wButtons & XINPUT_GAMEPAD_Y)==XINPUT_GAMEPAD_Y);
-    
-    buttonStates[GCN_XINPUT_LEFT_SHOULDER_BUTTON]=((xs.Gamepad.wButtons & XINPUT_GAMEPAD_LEFT_SHOULDER)==XINPUT_GAMEPAD_LEFT_SHOULDER);
-    buttonStates[GCN_XINPUT_RIGHT_SHOULDER_BUTTON]=((xs.Gamepad.wButtons & XINPUT_GAMEPAD_RIGHT_SHOULDER)==XINPUT_GAMEPAD_RIGHT_SHOULDER);
-    
-    buttonStates[GCN_XINPUT_BACK_BUTTON]=((xs.Gamepad.wButtons & XINPUT_GAMEPAD_BACK)==XINPUT_GAMEPAD_BACK);
-    
-    buttonStates[GCN_XINPUT_START_BUTTON]=((xs.Gamepad.wButtons & XINPUT_GAMEPAD_START)==XINPUT_GAMEPAD_START);
-    
-    buttonStates[GCN_XINPUT_LEFT_THUMB_BUTTON]=((xs.Gamepad.wButtons & XINPUT_GAMEPAD_LEFT_THUMB)==XINPUT_GAMEPAD_LEFT_THUMB);
-    buttonStates[GCN_XINPUT_RIGHT_THUMB_BUTTON]=((xs.Gamepad.wButtons & XINPUT_GAMEPAD_RIGHT_THUMB)==XINPUT_GAMEPAD_RIGHT_THUMB);
-
-    // clear the rest
-    int i;
-
-    for(i=GCN_XINPUT_REST_OF_BUTTONS; i < GCN_MAX_BUTTONS; ++i)
-    {
-        buttonStates[i]=((jboolean)FALSE);
-    }
-    
-    // set the field values
-    setBooleanArrayField(env, stateCls, stateObject, "buttons", GCN_MAX_BUTTONS, buttonStates);
-    
     // set whether connected
     setBooleanField(env, stateCls, stateObject, "connected", connected );
     
@@ -1122,3 +1157,158 @@ JNIEXPORT jboolean JNICALL Java_com_zairon_GameControllerEngine_GameControllerNa
     return connected;
            
 }
+
+/// BATCHED VERSION
+
+/// Helper function to get the records for a range of a packed state buffer.
+/// Returns NULL and throws if the buffer is not direct or the range does not fit.
+GCNStateRecord *getStateRecords
+    (
+    JNIEnv *env,
+    jobject buffer,
+    jint first,
+    jint count
+    )
+{
+    GCNStateRecord *records=(GCNStateRecord *)(*env)->GetDirectBufferAddress(env, buffer);
+    jlong capacity=(*env)->GetDirectBufferCapacity(env, buffer);
+
+    if(records==NULL)
+    {
+        throwIllegalArgumentException(env, "State buffer must be a direct buffer\n");
+        return NULL;
+    }
+
+    if((first < 0) || (count < 0) || ((((jlong)first) + count) * ((jlong)sizeof(GCNStateRecord)) > capacity))
+    {
+        throwIllegalArgumentException(env, "Cannot read records %d to %d from the state buffer\n", first, first + count);
+        return NULL;
+    }
+
+    return records + first;
+}
+
+/// Poll a range of controllers into a packed state buffer
+JNIEXPORT jint JNICALL Java_com_zairon_GameControllerEngine_GameControllerNatives_getControllerStates
+    (
+    JNIEnv *env,
+    jclass class,
+    jobject buffer,
+    jint first,
+    jint count
+    )
+{
+    GCNStateRecord *records=getStateRecords(env, buffer, first, count);
+    jint numConnected=0;
+    int i;
+
+    if(records==NULL)
+    {
+        return 0;
+    }
+
+    for(i=0 ; i < count ; ++i)
+    {
+        GCNStateRecord *record=&records[i];
+        JOYINFOEX ji;
+
+        // skipped records are not read at all, so a dead slot costs nothing
+        if((record->flags & GCN_STATE_SKIP)!=0)
+        {
+            continue;
+        }
+
+        memset(&ji, 0, sizeof(ji));
+
+        // set up the info structure to get all data
+        ji.dwSize=sizeof(ji);
+        ji.dwFlags=JOY_RETURNALL;
+
+        if(!getJoyPosEx(env, record->id, &ji))
+        {
+            // not connected, the rest of the record is left as it was
+            record->flags=0;
+            continue;
+        }
+
+        record->flags=GCN_STATE_CONNECTED;
+        ++numConnected;
+
+        record->x=calcJoyPos(ji.dwXpos);
+        // regular joystick has up as negative and down as positive
+        // flip the sense of that to match XInput
+        record->y=-calcJoyPos(ji.dwYpos);
+        record->z=calcJoyPos(ji.dwZpos);
+        // figure out the trigger positions from the z-axis
+        record->leftTrigger=calcJoyLeftTrigger(record->z);
+        record->rightTrigger=calcJoyRightTrigger(record->z);
+        record->r=-calcJoyPos(ji.dwRpos);
+        record->u=calcJoyPos(ji.dwUpos);
+        record->v=calcJoyPos(ji.dwVpos);
+        record->pov=calcJoyPOV(ji.dwPOV);
+        // the winmm buttons are already in button order
+        record->buttonMap=(jint)ji.dwButtons;
+    }
+
+    return numConnected;
+}
+
+/// Poll a range of XInput controllers into a packed state buffer
+JNIEXPORT jint JNICALL Java_com_zairon_GameControllerEngine_GameControllerNatives_getXInputControllerStates
+    (
+    JNIEnv *env,
+    jclass class,
+    jobject buffer,
+    jint first,
+    jint count
+    )
+{
+    GCNStateRecord *records=getStateRecords(env, buffer, first, count);
+    jint numConnected=0;
+    int i;
+
+    if(records==NULL)
+    {
+        return 0;
+    }
+
+    for(i=0 ; i < count ; ++i)
+    {
+        GCNStateRecord *record=&records[i];
+        XINPUT_STATE xs;
+
+        // skipped records are not read at all, so a dead slot does not stall the poll
+        if((record->flags & GCN_STATE_SKIP)!=0)
+        {
+            continue;
+        }
+
+        if(!getXInputState(env, record->id, &xs))
+        {
+            // not connected, the rest of the record is left as it was
+            record->flags=0;
+            continue;
+        }
+
+        record->flags=GCN_STATE_CONNECTED;
+        ++numConnected;
+
+        // The left thumb stick is the x and y axis
+        record->x=calcXInputPos(xs.Gamepad.sThumbLX);
+        record->y=calcXInputPos(xs.Gamepad.sThumbLY);
+        // calculate the z-axis from the trigger axes
+        record->z=calcXInputZAxis(xs.Gamepad.bLeftTrigger, xs.Gamepad.bRightTrigger);
+        record->leftTrigger=calcXInputSingleTrigger(xs.Gamepad.bLeftTrigger);
+        record->rightTrigger=calcXInputSingleTrigger(xs.Gamepad.bRightTrigger);
+        // the right thumb stick is the r and u axis
+        record->r=calcXInputPos(xs.Gamepad.sThumbRY);
+        record->u=calcXInputPos(xs.Gamepad.sThumbRX);
+        // there is no v axis on an XInput controller
+        record->v=(jfloat)-1.0f;
+        record->pov=calcXInputPOV(xs.Gamepad.wButtons);
+        // the raw wButtons, which XInputControllerBackend puts in button order
+        record->buttonMap=(jint)xs.Gamepad.wButtons;
+    }
+
+    return numConnected;
+}
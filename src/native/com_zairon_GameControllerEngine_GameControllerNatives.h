@@ -48,6 +48,14 @@ JNIEXPORT jint JNICALL Java_com_zairon_GameControllerEngine_GameControllerNative
 JNIEXPORT jobject JNICALL Java_com_zairon_GameControllerEngine_GameControllerNatives_getControllerCaps
   (JNIEnv *, jclass, jint);
 
+/*
+ * Class:     com_zairon_GameControllerEngine_GameControllerNatives
+ * Method:    getDeviceIdentity
+ * Signature: (I)J
+ */
+JNIEXPORT jlong JNICALL Java_com_zairon_GameControllerEngine_GameControllerNatives_getDeviceIdentity
+  (JNIEnv *, jclass, jint);
+
 /*
  * Class:     com_zairon_GameControllerEngine_GameControllerNatives
  * Method:    getControllerState
@@ -56,6 +64,14 @@ JNIEXPORT jobject JNICALL Java_com_zairon_GameControllerEngine_GameControllerNat
 JNIEXPORT jboolean JNICALL Java_com_zairon_GameControllerEngine_GameControllerNatives_getControllerState
   (JNIEnv *, jclass, jint, jobject);
 
+/*
+ * Class:     com_zairon_GameControllerEngine_GameControllerNatives
+ * Method:    getControllerStates
+ * Signature: (Ljava/nio/ByteBuffer;II)I
+ */
+JNIEXPORT jint JNICALL Java_com_zairon_GameControllerEngine_GameControllerNatives_getControllerStates
+  (JNIEnv *, jclass, jobject, jint, jint);
+
 /*
  * Class:     com_zairon_GameControllerEngine_GameControllerNatives
  * Method:    getXInputNumControllers
@@ -104,6 +120,14 @@ JNIEXPORT jint JNICALL Java_com_zairon_GameControllerEngine_GameControllerNative
 JNIEXPORT jobject JNICALL Java_com_zairon_GameControllerEngine_GameControllerNatives_getXInputControllerCaps
   (JNIEnv *, jclass, jint);
 
+/*
+ * Class:     com_zairon_GameControllerEngine_GameControllerNatives
+ * Method:    getXInputDeviceIdentity
+ * Signature: (I)J
+ */
+JNIEXPORT jlong JNICALL Java_com_zairon_GameControllerEngine_GameControllerNatives_getXInputDeviceIdentity
+  (JNIEnv *, jclass, jint);
+
 /*
  * Class:     com_zairon_GameControllerEngine_GameControllerNatives
  * Method:    getXInputControllerState
@@ -112,6 +136,14 @@ JNIEXPORT jobject JNICALL Java_com_zairon_GameControllerEngine_GameControllerNat
 JNIEXPORT jboolean JNICALL Java_com_zairon_GameControllerEngine_GameControllerNatives_getXInputControllerState
   (JNIEnv *, jclass, jint, jobject);
 
+/*
+ * Class:     com_zairon_GameControllerEngine_GameControllerNatives
+ * Method:    getXInputControllerStates
+ * Signature: (Ljava/nio/ByteBuffer;II)I
+ */
+JNIEXPORT jint JNICALL Java_com_zairon_GameControllerEngine_GameControllerNatives_getXInputControllerStates
+  (JNIEnv *, jclass, jobject, jint, jint);
+
 #ifdef __cplusplus
 }
 #endif